@@ -0,0 +1,186 @@
+package net.tadpole.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// runs a per-module pass over a set of modules on a work-stealing pool, following the import graph
+// a module is started once every module it imports has been through the pass, modules that import each other form one unit and run in registration order
+// on the pool every module is run even after one fails, the failure reported is the one of the earliest module in registration order, the same one a sequential loop throws
+public class AnalysisScheduler
+{
+	private final List<Module> modules;
+	private final int threads;
+	// strongly connected components of the import graph, dependencies before the modules that import them
+	private final List<int[]> units = new ArrayList<int[]>();
+	// for every unit the units that import one of its modules
+	private final List<List<Integer>> dependents = new ArrayList<List<Integer>>();
+	private final int[] dependencyCounts;
+	
+	public AnalysisScheduler(List<Module> modules, int threads)
+	{
+		this.modules = modules;
+		this.threads = threads;
+		
+		Map<Module, Integer> positions = new IdentityHashMap<Module, Integer>();
+		for(int i = 0; i < modules.size(); i++)
+			positions.put(modules.get(i), i);
+		// imports resolve the same way absolutifyTypes resolves them, a name declared twice is the module registered first
+		int[][] imports = new int[modules.size()][];
+		for(int i = 0; i < modules.size(); i++)
+		{
+			Module module = modules.get(i);
+			imports[i] = module.imports.stream().map(SymbolIndex::getModule).filter(m -> m != null && m != module).map(positions::get).filter(p -> p != null).mapToInt(Integer::intValue).distinct().sorted().toArray();
+		}
+		
+		int[] unitOf = findUnits(imports);
+		dependencyCounts = new int[units.size()];
+		for(int u = 0; u < units.size(); u++)
+			dependents.add(new ArrayList<Integer>());
+		for(int u = 0; u < units.size(); u++)
+		{
+			int unit = u;
+			int[] dependencies = Arrays.stream(units.get(u)).flatMap(m -> Arrays.stream(imports[m])).map(m -> unitOf[m]).filter(d -> d != unit).distinct().toArray();
+			dependencyCounts[u] = dependencies.length;
+			for(int dependency : dependencies)
+				dependents.get(dependency).add(u);
+		}
+	}
+	
+	// the names of the modules in every import cycle, each cycle and its names in registration order
+	public List<List<String>> getCycles()
+	{
+		return units.stream().filter(unit -> unit.length > 1).sorted((a, b) -> Integer.compare(a[0], b[0])).map(unit -> Arrays.stream(unit).mapToObj(m -> modules.get(m).name).collect(Collectors.toList())).collect(Collectors.toList());
+	}
+	
+	public void run(Consumer<Module> pass)
+	{
+		if(threads == 1)
+		{
+			modules.forEach(pass);
+			return;
+		}
+		
+		Throwable[] failures = new Throwable[modules.size()];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			CountDownLatch done = new CountDownLatch(units.size());
+			AtomicInteger[] remaining = Arrays.stream(dependencyCounts).mapToObj(AtomicInteger::new).toArray(AtomicInteger[]::new);
+			for(int u = 0; u < units.size(); u++)
+				if(dependencyCounts[u] == 0)
+					submit(pool, pass, u, remaining, failures, done);
+			done.await();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while analyzing modules", e);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		for(Throwable failure : failures)
+		{
+			if(failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if(failure instanceof Error)
+				throw (Error) failure;
+		}
+	}
+	
+	private void submit(ForkJoinPool pool, Consumer<Module> pass, int unit, AtomicInteger[] remaining, Throwable[] failures, CountDownLatch done)
+	{
+		pool.execute(() -> {
+			for(int m : units.get(unit))
+			{
+				try
+				{
+					pass.accept(modules.get(m));
+				}
+				catch(RuntimeException | Error e)
+				{
+					failures[m] = e;
+				}
+			}
+			for(int dependent : dependents.get(unit))
+				if(remaining[dependent].decrementAndGet() == 0)
+					submit(pool, pass, dependent, remaining, failures, done);
+			done.countDown();
+		});
+	}
+	
+	// Tarjan's algorithm with an explicit stack so long import chains cannot overflow the Java stack, fills units and returns the unit of every module
+	private int[] findUnits(int[][] imports)
+	{
+		int count = imports.length;
+		int[] index = new int[count];
+		int[] lowLink = new int[count];
+		int[] unitOf = new int[count];
+		boolean[] onStack = new boolean[count];
+		Arrays.fill(index, -1);
+		Deque<Integer> stack = new ArrayDeque<Integer>();
+		// pairs of module and the next import to look at
+		Deque<int[]> work = new ArrayDeque<int[]>();
+		int nextIndex = 0;
+		
+		for(int root = 0; root < count; root++)
+		{
+			if(index[root] != -1)
+				continue;
+			work.push(new int[]{root, 0});
+			while(!work.isEmpty())
+			{
+				int[] frame = work.peek();
+				int m = frame[0];
+				if(frame[1] == 0 && index[m] == -1)
+				{
+					index[m] = lowLink[m] = nextIndex++;
+					stack.push(m);
+					onStack[m] = true;
+				}
+				if(frame[1] < imports[m].length)
+				{
+					int imported = imports[m][frame[1]++];
+					if(index[imported] == -1)
+						work.push(new int[]{imported, 0});
+					else if(onStack[imported])
+						lowLink[m] = Math.min(lowLink[m], index[imported]);
+					continue;
+				}
+				
+				work.pop();
+				if(!work.isEmpty())
+				{
+					int parent = work.peek()[0];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[m]);
+				}
+				if(lowLink[m] == index[m])
+				{
+					List<Integer> members = new ArrayList<Integer>();
+					int member;
+					do
+					{
+						member = stack.pop();
+						onStack[member] = false;
+						unitOf[member] = units.size();
+						members.add(member);
+					}
+					while(member != m);
+					units.add(members.stream().mapToInt(Integer::intValue).sorted().toArray());
+				}
+			}
+		}
+		return unitOf;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package net.tadpole.compiler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// generates the class file of every module and every struct on a work-stealing pool, in two phases: every class is attributed
+// before the code of any class is generated, so generating code only reads what attribution stored in the trees
+// each class has its own ClassGen and constant pool and attributing or generating one only reads the symbol tables, so classes need nothing from each other
+// the classes come back in the order a sequential loop generates them, each module class followed by its structs,
+// and the failure reported is the one of the earliest class in that order within the phase that failed, the same one a sequential loop throws
+public class BytecodeGenerator
+{
+	private final List<Runnable> attributions = new ArrayList<Runnable>();
+	private final List<Supplier<ClassFile>> classes = new ArrayList<Supplier<ClassFile>>();
+	// rough cost of every class, the number of functions and initializers it has to generate
+	private final List<Integer> sizes = new ArrayList<Integer>();
+	private final int threads;
+	
+	public BytecodeGenerator(List<Module> modules, int threads, ClassFileBackend backend)
+	{
+		this.threads = threads;
+		for(Module module : modules)
+		{
+			attributions.add(module::attribute);
+			classes.add(() -> module.toModuleClass(backend));
+			sizes.add(module.declaredFunctions.size() + module.statements.size());
+			for(Struct struct : module.declaredStructs)
+			{
+				attributions.add(struct::attribute);
+				classes.add(() -> struct.toBytecode(backend));
+				sizes.add(struct.functions.size() + struct.attributes.size());
+			}
+		}
+	}
+	
+	public ClassFile[] run()
+	{
+		forEachClass(i -> attributions.get(i).run(), "attributing");
+		ClassFile[] generated = new ClassFile[classes.size()];
+		forEachClass(i -> generated[i] = classes.get(i).get(), "generating");
+		return generated;
+	}
+	
+	private void forEachClass(IntConsumer task, String phase)
+	{
+		if(threads == 1 || classes.size() < 2)
+		{
+			for(int i = 0; i < classes.size(); i++)
+				task.accept(i);
+			return;
+		}
+		
+		Throwable[] failures = new Throwable[classes.size()];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			CountDownLatch done = new CountDownLatch(classes.size());
+			// the largest classes are started first so a big module class does not end up running alone at the end
+			List<Integer> order = IntStream.range(0, classes.size()).boxed().sorted(Comparator.comparing(sizes::get, Comparator.reverseOrder())).collect(Collectors.toList());
+			for(int i : order)
+			{
+				pool.execute(() -> {
+					try
+					{
+						task.accept(i);
+					}
+					catch(RuntimeException | Error e)
+					{
+						failures[i] = e;
+					}
+					done.countDown();
+				});
+			}
+			done.await();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while " + phase + " classes", e);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		for(Throwable failure : failures)
+		{
+			if(failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if(failure instanceof Error)
+				throw (Error) failure;
+		}
+	}
+}
\ No newline at end of file
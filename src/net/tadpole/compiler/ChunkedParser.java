@@ -0,0 +1,84 @@
+package net.tadpole.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.parser.TadpoleParser.FileContext;
+import net.tadpole.compiler.util.DeclarationScanner;
+
+// parses a single large file as independent chunks cut at top-level declarations, each chunk gets its own parser
+public class ChunkedParser
+{
+	// returns null if the file is too small to split or a chunk does not parse cleanly, the caller should then parse the whole file normally
+	public static Module parse(String moduleName, char[] source, int length, int chunkSize)
+	{
+		List<Integer> cuts = new ArrayList<Integer>();
+		cuts.add(0);
+		for(int start : DeclarationScanner.findDeclarationStarts(source, length))
+			if(start - cuts.get(cuts.size() - 1) >= chunkSize)
+				cuts.add(start);
+		if(cuts.size() < 2)
+			return null;
+		cuts.add(length);
+		
+		List<ForkJoinTask<Module>> tasks = new ArrayList<ForkJoinTask<Module>>();
+		int line = 1;
+		int lineStart = 0;
+		int position = 0;
+		for(int i = 0; i < cuts.size() - 1; i++)
+		{
+			int start = cuts.get(i);
+			int end = cuts.get(i + 1);
+			for(; position < start; position++)
+			{
+				if(source[position] == '\n')
+				{
+					line++;
+					lineStart = position + 1;
+				}
+			}
+			int chunkLine = line;
+			int chunkColumn = start - lineStart;
+			tasks.add(ForkJoinTask.adapt(() -> parseChunk(moduleName, source, length, start, end, chunkLine, chunkColumn)));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		
+		// chunks are merged in source order, so every list ends up in the same order a single parse would produce
+		List<Struct> structs = new ArrayList<Struct>();
+		List<String> imports = new ArrayList<String>();
+		List<Function> functions = new ArrayList<Function>();
+		List<Statement> statements = new ArrayList<Statement>();
+		for(ForkJoinTask<Module> task : tasks)
+		{
+			Module chunk = task.join();
+			if(chunk == null)
+				return null;
+			structs.addAll(chunk.declaredStructs);
+			imports.addAll(chunk.imports);
+			functions.addAll(chunk.declaredFunctions);
+			statements.addAll(chunk.statements);
+		}
+		// a last line without a terminator is still a line
+		for(; position < length; position++)
+			if(source[position] == '\n')
+				line++;
+		ParseDriver.countFile(length > 0 && source[length - 1] != '\n' ? line : line - 1);
+		return new Module(moduleName, structs, imports, functions, statements);
+	}
+	
+	private static Module parseChunk(String moduleName, char[] source, int length, int start, int end, int line, int charPositionInLine)
+	{
+		FragmentTokenSource tokens = new FragmentTokenSource(source, length, start, end, line, charPositionInLine);
+		FileContext context = ParseDriver.tryParse(tokens);
+		if(context == null || tokens.failed)
+			return null;
+		
+		ParseTreeWalker walker = new ParseTreeWalker();
+		TadpoleListener listener = new TadpoleListener(moduleName);
+		walker.walk(listener, context);
+		return listener.getModule();
+	}
+}
\ No newline at end of file
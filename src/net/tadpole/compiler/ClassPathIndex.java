@@ -0,0 +1,209 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.Type;
+
+import net.tadpole.compiler.exceptions.CompilationException;
+import net.tadpole.compiler.util.TypeUtils;
+
+// knows which Java classes exist without asking a class loader, so a name that is not a Java class is rejected by a hash lookup
+// jar entries are read once up front, the runtime image (jrt:/) and class path directories one package at a time when first asked about
+// every class, field and method lookup is answered once per compilation, misses included
+public class ClassPathIndex
+{
+	private static final FileSystem runtimeImage = openRuntimeImage();
+	private static Map<String, Set<String>> jarPackages;
+	private static List<File> directories;
+	// package name to the names of its classes without the package, nested classes keep their $
+	private static final ConcurrentMap<String, Set<String>> packages = new ConcurrentHashMap<String, Set<String>>();
+	private static final ConcurrentMap<String, Optional<JavaClass>> classes = new ConcurrentHashMap<String, Optional<JavaClass>>();
+	private static final ConcurrentMap<String, Optional<Field>> fields = new ConcurrentHashMap<String, Optional<Field>>();
+	private static final ConcurrentMap<String, List<Method>> methods = new ConcurrentHashMap<String, List<Method>>();
+	// keyed like methods and then by the signatures of the argument types
+	private static final ConcurrentMap<String, Optional<Method>> resolvedMethods = new ConcurrentHashMap<String, Optional<Method>>();
+	
+	public static boolean isClass(String className)
+	{
+		int dot = className.lastIndexOf('.');
+		String packageName = dot == -1 ? "" : className.substring(0, dot);
+		return packages.computeIfAbsent(packageName, ClassPathIndex::listPackage).contains(className.substring(dot + 1));
+	}
+	
+	// null if there is no such class
+	public static JavaClass lookupClass(String className)
+	{
+		if(!isClass(className))
+			return null;
+		return classes.computeIfAbsent(className, name -> {
+			try
+			{
+				// the repository caches what it loads in a plain map, classes are looked up from several threads while they are generated
+				synchronized(Repository.class)
+				{
+					return Optional.of(Repository.lookupClass(name));
+				}
+			}
+			catch(ClassNotFoundException e)
+			{
+				return Optional.empty();
+			}
+		}).orElse(null);
+	}
+	
+	// only fields declared by the class itself, null if there is no such field
+	public static Field getField(String className, String fieldName)
+	{
+		return fields.computeIfAbsent(className + "#" + fieldName, key -> {
+			JavaClass jc = lookupClass(className);
+			return jc == null ? Optional.empty() : Arrays.stream(jc.getFields()).filter(f -> f.getName().equals(fieldName)).findFirst();
+		}).orElse(null);
+	}
+	
+	// the methods of the class with that name and number of parameters, in declaration order, the list must not be modified
+	public static List<Method> getMethods(String className, String methodName, int arity, boolean staticOnly)
+	{
+		return methods.computeIfAbsent(className + "#" + methodName + "/" + arity + (staticOnly ? "/static" : ""), key -> {
+			JavaClass jc = lookupClass(className);
+			if(jc == null)
+				return Collections.emptyList();
+			return Collections.unmodifiableList(Arrays.stream(jc.getMethods()).filter(m -> m.getName().equals(methodName)).filter(m -> !staticOnly || m.isStatic()).filter(m -> m.getArgumentTypes().length == arity).collect(Collectors.toList()));
+		});
+	}
+	
+	// the overload that fits the argument types best, null if the class has none that fits or the best fit is ambiguous
+	public static Method resolveMethod(String className, String methodName, List<Type> argTypes, boolean staticOnly)
+	{
+		StringBuilder key = new StringBuilder(className).append('#').append(methodName).append('(');
+		for(Type argType : argTypes)
+			key.append(argType.getSignature());
+		key.append(staticOnly ? ")/static" : ")");
+		return resolvedMethods.computeIfAbsent(key.toString(), k -> {
+			List<Method> candidates = getMethods(className, methodName, argTypes.size(), staticOnly);
+			if(candidates.isEmpty())
+				return Optional.empty();
+			try
+			{
+				return Optional.of(TypeUtils.findClosestMatch(candidates, argTypes, null));
+			}
+			catch(CompilationException e)
+			{
+				// an ambiguous Java overload has always been left for the tadpole functions to resolve
+				return Optional.empty();
+			}
+		}).orElse(null);
+	}
+	
+	private static Set<String> listPackage(String packageName)
+	{
+		Set<String> names = new HashSet<String>();
+		String packagePath = packageName.replace('.', '/');
+		if(runtimeImage != null && !packageName.isEmpty())
+		{
+			// /packages/<package> holds a link for every module that contains the package
+			try(DirectoryStream<Path> modules = Files.newDirectoryStream(runtimeImage.getPath("/packages", packageName)))
+			{
+				for(Path module : modules)
+					addClasses(names, runtimeImage.getPath("/modules", module.getFileName().toString(), packagePath));
+			}
+			catch(IOException e) {}
+		}
+		synchronized(ClassPathIndex.class)
+		{
+			if(jarPackages == null)
+				indexClassPath();
+			names.addAll(jarPackages.getOrDefault(packageName, Collections.emptySet()));
+		}
+		for(File directory : directories)
+			addClasses(names, new File(directory, packagePath).toPath());
+		return names;
+	}
+	
+	private static void addClasses(Set<String> names, Path directory)
+	{
+		if(!Files.isDirectory(directory))
+			return;
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.class"))
+		{
+			for(Path file : files)
+			{
+				String name = file.getFileName().toString();
+				names.add(name.substring(0, name.length() - ".class".length()));
+			}
+		}
+		catch(IOException e) {}
+	}
+	
+	private static void indexClassPath()
+	{
+		jarPackages = new HashMap<String, Set<String>>();
+		directories = new ArrayList<File>();
+		List<String> entries = new ArrayList<String>(Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+		// before Java 9 the runtime classes are in jars on the boot class path instead of in jrt:/
+		if(runtimeImage == null)
+			entries.addAll(Arrays.asList(System.getProperty("sun.boot.class.path", "").split(File.pathSeparator)));
+		for(String entry : entries)
+		{
+			File file = new File(entry.isEmpty() ? "." : entry);
+			if(file.isDirectory())
+			{
+				directories.add(file);
+			}
+			else if(file.isFile())
+			{
+				try(ZipFile zip = new ZipFile(file))
+				{
+					Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+					while(zipEntries.hasMoreElements())
+					{
+						String name = zipEntries.nextElement().getName();
+						if(!name.endsWith(".class"))
+							continue;
+						int slash = name.lastIndexOf('/');
+						String packageName = slash == -1 ? "" : name.substring(0, slash).replace('/', '.');
+						jarPackages.computeIfAbsent(packageName, key -> new HashSet<String>()).add(name.substring(slash + 1, name.length() - ".class".length()));
+					}
+				}
+				catch(IOException e) {}
+			}
+		}
+	}
+	
+	private static FileSystem openRuntimeImage()
+	{
+		try
+		{
+			return FileSystems.getFileSystem(URI.create("jrt:/"));
+		}
+		catch(RuntimeException e)
+		{
+			return null;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,245 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.verifier.VerificationResult;
+import org.apache.bcel.verifier.Verifier;
+import org.apache.bcel.verifier.VerifierFactory;
+
+import net.tadpole.compiler.backend.ClassFile;
+
+// checks finished classes before they are written, each class on its own so a rejected one does not stop the others from being written
+// by default the JVM verifies them itself: the classes are defined in a class loader that is thrown away afterwards and linked without being initialized,
+// linking is what runs the verifier and none of the program's own code runs. classes are linked on a work-stealing pool
+// BCEL's verifier is the deep mode, it checks more than the JVM does but is far slower and keeps its state in static maps, so it goes one class at a time
+public class ClassVerifier
+{
+	public enum Mode
+	{
+		JVM, BCEL, NONE;
+		
+		public static Mode forName(String name)
+		{
+			switch(name)
+			{
+			case "jvm":
+				return JVM;
+			case "bcel":
+				return BCEL;
+			case "none":
+				return NONE;
+			default:
+				throw new IllegalArgumentException("Unknown verifier: " + name);
+			}
+		}
+	}
+	
+	private final Mode mode;
+	private final int threads;
+	// where the classes the build imports are, the JVM loads them while it checks the classes of the build against them
+	private final URL[] classPath;
+	
+	public ClassVerifier(Mode mode, int threads, String classPath)
+	{
+		this.mode = mode;
+		this.threads = threads;
+		List<URL> urls = new ArrayList<URL>();
+		for(String entry : classPath.split(File.pathSeparator))
+		{
+			if(entry.isEmpty())
+				continue;
+			try
+			{
+				urls.add(new File(entry).toURI().toURL());
+			}
+			catch(MalformedURLException e)
+			{
+				throw new IllegalArgumentException("Invalid class path entry: " + entry, e);
+			}
+		}
+		this.classPath = urls.toArray(new URL[0]);
+	}
+	
+	// whether each class passed, the reasons the others were rejected are printed in the order of the classes
+	public boolean[] verify(ClassFile[] classes)
+	{
+		String[] classNames = new String[classes.length];
+		Map<String, byte[]> bytes = new HashMap<String, byte[]>();
+		for(int i = 0; i < classes.length; i++)
+		{
+			classNames[i] = classes[i].className;
+			bytes.put(classes[i].className, classes[i].bytes);
+		}
+		// BCEL finds the classes it checks against in its repository, these are not on any class path yet
+		if(mode == Mode.BCEL)
+			Arrays.stream(classes).map(ClassFile::toJavaClass).forEach(Repository::addClass);
+		return verify(classNames, bytes);
+	}
+	
+	// classes that were already written, found through the class path
+	public boolean[] verify(List<String> classNames)
+	{
+		return verify(classNames.toArray(new String[0]), new HashMap<String, byte[]>());
+	}
+	
+	private boolean[] verify(String[] classNames, Map<String, byte[]> bytes)
+	{
+		String[] failures = new String[classNames.length];
+		if(mode == Mode.BCEL)
+		{
+			for(int i = 0; i < classNames.length; i++)
+			{
+				try
+				{
+					failures[i] = verifyWithBcel(Repository.lookupClass(classNames[i]));
+				}
+				catch(ClassNotFoundException e)
+				{
+					failures[i] = e.toString();
+				}
+				// the verifier would otherwise hold on to every class of the build
+				VerifierFactory.getVerifier(classNames[i]).flush();
+				// a class read from the class path is read again if a later one needs it, one added from memory could not be
+				if(!bytes.containsKey(classNames[i]))
+					Repository.removeClass(classNames[i]);
+			}
+		}
+		else if(mode == Mode.JVM)
+		{
+			try(Loader loader = new Loader(bytes, classPath))
+			{
+				link(loader, classNames, failures);
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		boolean[] passed = new boolean[classNames.length];
+		for(int i = 0; i < classNames.length; i++)
+		{
+			passed[i] = failures[i] == null;
+			if(!passed[i])
+				System.err.println("Failed to verify class: " + classNames[i] + "\n\n" + failures[i]);
+		}
+		return passed;
+	}
+	
+	private void link(Loader loader, String[] classNames, String[] failures)
+	{
+		if(threads == 1 || classNames.length < 2)
+		{
+			for(int i = 0; i < classNames.length; i++)
+				failures[i] = link(loader, classNames[i]);
+			return;
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try
+		{
+			CountDownLatch done = new CountDownLatch(classNames.length);
+			for(int i = 0; i < classNames.length; i++)
+			{
+				int index = i;
+				pool.execute(() -> {
+					failures[index] = link(loader, classNames[index]);
+					done.countDown();
+				});
+			}
+			done.await();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while verifying classes", e);
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+	
+	// null when the class links, otherwise why the JVM rejected it
+	private static String link(Loader loader, String className)
+	{
+		try
+		{
+			// asking for the methods links the class, initializing it would also run its static initializer
+			Class.forName(className, false, loader).getDeclaredMethods();
+			return null;
+		}
+		catch(ClassNotFoundException | LinkageError | RuntimeException e)
+		{
+			return e.toString();
+		}
+	}
+	
+	// null when every pass accepts the class, otherwise the message of the first pass that rejected it
+	static String verifyWithBcel(JavaClass jc)
+	{
+		Verifier verifier = VerifierFactory.getVerifier(jc.getClassName());
+		VerificationResult vr = verifier.doPass1();
+		if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
+			return vr.getMessage();
+		vr = verifier.doPass2();
+		if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
+			return vr.getMessage();
+		for(int i = 0; i < jc.getMethods().length; i++)
+		{
+			vr = verifier.doPass3a(i);
+			if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
+				return vr.getMessage();
+			vr = verifier.doPass3b(i);
+			if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
+				return vr.getMessage();
+		}
+		return null;
+	}
+	
+	// defines the classes of the build itself before asking anyone else, an older copy of one of them may be on the class path
+	private static class Loader extends URLClassLoader
+	{
+		static
+		{
+			registerAsParallelCapable();
+		}
+		
+		private final Map<String, byte[]> classes;
+		
+		Loader(Map<String, byte[]> classes, URL[] classPath)
+		{
+			super(classPath, Loader.class.getClassLoader());
+			this.classes = classes;
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+		{
+			byte[] bytes = classes.get(name);
+			if(bytes == null)
+				return super.loadClass(name, resolve);
+			synchronized(getClassLoadingLock(name))
+			{
+				Class<?> c = findLoadedClass(name);
+				if(c == null)
+					c = defineClass(name, bytes, 0, bytes.length);
+				return c;
+			}
+		}
+	}
+}
\ No newline at end of file
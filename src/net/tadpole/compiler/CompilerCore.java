@@ -1,40 +1,43 @@
 package net.tadpole.compiler;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.BiConsumer;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javafx.util.Pair;
 import net.tadpole.compiler.ast.*;
 import net.tadpole.compiler.ast.Expression.*;
 import net.tadpole.compiler.ast.LiteralExpression.*;
+import net.tadpole.compiler.backend.ClassFile;
 import net.tadpole.compiler.exceptions.CompilationException;
 import net.tadpole.compiler.parser.TadpoleLexer;
 import net.tadpole.compiler.parser.TadpoleParser;
 import net.tadpole.compiler.parser.TadpoleParser.FileContext;
+import net.tadpole.compiler.util.SourceLoader;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.util.BCELifier;
-import org.apache.bcel.verifier.VerificationResult;
-import org.apache.bcel.verifier.Verifier;
-import org.apache.bcel.verifier.VerifierFactory;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.SyntheticRepository;
 
 public class CompilerCore
 {
@@ -44,938 +47,931 @@ public class CompilerCore
 		
 		//System.exit(0);
 		
-		args = new String[]{"examples/Test.tadpole", "examples/Brainfuck.tadpole"};
-		for(int i = 0; i < args.length; i++)
-			args[i] = args[i].replace('\\', '/');
+		// the files and options on the command line are what gets compiled, the two examples are only a fallback for a run without any arguments
+		if(args.length == 0)
+			args = new String[]{"examples/Test.tadpole", "examples/Brainfuck.tadpole"};
+		CompilerOptions options = CompilerOptions.parse(args);
 		
-		if(args.length < 1)
+		if(options.files.size() < 1)
 			throw new IllegalArgumentException("Invalid number of arguments");
 		
-		for(int i = 0; i < args.length; i++)
+		ParseDriver.useSLL = options.sllParsing;
+		Module.fusePasses = options.fusePasses;
+		ParseDriver.warmUp();
+		
+		// modules are registered in argument order so the rest of the compiler sees the same order regardless of thread count
+		ModelCache cache = options.cacheDirectory != null ? new ModelCache(new File(options.cacheDirectory), options.cacheSize) : null;
+		if(options.cacheDirectory != null)
+			LibraryIndex.indexDirectory = new File(options.cacheDirectory, "libraries");
+		if(options.watch)
 		{
-			String filename = args[i];
-			BufferedReader br = new BufferedReader(new FileReader(new File(filename)));
-			String fileData = br.lines().collect(Collectors.joining("\n"));
-			br.close();
-			
-			TadpoleLexer lexer = new TadpoleLexer(new ANTLRInputStream(fileData));
-			CommonTokenStream tokens = new CommonTokenStream(lexer);
-			TadpoleParser parser = new TadpoleParser(tokens);
-			FileContext mc = parser.file();
-			
-			String moduleName = filename.substring(filename.lastIndexOf("/") + 1, filename.length() - 8);
-			ParseTreeWalker walker = new ParseTreeWalker();
-			TadpoleListener listener = new TadpoleListener(moduleName);
-			walker.walk(listener, mc);
-			FileNode fileNode = listener.getRoot();
-			simplifyNodes(fileNode);
-			List<Struct> structs = Struct.registerStructs(fileNode);
-			List<String> imports = fileNode.getChildren().stream().filter(n -> n instanceof ImportNode).map(n -> ((ImportNode) n).moduleName).collect(Collectors.toList());
-			List<Function> functions = fileNode.getChildren().stream().filter(n -> n instanceof FunctionDecNode).map(n -> new Function((FunctionDecNode) n)).collect(Collectors.toList());
-			List<Statement> statements = fileNode.getChildren().stream().filter(n -> n instanceof StatementNode).map(n -> Statement.convert((StatementNode) n)).collect(Collectors.toList());
-			Module module = new Module(moduleName, structs, imports, functions, statements);
+			WatchCompiler.watch(options);
+			return;
+		}
+		if(options.memoryBudget > 0)
+		{
+			StreamingCompiler.compile(options, cache);
+			return;
+		}
+		
+		List<Module> modules = parseFiles(options.files, options, cache, UnaryOperator.identity());
+		for(Module module : modules)
+		{
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
 		}
-		Module.absolutifyTypes(); // also verifies that types exist and are imported
-		Module.verifySanity(); // verifies that no duplicates are declared
-		Module.mergeParallelAssigns();
+		// imports that are not part of this build come from the interfaces earlier builds left next to their classes
+		if(ModuleInterface.registerMissingImports(modules, options.interfacePath, options.libraryPath) > 0)
+			Repository.setRepository(SyntheticRepository.getInstance(new ClassPath(ClassPath.SYSTEM_CLASS_PATH, options.importClassPath())));
+		if(options.parseStatistics)
+		{
+			System.out.println(ParseDriver.getStatistics());
+			if(cache != null)
+				System.out.println(cache.getStatistics());
+		}
+		Module.analyze(options.threads);
+		if(options.passStatistics)
+			System.out.println(TreeWalk.getStatistics());
 		
 		// TODO format struct names inner$outer, generate bytecode
 		
-		ClassGen[] classGens = Module.generateBytecode();
-		JavaClass[] classes = Arrays.stream(classGens).map(ClassGen::getJavaClass).toArray(JavaClass[]::new);
+		ClassFile[] classFiles = Module.generateBytecode(options.threads, options.backend);
+		boolean[] passed = new ClassVerifier(options.verifier, options.threads, options.importClassPath()).verify(classFiles);
 		
-		Arrays.stream(classes).forEach(Repository::addClass);
-		for(JavaClass jc : classes)
+		// every class is written once, after it passed
+		boolean written = false;
+		for(int i = 0; i < classFiles.length; i++)
 		{
-			Verifier verifier = VerifierFactory.getVerifier(jc.getClassName());
-			VerificationResult vr = verifier.doPass1();
-			if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
-			{
-				System.err.println("Failed to verify class: " + jc.getClassName() + "\n\n" + vr.getMessage());
-				continue;
-			}
-			vr = verifier.doPass2();
-			if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
-			{
-				System.err.println("Failed to verify class: " + jc.getClassName() + "\n\n" + vr.getMessage());
+			if(!passed[i])
 				continue;
-			}
-			for(int i = 0; i < jc.getMethods().length; i++)
-			{
-				vr = verifier.doPass3a(i);
-				if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
-				{
-					System.err.println("Failed to verify class: " + jc.getClassName() + "\n\n" + vr.getMessage());
-					break;
-				}
-				vr = verifier.doPass3b(i);
-				if(vr.getStatus() == VerificationResult.VERIFIED_REJECTED)
-				{
-					System.err.println("Failed to verify class: " + jc.getClassName() + "\n\n" + vr.getMessage());
-					break;
-				}
-			}
-			
-			Arrays.stream(classes).forEach(clazz -> {
-				try
-				{
-					clazz.dump(new File("out/" + clazz.getClassName().replace('.', '$') + ".class"));
-				}
-				catch(Exception e)
-				{
-					e.printStackTrace();
-				}
-			});
-			
-			//copy(new File("lib"), new File("out"));
-			
-			//String module = args.length > 1 ? args[args.length - 1] : roots.get(0).getKey();
 			
-			/*File meta = new File("out/META-INF");
-			meta.mkdirs();
-			meta = new File(meta, "MANIFEST.MF");
-			
-			try(BufferedWriter bw = new BufferedWriter(new FileWriter(new File("out/META-INF/MANIFEST.MF"))))
+			written = true;
+			try
 			{
-				bw.write("Manifest-Version: 1.0\nCreated-By: 1.0.0 Chigara Compiler (Matthew Warren)\nMain-Class: " + module + "." + module + "\n\n\n");
+				classFiles[i].write(new File("out"));
 			}
 			catch(Exception e)
 			{
 				e.printStackTrace();
-			}*/
-			
-			/*try
+			}
+		}
+		if(written)
+			Module.writeInterfaces(new File("out"));
+	}
+	
+	// transform is applied to each module as soon as it is parsed, before the next file is started on that thread
+	static List<Module> parseFiles(List<String> filenames, CompilerOptions options, ModelCache cache, UnaryOperator<Module> transform) throws Exception
+	{
+		List<Module> modules = new ArrayList<Module>(filenames.size());
+		if(options.threads == 1)
+		{
+			for(String filename : filenames)
+				modules.add(transform.apply(parseFile(filename, options, cache)));
+			return modules;
+		}
+		
+		// a single file still goes through the pool so that a large one can be split into chunks
+		ForkJoinPool pool = new ForkJoinPool(options.threads);
+		try
+		{
+			List<ForkJoinTask<Module>> tasks = filenames.stream().map(filename -> pool.submit(() -> transform.apply(parseFile(filename, options, cache)))).collect(Collectors.toList());
+			// join in submission order so the first failing file in argument order is the one reported
+			for(ForkJoinTask<Module> task : tasks)
 			{
-				File f = new File("out/" + module + ".jar");
-				f.getParentFile().mkdirs();
-				f.createNewFile();
-				JarOutputStream out = new JarOutputStream(new FileOutputStream(f));
-				classes.forEach(clazz -> {
-					int index = clazz.getClassName().lastIndexOf(".") + 1;
-					
-					JarEntry je = new JarEntry(p.getKey() + "/" + clazz.getClassName().substring(index) + ".class");
-					try
-					{
-						out.putNextEntry(je);
-						clazz.dump(out);
-						out.closeEntry();
-					}
-					catch(Exception e)
-					{
-						e.printStackTrace();
-					}
-				});
-				
-				File libFile = new File("lib");
-				LinkedList<File> files = new LinkedList<File>();
-				files.add(libFile);
-				byte[] ba = new byte[8192];
-				while(files.size() > 0)
+				try
 				{
-					File file = files.removeFirst();
-					if(file.isDirectory())
-					{
-						Arrays.stream(file.listFiles()).forEach(files::add);
-					}
-					else
-					{
-						String relPath = libFile.toURI().relativize(file.toURI()).getPath();
-						JarEntry je = new JarEntry(relPath);
-						try
-						{
-							out.putNextEntry(je);
-							FileInputStream fis = new FileInputStream(file);
-							int amt;
-							while((amt = fis.read(ba)) >= 0)
-								out.write(ba, 0, amt);
-							fis.close();
-							out.closeEntry();
-						}
-						catch(Exception e)
-						{
-							e.printStackTrace();
-						}
-					}
+					modules.add(task.get());
+				}
+				catch(ExecutionException e)
+				{
+					if(e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
 				}
-				
-				JarEntry je = new JarEntry("META-INF/MANIFEST.MF");
-				out.putNextEntry(je);
-				out.write(("Manifest-Version: 1.0\nCreated-By: 1.0.0 Chigara Compiler (Matthew Warren)\nMain-Class: " + module + "." + module + "\n\n\n").getBytes("UTF-8"));
-				out.closeEntry();
-				
-				out.close();
 			}
-			catch(Exception e)
-			{
-				e.printStackTrace();
-			}*/
 		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		return modules;
+	}
+	
+	// the file name without its directory and the .tadpole extension
+	static String moduleName(String filename)
+	{
+		return filename.substring(filename.lastIndexOf("/") + 1, filename.length() - 8);
 	}
 	
-	private static boolean tryRead(List<String> strList, String fileName, int retryAmt)
+	static Module parseFile(String filename, CompilerOptions options, ModelCache cache) throws Exception
 	{
-		while(retryAmt > 0)
+		String moduleName = moduleName(filename);
+		String key = null;
+		if(cache != null)
 		{
-			try(BufferedReader br = new BufferedReader(new FileReader(new File(fileName))))
-			{
-				strList.add(br.lines().collect(Collectors.joining("\n")));
-				return true;
-			}
-			catch(Exception e)
-			{
-				retryAmt--;
-			}
+			key = cache.key(filename, moduleName);
+			// cached modules are loaded with compact bodies whether or not compactAst is set
+			Module module = cache.load(key, moduleName);
+			if(module != null)
+				return module;
 		}
-		return false;
+		
+		ParseDriver.SyntaxErrors errors = new ParseDriver.SyntaxErrors();
+		Module module = parseFile(filename, options.parseChunkSize, errors);
+		// compacting right after each file is parsed keeps at most one file's bodies in object form per thread
+		if(options.compactAst)
+			module.compactFunctions();
+		// a module recovered from syntax errors is never cached, the next run has to parse the file and report them again
+		if(cache != null && errors.getCount() == 0)
+			cache.store(key, module);
+		return module;
 	}
 	
-	private static void simplifyNodes(ASTNode node)
+	// a file parsed in chunks had no errors, a chunk with one makes the whole file parse again and report it to errors
+	private static Module parseFile(String filename, int chunkSize, ParseDriver.SyntaxErrors errors) throws Exception
 	{
-		if(!(node instanceof StatementNode) && !(node instanceof VariableDecNode))
+		String moduleName = moduleName(filename);
+		CharBuffer chars = SourceLoader.loadChars(filename);
+		
+		// chunks only run in parallel inside the pool, outside of it splitting would just cost time
+		if(chunkSize > 0 && chars.position() > chunkSize && ForkJoinTask.inForkJoinPool())
 		{
-			node.getChildren().forEach(CompilerCore::simplifyNodes);
-			return;
+			Module module = ChunkedParser.parse(moduleName, chars.array(), chars.position(), chunkSize);
+			if(module != null)
+				return module;
 		}
 		
-		if(node instanceof StatementNode)
+		// a file that failed to parse in chunks is parsed again as a whole so its errors are reported
+		ANTLRInputStream input = new ANTLRInputStream(chars.array(), chars.position());
+		input.name = filename;
+		FileContext mc = ParseDriver.parse(input, errors);
+		
+		ParseTreeWalker walker = new ParseTreeWalker();
+		TadpoleListener listener = new TadpoleListener(moduleName);
+		walker.walk(listener, mc);
+		return listener.getModule();
+	}
+	
+	// folds a unary expression whose operand has already been simplified
+	private static Expression simplifyUnaryExpression(UnaryExpression ue, Expression expr)
+	{
+		if(expr instanceof LiteralExpression)
 		{
-			StatementNode sn = (StatementNode) node;
-			if(sn.isExpressionStatement())
+			if(expr instanceof LiteralExpression.IntLiteral)
 			{
-				sn.expressions.set(0, simplifyExpression(sn.expressions.get(0)));
-			}
-			else if(sn.isReturnStatement() && sn.expressions != null)
-			{
-				sn.expressions.set(0, simplifyExpression(sn.expressions.get(0)));
+				LiteralExpression.IntLiteral il = (LiteralExpression.IntLiteral) expr;
+				switch(ue.op)
+				{
+				case NEGATIVE:
+					return new LiteralExpression.IntLiteral(-il.value, il.wide);
+				case UNARY_NEGATE:
+					return new LiteralExpression.IntLiteral(~il.value, il.wide);
+				case POSITIVE:
+					return il;
+				case DECREMENT:
+					throw new CompilationException("Cannot decrement an integer literal");
+				case INCREMENT:
+					throw new CompilationException("Cannot increment an integer literal");
+				case NOT:
+					throw new CompilationException("Cannot perform boolean negation on integer");
+				default:
+					throw new CompilationException("Unknown unary operator: " + ue.op);
+				}
 			}
-			else if(sn.isBlockStatement())
+			else if(expr instanceof LiteralExpression.FloatLiteral)
 			{
-				sn.statements.forEach(CompilerCore::simplifyNodes);
+				LiteralExpression.FloatLiteral fl = (LiteralExpression.FloatLiteral) expr;
+				switch(ue.op)
+				{
+				case NEGATIVE:
+					return new LiteralExpression.FloatLiteral(-fl.value, fl.wide);
+				case POSITIVE:
+					return fl;
+				case DECREMENT:
+					throw new CompilationException("Cannot decrement an integer literal");
+				case INCREMENT:
+					throw new CompilationException("Cannot increment an integer literal");
+				case UNARY_NEGATE:
+					throw new CompilationException("Cannot perform unary negation on floating point number");
+				case NOT:
+					throw new CompilationException("Cannot perform boolean negation on integer");
+				default:
+					throw new CompilationException("Unknown unary operator: " + ue.op);
+				}
 			}
-			else if(sn.isIfStatement())
+			else if(expr instanceof LiteralExpression.BooleanLiteral)
 			{
-				sn.expressions.set(0, simplifyExpression(sn.expressions.get(0)));
-				sn.statements.forEach(CompilerCore::simplifyNodes);
+				LiteralExpression.BooleanLiteral bl = (LiteralExpression.BooleanLiteral) expr;
+				switch(ue.op)
+				{
+				case NOT:
+					return bl.value ? LiteralExpression.BooleanLiteral.FALSE : LiteralExpression.BooleanLiteral.TRUE;
+				case NEGATIVE:
+					throw new CompilationException("Cannot perform integer negation on boolean");
+				case DECREMENT:
+					throw new CompilationException("Cannot decrement a boolean");
+				case INCREMENT:
+					throw new CompilationException("Cannot increment a boolean");
+				case POSITIVE:
+					throw new CompilationException("Cannot perform integer identity on boolean");
+				case UNARY_NEGATE:
+					throw new CompilationException("Cannot perform unary negation on boolean");
+				default:
+					throw new CompilationException("Unknown unary operator: " + ue.op);
+				}
 			}
-			else if(sn.isWhileStatement())
+			else if(expr instanceof LiteralExpression.CharacterLiteral)
 			{
-				sn.expressions.set(0, simplifyExpression(sn.expressions.get(0)));
-				simplifyNodes(sn.statements.get(0));
+				LiteralExpression.CharacterLiteral cl = (LiteralExpression.CharacterLiteral) expr;
+				switch(ue.op)
+				{
+				case NEGATIVE:
+					return new LiteralExpression.IntLiteral(-cl.value, false);
+				case UNARY_NEGATE:
+					return new LiteralExpression.IntLiteral(~cl.value, false);
+				case POSITIVE:
+					return new LiteralExpression.IntLiteral(cl.value, false);
+				case DECREMENT:
+					throw new CompilationException("Cannot decrement a character");
+				case INCREMENT:
+					throw new CompilationException("Cannot increment a character");
+				case NOT:
+					throw new CompilationException("Cannot perform boolean negation on character");
+				default:
+					throw new CompilationException("Unknown unary operator: " + ue.op);
+				}
 			}
-			else if(sn.isDoWhileStatement())
+			else if(expr instanceof LiteralExpression.NoneLiteral || expr instanceof LiteralExpression.StringLiteral || expr instanceof LiteralExpression.ArrayLiteral)
 			{
-				for(int i = 0; i < sn.expressions.size(); i++)
-					sn.expressions.set(i, simplifyExpression(sn.expressions.get(i)));
-				if(sn.statements != null)
-					sn.statements.forEach(CompilerCore::simplifyNodes);
+				throw new CompilationException("Cannot perform unary operator on null, string, or array");
 			}
+			throw new CompilationException("Unknown literal expression of class: " + expr.getClass());
 		}
-		else if(node instanceof VariableDecNode)
-		{
-			VariableDecNode vdn = (VariableDecNode) node;
-			if(vdn.expression != null)
-				vdn.expression = simplifyExpression(vdn.expression);
-		}
+		// TODO add conversion of unary operators for other types
+		throw new CompilationException("Cannot perform unary operator on expression of class: " + expr.getClass());
 	}
 	
-	private static Expression simplifyExpression(Expression expression)
+	// folds a primitive cast whose operand has already been simplified, any other cast is kept as it is
+	private static Expression simplifyCastExpression(PrimaryExpression.CastExpression ce)
 	{
-		if(expression instanceof UnaryExpression)
+		if(ce.targetType.isPrimitive())
 		{
-			UnaryExpression ue = (UnaryExpression) expression;
-			Expression expr = simplifyExpression(ue.expr);
+			Expression expr = ce.expression;
 			if(expr instanceof LiteralExpression)
 			{
-				if(expr instanceof LiteralExpression.IntLiteral)
-				{
-					LiteralExpression.IntLiteral il = (LiteralExpression.IntLiteral) expr;
-					switch(ue.op)
-					{
-					case NEGATIVE:
-						return new LiteralExpression.IntLiteral(-il.value, il.wide);
-					case UNARY_NEGATE:
-						return new LiteralExpression.IntLiteral(~il.value, il.wide);
-					case POSITIVE:
-						return il;
-					case DECREMENT:
-						throw new CompilationException("Cannot decrement an integer literal");
-					case INCREMENT:
-						throw new CompilationException("Cannot increment an integer literal");
-					case NOT:
-						throw new CompilationException("Cannot perform boolean negation on integer");
-					default:
-						throw new CompilationException("Unknown unary operator: " + ue.op);
-					}
-				}
-				else if(expr instanceof LiteralExpression.FloatLiteral)
+				if(expr instanceof LiteralExpression.CharacterLiteral)
 				{
-					LiteralExpression.FloatLiteral fl = (LiteralExpression.FloatLiteral) expr;
-					switch(ue.op)
+					LiteralExpression.CharacterLiteral cl = (LiteralExpression.CharacterLiteral) expr;
+					switch(ce.targetType.typeName)
 					{
-					case NEGATIVE:
-						return new LiteralExpression.FloatLiteral(-fl.value, fl.wide);
-					case POSITIVE:
-						return fl;
-					case DECREMENT:
-						throw new CompilationException("Cannot decrement an integer literal");
-					case INCREMENT:
-						throw new CompilationException("Cannot increment an integer literal");
-					case UNARY_NEGATE:
-						throw new CompilationException("Cannot perform unary negation on floating point number");
-					case NOT:
-						throw new CompilationException("Cannot perform boolean negation on integer");
+					case "byte":
+						return new LiteralExpression.IntLiteral((byte) cl.value, false);
+					case "short":
+						return new LiteralExpression.IntLiteral((short) cl.value, false);
+					case "int":
+						return new LiteralExpression.IntLiteral((int) cl.value, false);
+					case "long":
+						return new LiteralExpression.IntLiteral((long) cl.value, true);
+					case "char":
+						return cl;
+					case "float":
+						return new LiteralExpression.FloatLiteral((double) cl.value, false);
+					case "double":
+						return new LiteralExpression.FloatLiteral((double) cl.value, true);
+					case "boolean":
+						throw new CompilationException("Cannot cast char to boolean");
 					default:
-						throw new CompilationException("Unknown unary operator: " + ue.op);
+						throw new CompilationException("Cannot cast char to " + ce.targetType.typeName);
 					}
 				}
-				else if(expr instanceof LiteralExpression.BooleanLiteral)
+				else if(expr instanceof LiteralExpression.IntLiteral)
 				{
-					LiteralExpression.BooleanLiteral bl = (LiteralExpression.BooleanLiteral) expr;
-					switch(ue.op)
+					LiteralExpression.IntLiteral il = (LiteralExpression.IntLiteral) expr;
+					switch(ce.targetType.typeName)
 					{
-					case NOT:
-						return bl.value ? LiteralExpression.BooleanLiteral.FALSE : LiteralExpression.BooleanLiteral.TRUE;
-					case NEGATIVE:
-						throw new CompilationException("Cannot perform integer negation on boolean");
-					case DECREMENT:
-						throw new CompilationException("Cannot decrement a boolean");
-					case INCREMENT:
-						throw new CompilationException("Cannot increment a boolean");
-					case POSITIVE:
-						throw new CompilationException("Cannot perform integer identity on boolean");
-					case UNARY_NEGATE:
-						throw new CompilationException("Cannot perform unary negation on boolean");
+					case "byte":
+						return new LiteralExpression.IntLiteral((byte) il.value, false);
+					case "short":
+						return new LiteralExpression.IntLiteral((short) il.value, false);
+					case "int":
+						return new LiteralExpression.IntLiteral((int) il.value, false);
+					case "long":
+						return new LiteralExpression.IntLiteral(il.value, true);
+					case "char":
+						return new LiteralExpression.CharacterLiteral((char) il.value);
+					case "float":
+						return new LiteralExpression.FloatLiteral((double) il.value, false);
+					case "double":
+						return new LiteralExpression.FloatLiteral((double) il.value, true);
+					case "boolean":
+						throw new CompilationException("Cannot cast integer to boolean");
 					default:
-						throw new CompilationException("Unknown unary operator: " + ue.op);
+						throw new CompilationException("Cannot cast integer to " + ce.targetType.typeName);
 					}
 				}
-				else if(expr instanceof LiteralExpression.CharacterLiteral)
+				else if(expr instanceof LiteralExpression.FloatLiteral)
 				{
-					LiteralExpression.CharacterLiteral cl = (LiteralExpression.CharacterLiteral) expr;
-					switch(ue.op)
+					LiteralExpression.FloatLiteral fl = (LiteralExpression.FloatLiteral) expr;
+					switch(ce.targetType.typeName)
 					{
-					case NEGATIVE:
-						return new LiteralExpression.IntLiteral(-cl.value, false);
-					case UNARY_NEGATE:
-						return new LiteralExpression.IntLiteral(~cl.value, false);
-					case POSITIVE:
-						return new LiteralExpression.IntLiteral(cl.value, false);
-					case DECREMENT:
-						throw new CompilationException("Cannot decrement a character");
-					case INCREMENT:
-						throw new CompilationException("Cannot increment a character");
-					case NOT:
-						throw new CompilationException("Cannot perform boolean negation on character");
+					case "byte":
+						return new LiteralExpression.IntLiteral((byte) fl.value, false);
+					case "short":
+						return new LiteralExpression.IntLiteral((short) fl.value, false);
+					case "int":
+						return new LiteralExpression.IntLiteral((int) fl.value, false);
+					case "long":
+						return new LiteralExpression.IntLiteral((long) fl.value, true);
+					case "char":
+						return new LiteralExpression.CharacterLiteral((char) fl.value);
+					case "float":
+						return new LiteralExpression.FloatLiteral((double) fl.value, false);
+					case "double":
+						return new LiteralExpression.FloatLiteral(fl.value, true);
+					case "boolean":
+						throw new CompilationException("Cannot cast floating point number to boolean");
 					default:
-						throw new CompilationException("Unknown unary operator: " + ue.op);
+						throw new CompilationException("Cannot cast floating point number to " + ce.targetType.typeName);
 					}
 				}
-				else if(expr instanceof LiteralExpression.NoneLiteral || expr instanceof LiteralExpression.StringLiteral || expr instanceof LiteralExpression.ArrayLiteral)
+				else if(expr instanceof LiteralExpression.ArrayLiteral)
 				{
-					throw new CompilationException("Cannot perform unary operator on null, string, or array");
+					return expr;
 				}
-				throw new CompilationException("Unknown literal expression of class: " + expr.getClass());
 			}
-			// TODO add conversion of unary operators for other types
-			throw new CompilationException("Cannot perform unary operator on expression of class: " + expr.getClass());
 		}
-		else if(expression instanceof BinaryExpression)
+		return ce;
+	}
+	
+	// folds a binary expression whose operands have already been simplified
+	private static Expression simplifyBinaryExpression(BinaryExpression be, Expression exprLeft, Expression exprRight)
+	{
+		if(be.op.toString().contains("ASSIGN"))
 		{
-			BinaryExpression be = (BinaryExpression) expression;
-			Expression exprLeft = simplifyExpression(be.exprLeft);
-			Expression exprRight = simplifyExpression(be.exprRight);
-			if(be.op.toString().contains("ASSIGN"))
+			// uncomment if binary expressions become valid on the left side for assignment
+			if(!(/*exprLeft instanceof BinaryExpression || */exprLeft instanceof PrimaryExpression.ArrayAccessExpression || exprLeft instanceof PrimaryExpression.FieldAccessExpression))
+				throw new CompilationException("Cannot have expression of type " + exprLeft.getClass() + " on left side of assignment expression");
+			if(be.op.toString().contains("_ASSIGN") && be.op != BinaryOp.PARALLEL_ASSIGN)
 			{
-				// uncomment if binary expressions become valid on the left side for assignment
-				if(!(/*exprLeft instanceof BinaryExpression || */exprLeft instanceof PrimaryExpression.ArrayAccessExpression || exprLeft instanceof PrimaryExpression.FieldAccessExpression))
-					throw new CompilationException("Cannot have expression of type " + exprLeft.getClass() + " on left side of assignment expression");
-				if(be.op.toString().contains("_ASSIGN") && be.op != BinaryOp.PARALLEL_ASSIGN)
-					exprRight = simplifyExpression(new BinaryExpression(exprLeft, BinaryOp.valueOf(be.op.toString().substring(0, be.op.toString().length() - 7)), exprRight));
-				
-				// uncomment if binary expressions become valid on the left side for assignment
-				if(/*findParallelAssign(exprLeft) || */findParallelAssign(exprRight))
-					throw new CompilationException("Cannot have the parallel assignment operator in a sub-expression");
-				
-				return new BinaryExpression(exprLeft, be.op == BinaryOp.PARALLEL_ASSIGN ? BinaryOp.PARALLEL_ASSIGN : BinaryOp.ASSIGN, exprRight);
+				// both operands are already simplified, only the new operation is left to fold
+				BinaryExpression operation = new BinaryExpression(exprLeft, BinaryOp.valueOf(be.op.toString().substring(0, be.op.toString().length() - 7)), exprRight);
+				exprRight = simplifyBinaryExpression(operation, exprLeft, exprRight);
 			}
 			
-			switch(be.op)
+			return new BinaryExpression(exprLeft, be.op == BinaryOp.PARALLEL_ASSIGN ? BinaryOp.PARALLEL_ASSIGN : BinaryOp.ASSIGN, exprRight);
+		}
+		
+		switch(be.op)
+		{
+		case POWER:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
 			{
-			case POWER:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
-				{
-					NumberLiteral left = (NumberLiteral) exprLeft;
-					NumberLiteral right = (NumberLiteral) exprRight;
-					return new LiteralExpression.FloatLiteral(Math.pow(left.asDouble(), right.asDouble()), true);
-				}
-				break;
-			case MULTIPLY:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+				NumberLiteral left = (NumberLiteral) exprLeft;
+				NumberLiteral right = (NumberLiteral) exprRight;
+				return new LiteralExpression.FloatLiteral(Math.pow(left.asDouble(), right.asDouble()), true);
+			}
+			break;
+		case MULTIPLY:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				if(exprLeft.getClass().equals(exprRight.getClass()))
 				{
-					if(exprLeft.getClass().equals(exprRight.getClass()))
+					if(exprLeft instanceof IntLiteral)
 					{
-						if(exprLeft instanceof IntLiteral)
-						{
-							IntLiteral left = (IntLiteral) exprLeft;
-							IntLiteral right = (IntLiteral) exprRight;
-							return new IntLiteral(left.value * right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof FloatLiteral)
-						{
-							FloatLiteral left = (FloatLiteral) exprLeft;
-							FloatLiteral right = (FloatLiteral) exprRight;
-							return new FloatLiteral(left.value * right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof CharacterLiteral)
-						{
-							CharacterLiteral left = (CharacterLiteral) exprLeft;
-							CharacterLiteral right = (CharacterLiteral) exprRight;
-							return new IntLiteral(left.value * right.value, false);
-						}
-						
-						throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+						IntLiteral left = (IntLiteral) exprLeft;
+						IntLiteral right = (IntLiteral) exprRight;
+						return new IntLiteral(left.value * right.value, left.wide || right.wide);
 					}
-					else
+					else if(exprLeft instanceof FloatLiteral)
 					{
-						if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
-						{
-							boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
-							NumberLiteral left = (NumberLiteral) exprLeft;
-							NumberLiteral right = (NumberLiteral) exprRight;
-							return new FloatLiteral(left.asDouble() * right.asDouble(), wide);
-						}
-						boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
-						NumberLiteral left = (NumberLiteral) exprLeft;
-						NumberLiteral right = (NumberLiteral) exprRight;
-						return new IntLiteral(left.asInt() * right.asInt(), wide);
+						FloatLiteral left = (FloatLiteral) exprLeft;
+						FloatLiteral right = (FloatLiteral) exprRight;
+						return new FloatLiteral(left.value * right.value, left.wide || right.wide);
 					}
-				}
-				else if(exprLeft instanceof StringLiteral && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
-				{
-					String str = ((StringLiteral) exprLeft).value;
-					long value = ((NumberLiteral) exprRight).asInt();
-					StringBuilder sb = new StringBuilder((int) (str.length() * value));
-					while(value-- > 0)
-						sb.append(str);
-					return new StringLiteral(sb.toString());
-				}
-				else if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof StringLiteral)
-				{
-					String str = ((StringLiteral) exprRight).value;
-					long value = ((NumberLiteral) exprLeft).asInt();
-					StringBuilder sb = new StringBuilder((int) (str.length() * value));
-					while(value-- > 0)
-						sb.append(str);
-					return new StringLiteral(sb.toString());
-				}
-				break;
-			case DIVIDE:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
-				{
-					if(exprLeft.getClass().equals(exprRight.getClass()))
+					else if(exprLeft instanceof CharacterLiteral)
 					{
-						if(exprLeft instanceof IntLiteral)
-						{
-							IntLiteral left = (IntLiteral) exprLeft;
-							IntLiteral right = (IntLiteral) exprRight;
-							return new IntLiteral(left.value / right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof FloatLiteral)
-						{
-							FloatLiteral left = (FloatLiteral) exprLeft;
-							FloatLiteral right = (FloatLiteral) exprRight;
-							return new FloatLiteral(left.value / right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof CharacterLiteral)
-						{
-							CharacterLiteral left = (CharacterLiteral) exprLeft;
-							CharacterLiteral right = (CharacterLiteral) exprRight;
-							return new IntLiteral(left.value / right.value, false);
-						}
-						
-						throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+						CharacterLiteral left = (CharacterLiteral) exprLeft;
+						CharacterLiteral right = (CharacterLiteral) exprRight;
+						return new IntLiteral(left.value * right.value, false);
 					}
-					else
+					
+					throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+				}
+				else
+				{
+					if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
 					{
-						if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
-						{
-							boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
-							NumberLiteral left = (NumberLiteral) exprLeft;
-							NumberLiteral right = (NumberLiteral) exprRight;
-							return new FloatLiteral(left.asDouble() / right.asDouble(), wide);
-						}
-						boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+						boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
 						NumberLiteral left = (NumberLiteral) exprLeft;
 						NumberLiteral right = (NumberLiteral) exprRight;
-						return new IntLiteral(left.asInt() / right.asInt(), wide);
+						return new FloatLiteral(left.asDouble() * right.asDouble(), wide);
 					}
+					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+					NumberLiteral left = (NumberLiteral) exprLeft;
+					NumberLiteral right = (NumberLiteral) exprRight;
+					return new IntLiteral(left.asInt() * right.asInt(), wide);
 				}
-				break;
-			case MODULUS:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			}
+			else if(exprLeft instanceof StringLiteral && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				String str = ((StringLiteral) exprLeft).value;
+				long value = ((NumberLiteral) exprRight).asInt();
+				StringBuilder sb = new StringBuilder((int) (str.length() * value));
+				while(value-- > 0)
+					sb.append(str);
+				return new StringLiteral(sb.toString());
+			}
+			else if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof StringLiteral)
+			{
+				String str = ((StringLiteral) exprRight).value;
+				long value = ((NumberLiteral) exprLeft).asInt();
+				StringBuilder sb = new StringBuilder((int) (str.length() * value));
+				while(value-- > 0)
+					sb.append(str);
+				return new StringLiteral(sb.toString());
+			}
+			break;
+		case DIVIDE:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				if(exprLeft.getClass().equals(exprRight.getClass()))
 				{
-					if(exprLeft.getClass().equals(exprRight.getClass()))
+					if(exprLeft instanceof IntLiteral)
 					{
-						if(exprLeft instanceof IntLiteral)
-						{
-							IntLiteral left = (IntLiteral) exprLeft;
-							IntLiteral right = (IntLiteral) exprRight;
-							return new IntLiteral(left.value % right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof FloatLiteral)
-						{
-							FloatLiteral left = (FloatLiteral) exprLeft;
-							FloatLiteral right = (FloatLiteral) exprRight;
-							return new FloatLiteral(left.value % right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof CharacterLiteral)
-						{
-							CharacterLiteral left = (CharacterLiteral) exprLeft;
-							CharacterLiteral right = (CharacterLiteral) exprRight;
-							return new IntLiteral(left.value % right.value, false);
-						}
-						
-						throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+						IntLiteral left = (IntLiteral) exprLeft;
+						IntLiteral right = (IntLiteral) exprRight;
+						return new IntLiteral(left.value / right.value, left.wide || right.wide);
 					}
-					else
+					else if(exprLeft instanceof FloatLiteral)
 					{
-						if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
-						{
-							boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
-							NumberLiteral left = (NumberLiteral) exprLeft;
-							NumberLiteral right = (NumberLiteral) exprRight;
-							return new FloatLiteral(left.asDouble() % right.asDouble(), wide);
-						}
-						boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
-						NumberLiteral left = (NumberLiteral) exprLeft;
-						NumberLiteral right = (NumberLiteral) exprRight;
-						return new IntLiteral(left.asInt() % right.asInt(), wide);
+						FloatLiteral left = (FloatLiteral) exprLeft;
+						FloatLiteral right = (FloatLiteral) exprRight;
+						return new FloatLiteral(left.value / right.value, left.wide || right.wide);
 					}
-				}
-				break;
-			case ADD:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
-				{
-					if(exprLeft.getClass().equals(exprRight.getClass()))
+					else if(exprLeft instanceof CharacterLiteral)
 					{
-						if(exprLeft instanceof IntLiteral)
-						{
-							IntLiteral left = (IntLiteral) exprLeft;
-							IntLiteral right = (IntLiteral) exprRight;
-							return new IntLiteral(left.value + right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof FloatLiteral)
-						{
-							FloatLiteral left = (FloatLiteral) exprLeft;
-							FloatLiteral right = (FloatLiteral) exprRight;
-							return new FloatLiteral(left.value + right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof CharacterLiteral)
-						{
-							CharacterLiteral left = (CharacterLiteral) exprLeft;
-							CharacterLiteral right = (CharacterLiteral) exprRight;
-							return new IntLiteral(left.value + right.value, false);
-						}
-						
-						throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+						CharacterLiteral left = (CharacterLiteral) exprLeft;
+						CharacterLiteral right = (CharacterLiteral) exprRight;
+						return new IntLiteral(left.value / right.value, false);
 					}
-					else
+					
+					throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
+				}
+				else
+				{
+					if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
 					{
-						if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
-						{
-							boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
-							NumberLiteral left = (NumberLiteral) exprLeft;
-							NumberLiteral right = (NumberLiteral) exprRight;
-							return new FloatLiteral(left.asDouble() + right.asDouble(), wide);
-						}
-						boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+						boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
 						NumberLiteral left = (NumberLiteral) exprLeft;
 						NumberLiteral right = (NumberLiteral) exprRight;
-						return new IntLiteral(left.asInt() + right.asInt(), wide);
+						return new FloatLiteral(left.asDouble() / right.asDouble(), wide);
 					}
+					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+					NumberLiteral left = (NumberLiteral) exprLeft;
+					NumberLiteral right = (NumberLiteral) exprRight;
+					return new IntLiteral(left.asInt() / right.asInt(), wide);
 				}
-				else if(exprLeft instanceof StringLiteral && exprRight instanceof NumberLiteral)
-				{
-					String str = ((StringLiteral) exprLeft).value;
-					
-					if(exprRight instanceof CharacterLiteral)
-						return new StringLiteral(str + ((CharacterLiteral) exprRight).value);
-					
-					if(exprRight instanceof IntLiteral)
-						return new StringLiteral(str + ((IntLiteral) exprRight).value);
-					
-					// exprRight is of type FloatLiteral
-					FloatLiteral fl = (FloatLiteral) exprRight;
-					if(fl.wide)
-						return new StringLiteral(str + fl.value);
-					return new StringLiteral(str + (float) fl.value);
-				}
-				else if(exprRight instanceof StringLiteral && exprLeft instanceof NumberLiteral)
+			}
+			break;
+		case MODULUS:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				if(exprLeft.getClass().equals(exprRight.getClass()))
 				{
-					String str = ((StringLiteral) exprRight).value;
-					
-					if(exprLeft instanceof CharacterLiteral)
-						return new StringLiteral(str + ((CharacterLiteral) exprLeft).value);
-					
 					if(exprLeft instanceof IntLiteral)
-						return new StringLiteral(str + ((IntLiteral) exprLeft).value);
+					{
+						IntLiteral left = (IntLiteral) exprLeft;
+						IntLiteral right = (IntLiteral) exprRight;
+						return new IntLiteral(left.value % right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof FloatLiteral)
+					{
+						FloatLiteral left = (FloatLiteral) exprLeft;
+						FloatLiteral right = (FloatLiteral) exprRight;
+						return new FloatLiteral(left.value % right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof CharacterLiteral)
+					{
+						CharacterLiteral left = (CharacterLiteral) exprLeft;
+						CharacterLiteral right = (CharacterLiteral) exprRight;
+						return new IntLiteral(left.value % right.value, false);
+					}
 					
-					// exprRight is of type FloatLiteral
-					FloatLiteral fl = (FloatLiteral) exprLeft;
-					if(fl.wide)
-						return new StringLiteral(str + fl.value);
-					return new StringLiteral(str + (float) fl.value);
+					throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
 				}
-				break;
-			case SUBTRACT:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+				else
 				{
-					if(exprLeft.getClass().equals(exprRight.getClass()))
+					if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
 					{
-						if(exprLeft instanceof IntLiteral)
-						{
-							IntLiteral left = (IntLiteral) exprLeft;
-							IntLiteral right = (IntLiteral) exprRight;
-							return new IntLiteral(left.value - right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof FloatLiteral)
-						{
-							FloatLiteral left = (FloatLiteral) exprLeft;
-							FloatLiteral right = (FloatLiteral) exprRight;
-							return new FloatLiteral(left.value - right.value, left.wide || right.wide);
-						}
-						else if(exprLeft instanceof CharacterLiteral)
-						{
-							CharacterLiteral left = (CharacterLiteral) exprLeft;
-							CharacterLiteral right = (CharacterLiteral) exprRight;
-							return new IntLiteral(left.value - right.value, false);
-						}
-						
-						throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
-					}
-					else
-					{
-						if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
-						{
-							boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
-							NumberLiteral left = (NumberLiteral) exprLeft;
-							NumberLiteral right = (NumberLiteral) exprRight;
-							return new FloatLiteral(left.asDouble() - right.asDouble(), wide);
-						}
-						boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+						boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
 						NumberLiteral left = (NumberLiteral) exprLeft;
 						NumberLiteral right = (NumberLiteral) exprRight;
-						return new IntLiteral(left.asInt() - right.asInt(), wide);
+						return new FloatLiteral(left.asDouble() % right.asDouble(), wide);
 					}
+					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
+					NumberLiteral left = (NumberLiteral) exprLeft;
+					NumberLiteral right = (NumberLiteral) exprRight;
+					return new IntLiteral(left.asInt() % right.asInt(), wide);
 				}
-				break;
-			case RIGHT_SHIFT_PRESERVE:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
-				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() >> ((NumberLiteral) exprRight).asInt(), wide);
-				}
-				break;
-			case RIGHT_SHIFT:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
-				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() >>> ((NumberLiteral) exprRight).asInt(), wide);
-				}
-				break;
-			case LEFT_SHIFT:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			}
+			break;
+		case ADD:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				if(exprLeft.getClass().equals(exprRight.getClass()))
 				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() << ((NumberLiteral) exprRight).asInt(), wide);
+					if(exprLeft instanceof IntLiteral)
+					{
+						IntLiteral left = (IntLiteral) exprLeft;
+						IntLiteral right = (IntLiteral) exprRight;
+						return new IntLiteral(left.value + right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof FloatLiteral)
+					{
+						FloatLiteral left = (FloatLiteral) exprLeft;
+						FloatLiteral right = (FloatLiteral) exprRight;
+						return new FloatLiteral(left.value + right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof CharacterLiteral)
+					{
+						CharacterLiteral left = (CharacterLiteral) exprLeft;
+						CharacterLiteral right = (CharacterLiteral) exprRight;
+						return new IntLiteral(left.value + right.value, false);
+					}
+					
+					throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
 				}
-				break;
-			case LESS_THAN:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+				else
 				{
+					if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
+					{
+						boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
+						NumberLiteral left = (NumberLiteral) exprLeft;
+						NumberLiteral right = (NumberLiteral) exprRight;
+						return new FloatLiteral(left.asDouble() + right.asDouble(), wide);
+					}
+					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
 					NumberLiteral left = (NumberLiteral) exprLeft;
 					NumberLiteral right = (NumberLiteral) exprRight;
-					return BooleanLiteral.of(left.asDouble() < right.asDouble());
+					return new IntLiteral(left.asInt() + right.asInt(), wide);
 				}
-				break;
-			case GREATER_THAN:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			}
+			else if(exprLeft instanceof StringLiteral && exprRight instanceof NumberLiteral)
+			{
+				String str = ((StringLiteral) exprLeft).value;
+				
+				if(exprRight instanceof CharacterLiteral)
+					return new StringLiteral(str + ((CharacterLiteral) exprRight).value);
+				
+				if(exprRight instanceof IntLiteral)
+					return new StringLiteral(str + ((IntLiteral) exprRight).value);
+				
+				// exprRight is of type FloatLiteral
+				FloatLiteral fl = (FloatLiteral) exprRight;
+				if(fl.wide)
+					return new StringLiteral(str + fl.value);
+				return new StringLiteral(str + (float) fl.value);
+			}
+			else if(exprRight instanceof StringLiteral && exprLeft instanceof NumberLiteral)
+			{
+				String str = ((StringLiteral) exprRight).value;
+				
+				if(exprLeft instanceof CharacterLiteral)
+					return new StringLiteral(str + ((CharacterLiteral) exprLeft).value);
+				
+				if(exprLeft instanceof IntLiteral)
+					return new StringLiteral(str + ((IntLiteral) exprLeft).value);
+				
+				// exprRight is of type FloatLiteral
+				FloatLiteral fl = (FloatLiteral) exprLeft;
+				if(fl.wide)
+					return new StringLiteral(str + fl.value);
+				return new StringLiteral(str + (float) fl.value);
+			}
+			break;
+		case SUBTRACT:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				if(exprLeft.getClass().equals(exprRight.getClass()))
 				{
-					NumberLiteral left = (NumberLiteral) exprLeft;
-					NumberLiteral right = (NumberLiteral) exprRight;
-					return BooleanLiteral.of(left.asDouble() > right.asDouble());
+					if(exprLeft instanceof IntLiteral)
+					{
+						IntLiteral left = (IntLiteral) exprLeft;
+						IntLiteral right = (IntLiteral) exprRight;
+						return new IntLiteral(left.value - right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof FloatLiteral)
+					{
+						FloatLiteral left = (FloatLiteral) exprLeft;
+						FloatLiteral right = (FloatLiteral) exprRight;
+						return new FloatLiteral(left.value - right.value, left.wide || right.wide);
+					}
+					else if(exprLeft instanceof CharacterLiteral)
+					{
+						CharacterLiteral left = (CharacterLiteral) exprLeft;
+						CharacterLiteral right = (CharacterLiteral) exprRight;
+						return new IntLiteral(left.value - right.value, false);
+					}
+					
+					throw new CompilationException("Unknown number literal of class: " + exprLeft.getClass());
 				}
-				break;
-			case LESS_THAN_EQUAL:
-				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+				else
 				{
+					if(exprLeft instanceof FloatLiteral || exprRight instanceof FloatLiteral)
+					{
+						boolean wide = exprLeft instanceof FloatLiteral ? ((FloatLiteral) exprLeft).wide : ((FloatLiteral) exprRight).wide;
+						NumberLiteral left = (NumberLiteral) exprLeft;
+						NumberLiteral right = (NumberLiteral) exprRight;
+						return new FloatLiteral(left.asDouble() - right.asDouble(), wide);
+					}
+					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : ((IntLiteral) exprRight).wide;
 					NumberLiteral left = (NumberLiteral) exprLeft;
 					NumberLiteral right = (NumberLiteral) exprRight;
-					return BooleanLiteral.of(left.asDouble() <= right.asDouble());
+					return new IntLiteral(left.asInt() - right.asInt(), wide);
 				}
-				break;
-			case GREATER_THAN_EQUAL:
+			}
+			break;
+		case RIGHT_SHIFT_PRESERVE:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() >> ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case RIGHT_SHIFT:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() >>> ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case LEFT_SHIFT:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() << ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case LESS_THAN:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				NumberLiteral left = (NumberLiteral) exprLeft;
+				NumberLiteral right = (NumberLiteral) exprRight;
+				return BooleanLiteral.of(left.asDouble() < right.asDouble());
+			}
+			break;
+		case GREATER_THAN:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				NumberLiteral left = (NumberLiteral) exprLeft;
+				NumberLiteral right = (NumberLiteral) exprRight;
+				return BooleanLiteral.of(left.asDouble() > right.asDouble());
+			}
+			break;
+		case LESS_THAN_EQUAL:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				NumberLiteral left = (NumberLiteral) exprLeft;
+				NumberLiteral right = (NumberLiteral) exprRight;
+				return BooleanLiteral.of(left.asDouble() <= right.asDouble());
+			}
+			break;
+		case GREATER_THAN_EQUAL:
+			if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+			{
+				NumberLiteral left = (NumberLiteral) exprLeft;
+				NumberLiteral right = (NumberLiteral) exprRight;
+				return BooleanLiteral.of(left.asDouble() >= right.asDouble());
+			}
+			break;
+		case IS:
+			// TODO implement
+			throw new CompilationException("Unimplemented binary operator");
+		case EQUALS:
+			if(exprLeft instanceof LiteralExpression && exprRight instanceof LiteralExpression)
+			{
 				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
 				{
 					NumberLiteral left = (NumberLiteral) exprLeft;
 					NumberLiteral right = (NumberLiteral) exprRight;
-					return BooleanLiteral.of(left.asDouble() >= right.asDouble());
+					return BooleanLiteral.of(left.asDouble() == right.asDouble());
 				}
-				break;
-			case IS:
-				// TODO implement
-				throw new CompilationException("Unimplemented binary operator");
-			case EQUALS:
-				if(exprLeft instanceof LiteralExpression && exprRight instanceof LiteralExpression)
+				else if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
 				{
-					if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
-					{
-						NumberLiteral left = (NumberLiteral) exprLeft;
-						NumberLiteral right = (NumberLiteral) exprRight;
-						return BooleanLiteral.of(left.asDouble() == right.asDouble());
-					}
-					else if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
-					{
-						return BooleanLiteral.of(exprLeft == exprRight);
-					}
-					else
-					{
-						if(exprLeft instanceof NoneLiteral && exprRight instanceof NoneLiteral)
-						{
-							return BooleanLiteral.TRUE;
-						}
-						else if(exprLeft instanceof ArrayLiteral && exprRight instanceof ArrayLiteral)
-						{
-							// TODO sometime in the future
-						}
-						else if(exprLeft instanceof StringLiteral && exprRight instanceof StringLiteral)
-						{
-							StringLiteral left = (StringLiteral) exprLeft;
-							StringLiteral right = (StringLiteral) exprRight;
-							return BooleanLiteral.of(left.value.equals(right.value));
-						}
-						
-						return BooleanLiteral.FALSE;
-					}
+					return BooleanLiteral.of(exprLeft == exprRight);
 				}
-				break;
-			case NOT_EQUAL:
-				if(exprLeft instanceof LiteralExpression && exprRight instanceof LiteralExpression)
+				else
 				{
-					if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
+					if(exprLeft instanceof NoneLiteral && exprRight instanceof NoneLiteral)
 					{
-						NumberLiteral left = (NumberLiteral) exprLeft;
-						NumberLiteral right = (NumberLiteral) exprRight;
-						return BooleanLiteral.of(left.asDouble() != right.asDouble());
+						return BooleanLiteral.TRUE;
 					}
-					else if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
+					else if(exprLeft instanceof ArrayLiteral && exprRight instanceof ArrayLiteral)
 					{
-						return BooleanLiteral.of(exprLeft != exprRight);
+						// TODO sometime in the future
 					}
-					else
+					else if(exprLeft instanceof StringLiteral && exprRight instanceof StringLiteral)
 					{
-						if(exprLeft instanceof NoneLiteral && exprRight instanceof NoneLiteral)
-						{
-							return BooleanLiteral.FALSE;
-						}
-						else if(exprLeft instanceof ArrayLiteral && exprRight instanceof ArrayLiteral)
-						{
-							// TODO sometime in the future
-						}
-						else if(exprLeft instanceof StringLiteral && exprRight instanceof StringLiteral)
-						{
-							StringLiteral left = (StringLiteral) exprLeft;
-							StringLiteral right = (StringLiteral) exprRight;
-							return BooleanLiteral.of(!left.value.equals(right.value));
-						}
-						
-						return BooleanLiteral.TRUE;
+						StringLiteral left = (StringLiteral) exprLeft;
+						StringLiteral right = (StringLiteral) exprRight;
+						return BooleanLiteral.of(left.value.equals(right.value));
 					}
+					
+					return BooleanLiteral.FALSE;
 				}
-				break;
-			case BITWISE_AND:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
-				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() & ((NumberLiteral) exprRight).asInt(), wide);
-				}
-				break;
-			case XOR:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
-				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() ^ ((NumberLiteral) exprRight).asInt(), wide);
-				}
-				break;
-			case BITWISE_OR:
-				if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			}
+			break;
+		case NOT_EQUAL:
+			if(exprLeft instanceof LiteralExpression && exprRight instanceof LiteralExpression)
+			{
+				if(exprLeft instanceof NumberLiteral && exprRight instanceof NumberLiteral)
 				{
-					boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
-					return new IntLiteral(((NumberLiteral) exprLeft).asInt() | ((NumberLiteral) exprRight).asInt(), wide);
+					NumberLiteral left = (NumberLiteral) exprLeft;
+					NumberLiteral right = (NumberLiteral) exprRight;
+					return BooleanLiteral.of(left.asDouble() != right.asDouble());
 				}
-				break;
-			case AND:
-				if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
+				else if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
 				{
-					BooleanLiteral left = (BooleanLiteral) exprLeft;
-					BooleanLiteral right = (BooleanLiteral) exprRight;
-					return BooleanLiteral.of(left.value && right.value);
+					return BooleanLiteral.of(exprLeft != exprRight);
 				}
-				break;
-			case OR:
-				if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
+				else
 				{
-					BooleanLiteral left = (BooleanLiteral) exprLeft;
-					BooleanLiteral right = (BooleanLiteral) exprRight;
-					return BooleanLiteral.of(left.value || right.value);
+					if(exprLeft instanceof NoneLiteral && exprRight instanceof NoneLiteral)
+					{
+						return BooleanLiteral.FALSE;
+					}
+					else if(exprLeft instanceof ArrayLiteral && exprRight instanceof ArrayLiteral)
+					{
+						// TODO sometime in the future
+					}
+					else if(exprLeft instanceof StringLiteral && exprRight instanceof StringLiteral)
+					{
+						StringLiteral left = (StringLiteral) exprLeft;
+						StringLiteral right = (StringLiteral) exprRight;
+						return BooleanLiteral.of(!left.value.equals(right.value));
+					}
+					
+					return BooleanLiteral.TRUE;
 				}
-				break;
 			}
-			
-			return new BinaryExpression(exprLeft, be.op, exprRight);
+			break;
+		case BITWISE_AND:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() & ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case XOR:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() ^ ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case BITWISE_OR:
+			if(exprLeft instanceof NumberLiteral && ((NumberLiteral) exprLeft).isInt() && exprRight instanceof NumberLiteral && ((NumberLiteral) exprRight).isInt())
+			{
+				boolean wide = exprLeft instanceof IntLiteral ? ((IntLiteral) exprLeft).wide : exprRight instanceof IntLiteral ? ((IntLiteral) exprRight).wide : false;
+				return new IntLiteral(((NumberLiteral) exprLeft).asInt() | ((NumberLiteral) exprRight).asInt(), wide);
+			}
+			break;
+		case AND:
+			if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
+			{
+				BooleanLiteral left = (BooleanLiteral) exprLeft;
+				BooleanLiteral right = (BooleanLiteral) exprRight;
+				return BooleanLiteral.of(left.value && right.value);
+			}
+			break;
+		case OR:
+			if(exprLeft instanceof BooleanLiteral && exprRight instanceof BooleanLiteral)
+			{
+				BooleanLiteral left = (BooleanLiteral) exprLeft;
+				BooleanLiteral right = (BooleanLiteral) exprRight;
+				return BooleanLiteral.of(left.value || right.value);
+			}
+			break;
+		}
+		
+		return new BinaryExpression(exprLeft, be.op, exprRight);
+	}
+	
+	// folds constants through unary and binary operators and the operands of primitive casts, local variable initializers are left as they are
+	// each node is folded on its own once its children are, the elements of an array literal are only folded directly under a primitive cast
+	static class SimplifyPass implements TreePass
+	{
+		private final Set<Expression> castArrays = Collections.newSetFromMap(new IdentityHashMap<Expression, Boolean>());
+		
+		@Override
+		public boolean enter(Statement statement)
+		{
+			return !(statement instanceof Statement.LocalVarDecStatement);
 		}
-		else if(expression instanceof PrimaryExpression)
+		
+		@Override
+		public boolean enter(Expression parent, Expression expression)
 		{
-			if(expression instanceof PrimaryExpression.CastExpression)
+			if(parent instanceof PrimaryExpression.CastExpression && ((PrimaryExpression.CastExpression) parent).targetType.isPrimitive())
 			{
-				PrimaryExpression.CastExpression ce = (PrimaryExpression.CastExpression) expression;
-				if(ce.targetType.isPrimitive())
-				{
-					Expression expr = simplifyExpression(ce.expression);
-					if(expr instanceof LiteralExpression)
-					{
-						if(expr instanceof LiteralExpression.CharacterLiteral)
-						{
-							LiteralExpression.CharacterLiteral cl = (LiteralExpression.CharacterLiteral) expr;
-							switch(ce.targetType.typeName)
-							{
-							case "byte":
-								return new LiteralExpression.IntLiteral((byte) cl.value, false);
-							case "short":
-								return new LiteralExpression.IntLiteral((short) cl.value, false);
-							case "int":
-								return new LiteralExpression.IntLiteral((int) cl.value, false);
-							case "long":
-								return new LiteralExpression.IntLiteral((long) cl.value, true);
-							case "char":
-								return cl;
-							case "float":
-								return new LiteralExpression.FloatLiteral((double) cl.value, false);
-							case "double":
-								return new LiteralExpression.FloatLiteral((double) cl.value, true);
-							case "boolean":
-								throw new CompilationException("Cannot cast char to boolean");
-							default:
-								throw new CompilationException("Cannot cast char to " + ce.targetType.typeName);
-							}
-						}
-						else if(expr instanceof LiteralExpression.IntLiteral)
-						{
-							LiteralExpression.IntLiteral il = (LiteralExpression.IntLiteral) expr;
-							switch(ce.targetType.typeName)
-							{
-							case "byte":
-								return new LiteralExpression.IntLiteral((byte) il.value, false);
-							case "short":
-								return new LiteralExpression.IntLiteral((short) il.value, false);
-							case "int":
-								return new LiteralExpression.IntLiteral((int) il.value, false);
-							case "long":
-								return new LiteralExpression.IntLiteral(il.value, true);
-							case "char":
-								return new LiteralExpression.CharacterLiteral((char) il.value);
-							case "float":
-								return new LiteralExpression.FloatLiteral((double) il.value, false);
-							case "double":
-								return new LiteralExpression.FloatLiteral((double) il.value, true);
-							case "boolean":
-								throw new CompilationException("Cannot cast integer to boolean");
-							default:
-								throw new CompilationException("Cannot cast integer to " + ce.targetType.typeName);
-							}
-						}
-						else if(expr instanceof LiteralExpression.FloatLiteral)
-						{
-							LiteralExpression.FloatLiteral fl = (LiteralExpression.FloatLiteral) expr;
-							switch(ce.targetType.typeName)
-							{
-							case "byte":
-								return new LiteralExpression.IntLiteral((byte) fl.value, false);
-							case "short":
-								return new LiteralExpression.IntLiteral((short) fl.value, false);
-							case "int":
-								return new LiteralExpression.IntLiteral((int) fl.value, false);
-							case "long":
-								return new LiteralExpression.IntLiteral((long) fl.value, true);
-							case "char":
-								return new LiteralExpression.CharacterLiteral((char) fl.value);
-							case "float":
-								return new LiteralExpression.FloatLiteral((double) fl.value, false);
-							case "double":
-								return new LiteralExpression.FloatLiteral(fl.value, true);
-							case "boolean":
-								throw new CompilationException("Cannot cast floating point number to boolean");
-							default:
-								throw new CompilationException("Cannot cast floating point number to " + ce.targetType.typeName);
-							}
-						}
-						else if(expr instanceof LiteralExpression.ArrayLiteral)
-						{
-							LiteralExpression.ArrayLiteral al = (LiteralExpression.ArrayLiteral) expr;
-							for(int i = 0; i < al.expressions.length; i++)
-								al.expressions[i] = simplifyExpression(al.expressions[i]);
-							return al;
-						}
-					}
-				}
+				if(expression instanceof LiteralExpression.ArrayLiteral)
+					castArrays.add(expression);
+				return true;
 			}
+			return parent == null || parent instanceof UnaryExpression || parent instanceof BinaryExpression || castArrays.contains(parent);
+		}
+		
+		@Override
+		public Expression leave(Expression expression)
+		{
+			if(expression instanceof UnaryExpression)
+				return simplifyUnaryExpression((UnaryExpression) expression, ((UnaryExpression) expression).expr);
+			else if(expression instanceof BinaryExpression)
+				return simplifyBinaryExpression((BinaryExpression) expression, ((BinaryExpression) expression).exprLeft, ((BinaryExpression) expression).exprRight);
+			else if(expression instanceof PrimaryExpression.CastExpression)
+				return simplifyCastExpression((PrimaryExpression.CastExpression) expression);
 			else if(expression instanceof PrimaryExpression.WrapExpression)
-			{
 				return ((PrimaryExpression.WrapExpression) expression).expression;
-			}
+			castArrays.remove(expression);
 			return expression;
 		}
-		
-		throw new CompilationException("Unknown expression of class " + expression.getClass());
 	}
 	
-	private static boolean findParallelAssign(Expression expr)
+	// rejects a parallel assignment inside the value of any assignment, the left side of a compound assignment is part of its value
+	// which subtrees hold one is worked out bottom up, array literal elements and the target of a call are not looked at
+	static class ParallelAssignPass implements TreePass
 	{
-		if(expr == null)
-			return false;
+		private static final int OPERAND = 0, LEFT = 1, RIGHT = 2, IGNORED = 3;
+		
+		// one frame per statement and expression being walked, statements only keep the stack balanced
+		private final Deque<Frame> frames = new ArrayDeque<Frame>();
 		
-		if(expr instanceof BinaryExpression)
+		@Override
+		public boolean enter(Statement statement)
 		{
-			BinaryExpression be = (BinaryExpression) expr;
-			return be.op == BinaryOp.PARALLEL_ASSIGN || findParallelAssign(be.exprLeft) || findParallelAssign(be.exprRight);
+			frames.push(new Frame(null, IGNORED));
+			return true;
 		}
 		
-		if(expr instanceof UnaryExpression)
-			return findParallelAssign(((UnaryExpression) expr).expr);
+		@Override
+		public boolean enter(Expression parent, Expression expression)
+		{
+			int role = OPERAND;
+			if(parent instanceof BinaryExpression)
+				role = ((BinaryExpression) parent).exprLeft == expression ? LEFT : RIGHT;
+			else if(parent instanceof LiteralExpression.ArrayLiteral || parent instanceof PrimaryExpression.FunctionCallExpression && ((PrimaryExpression.FunctionCallExpression) parent).callingOn == expression)
+				role = IGNORED;
+			frames.push(new Frame(expression, role));
+			return true;
+		}
 		
-		if(expr instanceof PrimaryExpression)
+		@Override
+		public Statement leave(Statement statement)
 		{
-			if(expr instanceof PrimaryExpression.ArrayAccessExpression)
-				return findParallelAssign(((PrimaryExpression.ArrayAccessExpression) expr).expression) || findParallelAssign(((PrimaryExpression.ArrayAccessExpression) expr).indexExpression);
-			if(expr instanceof PrimaryExpression.CastExpression)
-				return findParallelAssign(((PrimaryExpression.CastExpression) expr).expression);
-			if(expr instanceof PrimaryExpression.FieldAccessExpression)
-				return findParallelAssign(((PrimaryExpression.FieldAccessExpression) expr).expression);
-			if(expr instanceof PrimaryExpression.WrapExpression)
-				return findParallelAssign(((PrimaryExpression.WrapExpression) expr).expression);
-			if(expr instanceof PrimaryExpression.FunctionCallExpression)
-				return Arrays.stream(((PrimaryExpression.FunctionCallExpression) expr).parameters).map(CompilerCore::findParallelAssign).anyMatch(b -> b);
-			if(expr instanceof PrimaryExpression.InstantiationExpression)
-				return Arrays.stream(((PrimaryExpression.InstantiationExpression) expr).parameters).map(CompilerCore::findParallelAssign).anyMatch(b -> b);
-			if(expr instanceof PrimaryExpression.ArrayInstantiationExpression)
-				return Arrays.stream(((PrimaryExpression.ArrayInstantiationExpression) expr).dimensionSizes).map(CompilerCore::findParallelAssign).anyMatch(b -> b);
-			if(expr instanceof LiteralExpression)
-				return false;
+			frames.pop();
+			return statement;
+		}
+		
+		@Override
+		public Expression leave(Expression expression)
+		{
+			// the frame still has the expression as it was entered, before another pass may have rewritten it
+			Frame frame = frames.pop();
+			boolean contains = frame.operand;
+			if(frame.expression instanceof BinaryExpression)
+			{
+				BinaryOp op = ((BinaryExpression) frame.expression).op;
+				if(op.toString().contains("ASSIGN") && (op.toString().contains("_ASSIGN") && op != BinaryOp.PARALLEL_ASSIGN ? frame.left || frame.right : frame.right))
+					throw new CompilationException("Cannot have the parallel assignment operator in a sub-expression");
+				contains = op == BinaryOp.PARALLEL_ASSIGN || frame.left || frame.right;
+			}
 			
-			throw new CompilationException("Unknown primary expression of type " + expr.getClass());
+			Frame parent = frames.peek();
+			if(contains && parent != null)
+			{
+				if(frame.role == LEFT)
+					parent.left = true;
+				else if(frame.role == RIGHT)
+					parent.right = true;
+				else if(frame.role == OPERAND)
+					parent.operand = true;
+			}
+			return expression;
 		}
 		
-		throw new CompilationException("Unknown expression of type " + expr.getClass());
+		private static class Frame
+		{
+			final Expression expression;
+			final int role;
+			// whether a child in each role holds a parallel assignment
+			boolean operand, left, right;
+			
+			Frame(Expression expression, int role)
+			{
+				this.expression = expression;
+				this.role = role;
+			}
+		}
 	}
 	
 	private static void copy(File source, File dest)
@@ -0,0 +1,138 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+public class CompilerOptions
+{
+	public final List<String> files = new ArrayList<String>();
+	public int threads = Runtime.getRuntime().availableProcessors();
+	public boolean sllParsing = true;
+	public boolean parseStatistics = false;
+	public boolean fusePasses = true;
+	public boolean passStatistics = false;
+	// files with more characters than this are split at top-level declarations and parsed in parallel, 0 disables splitting
+	public int parseChunkSize = 1 << 19;
+	public boolean compactAst = false;
+	// converted models are cached here between runs when set
+	public String cacheDirectory = null;
+	public long cacheSize = 256L << 20;
+	// when set, modules are compiled one batch at a time so that roughly this many bytes of heap are in use, 0 compiles everything at once
+	public long memoryBudget = 0;
+	// searched in order for the interface files of imported modules that are not part of the build, the output directory when none are given
+	public final List<String> interfacePath = new ArrayList<String>();
+	// jars and class directories holding compiled modules, searched after the interface path
+	public final List<String> libraryPath = new ArrayList<String>();
+	// which encoder turns finished methods and classes into class files, both write the same bytes and BCEL's is kept as a fallback
+	public ClassFileBackend backend = ClassFileBackend.STREAMING;
+	// the Java release the class files are for, 0 writes BCEL's default version without stack map frames
+	public int target = 0;
+	// how classes are checked before they are written, the JVM's own verifier by default and BCEL's slower and stricter one when asked for
+	public ClassVerifier.Mode verifier = ClassVerifier.Mode.JVM;
+	// keeps running after the first build and rebuilds the modules whose files are edited, reparsing only the declarations an edit touched
+	public boolean watch = false;
+	
+	public static CompilerOptions parse(String[] args)
+	{
+		CompilerOptions options = new CompilerOptions();
+		String backendName = "streaming";
+		for(int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if(!arg.startsWith("--"))
+			{
+				options.files.add(arg.replace('\\', '/'));
+				continue;
+			}
+			
+			switch(arg)
+			{
+			case "--threads":
+				options.threads = Integer.parseInt(nextArg(args, ++i, arg));
+				if(options.threads < 1)
+					throw new IllegalArgumentException("Thread count must be at least 1");
+				break;
+			case "--no-sll":
+				options.sllParsing = false;
+				break;
+			case "--chunk-size":
+				options.parseChunkSize = Integer.parseInt(nextArg(args, ++i, arg));
+				if(options.parseChunkSize < 0)
+					throw new IllegalArgumentException("Chunk size cannot be negative");
+				break;
+			case "--compact-ast":
+				options.compactAst = true;
+				break;
+			case "--cache-dir":
+				options.cacheDirectory = nextArg(args, ++i, arg);
+				break;
+			case "--cache-size":
+				// given in megabytes
+				options.cacheSize = Long.parseLong(nextArg(args, ++i, arg)) << 20;
+				if(options.cacheSize < 0)
+					throw new IllegalArgumentException("Cache size cannot be negative");
+				break;
+			case "--memory-budget":
+				// given in megabytes
+				options.memoryBudget = Long.parseLong(nextArg(args, ++i, arg)) << 20;
+				if(options.memoryBudget < 0)
+					throw new IllegalArgumentException("Memory budget cannot be negative");
+				break;
+			case "--parse-stats":
+				options.parseStatistics = true;
+				break;
+			case "--no-fuse":
+				options.fusePasses = false;
+				break;
+			case "--pass-stats":
+				options.passStatistics = true;
+				break;
+			case "--interface-path":
+				options.interfacePath.addAll(Arrays.asList(nextArg(args, ++i, arg).split(File.pathSeparator)));
+				break;
+			case "--backend":
+				backendName = nextArg(args, ++i, arg);
+				break;
+			case "--target":
+				options.target = Integer.parseInt(nextArg(args, ++i, arg));
+				if(options.target < 6)
+					throw new IllegalArgumentException("Target must be Java 6 or later");
+				break;
+			case "--verify":
+				options.verifier = ClassVerifier.Mode.forName(nextArg(args, ++i, arg));
+				break;
+			case "--watch":
+				options.watch = true;
+				break;
+			case "--library-path":
+				options.libraryPath.addAll(Arrays.asList(nextArg(args, ++i, arg).split(File.pathSeparator)));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		if(options.interfacePath.isEmpty())
+			options.interfacePath.add("out");
+		options.backend = ClassFileBackend.forName(backendName, options.target);
+		return options;
+	}
+	
+	// where BCEL looks up the classes of modules that are not part of the build
+	public String importClassPath()
+	{
+		List<String> path = new ArrayList<String>(interfacePath);
+		path.addAll(libraryPath);
+		return String.join(File.pathSeparator, path);
+	}
+	
+	private static String nextArg(String[] args, int index, String option)
+	{
+		if(index >= args.length)
+			throw new IllegalArgumentException("Missing value for option " + option);
+		return args[index];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package net.tadpole.compiler;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+
+import net.tadpole.compiler.parser.TadpoleLexer;
+
+// lexes source[start, end) in place with the line numbers of the whole file, the fragment is flagged as unusable if
+// the lexer reports an error or the text at end does not start a fresh token, which means the cut was not at a declaration boundary
+class FragmentTokenSource extends BaseErrorListener implements TokenSource
+{
+	private final TadpoleLexer lexer;
+	private final int end;
+	private Token eof = null;
+	boolean failed = false;
+	
+	FragmentTokenSource(char[] source, int length, int start, int end, int line, int charPositionInLine)
+	{
+		ANTLRInputStream input = new ANTLRInputStream(source, length);
+		input.seek(start);
+		lexer = new TadpoleLexer(input);
+		lexer.setLine(line);
+		lexer.setCharPositionInLine(charPositionInLine);
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(this);
+		this.end = end;
+	}
+	
+	@Override
+	public Token nextToken()
+	{
+		if(eof != null)
+			return eof;
+		
+		Token token = lexer.nextToken();
+		if(token.getType() != Token.EOF && token.getStartIndex() < end)
+		{
+			if(token.getStopIndex() >= end)
+				failed = true;
+			return token;
+		}
+		
+		// the declaration after the fragment has to start with a token at exactly the boundary, anything else means it was swallowed by a comment or a literal
+		if(token.getStartIndex() != end)
+			failed = true;
+		eof = lexer.getTokenFactory().create(new org.antlr.v4.runtime.misc.Pair<TokenSource, CharStream>(this, lexer.getInputStream()), Token.EOF, null, Token.DEFAULT_CHANNEL, end, end - 1, token.getLine(), token.getCharPositionInLine());
+		return eof;
+	}
+	
+	@Override
+	public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e)
+	{
+		failed = true;
+	}
+	
+	@Override
+	public int getLine()
+	{
+		return lexer.getLine();
+	}
+	
+	@Override
+	public int getCharPositionInLine()
+	{
+		return lexer.getCharPositionInLine();
+	}
+	
+	@Override
+	public CharStream getInputStream()
+	{
+		return lexer.getInputStream();
+	}
+	
+	@Override
+	public String getSourceName()
+	{
+		return lexer.getSourceName();
+	}
+	
+	@Override
+	public void setTokenFactory(TokenFactory<?> factory)
+	{
+		lexer.setTokenFactory(factory);
+	}
+	
+	@Override
+	public TokenFactory<?> getTokenFactory()
+	{
+		return lexer.getTokenFactory();
+	}
+}
\ No newline at end of file
@@ -1,9 +1,7 @@
 package net.tadpole.compiler;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.generic.ClassGen;
@@ -13,18 +11,21 @@ import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.ReturnInstruction;
 
 import javafx.util.Pair;
-import net.tadpole.compiler.ast.FileNode;
-import net.tadpole.compiler.ast.FunctionDecNode;
-import net.tadpole.compiler.ast.ParameterListNode;
-import net.tadpole.compiler.ast.ParameterNode;
-import net.tadpole.compiler.ast.StatementNode;
+import net.tadpole.compiler.ast.CompactTree;
+import net.tadpole.compiler.util.EmissionContext;
+import net.tadpole.compiler.util.MethodScope;
+import net.tadpole.compiler.util.ScopedMethodGen;
 
 public class Function
 {
 	public final String name;
 	public final List<Pair<Type, String>> parameters;
 	public Type returnType;
-	public final Statement statement;
+	private Statement statement;
+	// holds the body instead of statement while the function is compacted
+	private CompactTree compactStatement = null;
+	// whether the body is kept compact between phases, a phase that decodes it compacts it again when it is done
+	private boolean compacted = false;
 	public final boolean isStatic;
 	
 	public Function(String name, List<Pair<Type, String>> parameters, Type returnType, boolean isStatic, Statement statement)
@@ -36,17 +37,56 @@ public class Function
 		this.statement = statement;
 	}
 	
-	public Function(FunctionDecNode fdn)
+	// used when a body is loaded in compact form, for example from the model cache
+	public Function(String name, List<Pair<Type, String>> parameters, Type returnType, boolean isStatic, CompactTree compactStatement)
 	{
-		name = fdn.name;
-		Optional<ParameterListNode> params = fdn.getChildren().stream().filter(n -> n instanceof ParameterListNode).map(n -> (ParameterListNode) n).findFirst();
-		if(params.isPresent())
-			parameters = params.get().getChildren().stream().map(n -> (ParameterNode) n).map(pn -> new Pair<Type, String>(pn.type, pn.name)).collect(Collectors.toList());
-		else
-			parameters = Collections.emptyList();
-		returnType = fdn.returnType;
-		statement = fdn.getChildren().stream().filter(n -> n instanceof StatementNode).map(n -> Statement.convert((StatementNode) n)).findFirst().get();
-		isStatic = fdn.getParent() instanceof FileNode;
+		this(name, parameters, returnType, isStatic, (Statement) null);
+		this.compactStatement = compactStatement;
+		compacted = true;
+	}
+	
+	// a compacted body is decoded on the first call and the same tree is returned until the body is compacted again,
+	// so changes made to it stick without going through setStatement. a signature has no body and returns null
+	public Statement getStatement()
+	{
+		if(statement == null && compactStatement != null)
+		{
+			statement = compactStatement.toStatement();
+			compactStatement = null;
+		}
+		return statement;
+	}
+	
+	public void setStatement(Statement statement)
+	{
+		this.statement = statement;
+		compactStatement = null;
+	}
+	
+	public CompactTree getCompactStatement()
+	{
+		return compactStatement != null ? compactStatement : new CompactTree(statement);
+	}
+	
+	public Function toSignature()
+	{
+		return new Function(name, new ArrayList<Pair<Type, String>>(parameters), returnType, isStatic, (Statement) null);
+	}
+	
+	public void compact()
+	{
+		if(statement == null)
+			return;
+		compactStatement = new CompactTree(statement);
+		statement = null;
+		compacted = true;
+	}
+	
+	// called when a phase is done with the body, one that was compact before the phase decoded it is compacted again
+	public void recompact()
+	{
+		if(compacted)
+			compact();
 	}
 	
 	@Override
@@ -67,19 +107,32 @@ public class Function
 		return false;
 	}
 	
+	@Override
+	public int hashCode()
+	{
+		return name.hashCode() * 31 + parameters.hashCode();
+	}
+	
+	// resolves everything in the body as a method of the class, before any code of the build is generated
+	public void attribute(String className)
+	{
+		MethodScope scope = new MethodScope(className, name, isStatic, returnType.toBCELType(), parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), parameters.stream().map(Pair::getValue).toArray(String[]::new));
+		getStatement().attribute(scope);
+	}
+	
+	// the instructions are final, the backend the class is written with works out max stack and max locals
 	public MethodGen toBytecode(ClassGen cg)
 	{
 		InstructionList il = new InstructionList();
 		int flags = Constants.ACC_PUBLIC;
 		if(isStatic)
 			flags |= Constants.ACC_STATIC;
-		MethodGen mg = new MethodGen(flags, returnType.toBCELType(), parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), parameters.stream().map(Pair::getValue).toArray(String[]::new), name, cg.getClassName(), il, cg.getConstantPool());
-		il.append(statement.toBytecode(cg, mg));
+		MethodGen mg = new ScopedMethodGen(flags, returnType.toBCELType(), parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), parameters.stream().map(Pair::getValue).toArray(String[]::new), name, cg.getClassName(), il, cg.getConstantPool());
+		getStatement().toBytecode(new EmissionContext(cg, mg));
 		if(!(il.getEnd().getInstruction() instanceof ReturnInstruction))
 			il.append(InstructionFactory.createReturn(mg.getReturnType()));
-		mg.removeNOPs();
-		mg.setMaxLocals();
-		mg.setMaxStack();
+		// code generation is the last phase to need the attributed tree
+		recompact();
 		return mg;
 	}
 }
\ No newline at end of file
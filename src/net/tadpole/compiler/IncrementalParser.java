@@ -0,0 +1,208 @@
+package net.tadpole.compiler;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.exceptions.CompilationException;
+import net.tadpole.compiler.parser.TadpoleParser.FileContext;
+import net.tadpole.compiler.util.SourceLoader;
+
+// keeps one module up to date while its source is edited, only the top-level declarations touched by an edit are reparsed
+public class IncrementalParser
+{
+	private final String moduleName;
+	private final TadpoleListener listener;
+	private final ParseTreeWalker walker = new ParseTreeWalker();
+	private final List<Declaration> declarations = new ArrayList<Declaration>();
+	private char[] source = new char[0];
+	private Module module = null;
+	
+	private int lastReparsedDeclarations = 0;
+	private boolean lastFullReparse = false;
+	private long lastUpdateNanos = 0;
+	
+	public IncrementalParser(String moduleName)
+	{
+		this.moduleName = moduleName;
+		listener = new TadpoleListener(moduleName);
+	}
+	
+	public Module getModule()
+	{
+		return module;
+	}
+	
+	public Module update(String fileName) throws IOException
+	{
+		CharBuffer chars = SourceLoader.loadChars(fileName);
+		return update(chars.array(), chars.position());
+	}
+	
+	public Module update(char[] newSource, int length)
+	{
+		long start = System.nanoTime();
+		newSource = Arrays.copyOf(newSource, length);
+		if(module == null || !reparseChanged(newSource))
+			reparseAll(newSource);
+		source = newSource;
+		
+		List<Struct> structs = new ArrayList<Struct>();
+		List<String> imports = new ArrayList<String>();
+		List<Function> functions = new ArrayList<Function>();
+		List<Statement> statements = new ArrayList<Statement>();
+		for(Declaration declaration : declarations)
+		{
+			if(declaration.value instanceof Struct)
+				structs.add((Struct) declaration.value);
+			else if(declaration.value instanceof String)
+				imports.add((String) declaration.value);
+			else if(declaration.value instanceof Function)
+				functions.add((Function) declaration.value);
+			else
+				statements.add((Statement) declaration.value);
+		}
+		if(module == null)
+			module = new Module(moduleName, structs, imports, functions, statements);
+		else
+			module.replaceDeclarations(structs, imports, functions, statements);
+		
+		lastUpdateNanos = System.nanoTime() - start;
+		return module;
+	}
+	
+	public String getStatistics()
+	{
+		return String.format("Updated module %s in %.2f ms (%s, %d of %d declarations reparsed)", moduleName, lastUpdateNanos / 1e6, lastFullReparse ? "full reparse" : "incremental", lastReparsedDeclarations, declarations.size());
+	}
+	
+	private void reparseAll(char[] newSource)
+	{
+		ParseDriver.SyntaxErrors errors = new ParseDriver.SyntaxErrors();
+		FileContext context = ParseDriver.parse(new ANTLRInputStream(newSource, newSource.length), errors);
+		// a tree recovered from errors is not kept, the declarations stay as they were before the broken edit
+		if(errors.getCount() > 0)
+			throw new CompilationException(errors.getCount() + " syntax errors in module " + moduleName);
+		// converted before anything is replaced so a failure leaves the previous state intact
+		List<Declaration> converted = convert(context);
+		declarations.clear();
+		declarations.addAll(converted);
+		lastFullReparse = true;
+		lastReparsedDeclarations = declarations.size();
+	}
+	
+	// returns false if the edit cannot be handled locally, in which case nothing has been changed
+	private boolean reparseChanged(char[] newSource)
+	{
+		int prefix = 0;
+		int limit = Math.min(source.length, newSource.length);
+		while(prefix < limit && source[prefix] == newSource[prefix])
+			prefix++;
+		if(prefix == source.length && prefix == newSource.length)
+		{
+			lastFullReparse = false;
+			lastReparsedDeclarations = 0;
+			return true;
+		}
+		int suffix = 0;
+		while(suffix < limit - prefix && source[source.length - 1 - suffix] == newSource[newSource.length - 1 - suffix])
+			suffix++;
+		int changeEnd = source.length - suffix;
+		
+		// the declarations overlapping or touching the changed text, widened by one on each side
+		int first = 0;
+		while(first < declarations.size() && declarations.get(first).stop < prefix)
+			first++;
+		first = Math.max(first - 1, 0);
+		int last = first;
+		while(last < declarations.size() && declarations.get(last).start <= changeEnd)
+			last++;
+		last = Math.min(last + 1, declarations.size());
+		
+		// every declaration ends in ';' or '}', neither of which can be extended into a longer token, so lexing can restart right after one
+		int delta = newSource.length - source.length;
+		int start = first > 0 ? declarations.get(first - 1).stop : 0;
+		int end = (last < declarations.size() ? declarations.get(last).start : source.length) + delta;
+		
+		int line = 1;
+		int lineStart = 0;
+		for(int i = 0; i < start; i++)
+		{
+			if(newSource[i] == '\n')
+			{
+				line++;
+				lineStart = i + 1;
+			}
+		}
+		
+		FragmentTokenSource tokens = new FragmentTokenSource(newSource, newSource.length, start, end, line, start - lineStart);
+		FileContext context = ParseDriver.tryParse(tokens);
+		if(context == null || tokens.failed)
+			return false;
+		
+		List<Declaration> replacement = convert(context);
+		for(int i = last; i < declarations.size(); i++)
+		{
+			declarations.get(i).start += delta;
+			declarations.get(i).stop += delta;
+		}
+		List<Declaration> changed = declarations.subList(first, last);
+		changed.clear();
+		changed.addAll(replacement);
+		lastFullReparse = false;
+		lastReparsedDeclarations = replacement.size();
+		return true;
+	}
+	
+	private List<Declaration> convert(FileContext context)
+	{
+		List<Declaration> converted = new ArrayList<Declaration>();
+		for(ParseTree child : context.children)
+		{
+			if(!(child instanceof ParserRuleContext))
+				continue;
+			ParserRuleContext declaration = (ParserRuleContext) child;
+			int start = declaration.getStart().getStartIndex();
+			// error recovery can leave a declaration without a stop token
+			int stop = declaration.getStop() != null ? declaration.getStop().getStopIndex() + 1 : start;
+			
+			listener.reset(moduleName);
+			walker.walk(listener, declaration);
+			Module m = listener.getModule();
+			Object value;
+			if(!m.declaredStructs.isEmpty())
+				value = m.declaredStructs.get(0);
+			else if(!m.imports.isEmpty())
+				value = m.imports.get(0);
+			else if(!m.declaredFunctions.isEmpty())
+				value = m.declaredFunctions.get(0);
+			else
+				value = m.statements.get(0);
+			converted.add(new Declaration(start, stop, value));
+		}
+		return converted;
+	}
+	
+	private static class Declaration
+	{
+		// character offsets into the source, stop is exclusive
+		int start;
+		int stop;
+		// a Struct, Function, Statement or the name of an imported module
+		final Object value;
+		
+		Declaration(int start, int stop, Object value)
+		{
+			this.start = start;
+			this.stop = stop;
+			this.value = value;
+		}
+	}
+}
\ No newline at end of file
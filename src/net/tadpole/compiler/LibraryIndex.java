@@ -0,0 +1,321 @@
+package net.tadpole.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.LocalVariable;
+import org.apache.bcel.classfile.LocalVariableTable;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.BasicType;
+import org.apache.bcel.generic.ObjectType;
+
+import javafx.util.Pair;
+import net.tadpole.compiler.ast.CompactTree;
+import net.tadpole.compiler.ast.Expression;
+import net.tadpole.compiler.util.Triplet;
+
+// tadpole modules that are only available compiled, in jars or class directories on the library path
+// a module comes from the static methods of its class and its structs from the Module$Struct classes, their fields and constructors
+// a jar is read once, the interfaces of its modules go into an index file keyed by the jar's path, size and modification time,
+// later builds memory-map that index and never open the jar again until it changes
+public class LibraryIndex
+{
+	private static final int MAGIC = 0x54504C49;
+	private static final String SUFFIX = ".tpl";
+	
+	// where jar indexes are kept, the model cache directory when there is one
+	public static File indexDirectory = new File(System.getProperty("java.io.tmpdir"), "tadpole-libraries");
+	// the interface of every module in a jar, mapped once per compilation
+	private static final ConcurrentMap<String, Map<String, ByteBuffer>> jars = new ConcurrentHashMap<String, Map<String, ByteBuffer>>();
+	
+	// the first module with that name on the library path, null if there is none
+	public static Module findModule(String name, List<String> libraryPath) throws IOException
+	{
+		for(String entry : libraryPath)
+		{
+			File file = new File(entry);
+			if(file.isDirectory())
+			{
+				Module module = readDirectory(file, name);
+				if(module != null)
+					return module;
+			}
+			else if(file.isFile())
+			{
+				ByteBuffer module = jarIndex(file).get(name);
+				if(module != null)
+					return ModuleInterface.read(module.duplicate());
+			}
+		}
+		return null;
+	}
+	
+	private static Module readDirectory(File directory, String name) throws IOException
+	{
+		File moduleFile = new File(directory, name + ".class");
+		if(!moduleFile.isFile())
+			return null;
+		JavaClass moduleClass = new ClassParser(moduleFile.getPath()).parse();
+		if(!isModule(moduleClass))
+			return null;
+		
+		List<JavaClass> structClasses = new ArrayList<JavaClass>();
+		File[] structFiles = directory.listFiles((dir, fileName) -> fileName.startsWith(name + "$") && fileName.endsWith(".class"));
+		Arrays.sort(structFiles);
+		for(File structFile : structFiles)
+			structClasses.add(new ClassParser(structFile.getPath()).parse());
+		return toModule(moduleClass, structClasses);
+	}
+	
+	private static Map<String, ByteBuffer> jarIndex(File jar) throws IOException
+	{
+		Map<String, ByteBuffer> index = jars.get(jar.getAbsolutePath());
+		if(index != null)
+			return index;
+		
+		File indexFile = new File(indexDirectory, key(jar) + SUFFIX);
+		if(!indexFile.isFile())
+			writeIndex(jar, indexFile);
+		try(FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ))
+		{
+			index = readIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		Map<String, ByteBuffer> existing = jars.putIfAbsent(jar.getAbsolutePath(), index);
+		return existing != null ? existing : index;
+	}
+	
+	// a jar that is replaced or touched gets a new key, the index of the old one is simply never read again
+	private static String key(File jar) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		digest.update((ModelCache.COMPILER_VERSION + "\0" + jar.getCanonicalPath() + "\0" + jar.length() + "\0" + jar.lastModified()).getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder();
+		for(byte b : digest.digest())
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+	
+	// module names and the length of each interface, then the interfaces in the same order
+	private static Map<String, ByteBuffer> readIndex(MappedByteBuffer in) throws IOException
+	{
+		if(in.getInt() != MAGIC || !CompactTree.readString(in).equals(ModelCache.COMPILER_VERSION))
+			throw new IOException("Not a library index for this compiler");
+		int count = in.getInt();
+		List<String> names = new ArrayList<String>(count);
+		int[] lengths = new int[count];
+		for(int i = 0; i < count; i++)
+		{
+			names.add(CompactTree.readString(in));
+			lengths[i] = in.getInt();
+		}
+		
+		Map<String, ByteBuffer> index = new HashMap<String, ByteBuffer>();
+		for(int i = 0; i < count; i++)
+		{
+			ByteBuffer module = in.slice();
+			module.limit(lengths[i]);
+			index.put(names.get(i), module);
+			in.position(in.position() + lengths[i]);
+		}
+		return Collections.unmodifiableMap(index);
+	}
+	
+	private static void writeIndex(File jar, File indexFile) throws IOException
+	{
+		List<String> names = new ArrayList<String>();
+		List<byte[]> interfaces = new ArrayList<byte[]>();
+		try(ZipFile zip = new ZipFile(jar))
+		{
+			// module classes are in the default package, their structs are the classes named after them with a $
+			Map<String, List<ZipEntry>> structEntries = new HashMap<String, List<ZipEntry>>();
+			List<ZipEntry> moduleEntries = new ArrayList<ZipEntry>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while(entries.hasMoreElements())
+			{
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if(name.contains("/") || !name.endsWith(".class"))
+					continue;
+				int dollar = name.indexOf('$');
+				if(dollar == -1)
+					moduleEntries.add(entry);
+				else
+					structEntries.computeIfAbsent(name.substring(0, dollar), k -> new ArrayList<ZipEntry>()).add(entry);
+			}
+			
+			for(ZipEntry moduleEntry : moduleEntries)
+			{
+				JavaClass moduleClass = parse(zip, moduleEntry);
+				if(!isModule(moduleClass))
+					continue;
+				List<JavaClass> structClasses = new ArrayList<JavaClass>();
+				List<ZipEntry> structs = structEntries.getOrDefault(moduleClass.getClassName(), Collections.emptyList());
+				structs.sort((a, b) -> a.getName().compareTo(b.getName()));
+				for(ZipEntry structEntry : structs)
+					structClasses.add(parse(zip, structEntry));
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try(DataOutputStream out = new DataOutputStream(bytes))
+				{
+					ModuleInterface.write(out, toModule(moduleClass, structClasses));
+				}
+				names.add(moduleClass.getClassName());
+				interfaces.add(bytes.toByteArray());
+			}
+		}
+		
+		Files.createDirectories(indexDirectory.toPath());
+		// written to a temporary file first so a concurrent build never maps a partial index
+		Path temp = Files.createTempFile(indexDirectory.toPath(), indexFile.getName(), ".tmp");
+		try
+		{
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+			{
+				out.writeInt(MAGIC);
+				CompactTree.writeString(out, ModelCache.COMPILER_VERSION);
+				out.writeInt(names.size());
+				for(int i = 0; i < names.size(); i++)
+				{
+					CompactTree.writeString(out, names.get(i));
+					out.writeInt(interfaces.get(i).length);
+				}
+				for(byte[] moduleInterface : interfaces)
+					out.write(moduleInterface);
+			}
+			Files.move(temp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private static JavaClass parse(ZipFile zip, ZipEntry entry) throws IOException
+	{
+		try(InputStream in = zip.getInputStream(entry))
+		{
+			return new ClassParser(in, entry.getName()).parse();
+		}
+	}
+	
+	// every module class has the initializer that its main method and importing modules call
+	private static boolean isModule(JavaClass jc)
+	{
+		return Arrays.stream(jc.getMethods()).anyMatch(m -> m.isStatic() && m.getName().equals("__moduleInit__") && m.getSignature().equals("(Z)V"));
+	}
+	
+	// imports are not kept in class files, the modules named by struct types in the signatures stand in for them
+	private static Module toModule(JavaClass moduleClass, List<JavaClass> structClasses)
+	{
+		String moduleName = moduleClass.getClassName();
+		Set<String> imports = new LinkedHashSet<String>();
+		List<Function> functions = new ArrayList<Function>();
+		for(Method method : moduleClass.getMethods())
+		{
+			if(!method.isStatic() || method.getName().equals("__moduleInit__") || method.getName().equals("<clinit>") || method.getName().equals("main") && method.getSignature().equals("([Ljava/lang/String;)V"))
+				continue;
+			functions.add(new Function(method.getName(), toParameters(method, imports), toType(method.getReturnType(), imports), true, (Statement) null));
+		}
+		
+		List<Struct> structs = new ArrayList<Struct>();
+		for(JavaClass structClass : structClasses)
+		{
+			List<Pair<Type, String>> parameters = new ArrayList<Pair<Type, String>>();
+			List<Function> structFunctions = new ArrayList<Function>();
+			for(Method method : structClass.getMethods())
+			{
+				if(method.getName().equals("<init>"))
+					parameters = toParameters(method, imports);
+				else if(!method.isStatic() && !method.getName().startsWith("<"))
+					structFunctions.add(new Function(method.getName(), toParameters(method, imports), toType(method.getReturnType(), imports), false, (Statement) null));
+			}
+			List<Triplet<Type, String, Expression>> attributes = new ArrayList<Triplet<Type, String, Expression>>();
+			for(Field field : structClass.getFields())
+				if(!field.isStatic())
+					attributes.add(new Triplet<Type, String, Expression>(toType(field.getType(), imports), field.getName(), null));
+			structs.add(new Struct(moduleName, structClass.getClassName().substring(moduleName.length() + 1), parameters, attributes, structFunctions));
+		}
+		
+		imports.remove(moduleName);
+		Module module = new Module(moduleName, structs, new ArrayList<String>(imports), functions, new ArrayList<Statement>());
+		module.external = true;
+		return module;
+	}
+	
+	// names come from the local variable table the compiler always writes, arg0, arg1, ... when it was stripped
+	private static List<Pair<Type, String>> toParameters(Method method, Set<String> imports)
+	{
+		org.apache.bcel.generic.Type[] argumentTypes = method.getArgumentTypes();
+		LocalVariableTable table = method.getLocalVariableTable();
+		List<Pair<Type, String>> parameters = new ArrayList<Pair<Type, String>>(argumentTypes.length);
+		int slot = method.isStatic() ? 0 : 1;
+		for(int i = 0; i < argumentTypes.length; i++)
+		{
+			LocalVariable local = table != null ? table.getLocalVariable(slot, 0) : null;
+			parameters.add(new Pair<Type, String>(toType(argumentTypes[i], imports), local != null ? local.getName() : "arg" + i));
+			slot += argumentTypes[i].getSize();
+		}
+		return parameters;
+	}
+	
+	// Module$Struct classes become the struct types Module.Struct, any other class keeps its Java name
+	private static Type toType(org.apache.bcel.generic.Type type, Set<String> imports)
+	{
+		if(type instanceof BasicType)
+			return Type.of(type.toString());
+		if(type instanceof ArrayType)
+		{
+			StringBuilder sb = new StringBuilder(toType(((ArrayType) type).getBasicType(), imports).typeName);
+			for(int i = 0; i < ((ArrayType) type).getDimensions(); i++)
+				sb.append("[]");
+			return Type.of(sb.toString());
+		}
+		String className = ((ObjectType) type).getClassName();
+		int dollar = className.indexOf('$');
+		if(dollar != -1 && className.indexOf('.') == -1)
+		{
+			imports.add(className.substring(0, dollar));
+			return Type.of(className.replace('$', '.'));
+		}
+		return Type.of(className);
+	}
+}
\ No newline at end of file
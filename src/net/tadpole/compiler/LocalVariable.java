@@ -11,7 +11,7 @@ public class LocalVariable
 	
 	public LocalVariable(TadpoleParser.VariableDecContext context)
 	{
-		type = new Type(context.type().getText());
+		type = Type.of(context.type().getText());
 		name = context.fieldName().getText();
 		expression = Expression.convert(context.expression());
 	}
@@ -0,0 +1,311 @@
+package net.tadpole.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.util.Pair;
+import net.tadpole.compiler.ast.CompactTree;
+import net.tadpole.compiler.ast.Expression;
+import net.tadpole.compiler.util.Triplet;
+
+// stores the converted model of each parsed file on disk so an unchanged file is never lexed or parsed again
+// entries are keyed by a hash of the compiler version, the module name and the source bytes
+public class ModelCache
+{
+	// must change whenever the parser, the model or this format changes in a way that alters what a file converts to
+	public static final String COMPILER_VERSION = "tadpole-4";
+	private static final int MAGIC = 0x54504D43;
+	private static final String SUFFIX = ".tpm";
+	
+	private final File directory;
+	private final long maxSize;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	// the size of every entry by file name, least recently used first, and their total
+	// the directory is only listed once, entries other builds add to it meanwhile are counted from the next build on
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long totalSize = 0;
+	
+	// maxSize is in bytes, the least recently used entries are removed once the directory grows past it
+	public ModelCache(File directory, long maxSize)
+	{
+		this.directory = directory;
+		this.maxSize = maxSize;
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if(files != null)
+		{
+			// the modification time doubles as the last use
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for(File file : files)
+			{
+				entries.put(file.getName(), file.length());
+				totalSize += file.length();
+			}
+		}
+	}
+	
+	public String key(String fileName, String moduleName) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(moduleName.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		try(FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			for(long position = 0; position < size; position += Integer.MAX_VALUE)
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position)));
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		for(byte b : digest.digest())
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+	
+	// returns null if there is no usable entry, a damaged entry is deleted and counts as a miss
+	public Module load(String key, String moduleName)
+	{
+		File file = new File(directory, key + SUFFIX);
+		if(!file.isFile())
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			Module module = read(in, moduleName);
+			// the modification time doubles as the last use when the next build lists the directory
+			file.setLastModified(System.currentTimeMillis());
+			synchronized(this)
+			{
+				entries.get(file.getName());
+			}
+			hits.incrementAndGet();
+			return module;
+		}
+		catch(IOException | RuntimeException e)
+		{
+			file.delete();
+			synchronized(this)
+			{
+				Long length = entries.remove(file.getName());
+				if(length != null)
+					totalSize -= length;
+			}
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+	
+	// failing to store an entry is not an error, the file is simply parsed again next time
+	public void store(String key, Module module)
+	{
+		try
+		{
+			Files.createDirectories(directory.toPath());
+			// written to a temporary file first so a concurrent reader never sees a partial entry
+			Path temp = Files.createTempFile(directory.toPath(), key, ".tmp");
+			try
+			{
+				try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+				{
+					write(out, module);
+				}
+				Files.move(temp, new File(directory, key + SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally
+			{
+				Files.deleteIfExists(temp);
+			}
+		}
+		catch(IOException e)
+		{
+			return;
+		}
+		added(key + SUFFIX, new File(directory, key + SUFFIX).length());
+	}
+	
+	public String getStatistics()
+	{
+		return "Model cache: " + hits.get() + " hits, " + misses.get() + " misses";
+	}
+	
+	// the directory is only touched when the new entry takes it past the budget
+	private synchronized void added(String name, long length)
+	{
+		Long previous = entries.put(name, length);
+		totalSize += length - (previous != null ? previous : 0);
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while(totalSize > maxSize && iterator.hasNext())
+		{
+			Map.Entry<String, Long> entry = iterator.next();
+			File file = new File(directory, entry.getKey());
+			if(file.delete() || !file.exists())
+			{
+				totalSize -= entry.getValue();
+				iterator.remove();
+			}
+		}
+	}
+	
+	// two modules that write the same bytes were parsed to the same trees
+	static void write(DataOutputStream out, Module module) throws IOException
+	{
+		out.writeInt(MAGIC);
+		CompactTree.writeString(out, COMPILER_VERSION);
+		
+		out.writeInt(module.imports.size());
+		for(String imp : module.imports)
+			CompactTree.writeString(out, imp);
+		
+		out.writeInt(module.declaredStructs.size());
+		for(Struct struct : module.declaredStructs)
+		{
+			CompactTree.writeString(out, struct.name);
+			writeParameters(out, struct.parameters);
+			out.writeInt(struct.attributes.size());
+			for(Triplet<Type, String, Expression> attribute : struct.attributes)
+			{
+				CompactTree.writeString(out, attribute.first.typeName);
+				CompactTree.writeString(out, attribute.second);
+				out.writeBoolean(attribute.third != null);
+				if(attribute.third != null)
+					new CompactTree(attribute.third).write(out);
+			}
+			writeFunctions(out, struct.functions);
+		}
+		
+		writeFunctions(out, module.declaredFunctions);
+		
+		out.writeInt(module.statements.size());
+		for(Statement statement : module.statements)
+			new CompactTree(statement).write(out);
+	}
+	
+	private static void writeFunctions(DataOutputStream out, List<Function> functions) throws IOException
+	{
+		out.writeInt(functions.size());
+		for(Function function : functions)
+		{
+			CompactTree.writeString(out, function.name);
+			writeParameters(out, function.parameters);
+			CompactTree.writeString(out, function.returnType.typeName);
+			out.writeBoolean(function.isStatic);
+			function.getCompactStatement().write(out);
+		}
+	}
+	
+	private static void writeParameters(DataOutputStream out, List<Pair<Type, String>> parameters) throws IOException
+	{
+		out.writeInt(parameters.size());
+		for(Pair<Type, String> parameter : parameters)
+		{
+			CompactTree.writeString(out, parameter.getKey().typeName);
+			CompactTree.writeString(out, parameter.getValue());
+		}
+	}
+	
+	// function bodies stay compact and are only decoded when a later pass asks for them
+	private static Module read(ByteBuffer in, String moduleName)
+	{
+		if(in.getInt() != MAGIC || !CompactTree.readString(in).equals(COMPILER_VERSION))
+			throw new IllegalStateException("Not a model cache entry for this compiler");
+		
+		int count = in.getInt();
+		List<String> imports = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++)
+			imports.add(CompactTree.readString(in));
+		
+		count = in.getInt();
+		List<Struct> structs = new ArrayList<Struct>(count);
+		for(int i = 0; i < count; i++)
+		{
+			String name = CompactTree.readString(in);
+			List<Pair<Type, String>> parameters = readParameters(in);
+			int attributeCount = in.getInt();
+			List<Triplet<Type, String, Expression>> attributes = new ArrayList<Triplet<Type, String, Expression>>(attributeCount);
+			for(int j = 0; j < attributeCount; j++)
+			{
+				Type type = Type.of(CompactTree.readString(in));
+				String attributeName = CompactTree.readString(in);
+				Expression expression = null;
+				if(in.get() != 0)
+				{
+					CompactTree tree = CompactTree.read(in);
+					expression = tree.toExpression(tree.root());
+				}
+				attributes.add(new Triplet<Type, String, Expression>(type, attributeName, expression));
+			}
+			structs.add(new Struct(moduleName, name, parameters, attributes, readFunctions(in, false)));
+		}
+		
+		List<Function> functions = readFunctions(in, true);
+		
+		count = in.getInt();
+		List<Statement> statements = new ArrayList<Statement>(count);
+		for(int i = 0; i < count; i++)
+			statements.add(CompactTree.read(in).toStatement());
+		
+		if(in.hasRemaining())
+			throw new IllegalStateException("Trailing data in model cache entry");
+		return new Module(moduleName, structs, imports, functions, statements);
+	}
+	
+	private static List<Function> readFunctions(ByteBuffer in, boolean isStatic)
+	{
+		int count = in.getInt();
+		List<Function> functions = new ArrayList<Function>(count);
+		for(int i = 0; i < count; i++)
+		{
+			String name = CompactTree.readString(in);
+			List<Pair<Type, String>> parameters = readParameters(in);
+			Type returnType = Type.of(CompactTree.readString(in));
+			boolean functionIsStatic = in.get() != 0;
+			if(functionIsStatic != isStatic)
+				throw new IllegalStateException("Function " + name + " has the wrong kind in model cache entry");
+			functions.add(new Function(name, parameters, returnType, functionIsStatic, CompactTree.read(in)));
+		}
+		return functions;
+	}
+	
+	private static List<Pair<Type, String>> readParameters(ByteBuffer in)
+	{
+		int count = in.getInt();
+		List<Pair<Type, String>> parameters = new ArrayList<Pair<Type, String>>(count);
+		for(int i = 0; i < count; i++)
+			parameters.add(new Pair<Type, String>(Type.of(CompactTree.readString(in)), CompactTree.readString(in)));
+		return parameters;
+	}
+}
\ No newline at end of file
@@ -1,8 +1,14 @@
 package net.tadpole.compiler;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,21 +24,32 @@ import org.apache.bcel.generic.ReturnInstruction;
 
 import javafx.util.Pair;
 import net.tadpole.compiler.Statement.ExpressionStatement;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+import net.tadpole.compiler.backend.ClassFileWriter;
 import net.tadpole.compiler.ast.BinaryOp;
 import net.tadpole.compiler.ast.Expression;
-import net.tadpole.compiler.ast.LiteralExpression;
+import net.tadpole.compiler.ast.TreePass;
+import net.tadpole.compiler.ast.TreeWalk;
 import net.tadpole.compiler.exceptions.CompilationException;
+import net.tadpole.compiler.util.EmissionContext;
+import net.tadpole.compiler.util.MethodScope;
+import net.tadpole.compiler.util.ScopedMethodGen;
 import net.tadpole.compiler.util.Triplet;
 
 public class Module
 {
 	private static final List<Module> modules = new ArrayList<Module>();
+	// when false every pass of absolutifyTypes walks the trees on its own, only there to measure what fusing them saves
+	public static boolean fusePasses = true;
 	
 	public final String name;
 	public final List<Struct> declaredStructs;
 	public final List<String> imports;
 	public final List<Function> declaredFunctions;
 	public final List<Statement> statements;
+	// declared by an interface file of a module compiled earlier, it is analyzed like any other module but never generated
+	public boolean external = false;
 	
 	public Module(String name, List<Struct> declaredStructs, List<String> imports, List<Function> declaredFunctions, List<Statement> statements)
 	{
@@ -40,398 +57,429 @@ public class Module
 		this.declaredStructs = declaredStructs;
 		this.imports = imports;
 		this.declaredFunctions = declaredFunctions;
-		if(declaredFunctions.stream().anyMatch(f -> f.name.equals("__moduleInit__")))
-			throw new CompilationException("Cannot create a function called __moduleInit__ because it's a reserved function name");
+		checkFunctionNames(declaredFunctions);
 		this.statements = statements;
-		modules.add(this);
 	}
 	
-	public List<ClassGen> toBytecode()
+	// replaces the contents in place after part of the source was reparsed, a registered module re-registers its structs
+	public void replaceDeclarations(List<Struct> declaredStructs, List<String> imports, List<Function> declaredFunctions, List<Statement> statements)
+	{
+		checkFunctionNames(declaredFunctions);
+		boolean registered = SymbolIndex.isRegistered(this);
+		if(registered)
+			SymbolIndex.removeDeclarations(this);
+		this.declaredStructs.clear();
+		this.declaredStructs.addAll(declaredStructs);
+		this.imports.clear();
+		this.imports.addAll(imports);
+		this.declaredFunctions.clear();
+		this.declaredFunctions.addAll(declaredFunctions);
+		this.statements.clear();
+		this.statements.addAll(statements);
+		if(registered)
+			SymbolIndex.addDeclarations(this);
+	}
+	
+	// keeps every function body of this module in compact form until it is needed
+	public void compactFunctions()
+	{
+		declaredFunctions.forEach(Function::compact);
+		declaredStructs.forEach(s -> s.functions.forEach(Function::compact));
+	}
+	
+	// the end of a phase that worked on the function bodies, the ones that were compact before it are compacted again
+	public void recompactFunctions()
+	{
+		declaredFunctions.forEach(Function::recompact);
+		declaredStructs.forEach(s -> s.functions.forEach(Function::recompact));
+	}
+	
+	// a copy without any code: struct layouts and function signatures are all other modules need to resolve against this one
+	public Module toSignatures()
+	{
+		List<Struct> structs = new ArrayList<Struct>(declaredStructs.size());
+		for(Struct s : declaredStructs)
+		{
+			List<Triplet<Type, String, Expression>> attributes = s.attributes.stream().map(a -> new Triplet<Type, String, Expression>(a.first, a.second, null)).collect(Collectors.toList());
+			structs.add(new Struct(name, s.name, new ArrayList<Pair<Type, String>>(s.parameters), attributes, s.functions.stream().map(Function::toSignature).collect(Collectors.toList())));
+		}
+		return new Module(name, structs, new ArrayList<String>(imports), declaredFunctions.stream().map(Function::toSignature).collect(Collectors.toList()), new ArrayList<Statement>());
+	}
+	
+	private static void checkFunctionNames(List<Function> functions)
+	{
+		if(functions.stream().anyMatch(f -> f.name.equals("__moduleInit__")))
+			throw new CompilationException("Cannot create a function called __moduleInit__ because it's a reserved function name");
+	}
+	
+	public static void registerModule(Module module)
+	{
+		modules.add(module);
+		SymbolIndex.addModule(module);
+	}
+	
+	public List<ClassFile> toBytecode(ClassFileBackend backend)
+	{
+		List<ClassFile> classes = new ArrayList<ClassFile>();
+		classes.add(toModuleClass(backend));
+		declaredStructs.stream().map(s -> s.toBytecode(backend)).forEach(classes::add);
+		return classes;
+	}
+	
+	// resolves the module statements as the body of __moduleInit__ and every function of the module class, structs are attributed on their own
+	public void attribute()
+	{
+		MethodScope scope = new MethodScope(name, "__moduleInit__", true, BasicType.VOID, new org.apache.bcel.generic.Type[]{BasicType.BOOLEAN}, new String[]{"isMain"});
+		statements.forEach(s -> s.attribute(scope));
+		declaredFunctions.forEach(f -> f.attribute(name));
+	}
+	
+	// the module class on its own, structs are separate classes with their own constant pools and can be generated independently
+	ClassFile toModuleClass(ClassFileBackend backend)
 	{
-		List<ClassGen> classes = new ArrayList<ClassGen>();
-		classes.add(null); // placeholder for module class
-		declaredStructs.stream().map(Struct::toBytecode).forEach(classes::add);
-		
 		ClassGen cg = new ClassGen(name, "java.lang.Object", name + ".tadpole", Constants.ACC_PUBLIC | Constants.ACC_FINAL, new String[0]);
-		declaredFunctions.stream().map(f -> f.toBytecode(cg).getMethod()).forEach(cg::addMethod);
+		ClassFileWriter writer = backend.newClass(cg);
+		declaredFunctions.stream().map(f -> f.toBytecode(cg)).forEach(writer::addMethod);
 		
 		InstructionList il = new InstructionList();
-		MethodGen mg = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, BasicType.VOID, new org.apache.bcel.generic.Type[]{BasicType.BOOLEAN}, new String[]{"isMain"}, "__moduleInit__", cg.getClassName(), il, cg.getConstantPool());
-		statements.forEach(s -> il.append(s.toBytecode(cg, mg)));
+		MethodGen mg = new ScopedMethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, BasicType.VOID, new org.apache.bcel.generic.Type[]{BasicType.BOOLEAN}, new String[]{"isMain"}, "__moduleInit__", cg.getClassName(), il, cg.getConstantPool());
+		EmissionContext ctx = new EmissionContext(cg, mg);
+		statements.forEach(s -> s.toBytecode(ctx));
 		if(!(il.getEnd().getInstruction() instanceof ReturnInstruction))
 			il.append(InstructionFactory.createReturn(mg.getReturnType()));
-		mg.removeNOPs();
-		mg.setMaxLocals();
-		mg.setMaxStack();
-		cg.addMethod(mg.getMethod());
+		writer.addMethod(mg);
 		
 		InstructionList il2 = new InstructionList();
 		MethodGen mg2 = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, BasicType.VOID, new org.apache.bcel.generic.Type[]{new ArrayType(org.apache.bcel.generic.Type.STRING, 1)}, new String[]{"args"}, "main", cg.getClassName(), il2, cg.getConstantPool());
 		il2.append(new ICONST(1));
-		il2.append(new InstructionFactory(cg).createInvoke(cg.getClassName(), "__moduleInit__", BasicType.VOID, new org.apache.bcel.generic.Type[]{BasicType.BOOLEAN}, Constants.INVOKESTATIC));
+		il2.append(ctx.factory.createInvoke(cg.getClassName(), "__moduleInit__", BasicType.VOID, new org.apache.bcel.generic.Type[]{BasicType.BOOLEAN}, Constants.INVOKESTATIC));
 		il2.append(InstructionFactory.createReturn(mg2.getReturnType()));
-		mg2.setMaxLocals();
-		mg2.setMaxStack();
-		cg.addMethod(mg2.getMethod());
-		
-		classes.set(0, cg); // replace placeholder with module class
-		return classes;
+		writer.addMethod(mg2);
+		return writer.finish();
 	}
 	
 	public static Module getModule(String name)
 	{
-		return modules.stream().filter(m -> m.name.equals(name)).findFirst().orElse(null);
+		return SymbolIndex.getModule(name);
 	}
 	
-	public static void absolutifyTypes()
+	// absolutifyTypes, verifySanity and mergeParallelAssigns over every registered module, each pass spread over the import graph
+	public static void analyze(int threads) throws CompilationException
 	{
-		for(Module m : modules)
+		AnalysisScheduler scheduler = new AnalysisScheduler(modules, threads);
+		for(List<String> cycle : scheduler.getCycles())
+			System.err.println("Import cycle between modules " + String.join(", ", cycle) + ", they are analyzed together");
+		scheduler.run(Module::absolutifyTypes); // also verifies that types exist and are imported
+		Set<String> duplicateNames = duplicateNames();
+		scheduler.run(m -> verifySanity(m, duplicateNames)); // verifies that no duplicates are declared
+		scheduler.run(Module::mergeParallelAssigns);
+	}
+	
+	// the passes of analyze again over modules that changed after the first build, in the same order and on this thread
+	// a failure stops the passes partway and can leave some of the modules transformed, the next rebuild walks them again,
+	// which every rebuild already does to the declarations an edit left alone
+	static void reanalyze(List<Module> changed) throws CompilationException
+	{
+		for(Module m : changed)
+			absolutifyTypes(m);
+		Set<String> duplicateNames = duplicateNames();
+		for(Module m : changed)
+			verifySanity(m, duplicateNames);
+		for(Module m : changed)
+			mergeParallelAssigns(m);
+	}
+	
+	public static void absolutifyTypes(Module m)
+	{
+		// the imported modules stay in registration order, which decides between structs of the same name
+		List<Module> imports = m.imports.stream().map(SymbolIndex::getModule).filter(module -> module != null && module != m).distinct().sorted(Comparator.comparingInt(SymbolIndex::getOrdinal)).collect(Collectors.toList());
+		imports.add(0, m);
+		
+		// constant folding, absolutification and the parallel assignment check share one walk over every tree unless fusing is turned off
+		TreePass[] passes = {new CompilerCore.SimplifyPass(), new AbsolutifyPass(imports), new CompilerCore.ParallelAssignPass()};
+		List<TreeWalk> walks = fusePasses ? Arrays.asList(new TreeWalk(passes)) : Arrays.stream(passes).map(TreeWalk::new).collect(Collectors.toList());
+		
+		for(int i = 0; i < m.statements.size(); i++)
 		{
-			List<Module> imports = modules.stream().filter(module -> m.imports.contains(module.name)).collect(Collectors.toList());
-			if(imports.contains(m))
-				imports.remove(m);
-			imports.add(0, m);
-			
-			for(Statement s : m.statements)
-			{
-				absolutifyTypes(s, imports);
-			}
-			for(Struct s : m.declaredStructs)
+			m.statements.set(i, walk(walks, m.statements.get(i)));
+		}
+		for(Struct s : m.declaredStructs)
+		{
+			List<Triplet<Type, String, Expression>> attributes = s.attributes;
+			for(int i = 0; i < attributes.size(); i++)
 			{
-				List<Triplet<Type, String, Expression>> attributes = s.attributes;
-				for(int i = 0; i < attributes.size(); i++)
+				Type t = attributes.get(i).first;
+				if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
 				{
-					Type t = attributes.get(i).first;
-					if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
-					{
-						Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.typeName)).findFirst();
-						Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
-						attributes.set(i, new Triplet<Type, String, Expression>(newT, attributes.get(i).second, attributes.get(i).third));
-					}
-					else if(!t.isPrimitive() && !t.isPrimitiveArray())
-					{
-						modules.stream().filter(module -> module.name.equals(t.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
-					}
-					if(attributes.get(i).third != null)
-						absolutifyTypes(attributes.get(i).third, imports);
+					Optional<Struct> oStruct = findImportedStruct(imports, t.typeName);
+					Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
+					attributes.set(i, new Triplet<Type, String, Expression>(newT, attributes.get(i).second, attributes.get(i).third));
 				}
-				
-				List<Pair<Type, String>> parameters = s.parameters;
-				for(int i = 0; i < parameters.size(); i++)
+				else if(!t.isPrimitive() && !t.isPrimitiveArray())
 				{
-					Type t = parameters.get(i).getKey();
-					if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
-					{
-						Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.typeName)).findFirst();
-						Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
-						parameters.set(i, new Pair<Type, String>(newT, parameters.get(i).getValue()));
-					}
-					else if(!t.isPrimitive() && !t.isPrimitiveArray())
-					{
-						modules.stream().filter(module -> module.name.equals(t.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
-					}
+					Optional.ofNullable(SymbolIndex.getStruct(t.getModuleName(), t.getTypeName())).orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
 				}
-				
-				for(Function f : s.functions)
+				if(attributes.get(i).third != null)
+					attributes.set(i, new Triplet<Type, String, Expression>(attributes.get(i).first, attributes.get(i).second, walk(walks, attributes.get(i).third)));
+			}
+			
+			List<Pair<Type, String>> parameters = s.parameters;
+			for(int i = 0; i < parameters.size(); i++)
+			{
+				Type t = parameters.get(i).getKey();
+				if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
 				{
-					absolutifyTypes(f.statement, imports);
-					
-					parameters = f.parameters;
-					for(int i = 0; i < parameters.size(); i++)
-					{
-						Type t = parameters.get(i).getKey();
-						if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
-						{
-							Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.typeName)).findFirst();
-							Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
-							parameters.set(i, new Pair<Type, String>(newT, parameters.get(i).getValue()));
-						}
-						else if(!t.isPrimitive() && !t.isPrimitiveArray())
-						{
-							Optional<Struct> structt = modules.stream().filter(module -> module.name.equals(t.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.getTypeName())).findFirst();
-							if(!structt.isPresent())
-							{
-								try
-								{
-									Class.forName(t.typeName);
-								}
-								catch(Exception e)
-								{
-									throw new CompilationException("Cannot find type in imported modules");
-								}
-							}
-						}
-					}
-					
-					if(!f.returnType.isAbsoluteType() && !f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
-					{
-						Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(f.returnType.typeName)).findFirst();
-						f.returnType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + f.returnType.typeName + "' was imported")));
-					}
-					else if(!f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
-					{
-						Optional<Struct> structt = modules.stream().filter(module -> module.name.equals(f.returnType.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(f.returnType.getTypeName())).findFirst();
-						if(!structt.isPresent())
-						{
-							try
-							{
-								Class.forName(f.returnType.typeName);
-							}
-							catch(Exception e)
-							{
-								throw new CompilationException("Cannot find type in imported modules");
-							}
-						}
-					}
+					Optional<Struct> oStruct = findImportedStruct(imports, t.typeName);
+					Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
+					parameters.set(i, new Pair<Type, String>(newT, parameters.get(i).getValue()));
+				}
+				else if(!t.isPrimitive() && !t.isPrimitiveArray())
+				{
+					Optional.ofNullable(SymbolIndex.getStruct(t.getModuleName(), t.getTypeName())).orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
 				}
 			}
-			for(Function f : m.declaredFunctions)
+			
+			for(Function f : s.functions)
 			{
-				absolutifyTypes(f.statement, imports);
+				f.setStatement(walk(walks, f.getStatement()));
 				
-				List<Pair<Type, String>> parameters = f.parameters;
+				parameters = f.parameters;
 				for(int i = 0; i < parameters.size(); i++)
 				{
 					Type t = parameters.get(i).getKey();
 					if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
 					{
-						Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.typeName)).findFirst();
+						Optional<Struct> oStruct = findImportedStruct(imports, t.typeName);
 						Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
 						parameters.set(i, new Pair<Type, String>(newT, parameters.get(i).getValue()));
 					}
 					else if(!t.isPrimitive() && !t.isPrimitiveArray())
 					{
-						modules.stream().filter(module -> module.name.equals(t.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(t.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
+						Optional<Struct> structt = Optional.ofNullable(SymbolIndex.getStruct(t.getModuleName(), t.getTypeName()));
+						if(!structt.isPresent() && t.getClassType() == null)
+							throw new CompilationException("Cannot find type in imported modules");
 					}
 				}
 				
 				if(!f.returnType.isAbsoluteType() && !f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
 				{
-					Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(f.returnType.typeName)).findFirst();
+					Optional<Struct> oStruct = findImportedStruct(imports, f.returnType.typeName);
 					f.returnType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + f.returnType.typeName + "' was imported")));
 				}
 				else if(!f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
 				{
-					modules.stream().filter(module -> module.name.equals(f.returnType.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(f.returnType.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
+					Optional<Struct> structt = Optional.ofNullable(SymbolIndex.getStruct(f.returnType.getModuleName(), f.returnType.getTypeName()));
+					if(!structt.isPresent() && f.returnType.getClassType() == null)
+						throw new CompilationException("Cannot find type in imported modules");
 				}
 			}
 		}
-	}
-	
-	private static void absolutifyTypes(Statement s, List<Module> imports)
-	{
-		if(s instanceof Statement.BlockStatement)
+		for(Function f : m.declaredFunctions)
 		{
-			((Statement.BlockStatement) s).statements.forEach(s2 -> absolutifyTypes(s2, imports));
-		}
-		else if(s instanceof Statement.LocalVarDecStatement)
-		{
-			Statement.LocalVarDecStatement lvds = (Statement.LocalVarDecStatement) s;
-			if(!lvds.type.isAbsoluteType() && !lvds.type.isPrimitive() && !Type.isPrimitiveArray(lvds.type))
+			f.setStatement(walk(walks, f.getStatement()));
+			
+			List<Pair<Type, String>> parameters = f.parameters;
+			for(int i = 0; i < parameters.size(); i++)
 			{
-				Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(lvds.type.typeName)).findFirst();
-				lvds.type = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + lvds.type.typeName + "' was imported")));
+				Type t = parameters.get(i).getKey();
+				if(!t.isAbsoluteType() && !t.isPrimitive() && !t.isPrimitiveArray())
+				{
+					Optional<Struct> oStruct = findImportedStruct(imports, t.typeName);
+					Type newT = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
+					parameters.set(i, new Pair<Type, String>(newT, parameters.get(i).getValue()));
+				}
+				else if(!t.isPrimitive() && !t.isPrimitiveArray())
+				{
+					Optional.ofNullable(SymbolIndex.getStruct(t.getModuleName(), t.getTypeName())).orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
+				}
 			}
-			else if(!lvds.type.isPrimitive() && !Type.isPrimitiveArray(lvds.type))
+			
+			if(!f.returnType.isAbsoluteType() && !f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
 			{
-				modules.stream().filter(module -> module.name.equals(lvds.type.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(lvds.type.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
+				Optional<Struct> oStruct = findImportedStruct(imports, f.returnType.typeName);
+				f.returnType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + f.returnType.typeName + "' was imported")));
+			}
+			else if(!f.returnType.isPrimitive() && !f.returnType.isPrimitiveArray())
+			{
+				Optional.ofNullable(SymbolIndex.getStruct(f.returnType.getModuleName(), f.returnType.getTypeName())).orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
 			}
-			if(lvds.expression != null)
-				absolutifyTypes(lvds.expression, imports);
-		}
-		else if(s instanceof Statement.ExpressionStatement)
-		{
-			absolutifyTypes(((Statement.ExpressionStatement) s).expression, imports);
-		}
-		else if(s instanceof Statement.ReturnStatement)
-		{
-			if(((Statement.ReturnStatement) s).expression != null)
-				absolutifyTypes(((Statement.ReturnStatement) s).expression, imports);
-		}
-		else if(s instanceof Statement.IfStatement)
-		{
-			Statement.IfStatement is = (Statement.IfStatement) s;
-			absolutifyTypes(is.expression, imports);
-			is.statements.forEach(s2 -> absolutifyTypes(s2, imports));
-		}
-		else if(s instanceof Statement.WhileStatement)
-		{
-			Statement.WhileStatement ws = (Statement.WhileStatement) s;
-			absolutifyTypes(ws.expression, imports);
-			absolutifyTypes(ws.statement, imports);
 		}
-		else if(s instanceof Statement.DoWhileStatement)
+		m.recompactFunctions();
+	}
+	
+	// runs the walks one after the other over a tree and returns what is left of it
+	private static Statement walk(List<TreeWalk> walks, Statement statement)
+	{
+		for(TreeWalk walk : walks)
+			statement = walk.walk(statement);
+		return statement;
+	}
+	
+	private static Expression walk(List<TreeWalk> walks, Expression expression)
+	{
+		for(TreeWalk walk : walks)
+			expression = walk.walk(expression);
+		return expression;
+	}
+	
+	// the type made absolute against the imported modules, checking that the struct it names exists
+	private static Type absoluteType(Type t, List<Module> imports)
+	{
+		if(!t.isAbsoluteType() && !t.isPrimitive() && !Type.isPrimitiveArray(t))
 		{
-			Statement.DoWhileStatement dws = (Statement.DoWhileStatement) s;
-			absolutifyTypes(dws.expression, imports);
-			absolutifyTypes(dws.statement, imports);
+			Optional<Struct> oStruct = findImportedStruct(imports, t.typeName);
+			return Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + t.typeName + "' was imported")));
 		}
-		else if(s instanceof Statement.ParallelStatement)
+		else if(!t.isPrimitive() && !Type.isPrimitiveArray(t))
 		{
-			Statement.ParallelStatement ps = (Statement.ParallelStatement) s;
-			ps.leftExprs.forEach(e -> absolutifyTypes(e, imports));
-			ps.rightExprs.forEach(e -> absolutifyTypes(e, imports));
+			Optional.ofNullable(SymbolIndex.getStruct(t.getModuleName(), t.getTypeName())).orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
 		}
+		return t;
 	}
 	
-	private static void absolutifyTypes(Expression expr, List<Module> imports)
+	// absolutifies types on the way down so a missing type is reported at the first place it is used
+	private static class AbsolutifyPass implements TreePass
 	{
-		if(expr instanceof Expression.UnaryExpression)
-		{
-			absolutifyTypes(((Expression.UnaryExpression) expr).expr, imports);
-		}
-		else if(expr instanceof Expression.BinaryExpression)
+		private final List<Module> imports;
+		
+		AbsolutifyPass(List<Module> imports)
 		{
-			absolutifyTypes(((Expression.BinaryExpression) expr).exprLeft, imports);
-			absolutifyTypes(((Expression.BinaryExpression) expr).exprRight, imports);
+			this.imports = imports;
 		}
-		else if(expr instanceof Expression.PrimaryExpression)
+		
+		@Override
+		public boolean enter(Statement statement)
 		{
-			if(expr instanceof Expression.PrimaryExpression.ArrayAccessExpression)
-			{
-				absolutifyTypes(((Expression.PrimaryExpression.ArrayAccessExpression) expr).expression, imports);
-				absolutifyTypes(((Expression.PrimaryExpression.ArrayAccessExpression) expr).indexExpression, imports);
-			}
-			else if(expr instanceof Expression.PrimaryExpression.CastExpression)
+			if(statement instanceof Statement.LocalVarDecStatement)
 			{
-				Expression.PrimaryExpression.CastExpression ce = (Expression.PrimaryExpression.CastExpression) expr;
-				if(!ce.targetType.isAbsoluteType() && !ce.targetType.isPrimitive() && !Type.isPrimitiveArray(ce.targetType))
-				{
-					Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(ce.targetType.typeName)).findFirst();
-					ce.targetType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + ce.targetType.typeName + "' was imported")));
-				}
-				else if(!ce.targetType.isPrimitive() && !Type.isPrimitiveArray(ce.targetType))
-				{
-					modules.stream().filter(module -> module.name.equals(ce.targetType.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(ce.targetType.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
-				}
-				absolutifyTypes(ce.expression, imports);
+				Statement.LocalVarDecStatement lvds = (Statement.LocalVarDecStatement) statement;
+				lvds.type = absoluteType(lvds.type, imports);
 			}
-			else if(expr instanceof Expression.PrimaryExpression.InstantiationExpression)
-			{
-				Expression.PrimaryExpression.InstantiationExpression ie = (Expression.PrimaryExpression.InstantiationExpression) expr;
-				if(!ie.structType.isAbsoluteType() && !ie.structType.isPrimitive() && !Type.isPrimitiveArray(ie.structType))
-				{
-					Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(ie.structType.typeName)).findFirst();
-					ie.structType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + ie.structType.typeName + "' was imported")));
-				}
-				else if(!ie.structType.isPrimitive() && !Type.isPrimitiveArray(ie.structType))
-				{
-					modules.stream().filter(module -> module.name.equals(ie.structType.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(ie.structType.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
-				}
-				for(Expression e : ie.parameters)
-					absolutifyTypes(e, imports);
-			}
-			else if(expr instanceof Expression.PrimaryExpression.ArrayInstantiationExpression)
+			return true;
+		}
+		
+		@Override
+		public boolean enter(Expression parent, Expression expression)
+		{
+			if(expression instanceof Expression.PrimaryExpression.CastExpression)
 			{
-				Expression.PrimaryExpression.ArrayInstantiationExpression aie = (Expression.PrimaryExpression.ArrayInstantiationExpression) expr;
-				if(!aie.structType.isAbsoluteType() && !aie.structType.isPrimitive() && !Type.isPrimitiveArray(aie.structType))
-				{
-					Optional<Struct> oStruct = imports.stream().flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(aie.structType.typeName)).findFirst();
-					aie.structType = Type.fromStruct(oStruct.orElseThrow(() -> new CompilationException("No struct with name '" + aie.structType.typeName + "' was imported")));
-				}
-				else if(!aie.structType.isPrimitive() && !Type.isPrimitiveArray(aie.structType))
-				{
-					modules.stream().filter(module -> module.name.equals(aie.structType.getModuleName())).flatMap(module -> module.declaredStructs.stream()).filter(struct -> struct.name.equals(aie.structType.getTypeName())).findFirst().orElseThrow(() -> new CompilationException("Cannot find type in imported modules"));
-				}
-				for(Expression e : aie.dimensionSizes)
-					absolutifyTypes(e, imports);
+				Expression.PrimaryExpression.CastExpression ce = (Expression.PrimaryExpression.CastExpression) expression;
+				ce.targetType = absoluteType(ce.targetType, imports);
 			}
-			else if(expr instanceof Expression.PrimaryExpression.WrapExpression)
+			else if(expression instanceof Expression.PrimaryExpression.InstantiationExpression)
 			{
-				absolutifyTypes(((Expression.PrimaryExpression.WrapExpression) expr).expression, imports);
+				Expression.PrimaryExpression.InstantiationExpression ie = (Expression.PrimaryExpression.InstantiationExpression) expression;
+				ie.structType = absoluteType(ie.structType, imports);
 			}
-			else if(expr instanceof Expression.PrimaryExpression.FieldAccessExpression)
+			else if(expression instanceof Expression.PrimaryExpression.ArrayInstantiationExpression)
 			{
-				if(((Expression.PrimaryExpression.FieldAccessExpression) expr).expression != null)
-					absolutifyTypes(((Expression.PrimaryExpression.FieldAccessExpression) expr).expression, imports);
+				Expression.PrimaryExpression.ArrayInstantiationExpression aie = (Expression.PrimaryExpression.ArrayInstantiationExpression) expression;
+				aie.structType = absoluteType(aie.structType, imports);
 			}
-			else if(expr instanceof Expression.PrimaryExpression.FunctionCallExpression)
+			else if(expression instanceof Expression.PrimaryExpression.FunctionCallExpression)
 			{
-				Expression.PrimaryExpression.FunctionCallExpression fce = (Expression.PrimaryExpression.FunctionCallExpression) expr;
+				Expression.PrimaryExpression.FunctionCallExpression fce = (Expression.PrimaryExpression.FunctionCallExpression) expression;
 				if(fce.callingOn == null)
 					fce.callingOn = new Expression.PrimaryExpression.FieldAccessExpression(null, imports.get(0).name);
-				else
-					absolutifyTypes(fce.callingOn, imports);
-				for(Expression e : fce.parameters)
-					absolutifyTypes(e, imports);
-			}
-			else if(expr instanceof LiteralExpression.ArrayLiteral)
-			{
-				for(Expression e : ((LiteralExpression.ArrayLiteral) expr).expressions)
-					absolutifyTypes(e, imports);
-			}
-			else if(!(expr instanceof LiteralExpression))
-			{
-				throw new IllegalStateException("Wat... how was there another type of primary expression?");
 			}
-		}
-		else
-		{
-			throw new IllegalStateException("Wat... how was there another type of expression?");
+			return true;
 		}
 	}
 	
-	public static void verifySanity() throws CompilationException
+	// the struct of the first module in imports that declares one with that name
+	private static Optional<Struct> findImportedStruct(List<Module> imports, String name)
 	{
-		for(Module m : modules)
+		for(Module module : imports)
 		{
-			if(modules.stream().filter(module -> module != m).map(module -> module.name).anyMatch(mName -> mName.equals(m.name)))
-				throw new CompilationException("Cannot have multiple modules with the same name");;
-			List<String> temp = m.declaredStructs.stream().map(struct -> struct.name).collect(Collectors.toList());
-			for(int i = 0; i < temp.size() - 1; i++)
-				if(temp.subList(i + 1, temp.size()).contains(temp.get(i)))
-					throw new CompilationException("Duplicate struct of name " + temp.get(i) + " found in module " + m.name);
-			for(int i = 0; i < m.imports.size() - 1; i++)
-				if(m.imports.subList(i + 1, m.imports.size()).contains(m.imports.get(i)))
-					throw new CompilationException("Duplicate import of " + m.imports.get(i) + " found in module " + m.name);
-			for(int i = 0; i < m.declaredFunctions.size() - 1; i++)
-				if(m.declaredFunctions.subList(i + 1, m.declaredFunctions.size()).contains(m.declaredFunctions.get(i)))
-					throw new CompilationException("Duplicate function with name " + m.declaredFunctions.get(i).name + " found in module " + m.name);
+			Struct struct = SymbolIndex.getStruct(module.name, name);
+			if(struct != null)
+				return Optional.of(struct);
 		}
+		return Optional.empty();
 	}
 	
-	public static void mergeParallelAssigns()
+	private static Set<String> duplicateNames()
 	{
+		Set<String> names = new HashSet<String>();
+		Set<String> duplicateNames = new HashSet<String>();
 		for(Module m : modules)
+			if(!names.add(m.name))
+				duplicateNames.add(m.name);
+		return duplicateNames;
+	}
+	
+	private static void verifySanity(Module m, Set<String> duplicateNames) throws CompilationException
+	{
+		if(duplicateNames.contains(m.name))
+			throw new CompilationException("Cannot have multiple modules with the same name");
+		String struct = firstDuplicate(m.declaredStructs.stream().map(s -> s.name).collect(Collectors.toList()));
+		if(struct != null)
+			throw new CompilationException("Duplicate struct of name " + struct + " found in module " + m.name);
+		String imp = firstDuplicate(m.imports);
+		if(imp != null)
+			throw new CompilationException("Duplicate import of " + imp + " found in module " + m.name);
+		Function function = firstDuplicate(m.declaredFunctions);
+		if(function != null)
+			throw new CompilationException("Duplicate function with name " + function.name + " found in module " + m.name);
+	}
+	
+	// the earliest element that appears again later in the list, or null
+	private static <T> T firstDuplicate(List<T> list)
+	{
+		Set<T> later = new HashSet<T>();
+		T duplicate = null;
+		for(int i = list.size() - 1; i >= 0; i--)
+			if(!later.add(list.get(i)))
+				duplicate = list.get(i);
+		return duplicate;
+	}
+	
+	public static void mergeParallelAssigns(Module m)
+	{
+		int start = -1;
+		int end = -1;
+		for(int i = 0; i < m.statements.size(); i++)
 		{
-			int start = -1;
-			int end = -1;
-			for(int i = 0; i < m.statements.size(); i++)
+			Statement s = m.statements.get(i);
+			if(s instanceof ExpressionStatement && ((ExpressionStatement) s).expression instanceof Expression.BinaryExpression && ((Expression.BinaryExpression) ((ExpressionStatement) s).expression).op.equals(BinaryOp.PARALLEL_ASSIGN))
 			{
-				Statement s = m.statements.get(i);
-				if(s instanceof ExpressionStatement && ((ExpressionStatement) s).expression instanceof Expression.BinaryExpression && ((Expression.BinaryExpression) ((ExpressionStatement) s).expression).op.equals(BinaryOp.PARALLEL_ASSIGN))
-				{
-					if(start == -1)
-						start = i;
-					else
-						end = i;
-					
-					if(end == m.statements.size() - 1)
-					{
-						List<Statement> parallelStatements = m.statements.subList(start, end + 1);
-						Statement parallelStatement = Statement.createParallelStatement(parallelStatements);
-						parallelStatements.clear();
-						m.statements.add(start, parallelStatement);
-					}
-				}
-				else if(start != -1 && end == i - 1)
+				if(start == -1)
+					start = i;
+				else
+					end = i;
+				
+				if(end == m.statements.size() - 1)
 				{
 					List<Statement> parallelStatements = m.statements.subList(start, end + 1);
 					Statement parallelStatement = Statement.createParallelStatement(parallelStatements);
-					i = start + 1;
 					parallelStatements.clear();
 					m.statements.add(start, parallelStatement);
-					start = -1;
-					end = -1;
 				}
 			}
+			else if(start != -1 && end == i - 1)
+			{
+				List<Statement> parallelStatements = m.statements.subList(start, end + 1);
+				Statement parallelStatement = Statement.createParallelStatement(parallelStatements);
+				i = start + 1;
+				parallelStatements.clear();
+				m.statements.add(start, parallelStatement);
+				start = -1;
+				end = -1;
+			}
 		}
 	}
 	
-	public static ClassGen[] generateBytecode()
+	// every module class followed by the classes of its structs, in registration order whatever the number of threads
+	public static ClassFile[] generateBytecode(int threads, ClassFileBackend backend)
 	{
-		List<ClassGen> cgs = new ArrayList<ClassGen>();
-		modules.forEach(module -> cgs.addAll(module.toBytecode()));
-		return cgs.toArray(new ClassGen[cgs.size()]);
+		return new BytecodeGenerator(modules.stream().filter(module -> !module.external).collect(Collectors.toList()), threads, backend).run();
+	}
+	
+	// one interface file per module compiled by this build, next to its class files
+	public static void writeInterfaces(File directory) throws IOException
+	{
+		for(Module m : modules)
+			if(!m.external)
+				ModuleInterface.write(m, directory);
 	}
 }
\ No newline at end of file
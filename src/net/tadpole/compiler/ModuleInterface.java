@@ -0,0 +1,197 @@
+package net.tadpole.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javafx.util.Pair;
+import net.tadpole.compiler.ast.CompactTree;
+import net.tadpole.compiler.ast.Expression;
+import net.tadpole.compiler.util.Triplet;
+
+// what importers need from a compiled module: its imports, struct layouts and constructor parameters and every function signature
+// written next to the class files of the module once its types are absolute, so a later build can import the module without its source
+public class ModuleInterface
+{
+	public static final String SUFFIX = ".tpi";
+	private static final int MAGIC = 0x54504D49;
+	
+	// written to a temporary file first so a build reading the directory at the same time never sees a partial interface
+	public static void write(Module module, File directory) throws IOException
+	{
+		Path temp = Files.createTempFile(directory.toPath(), module.name, ".tmp");
+		try
+		{
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+			{
+				write(out, module);
+			}
+			Files.move(temp, new File(directory, module.name + SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	public static Module read(File file) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	// registers the interface of every imported module that is not part of the build, and of the modules those import in turn
+	// interface directories are searched in order and then the library path, an import found nowhere is left for absolutifyTypes to report where it is used
+	public static int registerMissingImports(List<Module> modules, List<String> directories, List<String> libraryPath) throws IOException
+	{
+		Deque<String> missing = new ArrayDeque<String>();
+		modules.forEach(m -> missing.addAll(m.imports));
+		int registered = 0;
+		while(!missing.isEmpty())
+		{
+			String name = missing.pop();
+			if(SymbolIndex.getModule(name) != null)
+				continue;
+			Module module = null;
+			for(String directory : directories)
+			{
+				File file = new File(directory, name + SUFFIX);
+				if(!file.isFile())
+					continue;
+				
+				module = read(file);
+				if(!module.name.equals(name))
+					throw new IOException("Interface " + file + " is for module " + module.name + ", not " + name);
+				break;
+			}
+			if(module == null)
+				module = LibraryIndex.findModule(name, libraryPath);
+			if(module == null)
+				continue;
+			
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+			missing.addAll(module.imports);
+			registered++;
+		}
+		return registered;
+	}
+	
+	static void write(DataOutputStream out, Module module) throws IOException
+	{
+		out.writeInt(MAGIC);
+		CompactTree.writeString(out, ModelCache.COMPILER_VERSION);
+		CompactTree.writeString(out, module.name);
+		
+		out.writeInt(module.imports.size());
+		for(String imp : module.imports)
+			CompactTree.writeString(out, imp);
+		
+		out.writeInt(module.declaredStructs.size());
+		for(Struct struct : module.declaredStructs)
+		{
+			CompactTree.writeString(out, struct.name);
+			writeParameters(out, struct.parameters);
+			// initializers only matter to the constructor, which is already compiled
+			out.writeInt(struct.attributes.size());
+			for(Triplet<Type, String, Expression> attribute : struct.attributes)
+			{
+				CompactTree.writeString(out, attribute.first.typeName);
+				CompactTree.writeString(out, attribute.second);
+			}
+			writeFunctions(out, struct.functions);
+		}
+		
+		writeFunctions(out, module.declaredFunctions);
+	}
+	
+	private static void writeFunctions(DataOutputStream out, List<Function> functions) throws IOException
+	{
+		out.writeInt(functions.size());
+		for(Function function : functions)
+		{
+			CompactTree.writeString(out, function.name);
+			writeParameters(out, function.parameters);
+			CompactTree.writeString(out, function.returnType.typeName);
+		}
+	}
+	
+	private static void writeParameters(DataOutputStream out, List<Pair<Type, String>> parameters) throws IOException
+	{
+		out.writeInt(parameters.size());
+		for(Pair<Type, String> parameter : parameters)
+		{
+			CompactTree.writeString(out, parameter.getKey().typeName);
+			CompactTree.writeString(out, parameter.getValue());
+		}
+	}
+	
+	// the module comes back as signatures only and marked external so no code is generated for it
+	static Module read(ByteBuffer in) throws IOException
+	{
+		if(in.getInt() != MAGIC || !CompactTree.readString(in).equals(ModelCache.COMPILER_VERSION))
+			throw new IOException("Not a module interface for this compiler");
+		String moduleName = CompactTree.readString(in);
+		
+		int count = in.getInt();
+		List<String> imports = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++)
+			imports.add(CompactTree.readString(in));
+		
+		count = in.getInt();
+		List<Struct> structs = new ArrayList<Struct>(count);
+		for(int i = 0; i < count; i++)
+		{
+			String name = CompactTree.readString(in);
+			List<Pair<Type, String>> parameters = readParameters(in);
+			int attributeCount = in.getInt();
+			List<Triplet<Type, String, Expression>> attributes = new ArrayList<Triplet<Type, String, Expression>>(attributeCount);
+			for(int j = 0; j < attributeCount; j++)
+				attributes.add(new Triplet<Type, String, Expression>(Type.of(CompactTree.readString(in)), CompactTree.readString(in), null));
+			structs.add(new Struct(moduleName, name, parameters, attributes, readFunctions(in, false)));
+		}
+		
+		List<Function> functions = readFunctions(in, true);
+		if(in.hasRemaining())
+			throw new IOException("Trailing data in module interface");
+		
+		Module module = new Module(moduleName, structs, imports, functions, new ArrayList<Statement>());
+		module.external = true;
+		return module;
+	}
+	
+	private static List<Function> readFunctions(ByteBuffer in, boolean isStatic)
+	{
+		int count = in.getInt();
+		List<Function> functions = new ArrayList<Function>(count);
+		for(int i = 0; i < count; i++)
+		{
+			String name = CompactTree.readString(in);
+			List<Pair<Type, String>> parameters = readParameters(in);
+			functions.add(new Function(name, parameters, Type.of(CompactTree.readString(in)), isStatic, (Statement) null));
+		}
+		return functions;
+	}
+	
+	private static List<Pair<Type, String>> readParameters(ByteBuffer in)
+	{
+		int count = in.getInt();
+		List<Pair<Type, String>> parameters = new ArrayList<Pair<Type, String>>(count);
+		for(int i = 0; i < count; i++)
+			parameters.add(new Pair<Type, String>(Type.of(CompactTree.readString(in)), CompactTree.readString(in)));
+		return parameters;
+	}
+}
\ No newline at end of file
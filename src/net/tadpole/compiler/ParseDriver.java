@@ -0,0 +1,198 @@
+package net.tadpole.compiler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import net.tadpole.compiler.parser.TadpoleLexer;
+import net.tadpole.compiler.parser.TadpoleParser;
+import net.tadpole.compiler.parser.TadpoleParser.FileContext;
+
+public class ParseDriver
+{
+	// exercises every declaration and statement form so the DFA caches are populated before the real files arrive
+	private static final String WARM_UP_SOURCE = String.join("\n",
+			"import Warm;",
+			"int i = 0;",
+			"long[] l = new long[4][];",
+			"char[] c = \"ab\\n\".toCharArray();",
+			"java.lang.System.out.println(i + 1 * 2 - 3 / 4 % 5 ** 6);",
+			"i <- i;",
+			"i += -i << 1 >> 2 >>> 3 & 4 | 5 ^ ~6;",
+			"if(i < 1 && i > 2 || i <= 3 && !(i >= 4) || i == 5 || i != 6) { i = (int) 1.5; } else i = 0h1F;",
+			"while(true) do i = i + 1; while(false);",
+			"do { recall; } while(c[0] == 'a');",
+			"def f(int a, WarmPair b) : WarmPair -> return new WarmPair(a, b.i);",
+			"def g() : void -> { return; }",
+			"struct WarmPair(int i, int j)",
+			"{",
+			"	int i = i;",
+			"	boolean b = none == {1, 2};",
+			"	def h(WarmPair o) : java.lang.String -> return i + \" \" + o.j;",
+			"}");
+	
+	private static final AtomicLong linesParsed = new AtomicLong();
+	private static final AtomicLong parseNanos = new AtomicLong();
+	private static final AtomicLong filesParsed = new AtomicLong();
+	private static final AtomicLong fullContextReparses = new AtomicLong();
+	
+	private static volatile boolean warm = false;
+	public static boolean useSLL = true;
+	
+	// reports syntax errors to stderr the way ANTLR's console listener does and counts them, a file that had any is never cached
+	public static class SyntaxErrors extends ConsoleErrorListener
+	{
+		private int count = 0;
+		
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e)
+		{
+			count++;
+			super.syntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e);
+		}
+		
+		public int getCount()
+		{
+			return count;
+		}
+	}
+	
+	public static FileContext parse(CharStream input)
+	{
+		return parse(input, new SyntaxErrors());
+	}
+	
+	// the lexer and the parser report to errors, the tree is returned even when it was recovered from errors
+	public static FileContext parse(CharStream input, SyntaxErrors errors)
+	{
+		long start = System.nanoTime();
+		TadpoleLexer lexer = new TadpoleLexer(input);
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(errors);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		TadpoleParser parser = new TadpoleParser(tokens);
+		parser.removeErrorListeners();
+		FileContext context;
+		
+		if(useSLL)
+		{
+			// most files parse with SLL prediction, which never has to fall back to full-context lookahead
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			parser.setErrorHandler(new BailErrorStrategy());
+			try
+			{
+				context = parser.file();
+			}
+			catch(ParseCancellationException e)
+			{
+				// SLL either hit a real syntax error or needs full context, only full LL can tell which
+				fullContextReparses.incrementAndGet();
+				tokens.reset();
+				parser.reset();
+				parser.addErrorListener(errors);
+				parser.setErrorHandler(new DefaultErrorStrategy());
+				parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				context = parser.file();
+			}
+		}
+		else
+		{
+			parser.addErrorListener(errors);
+			context = parser.file();
+		}
+		
+		parseNanos.addAndGet(System.nanoTime() - start);
+		// the EOF sits on the line after the last one when the text ends with a line terminator
+		Token eof = tokens.get(tokens.size() - 1);
+		linesParsed.addAndGet(eof.getCharPositionInLine() == 0 ? eof.getLine() - 1 : eof.getLine());
+		filesParsed.incrementAndGet();
+		return context;
+	}
+	
+	// parses without reporting anything, returns null if the tokens are not a valid file
+	// fragments share lines with their neighbours, so their lines are left to whoever counts the whole file
+	public static FileContext tryParse(TokenSource source)
+	{
+		long start = System.nanoTime();
+		CommonTokenStream tokens = new CommonTokenStream(source);
+		TadpoleParser parser = new TadpoleParser(tokens);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.getInterpreter().setPredictionMode(useSLL ? PredictionMode.SLL : PredictionMode.LL);
+		FileContext context;
+		try
+		{
+			context = parser.file();
+		}
+		catch(ParseCancellationException e)
+		{
+			if(!useSLL)
+				return null;
+			fullContextReparses.incrementAndGet();
+			tokens.reset();
+			parser.reset();
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			try
+			{
+				context = parser.file();
+			}
+			catch(ParseCancellationException e2)
+			{
+				return null;
+			}
+		}
+		
+		parseNanos.addAndGet(System.nanoTime() - start);
+		return context;
+	}
+	
+	// fragments are not files on their own, whoever parsed a file in fragments counts it and its lines once
+	static void countFile(long lines)
+	{
+		linesParsed.addAndGet(lines);
+		filesParsed.incrementAndGet();
+	}
+	
+	public static void warmUp()
+	{
+		if(warm)
+			return;
+		synchronized(ParseDriver.class)
+		{
+			if(warm)
+				return;
+			TadpoleLexer lexer = new TadpoleLexer(new ANTLRInputStream(WARM_UP_SOURCE));
+			lexer.removeErrorListeners();
+			TadpoleParser parser = new TadpoleParser(new CommonTokenStream(lexer));
+			parser.removeErrorListeners();
+			parser.getInterpreter().setPredictionMode(useSLL ? PredictionMode.SLL : PredictionMode.LL);
+			try
+			{
+				parser.file();
+			}
+			catch(RuntimeException e)
+			{
+				// a warm-up failure only means a colder cache, never a failed build
+			}
+			warm = true;
+		}
+	}
+	
+	public static String getStatistics()
+	{
+		long lines = linesParsed.get();
+		double seconds = parseNanos.get() / 1e9;
+		return String.format("Parsed %d lines in %d files in %.1f ms (%.0f lines/s per thread, %d full LL reparses)", lines, filesParsed.get(), seconds * 1000, seconds > 0 ? lines / seconds : 0, fullContextReparses.get());
+	}
+}
\ No newline at end of file
@@ -1,61 +1,63 @@
 package net.tadpole.compiler;
 
-import static net.tadpole.compiler.ast.StatementNode.*;
-
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.bcel.generic.BasicType;
 import org.apache.bcel.generic.BranchHandle;
-import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.GOTO;
-import org.apache.bcel.generic.IF_ICMPEQ;
-import org.apache.bcel.generic.IF_ICMPNE;
+import org.apache.bcel.generic.IFEQ;
+import org.apache.bcel.generic.IFNE;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.InstructionList;
-import org.apache.bcel.generic.LocalVariableGen;
 import org.apache.bcel.generic.MethodGen;
 
-import javafx.util.Pair;
 import net.tadpole.compiler.ast.Expression;
-import net.tadpole.compiler.ast.StatementNode;
 import net.tadpole.compiler.exceptions.CompilationException;
+import net.tadpole.compiler.parser.TadpoleParser;
+import net.tadpole.compiler.util.EmissionContext;
+import net.tadpole.compiler.util.MethodScope;
 import net.tadpole.compiler.util.MethodUtils;
-import net.tadpole.compiler.util.TypeUtils;
 
 public abstract class Statement
 {
-	public static Statement convert(StatementNode sn)
+	public static Statement convert(TadpoleParser.StatementContext context)
 	{
-		switch(sn.type)
+		// local variable initializers are deliberately left unsimplified
+		if(context.variableDec() != null)
+			return new LocalVarDecStatement(new LocalVariable(context.variableDec()));
+		
+		switch(context.getChild(0).getText())
 		{
-		case T_EXPRESSION:
-			return new ExpressionStatement(sn.expressions.get(0));
-		case T_RECALL:
+		case "recall":
 			return RecallStatement.INSTANCE;
-		case T_RETURN:
-			return new ReturnStatement(sn.expressions.get(0));
-		case T_LOCAL_VAR:
-			return new LocalVarDecStatement(sn.localVarDec);
-		case T_IF:
-			return new IfStatement(sn.expressions.get(0), sn.statements.stream().map(Statement::convert).collect(Collectors.toList()));
-		case T_WHILE:
-			return new WhileStatement(sn.expressions.get(0), sn.statements.stream().map(Statement::convert).findFirst().get());
-		case T_BLOCK:
-			return new BlockStatement(sn.statements.stream().map(Statement::convert).collect(Collectors.toList()));
-		case T_DO_WHILE:
-			if(sn.expressions.size() == 2)
-				return new DoWhileStatement(sn.expressions);
+		case "return":
+			return new ReturnStatement(context.expression().isEmpty() ? null : convertExpression(context.expression(0)));
+		case "if":
+			return new IfStatement(convertExpression(context.expression(0)), context.statement().stream().map(Statement::convert).collect(Collectors.toList()));
+		case "while":
+			return new WhileStatement(convertExpression(context.expression(0)), convert(context.statement(0)));
+		case "{":
+			return new BlockStatement(context.statement().stream().map(Statement::convert).collect(Collectors.toList()));
+		case "do":
+			if(context.expression().size() == 2)
+				return new DoWhileStatement(context.expression().stream().map(Statement::convertExpression).collect(Collectors.toList()));
 			else
-				return new DoWhileStatement(sn.expressions.get(0), sn.statements.stream().map(Statement::convert).findFirst().get());
+				return new DoWhileStatement(convertExpression(context.expression(0)), convert(context.statement(0)));
 		default:
-			throw new CompilationException("Unknown statement with type id: " + sn.type);
+			return new ExpressionStatement(convertExpression(context.expression(0)));
 		}
 	}
 	
+	// constants are folded later, in the same walk that absolutifies types
+	private static Expression convertExpression(TadpoleParser.ExpressionContext context)
+	{
+		return Expression.convert(context);
+	}
+	
 	public static ParallelStatement createParallelStatement(List<Statement> statements)
 	{
 		List<Expression.BinaryExpression> bes = statements.stream().map(s -> ((ExpressionStatement) s).expression).map(e -> (Expression.BinaryExpression) e).collect(Collectors.toList());
@@ -69,7 +71,18 @@ public abstract class Statement
 		return new ParallelStatement(left, right);
 	}
 	
-	public abstract InstructionList toBytecode(ClassGen cg, MethodGen mg);
+	// resolves the types, locals and calls of the statement and checks them, in the order its code is generated
+	// runs over the whole method body before any of its code is generated
+	public abstract void attribute(MethodScope scope);
+	
+	// appends the code of the statement to the method being generated, only reading what attribute stored
+	public abstract void toBytecode(EmissionContext ctx);
+	
+	private static void attributeCondition(Expression condition, MethodScope scope)
+	{
+		if(!condition.attribute(scope).equals(BasicType.BOOLEAN))
+			throw new CompilationException("Cannot use non-boolean as a conditional\nClass: " + scope.className + ";Method: " + scope.methodName);
+	}
 	
 	public static class BlockStatement extends Statement
 	{
@@ -81,22 +94,28 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			statements.forEach(s -> il.append(s.toBytecode(cg, mg)));
-			List<LocalVariableGen> lvgs = MethodUtils.getLocalVars(mg);
-			for(LocalVariableGen lvg : lvgs)
-				if(lvg.getStart() != null && lvg.getEnd() == null && il.contains(lvg.getStart()))
-					lvg.setEnd(il.getEnd());
-			
-			return il;
+			scope.openScope();
+			for(Statement s : statements)
+				s.attribute(scope);
+			scope.closeScope();
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			MethodUtils.openScope(ctx.mg);
+			for(Statement s : statements)
+				s.toBytecode(ctx);
+			MethodUtils.closeScope(ctx.mg, ctx.il.getEnd());
 		}
+		
 	}
 	
 	public static class ExpressionStatement extends Statement
 	{
-		public final Expression expression;
+		public Expression expression;
 		
 		public ExpressionStatement(Expression expression)
 		{
@@ -104,18 +123,22 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
+		{
+			expression.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-			InstructionList il = exprData.getKey();
-			org.apache.bcel.generic.Type stackTop = exprData.getValue();
+			expression.toBytecode(ctx);
+			org.apache.bcel.generic.Type stackTop = expression.resolvedType;
 			if(stackTop.getSize() == 1)
-				il.append(InstructionConstants.POP);
+				ctx.il.append(InstructionConstants.POP);
 			else if(stackTop.getSize() == 2)
-				il.append(InstructionConstants.POP2);
-			
-			return il;
+				ctx.il.append(InstructionConstants.POP2);
 		}
+		
 	}
 	
 	public static class RecallStatement extends Statement
@@ -125,17 +148,19 @@ public abstract class Statement
 		private RecallStatement() {}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope) {}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			InstructionList il = new InstructionList();
-			il.append(new GOTO(mg.getInstructionList().getStart()));
-			return il;
+			ctx.il.append(new GOTO(ctx.il.getStart()));
 		}
+		
 	}
 	
 	public static class ReturnStatement extends Statement
 	{
-		public final Expression expression;
+		public Expression expression;
 		
 		public ReturnStatement(Expression expression)
 		{
@@ -143,29 +168,35 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			if((mg.getReturnType().equals(BasicType.VOID) && expression != null) || (!mg.getReturnType().equals(BasicType.VOID) && expression == null))
-				throw new CompilationException("Return statement error in fucntion " + mg.getName() + " in class " + cg.getClassName());
-			
-			InstructionList il = new InstructionList();
+			if((scope.returnType.equals(BasicType.VOID) && expression != null) || (!scope.returnType.equals(BasicType.VOID) && expression == null))
+				throw new CompilationException("Return statement error in fucntion " + scope.methodName + " in class " + scope.className);
+			if(expression != null)
+				expression.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			MethodGen mg = ctx.mg;
 			if(expression != null)
 			{
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-				il.append(exprData.getKey());
-				il.append(TypeUtils.cast(exprData.getValue(), mg.getReturnType(), new InstructionFactory(cg)));
+				expression.toBytecode(ctx);
+				ctx.cast(expression.resolvedType, mg.getReturnType());
 			}
-			il.append(InstructionFactory.createReturn(mg.getReturnType()));
-			
-			return il;
+			ctx.il.append(InstructionFactory.createReturn(mg.getReturnType()));
 		}
+		
 	}
 	
 	public static class LocalVarDecStatement extends Statement
 	{
 		public Type type;
 		public final String name;
-		public final Expression expression;
+		public Expression expression;
+		// the slot attribute() gave the local
+		public MethodScope.Local local;
 		
 		public LocalVarDecStatement(LocalVariable lv)
 		{
@@ -174,27 +205,32 @@ public abstract class Statement
 			expression = lv.expression;
 		}
 		
+		// the local is in scope in its own initializer, as it always was
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			il.append(InstructionConstants.NOP);
-			LocalVariableGen lvg = mg.addLocalVariable(name, type.toBCELType(), il.getStart(), null);
+			local = scope.declare(name, type.toBCELType());
+			if(expression != null)
+				expression.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			MethodUtils.declareLocal(ctx.mg, local, ctx.il.append(InstructionConstants.NOP));
 			if(expression != null)
 			{
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-				il.append(exprData.getKey());
-				il.append(TypeUtils.cast(exprData.getValue(), type.toBCELType(), new InstructionFactory(cg)));
-				il.append(InstructionFactory.createStore(type.toBCELType(), lvg.getIndex()));
+				expression.toBytecode(ctx);
+				ctx.cast(expression.resolvedType, local.type);
+				ctx.il.append(InstructionFactory.createStore(local.type, local.index));
 			}
-			
-			return il;
 		}
+		
 	}
 	
 	public static class IfStatement extends Statement
 	{
-		public final Expression expression;
+		public Expression expression;
 		public final List<Statement> statements;
 		
 		public IfStatement(Expression expression, List<Statement> statements)
@@ -204,28 +240,32 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-			if(!exprData.getValue().equals(BasicType.BOOLEAN))
-				throw new CompilationException("Cannot use non-boolean as a conditional\nClass: " + cg.getClassName() + ";Method: " + mg.getName());
+			attributeCondition(expression, scope);
+			for(Statement s : statements)
+				s.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			InstructionList il = ctx.il;
+			expression.toBytecode(ctx);
 			
 			if(statements.size() > 1)
 			{
-				il.append(exprData.getKey());
-				BranchHandle bh = il.append(new IF_ICMPNE(null));
-				il.append(statements.get(0).toBytecode(cg, mg));
+				BranchHandle bh = il.append(new IFEQ(null));
+				statements.get(0).toBytecode(ctx);
 				BranchHandle bh2 = il.append(new GOTO(null));
 				bh.setTarget(il.append(InstructionConstants.NOP));
-				il.append(statements.get(1).toBytecode(cg, mg));
+				statements.get(1).toBytecode(ctx);
 				bh2.setTarget(il.append(InstructionConstants.NOP));
 			}
 			else
 			{
-				il.append(exprData.getKey());
-				BranchHandle bh = il.append(new IF_ICMPNE(null));
-				il.append(statements.get(0).toBytecode(cg, mg));
+				BranchHandle bh = il.append(new IFEQ(null));
+				statements.get(0).toBytecode(ctx);
 				bh.setTarget(il.append(InstructionConstants.NOP));
 			}
 			
@@ -234,15 +274,14 @@ public abstract class Statement
 			//for(LocalVariableGen lvg : lvgs)
 			//	if(lvg.getEnd() == null && il.contains(lvg.getStart()))
 			//		lvg.setEnd(il.getEnd());
-			
-			return il;
 		}
+		
 	}
 	
 	public static class WhileStatement extends Statement
 	{
-		public final Expression expression;
-		public final Statement statement;
+		public Expression expression;
+		public Statement statement;
 		
 		public WhileStatement(Expression expression, Statement statement)
 		{
@@ -251,17 +290,23 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-			if(!exprData.getValue().equals(BasicType.BOOLEAN))
-				throw new CompilationException("Cannot use non-boolean as a conditional\nClass: " + cg.getClassName() + ";Method: " + mg.getName());
+			attributeCondition(expression, scope);
+			statement.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			InstructionList il = ctx.il;
+			InstructionHandle mark = ctx.mark();
+			expression.toBytecode(ctx);
+			InstructionHandle start = ctx.firstAfter(mark);
 			
-			il.append(exprData.getKey());
-			BranchHandle bh = il.append(new IF_ICMPNE(null));
-			il.append(statement.toBytecode(cg, mg));
-			il.append(new GOTO(il.getStart()));
+			BranchHandle bh = il.append(new IFEQ(null));
+			statement.toBytecode(ctx);
+			il.append(new GOTO(start));
 			bh.setTarget(il.append(InstructionConstants.NOP));
 			
 			// shouldn't be needed TODO remove
@@ -269,15 +314,14 @@ public abstract class Statement
 			//for(LocalVariableGen lvg : lvgs)
 			//	if(lvg.getEnd() == null && il.contains(lvg.getStart()))
 			//		lvg.setEnd(il.getEnd());
-			
-			return il;
 		}
+		
 	}
 	
 	public static class DoWhileStatement extends Statement
 	{
-		public final Expression expression;
-		public final Statement statement;
+		public Expression expression;
+		public Statement statement;
 		
 		public DoWhileStatement(Expression expression, Statement statement)
 		{
@@ -291,26 +335,29 @@ public abstract class Statement
 			this.statement = new ExpressionStatement(expressions.get(0));
 		}
 		
+		// the condition is attributed before the body, as it always was, so it cannot see locals the body declares
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprData = expression.toBytecode(cg, mg);
-			if(!exprData.getValue().equals(BasicType.BOOLEAN))
-				throw new CompilationException("Cannot use non-boolean as a conditional\nClass: " + cg.getClassName() + ";Method: " + mg.getName());
-			
-			il.append(statement.toBytecode(cg, mg));
-			il.append(exprData.getKey());
-			il.append(new IF_ICMPEQ(il.getStart()));
+			attributeCondition(expression, scope);
+			statement.attribute(scope);
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			InstructionHandle mark = ctx.mark();
+			statement.toBytecode(ctx);
+			expression.toBytecode(ctx);
+			ctx.il.append(new IFNE(ctx.firstAfter(mark)));
 			
 			// shouldn't be needed TODO remove
 			//List<LocalVariableGen> lvgs = MethodUtils.getLocalVars(mg);
 			//for(LocalVariableGen lvg : lvgs)
 			//	if(lvg.getEnd() == null && il.contains(lvg.getStart()))
 			//		lvg.setEnd(il.getEnd());
-			
-			return il;
 		}
+		
 	}
 	
 	public static class ParallelStatement extends Statement
@@ -327,32 +374,36 @@ public abstract class Statement
 		}
 		
 		@Override
-		public InstructionList toBytecode(ClassGen cg, MethodGen mg)
+		public void attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			@SuppressWarnings("unchecked")
-			Pair<InstructionList, org.apache.bcel.generic.Type>[] rightExprData = rightExprs.stream().map(e -> e.toBytecode(cg, mg)).toArray(Pair[]::new);
-			
-			Arrays.stream(rightExprData).map(Pair::getKey).forEachOrdered(il::append);
-			
+			rightExprs.forEach(e -> e.attribute(scope));
 			for(int i = leftExprs.size() - 1; i >= 0; i--)
 			{
 				Expression expr = leftExprs.get(i);
 				if(expr instanceof Expression.PrimaryExpression.FieldAccessExpression)
-				{
-					il.append(((Expression.PrimaryExpression.FieldAccessExpression) expr).toStoreBytecodeTOS(cg, mg, rightExprData[i].getValue()).getKey());
-				}
+					((Expression.PrimaryExpression.FieldAccessExpression) expr).attributeStore(scope);
 				else if(expr instanceof Expression.PrimaryExpression.ArrayAccessExpression)
-				{
-					il.append(((Expression.PrimaryExpression.ArrayAccessExpression) expr).toStoreBytecodeTOS(cg, mg, rightExprData[i].getValue()).getKey());
-				}
+					expr.attribute(scope);
 				else
-				{
 					throw new CompilationException("Invalid expression type for parallel assignment: " + expr.getClass());
-				}
 			}
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			for(Expression e : rightExprs)
+				e.toBytecode(ctx);
 			
-			return il;
+			for(int i = leftExprs.size() - 1; i >= 0; i--)
+			{
+				Expression expr = leftExprs.get(i);
+				if(expr instanceof Expression.PrimaryExpression.FieldAccessExpression)
+					((Expression.PrimaryExpression.FieldAccessExpression) expr).toStoreBytecodeTOS(ctx, rightExprs.get(i).resolvedType);
+				else
+					((Expression.PrimaryExpression.ArrayAccessExpression) expr).toStoreBytecodeTOS(ctx, rightExprs.get(i).resolvedType);
+			}
 		}
+		
 	}
 }
\ No newline at end of file
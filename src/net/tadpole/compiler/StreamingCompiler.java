@@ -0,0 +1,101 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.SyntheticRepository;
+
+import net.tadpole.compiler.ast.TreeWalk;
+import net.tadpole.compiler.backend.ClassFile;
+
+// compiles with a bounded heap: only the signatures of every module are kept for the whole build,
+// the code of a module is parsed, generated and written in small batches and dropped before the next batch is read
+public class StreamingCompiler
+{
+	// rough heap cost of one byte of source while its module is parsed and generated, used to size the batches
+	private static final long BYTES_PER_SOURCE_BYTE = 128;
+	
+	public static void compile(CompilerOptions options, ModelCache cache) throws Exception
+	{
+		// phase 1: every module is parsed once and reduced to its signatures as soon as it is converted
+		List<Module> signatures = CompilerCore.parseFiles(options.files, options, cache, Module::toSignatures);
+		for(Module module : signatures)
+		{
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		ModuleInterface.registerMissingImports(signatures, options.interfacePath, options.libraryPath);
+		if(options.parseStatistics)
+		{
+			System.out.println(ParseDriver.getStatistics());
+			if(cache != null)
+				System.out.println(cache.getStatistics());
+		}
+		// signatures have no statements, merging parallel assignments does nothing to them
+		Module.analyze(options.threads);
+		
+		// phase 2: classes are written as soon as they are generated, the verifier finds them again through the output directory
+		new File("out").mkdirs();
+		Repository.setRepository(SyntheticRepository.getInstance(new ClassPath(ClassPath.SYSTEM_CLASS_PATH, "out" + File.pathSeparator + options.importClassPath())));
+		List<String> classNames = new ArrayList<String>();
+		for(int start = 0; start < options.files.size();)
+		{
+			int end = start;
+			long estimate = 0;
+			do
+			{
+				estimate += new File(options.files.get(end)).length() * BYTES_PER_SOURCE_BYTE;
+				end++;
+			}
+			while(end < options.files.size() && estimate + new File(options.files.get(end)).length() * BYTES_PER_SOURCE_BYTE <= options.memoryBudget);
+			
+			List<Module> modules = CompilerCore.parseFiles(options.files.subList(start, end), options, cache, UnaryOperator.identity());
+			for(int i = 0; i < modules.size(); i++)
+				generate(signatures.get(start + i), modules.get(i), classNames, options);
+			modules = null;
+			start = end;
+		}
+		if(options.passStatistics)
+			System.out.println(TreeWalk.getStatistics());
+		
+		// phase 3: a module may call into one that was generated after it, so nothing is verified until every class exists
+		// the classes are already written, the verifier finds them in the output directory the same way it finds the ones the build imports
+		boolean[] passed = new ClassVerifier(options.verifier, options.threads, "out" + File.pathSeparator + options.importClassPath()).verify(classNames);
+		// a rejected class is taken back out so the output holds the same classes as a build that verifies before writing
+		for(int i = 0; i < passed.length; i++)
+		{
+			if(!passed[i])
+				Files.deleteIfExists(new File("out", classNames.get(i).replace('.', '$') + ".class").toPath());
+		}
+	}
+	
+	// the registered signature module briefly takes over the code of the full one, then goes back to being a signature
+	private static void generate(Module signature, Module module, List<String> classNames, CompilerOptions options) throws Exception
+	{
+		List<Struct> structs = new ArrayList<Struct>(signature.declaredStructs);
+		List<Function> functions = new ArrayList<Function>(signature.declaredFunctions);
+		List<String> imports = new ArrayList<String>(signature.imports);
+		try
+		{
+			signature.replaceDeclarations(module.declaredStructs, module.imports, module.declaredFunctions, module.statements);
+			Module.absolutifyTypes(signature);
+			Module.mergeParallelAssigns(signature);
+			for(ClassFile classFile : new BytecodeGenerator(Collections.singletonList(signature), options.threads, options.backend).run())
+			{
+				classFile.write(new File("out"));
+				classNames.add(classFile.className);
+			}
+			ModuleInterface.write(signature, new File("out"));
+		}
+		finally
+		{
+			signature.replaceDeclarations(structs, imports, functions, new ArrayList<Statement>());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+package net.tadpole.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import net.tadpole.compiler.ast.Expression;
+import net.tadpole.compiler.util.Triplet;
+import net.tadpole.compiler.util.TypeUtils;
+
+// hash lookups for every module, struct, function and field that has been registered, filled in as registration happens
+// when a name is declared twice the one registered first wins, the same one a scan in registration order would find
+public class SymbolIndex
+{
+	private static final Map<String, Module> modules = new HashMap<String, Module>();
+	private static final Map<Module, Integer> ordinals = new IdentityHashMap<Module, Integer>();
+	// keyed by class name, module$Struct
+	private static final Map<String, Struct> structs = new HashMap<String, Struct>();
+	// keyed by owner#name/arity where the owner is the module name or the class name of the struct
+	private static final Map<String, List<Function>> functions = new HashMap<String, List<Function>>();
+	// keyed by class name#field, holds the position of the attribute since attributes are replaced as their types are resolved
+	private static final Map<String, Integer> fields = new HashMap<String, Integer>();
+	// keyed like functions and then by the signatures of the argument types, dropped whenever the functions under the key change
+	// the only table written after registration, classes are generated in parallel and resolve calls as they go
+	private static final ConcurrentMap<String, ConcurrentMap<String, Optional<Function>>> resolvedFunctions = new ConcurrentHashMap<String, ConcurrentMap<String, Optional<Function>>>();
+	
+	static void addModule(Module module)
+	{
+		ordinals.putIfAbsent(module, ordinals.size());
+		if(modules.putIfAbsent(module.name, module) == null)
+			addFunctions(module.name, module.declaredFunctions);
+	}
+	
+	static void addStructs(List<Struct> newStructs)
+	{
+		for(Struct struct : newStructs)
+		{
+			String className = struct.moduleName + "$" + struct.name;
+			if(structs.putIfAbsent(className, struct) != null)
+				continue;
+			addFunctions(className, struct.functions);
+			for(int i = 0; i < struct.attributes.size(); i++)
+				fields.putIfAbsent(className + "#" + struct.attributes.get(i).second, i);
+		}
+	}
+	
+	// the module itself stays registered, only what it declares is dropped
+	static void removeDeclarations(Module module)
+	{
+		if(modules.get(module.name) == module)
+			removeFunctions(module.name, module.declaredFunctions);
+		for(Struct struct : module.declaredStructs)
+		{
+			String className = struct.moduleName + "$" + struct.name;
+			if(!structs.remove(className, struct))
+				continue;
+			removeFunctions(className, struct.functions);
+			for(Triplet<Type, String, Expression> attribute : struct.attributes)
+				fields.remove(className + "#" + attribute.second);
+		}
+	}
+	
+	static void addDeclarations(Module module)
+	{
+		if(modules.get(module.name) == module)
+			addFunctions(module.name, module.declaredFunctions);
+		addStructs(module.declaredStructs);
+	}
+	
+	static boolean isRegistered(Module module)
+	{
+		return ordinals.containsKey(module);
+	}
+	
+	// position of the module in registration order
+	static int getOrdinal(Module module)
+	{
+		return ordinals.get(module);
+	}
+	
+	public static Module getModule(String name)
+	{
+		return modules.get(name);
+	}
+	
+	public static Struct getStruct(String moduleName, String structName)
+	{
+		return structs.get(moduleName + "$" + structName);
+	}
+	
+	public static Struct getStruct(String className)
+	{
+		return structs.get(className);
+	}
+	
+	// owner is a module name or the class name of a struct, the returned list must not be modified
+	public static List<Function> getFunctions(String owner, String name, int arity)
+	{
+		return functions.getOrDefault(owner + "#" + name + "/" + arity, Collections.emptyList());
+	}
+	
+	// the overload that fits the argument types best, null if none of them does, each call shape is only worked out once
+	public static Function resolveFunction(String owner, String name, List<org.apache.bcel.generic.Type> argTypes)
+	{
+		String key = owner + "#" + name + "/" + argTypes.size();
+		StringBuilder signature = new StringBuilder();
+		for(org.apache.bcel.generic.Type argType : argTypes)
+			signature.append(argType.getSignature());
+		return resolvedFunctions.computeIfAbsent(key, k -> new ConcurrentHashMap<String, Optional<Function>>()).computeIfAbsent(signature.toString(), k -> {
+			List<Function> candidates = new ArrayList<Function>(getFunctions(owner, name, argTypes.size()));
+			candidates.removeIf(f -> !TypeUtils.areMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), argTypes));
+			return candidates.isEmpty() ? Optional.empty() : Optional.of(TypeUtils.findClosestMatch(candidates, argTypes));
+		}).orElse(null);
+	}
+	
+	public static Triplet<Type, String, Expression> getField(String className, String field)
+	{
+		Integer position = fields.get(className + "#" + field);
+		return position != null ? structs.get(className).attributes.get(position) : null;
+	}
+	
+	private static void addFunctions(String owner, List<Function> ownerFunctions)
+	{
+		for(Function function : ownerFunctions)
+		{
+			String key = owner + "#" + function.name + "/" + function.parameters.size();
+			functions.computeIfAbsent(key, k -> new ArrayList<Function>()).add(function);
+			resolvedFunctions.remove(key);
+		}
+	}
+	
+	private static void removeFunctions(String owner, List<Function> ownerFunctions)
+	{
+		for(Function function : ownerFunctions)
+		{
+			String key = owner + "#" + function.name + "/" + function.parameters.size();
+			functions.remove(key);
+			resolvedFunctions.remove(key);
+		}
+	}
+}
\ No newline at end of file
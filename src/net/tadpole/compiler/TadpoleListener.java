@@ -1,103 +1,132 @@
 package net.tadpole.compiler;
 
-import java.util.Stack;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.antlr.v4.runtime.tree.TerminalNode;
-
-import net.tadpole.compiler.ast.ASTNode;
+import javafx.util.Pair;
 import net.tadpole.compiler.ast.Expression;
-import net.tadpole.compiler.ast.FileNode;
-import net.tadpole.compiler.ast.FunctionDecNode;
-import net.tadpole.compiler.ast.ImportNode;
-import net.tadpole.compiler.ast.ParameterListNode;
-import net.tadpole.compiler.ast.ParameterNode;
-import net.tadpole.compiler.ast.StatementNode;
-import net.tadpole.compiler.ast.StructNode;
-import net.tadpole.compiler.ast.VariableDecNode;
 import net.tadpole.compiler.parser.TadpoleBaseListener;
 import net.tadpole.compiler.parser.TadpoleParser;
+import net.tadpole.compiler.util.Triplet;
 
 public class TadpoleListener extends TadpoleBaseListener
 {
-	private Stack<ASTNode> scope = new Stack<ASTNode>();
 	private String moduleName;
+	private List<Struct> structs;
+	private List<String> imports;
+	private List<Function> functions;
+	private List<Statement> statements;
+	
+	// struct currently being declared, structName is null outside of a struct
+	private String structName;
+	private List<Pair<Type, String>> structParameters;
+	private List<Triplet<Type, String, Expression>> structAttributes;
+	private List<Function> structFunctions;
+	
+	// function currently being declared, functionName is null outside of a function
+	private String functionName;
+	private Type functionReturnType;
+	private List<Pair<Type, String>> functionParameters;
+	private Statement functionStatement;
 	
 	public TadpoleListener(String moduleName)
 	{
-		resetRoot(moduleName);
+		reset(moduleName);
 	}
 	
-	public FileNode getRoot()
+	public Module getModule()
 	{
-		if(scope.size() < 1)
-			throw new IllegalStateException("Scope stack has size " + scope.size() + ", this should not happen");
-		ASTNode node;
-		if(!((node = scope.get(0)) instanceof FileNode))
-			throw new IllegalStateException("Top of scope is not an instance of FileNode, this should not happen");
+		if(structName != null || functionName != null)
+			throw new IllegalStateException("Module requested while still inside a declaration, this should not happen");
 		
-		return (FileNode) node;
+		return new Module(moduleName, structs, imports, functions, statements);
 	}
 	
-	public void resetRoot(String moduleName)
+	public void reset(String moduleName)
 	{
-		scope.clear();
-		scope.add(new FileNode());
 		this.moduleName = moduleName;
+		structs = new ArrayList<Struct>();
+		imports = new ArrayList<String>();
+		functions = new ArrayList<Function>();
+		statements = new ArrayList<Statement>();
+		structName = null;
+		functionName = null;
 	}
 	
 	@Override
 	public void enterStructDec(TadpoleParser.StructDecContext context)
 	{
-		scope.push(new StructNode(scope.peek(), moduleName, context.structName().getText()));
+		structName = context.structName().getText();
+		structParameters = new ArrayList<Pair<Type, String>>();
+		structAttributes = new ArrayList<Triplet<Type, String, Expression>>();
+		structFunctions = new ArrayList<Function>();
 	}
 	
 	@Override
 	public void exitStructDec(TadpoleParser.StructDecContext context)
 	{
-		scope.pop();
-	}
-	
-	@Override
-	public void enterParameterList(TadpoleParser.ParameterListContext context)
-	{
-		scope.push(new ParameterListNode(scope.peek()));
-	}
-	
-	@Override
-	public void exitParameterList(TadpoleParser.ParameterListContext context)
-	{
-		scope.pop();
+		structs.add(new Struct(moduleName, structName, structParameters, structAttributes, structFunctions));
+		structName = null;
 	}
 	
 	@Override
 	public void enterParameter(TadpoleParser.ParameterContext context)
 	{
-		new ParameterNode(scope.peek(), new Type(context.type().getText()), context.fieldName().getText());
+		Pair<Type, String> parameter = new Pair<Type, String>(Type.of(context.type().getText()), context.fieldName().getText());
+		if(functionName != null)
+			functionParameters.add(parameter);
+		else if(structName != null)
+			structParameters.add(parameter);
 	}
 	
 	@Override
 	public void enterFunctionDec(TadpoleParser.FunctionDecContext context)
 	{
-		scope.push(new FunctionDecNode(scope.peek(), context.functionName().getText(), new Type(context.type().getText())));
+		functionName = context.functionName().getText();
+		functionReturnType = Type.of(context.type().getText());
+		functionParameters = new ArrayList<Pair<Type, String>>();
+		functionStatement = null;
 	}
 	
 	@Override
 	public void exitFunctionDec(TadpoleParser.FunctionDecContext context)
 	{
-		scope.pop();
+		// functions declared at file level belong to the module class and are static
+		Function function = new Function(functionName, functionParameters, functionReturnType, structName == null, functionStatement);
+		if(structName != null)
+			structFunctions.add(function);
+		else
+			functions.add(function);
+		functionName = null;
 	}
 	
 	@Override
 	public void enterVariableDec(TadpoleParser.VariableDecContext context)
 	{
-		new VariableDecNode(scope.peek(), new Type(context.type().getText()), context.fieldName().getText(), Expression.convert(context.expression()));
+		// local variables are handled by Statement.convert, so only struct attributes reach this
+		Expression expression = context.expression() != null ? Expression.convert(context.expression()) : null;
+		structAttributes.add(new Triplet<Type, String, Expression>(Type.of(context.type().getText()), context.fieldName().getText(), expression));
+		
+		// the initializer was already converted, walking it would only recurse as deep as the expression is nested
+		while(context.getChildCount() > 0)
+			context.removeLastChild();
 	}
 	
 	@Override
 	public void enterStatement(TadpoleParser.StatementContext context)
 	{
-		new StatementNode(scope.peek(), context);
+		Statement statement = Statement.convert(context);
+		if(functionName != null)
+		{
+			if(functionStatement == null)
+				functionStatement = statement;
+		}
+		else
+		{
+			statements.add(statement);
+		}
+		
+		// nested statements were converted along with this one, so don't let the walker visit them
 		while(context.getChildCount() > 0)
 			context.removeLastChild();
 	}
@@ -105,6 +134,6 @@ public class TadpoleListener extends TadpoleBaseListener
 	@Override
 	public void enterImportDec(TadpoleParser.ImportDecContext context)
 	{
-		new ImportNode(scope.peek(), context.Identifier().getText());
+		imports.add(context.Identifier().getText());
 	}
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package net.tadpole.compiler;
 
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.bcel.classfile.Utility;
 
@@ -8,56 +10,91 @@ import org.apache.bcel.generic.BasicType;
 
 import net.tadpole.compiler.exceptions.CompilationException;
 
+// types are interned, there is exactly one instance per name so they can be compared with ==
+// everything that can be derived from the name is worked out once when the instance is created
 public class Type
 {
 	private static final String[] primitives = {"byte", "short", "int", "long", "boolean", "char", "float", "double", "void"};
+	private static final ConcurrentMap<String, Type> types = new ConcurrentHashMap<String, Type>();
 	
 	public final String typeName;
+	private final boolean primitive;
+	private final boolean array;
+	private final boolean primitiveArray;
+	private final boolean absolute;
+	private final String moduleName;
+	private final String simpleName;
+	private Type elementType;
+	private volatile org.apache.bcel.generic.Type bcelType;
+	private volatile org.apache.bcel.generic.Type classType;
+	private volatile boolean classLookedUp;
 	
-	public Type(String typeName)
+	private Type(String typeName)
 	{
 		this.typeName = typeName;
+		primitive = Arrays.asList(primitives).contains(typeName);
+		array = typeName.endsWith("[]");
+		absolute = typeName.contains(".") || typeName.contains("$");
+		int separator = typeName.indexOf(".") != -1 ? typeName.indexOf(".") : typeName.indexOf("$");
+		moduleName = absolute && !primitive ? typeName.substring(0, separator) : null;
+		simpleName = absolute && !primitive ? typeName.substring(separator + 1) : typeName;
+		if(array)
+		{
+			String element = typeName;
+			while(element.endsWith("[]"))
+				element = element.substring(0, element.length() - 2);
+			primitiveArray = Arrays.asList(primitives).contains(element);
+		}
+		else
+		{
+			primitiveArray = false;
+		}
+	}
+	
+	public static Type of(String typeName)
+	{
+		Type type = types.get(typeName);
+		return type != null ? type : types.computeIfAbsent(typeName, Type::new);
 	}
 	
 	public boolean isPrimitive()
 	{
-		return Arrays.stream(primitives).anyMatch(s -> s.equals(typeName));
+		return primitive;
 	}
 	
 	public boolean isArray()
 	{
-		return typeName.endsWith("[]");
+		return array;
 	}
 	
 	public boolean isPrimitiveArray()
 	{
-		return isPrimitiveArray(this);
+		return primitiveArray;
 	}
 	
 	public static boolean isPrimitiveArray(Type t)
 	{
-		if(!t.isArray())
-			return false;
-		while(t.isArray())
-			t = t.getElementType();
-		return t.isPrimitive();
+		return t.primitiveArray;
 	}
 	
 	public Type getElementType()
 	{
-		if(isArray())
-			return new Type(typeName.substring(0, typeName.length() - 2));
-		throw new IllegalStateException("Cannot get element type from non-array");
+		if(!isArray())
+			throw new IllegalStateException("Cannot get element type from non-array");
+		// racing threads can only ever store the same interned instance
+		if(elementType == null)
+			elementType = of(typeName.substring(0, typeName.length() - 2));
+		return elementType;
 	}
 	
 	public boolean isAbsoluteType()
 	{
-		return typeName.contains(".") || typeName.contains("$");
+		return absolute;
 	}
 	
 	public Type getAbsoluteType(String moduleIfRelative)
 	{
-		return isAbsoluteType() ? this : new Type(moduleIfRelative + "." + typeName);
+		return isAbsoluteType() ? this : of(moduleIfRelative + "." + typeName);
 	}
 	
 	public String getModuleName()
@@ -65,35 +102,54 @@ public class Type
 		if(isPrimitive())
 			return null;
 		if(isAbsoluteType())
-			return typeName.indexOf(".") != -1 ? typeName.substring(0, typeName.indexOf(".")) : typeName.substring(0, typeName.indexOf("$"));
+			return moduleName;
 		throw new CompilationException("Cannot get module from non-absolute type");
 	}
 	
 	public String getTypeName()
 	{
-		if(isPrimitive())
-			return typeName;
-		if(isAbsoluteType())
-			return typeName.indexOf(".") != -1 ? typeName.substring(typeName.indexOf(".") + 1) : typeName.substring(typeName.indexOf("$") + 1);
-		return typeName;
+		return simpleName;
 	}
 	
 	public static Type fromStruct(Struct struct)
 	{
-		return new Type(struct.moduleName + "." + struct.name);
+		return of(struct.moduleName + "." + struct.name);
 	}
 	
+	// looked up once, the same name always maps to the same class or signature for the rest of the compilation
 	public org.apache.bcel.generic.Type toBCELType()
+	{
+		org.apache.bcel.generic.Type type = bcelType;
+		if(type == null)
+			bcelType = type = lookUpBCELType();
+		return type;
+	}
+	
+	private org.apache.bcel.generic.Type lookUpBCELType()
 	{
 		if(isPrimitive())
 			return BasicType.getType(Utility.getSignature(typeName));
-		try
+		org.apache.bcel.generic.Type type = getClassType();
+		return type != null ? type : org.apache.bcel.generic.Type.getType(Utility.getSignature(typeName.replace('.', '$')));
+	}
+	
+	// the type of the Java class with this name, null if there is none, a failed lookup is remembered as well
+	public org.apache.bcel.generic.Type getClassType()
+	{
+		if(!classLookedUp)
 		{
-			return org.apache.bcel.generic.Type.getType(Class.forName(typeName));
+			// most names are not Java classes, the index turns those away without loading anything
+			if(ClassPathIndex.isClass(typeName))
+			{
+				try
+				{
+					classType = org.apache.bcel.generic.Type.getType(Class.forName(typeName));
+				}
+				catch(Exception e) {}
+			}
+			classLookedUp = true;
 		}
-		catch(Exception e) {}
-		
-		return org.apache.bcel.generic.Type.getType(Utility.getSignature(typeName.replace('.', '$')));
+		return classType;
 	}
 	
 	@Override
@@ -101,14 +157,4 @@ public class Type
 	{
 		return typeName;
 	}
-	
-	@Override
-	public boolean equals(Object obj)
-	{
-		if(obj != null && obj instanceof Type)
-		{
-			return typeName.equals(((Type) obj).typeName);
-		}
-		return false;
-	}
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.util.ClassPath;
+import org.apache.bcel.util.SyntheticRepository;
+
+import net.tadpole.compiler.backend.ClassFile;
+
+// builds once and then keeps polling the source files, an edited file only has the declarations the edit touched reparsed
+// and only its own module and the modules importing it are generated, verified and written again
+public class WatchCompiler
+{
+	private static final long POLL_MILLIS = 200;
+	
+	public static void watch(CompilerOptions options) throws Exception
+	{
+		List<String> files = options.files;
+		IncrementalParser[] parsers = new IncrementalParser[files.size()];
+		long[] stamps = new long[files.size()];
+		List<Module> modules = new ArrayList<Module>();
+		for(int i = 0; i < files.size(); i++)
+		{
+			parsers[i] = new IncrementalParser(CompilerCore.moduleName(files.get(i)));
+			stamps[i] = stamp(files.get(i));
+			modules.add(parsers[i].update(files.get(i)));
+		}
+		for(Module module : modules)
+		{
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		ModuleInterface.registerMissingImports(modules, options.interfacePath, options.libraryPath);
+		// modules that are not rebuilt are found through the output directory like the ones the build imports
+		String classPath = "out" + File.pathSeparator + options.importClassPath();
+		Repository.setRepository(SyntheticRepository.getInstance(new ClassPath(ClassPath.SYSTEM_CLASS_PATH, classPath)));
+		Module.analyze(options.threads);
+		write(modules, options, classPath);
+		System.out.println("Watching " + files.size() + " files for changes");
+		
+		while(true)
+		{
+			Thread.sleep(POLL_MILLIS);
+			Set<Module> changed = new HashSet<Module>();
+			for(int i = 0; i < files.size(); i++)
+			{
+				long stamp = stamp(files.get(i));
+				if(stamp == stamps[i])
+					continue;
+				stamps[i] = stamp;
+				try
+				{
+					changed.add(parsers[i].update(files.get(i)));
+					System.out.println(parsers[i].getStatistics());
+				}
+				catch(Exception e)
+				{
+					// the module keeps what it had before the edit and is tried again on the next change
+					System.err.println("Failed to reparse " + files.get(i) + ": " + e);
+				}
+			}
+			if(changed.isEmpty())
+				continue;
+			
+			// the classes of an importing module refer to the signatures of what it imports, so they are generated again as well
+			List<Module> rebuilt = modules.stream().filter(m -> changed.contains(m) || m.imports.stream().map(SymbolIndex::getModule).anyMatch(changed::contains)).collect(Collectors.toList());
+			try
+			{
+				// a failure leaves the classes in the output directory as the last successful rebuild wrote them
+				Module.reanalyze(rebuilt);
+				write(rebuilt, options, classPath);
+				System.out.println("Rebuilt " + rebuilt.stream().map(m -> m.name).collect(Collectors.joining(", ")));
+			}
+			catch(RuntimeException e)
+			{
+				System.err.println("Failed to rebuild " + rebuilt.stream().map(m -> m.name).collect(Collectors.joining(", ")) + ": " + e);
+			}
+		}
+	}
+	
+	// every class is written once, after it passed, along with the interface of its module
+	private static void write(List<Module> modules, CompilerOptions options, String classPath) throws Exception
+	{
+		ClassFile[] classFiles = new BytecodeGenerator(modules, options.threads, options.backend).run();
+		boolean[] passed = new ClassVerifier(options.verifier, options.threads, classPath).verify(classFiles);
+		File out = new File("out");
+		out.mkdirs();
+		for(int i = 0; i < classFiles.length; i++)
+			if(passed[i])
+				classFiles[i].write(out);
+		for(Module module : modules)
+			ModuleInterface.write(module, out);
+	}
+	
+	// an edit that lands within the resolution of the file system clock still changes the stamp if it changes the length
+	private static long stamp(String fileName)
+	{
+		File file = new File(fileName);
+		return file.lastModified() * 31 + file.length();
+	}
+}
\ No newline at end of file
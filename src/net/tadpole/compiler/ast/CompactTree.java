@@ -0,0 +1,535 @@
+package net.tadpole.compiler.ast;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.tadpole.compiler.LocalVariable;
+import net.tadpole.compiler.Statement;
+import net.tadpole.compiler.Type;
+import net.tadpole.compiler.ast.Expression.PrimaryExpression;
+import net.tadpole.compiler.ast.LiteralExpression.*;
+import net.tadpole.compiler.exceptions.CompilationException;
+
+// a statement and everything below it stored in parallel primitive arrays instead of one object per node
+// nodes are ints, the children of a node are children[firstChild, firstChild + childCount) and -1 stands for an absent child
+// names, type names and string constants are NameTable ids
+public class CompactTree
+{
+	public static final byte BLOCK = 0;
+	public static final byte EXPRESSION_STATEMENT = 1;
+	public static final byte RECALL = 2;
+	public static final byte RETURN = 3;
+	public static final byte LOCAL_VAR = 4;
+	public static final byte IF = 5;
+	public static final byte WHILE = 6;
+	public static final byte DO_WHILE = 7;
+	public static final byte PARALLEL = 8;
+	public static final byte ARRAY_ACCESS = 9;
+	public static final byte CAST = 10;
+	public static final byte ARRAY_INSTANTIATION = 11;
+	public static final byte INSTANTIATION = 12;
+	public static final byte WRAP = 13;
+	public static final byte FIELD_ACCESS = 14;
+	public static final byte FUNCTION_CALL = 15;
+	public static final byte UNARY = 16;
+	public static final byte BINARY = 17;
+	public static final byte INT_LITERAL = 18;
+	public static final byte FLOAT_LITERAL = 19;
+	public static final byte BOOLEAN_LITERAL = 20;
+	public static final byte CHARACTER_LITERAL = 21;
+	public static final byte STRING_LITERAL = 22;
+	public static final byte NONE_LITERAL = 23;
+	public static final byte ARRAY_LITERAL = 24;
+	public static final byte NAME = 25;
+	
+	private byte[] kinds = new byte[16];
+	// wide literals, postfix operators, boolean values and array dimension counts
+	private byte[] flags = new byte[16];
+	// name ids, operator ordinals, characters and indices into constants
+	private int[] values = new int[16];
+	private int[] firstChildren = new int[16];
+	private int[] childCounts = new int[16];
+	private int size = 0;
+	private int[] children = new int[16];
+	private int childrenSize = 0;
+	private long[] constants = new long[4];
+	private int constantsSize = 0;
+	private int root;
+	
+	public CompactTree(Statement statement)
+	{
+		root = add(statement);
+		trim();
+	}
+	
+	// the root of such a tree is decoded with toExpression(root())
+	public CompactTree(Expression expression)
+	{
+		root = add(expression);
+		trim();
+	}
+	
+	private CompactTree()
+	{
+	}
+	
+	public int root()
+	{
+		return root;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public byte kind(int node)
+	{
+		return kinds[node];
+	}
+	
+	public int childCount(int node)
+	{
+		return childCounts[node];
+	}
+	
+	public int child(int node, int index)
+	{
+		if(index >= childCounts[node])
+			throw new IndexOutOfBoundsException("Node " + node + " has " + childCounts[node] + " children, requested " + index);
+		return children[firstChildren[node] + index];
+	}
+	
+	public int value(int node)
+	{
+		return values[node];
+	}
+	
+	public int flags(int node)
+	{
+		return flags[node] & 0xFF;
+	}
+	
+	public String name(int node)
+	{
+		return NameTable.name(values[node]);
+	}
+	
+	public Type type(int node)
+	{
+		return Type.of(name(node));
+	}
+	
+	public Statement toStatement()
+	{
+		return toStatement(root);
+	}
+	
+	public Statement toStatement(int node)
+	{
+		switch(kinds[node])
+		{
+		case BLOCK:
+			return new Statement.BlockStatement(toStatements(node, 0));
+		case EXPRESSION_STATEMENT:
+			return new Statement.ExpressionStatement(toExpression(child(node, 0)));
+		case RECALL:
+			return Statement.RecallStatement.INSTANCE;
+		case RETURN:
+			return new Statement.ReturnStatement(toExpression(child(node, 0)));
+		case LOCAL_VAR:
+			return new Statement.LocalVarDecStatement(new LocalVariable(type(node), name(child(node, 0)), toExpression(child(node, 1))));
+		case IF:
+			return new Statement.IfStatement(toExpression(child(node, 0)), toStatements(node, 1));
+		case WHILE:
+			return new Statement.WhileStatement(toExpression(child(node, 0)), toStatement(child(node, 1)));
+		case DO_WHILE:
+			return new Statement.DoWhileStatement(toExpression(child(node, 0)), toStatement(child(node, 1)));
+		case PARALLEL:
+			int half = childCount(node) / 2;
+			List<Expression> leftExprs = new ArrayList<Expression>(half);
+			List<Expression> rightExprs = new ArrayList<Expression>(half);
+			for(int i = 0; i < half; i++)
+			{
+				leftExprs.add(toExpression(child(node, i)));
+				rightExprs.add(toExpression(child(node, half + i)));
+			}
+			return new Statement.ParallelStatement(leftExprs, rightExprs);
+		default:
+			throw new IllegalStateException("Node " + node + " of kind " + kinds[node] + " is not a statement");
+		}
+	}
+	
+	public Expression toExpression(int node)
+	{
+		if(node == -1)
+			return null;
+		switch(kinds[node])
+		{
+		case ARRAY_ACCESS:
+			return new PrimaryExpression.ArrayAccessExpression((PrimaryExpression) toExpression(child(node, 0)), toExpression(child(node, 1)));
+		case CAST:
+			return new PrimaryExpression.CastExpression(type(node), toExpression(child(node, 0)));
+		case ARRAY_INSTANTIATION:
+			return new PrimaryExpression.ArrayInstantiationExpression(type(node), flags(node), toExpressions(node, 0));
+		case INSTANTIATION:
+			return new PrimaryExpression.InstantiationExpression(type(node), toExpressions(node, 0));
+		case WRAP:
+			return new PrimaryExpression.WrapExpression(toExpression(child(node, 0)));
+		case FIELD_ACCESS:
+			return new PrimaryExpression.FieldAccessExpression((PrimaryExpression) toExpression(child(node, 0)), name(node));
+		case FUNCTION_CALL:
+			return new PrimaryExpression.FunctionCallExpression((PrimaryExpression) toExpression(child(node, 0)), name(node), toExpressions(node, 1));
+		case UNARY:
+			return new Expression.UnaryExpression(UnaryOp.values()[values[node]], toExpression(child(node, 0)), flags(node) != 0);
+		case BINARY:
+			// the left spine of a chain is decoded in a loop so long chains do not grow the stack
+			List<Integer> chain = new ArrayList<Integer>();
+			int left = node;
+			while(kinds[left] == BINARY)
+			{
+				chain.add(left);
+				left = child(left, 0);
+			}
+			Expression expression = toExpression(left);
+			for(int i = chain.size() - 1; i >= 0; i--)
+				expression = new Expression.BinaryExpression(expression, BinaryOp.values()[values[chain.get(i)]], toExpression(child(chain.get(i), 1)));
+			return expression;
+		case INT_LITERAL:
+			return new IntLiteral(constants[values[node]], flags(node) != 0);
+		case FLOAT_LITERAL:
+			return new FloatLiteral(Double.longBitsToDouble(constants[values[node]]), flags(node) != 0);
+		case BOOLEAN_LITERAL:
+			return BooleanLiteral.of(flags(node) != 0);
+		case CHARACTER_LITERAL:
+			return new CharacterLiteral((char) values[node]);
+		case STRING_LITERAL:
+			return StringLiteral.of(name(node));
+		case NONE_LITERAL:
+			return NoneLiteral.NONE;
+		case ARRAY_LITERAL:
+			return new ArrayLiteral(toExpressions(node, 0));
+		default:
+			throw new IllegalStateException("Node " + node + " of kind " + kinds[node] + " is not an expression");
+		}
+	}
+	
+	// names are written as strings since NameTable ids are only valid within one compiler run
+	public void write(DataOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		out.writeInt(root);
+		for(int node = 0; node < size; node++)
+		{
+			out.writeByte(kinds[node]);
+			out.writeByte(flags[node]);
+			if(hasName(kinds[node]))
+				writeString(out, NameTable.name(values[node]));
+			else
+				out.writeInt(values[node]);
+			out.writeInt(childCounts[node]);
+		}
+		out.writeInt(childrenSize);
+		for(int i = 0; i < childrenSize; i++)
+			out.writeInt(children[i]);
+		out.writeInt(constantsSize);
+		for(int i = 0; i < constantsSize; i++)
+			out.writeLong(constants[i]);
+	}
+	
+	public static CompactTree read(ByteBuffer in)
+	{
+		CompactTree tree = new CompactTree();
+		tree.size = in.getInt();
+		tree.root = in.getInt();
+		tree.kinds = new byte[tree.size];
+		tree.flags = new byte[tree.size];
+		tree.values = new int[tree.size];
+		tree.firstChildren = new int[tree.size];
+		tree.childCounts = new int[tree.size];
+		int firstChild = 0;
+		for(int node = 0; node < tree.size; node++)
+		{
+			tree.kinds[node] = in.get();
+			tree.flags[node] = in.get();
+			tree.values[node] = hasName(tree.kinds[node]) ? NameTable.intern(readString(in)) : in.getInt();
+			tree.childCounts[node] = in.getInt();
+			tree.firstChildren[node] = firstChild;
+			firstChild += tree.childCounts[node];
+		}
+		tree.childrenSize = in.getInt();
+		if(tree.childrenSize != firstChild)
+			throw new IllegalStateException("Child count mismatch in serialized tree");
+		tree.children = new int[tree.childrenSize];
+		for(int i = 0; i < tree.childrenSize; i++)
+			tree.children[i] = in.getInt();
+		tree.constantsSize = in.getInt();
+		tree.constants = new long[tree.constantsSize];
+		for(int i = 0; i < tree.constantsSize; i++)
+			tree.constants[i] = in.getLong();
+		return tree;
+	}
+	
+	public static void writeString(DataOutputStream out, String string) throws IOException
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	public static String readString(ByteBuffer in)
+	{
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static boolean hasName(byte kind)
+	{
+		switch(kind)
+		{
+		case LOCAL_VAR:
+		case NAME:
+		case CAST:
+		case ARRAY_INSTANTIATION:
+		case INSTANTIATION:
+		case FIELD_ACCESS:
+		case FUNCTION_CALL:
+		case STRING_LITERAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private List<Statement> toStatements(int node, int from)
+	{
+		List<Statement> statements = new ArrayList<Statement>(childCount(node) - from);
+		for(int i = from; i < childCount(node); i++)
+			statements.add(toStatement(child(node, i)));
+		return statements;
+	}
+	
+	private Expression[] toExpressions(int node, int from)
+	{
+		Expression[] expressions = new Expression[childCount(node) - from];
+		for(int i = from; i < childCount(node); i++)
+			expressions[i - from] = toExpression(child(node, i));
+		return expressions;
+	}
+	
+	private int add(Statement statement)
+	{
+		if(statement instanceof Statement.BlockStatement)
+		{
+			return add(BLOCK, 0, 0, addStatements(((Statement.BlockStatement) statement).statements));
+		}
+		else if(statement instanceof Statement.ExpressionStatement)
+		{
+			return add(EXPRESSION_STATEMENT, 0, 0, add(((Statement.ExpressionStatement) statement).expression));
+		}
+		else if(statement instanceof Statement.RecallStatement)
+		{
+			return add(RECALL, 0, 0);
+		}
+		else if(statement instanceof Statement.ReturnStatement)
+		{
+			return add(RETURN, 0, 0, add(((Statement.ReturnStatement) statement).expression));
+		}
+		else if(statement instanceof Statement.LocalVarDecStatement)
+		{
+			Statement.LocalVarDecStatement lvds = (Statement.LocalVarDecStatement) statement;
+			return add(LOCAL_VAR, 0, NameTable.intern(lvds.type.typeName), add(NAME, 0, NameTable.intern(lvds.name)), add(lvds.expression));
+		}
+		else if(statement instanceof Statement.IfStatement)
+		{
+			Statement.IfStatement is = (Statement.IfStatement) statement;
+			int[] nodes = addStatements(is.statements);
+			int[] withCondition = new int[nodes.length + 1];
+			withCondition[0] = add(is.expression);
+			System.arraycopy(nodes, 0, withCondition, 1, nodes.length);
+			return add(IF, 0, 0, withCondition);
+		}
+		else if(statement instanceof Statement.WhileStatement)
+		{
+			Statement.WhileStatement ws = (Statement.WhileStatement) statement;
+			return add(WHILE, 0, 0, add(ws.expression), add(ws.statement));
+		}
+		else if(statement instanceof Statement.DoWhileStatement)
+		{
+			Statement.DoWhileStatement dws = (Statement.DoWhileStatement) statement;
+			return add(DO_WHILE, 0, 0, add(dws.expression), add(dws.statement));
+		}
+		else if(statement instanceof Statement.ParallelStatement)
+		{
+			Statement.ParallelStatement ps = (Statement.ParallelStatement) statement;
+			List<Expression> expressions = new ArrayList<Expression>(ps.leftExprs);
+			expressions.addAll(ps.rightExprs);
+			return add(PARALLEL, 0, 0, addExpressions(expressions.toArray(new Expression[expressions.size()])));
+		}
+		throw new CompilationException("Cannot compact statement of type " + statement.getClass());
+	}
+	
+	private int add(Expression expression)
+	{
+		if(expression == null)
+			return -1;
+		
+		if(expression instanceof PrimaryExpression.ArrayAccessExpression)
+		{
+			PrimaryExpression.ArrayAccessExpression aae = (PrimaryExpression.ArrayAccessExpression) expression;
+			return add(ARRAY_ACCESS, 0, 0, add(aae.expression), add(aae.indexExpression));
+		}
+		else if(expression instanceof PrimaryExpression.CastExpression)
+		{
+			PrimaryExpression.CastExpression ce = (PrimaryExpression.CastExpression) expression;
+			return add(CAST, 0, NameTable.intern(ce.targetType.typeName), add(ce.expression));
+		}
+		else if(expression instanceof PrimaryExpression.ArrayInstantiationExpression)
+		{
+			PrimaryExpression.ArrayInstantiationExpression aie = (PrimaryExpression.ArrayInstantiationExpression) expression;
+			if(aie.numDimensions > 255)
+				throw new CompilationException("Array type has more than 255 dimensions: " + aie.structType);
+			return add(ARRAY_INSTANTIATION, aie.numDimensions, NameTable.intern(aie.structType.typeName), addExpressions(aie.dimensionSizes));
+		}
+		else if(expression instanceof PrimaryExpression.InstantiationExpression)
+		{
+			PrimaryExpression.InstantiationExpression ie = (PrimaryExpression.InstantiationExpression) expression;
+			return add(INSTANTIATION, 0, NameTable.intern(ie.structType.typeName), addExpressions(ie.parameters));
+		}
+		else if(expression instanceof PrimaryExpression.WrapExpression)
+		{
+			return add(WRAP, 0, 0, add(((PrimaryExpression.WrapExpression) expression).expression));
+		}
+		else if(expression instanceof PrimaryExpression.FieldAccessExpression)
+		{
+			PrimaryExpression.FieldAccessExpression fae = (PrimaryExpression.FieldAccessExpression) expression;
+			return add(FIELD_ACCESS, 0, NameTable.intern(fae.field), add(fae.expression));
+		}
+		else if(expression instanceof PrimaryExpression.FunctionCallExpression)
+		{
+			PrimaryExpression.FunctionCallExpression fce = (PrimaryExpression.FunctionCallExpression) expression;
+			int[] nodes = new int[fce.parameters.length + 1];
+			nodes[0] = add(fce.callingOn);
+			for(int i = 0; i < fce.parameters.length; i++)
+				nodes[i + 1] = add(fce.parameters[i]);
+			return add(FUNCTION_CALL, 0, NameTable.intern(fce.function), nodes);
+		}
+		else if(expression instanceof Expression.UnaryExpression)
+		{
+			Expression.UnaryExpression ue = (Expression.UnaryExpression) expression;
+			return add(UNARY, ue.postfix ? 1 : 0, ue.op.ordinal(), add(ue.expr));
+		}
+		else if(expression instanceof Expression.BinaryExpression)
+		{
+			// the left spine of a chain is encoded in a loop so long chains do not grow the stack
+			List<Expression.BinaryExpression> chain = new ArrayList<Expression.BinaryExpression>();
+			Expression left = expression;
+			while(left instanceof Expression.BinaryExpression)
+			{
+				chain.add((Expression.BinaryExpression) left);
+				left = ((Expression.BinaryExpression) left).exprLeft;
+			}
+			int node = add(left);
+			for(int i = chain.size() - 1; i >= 0; i--)
+				node = add(BINARY, 0, chain.get(i).op.ordinal(), node, add(chain.get(i).exprRight));
+			return node;
+		}
+		else if(expression instanceof IntLiteral)
+		{
+			IntLiteral il = (IntLiteral) expression;
+			return add(INT_LITERAL, il.wide ? 1 : 0, addConstant(il.value));
+		}
+		else if(expression instanceof FloatLiteral)
+		{
+			FloatLiteral fl = (FloatLiteral) expression;
+			return add(FLOAT_LITERAL, fl.wide ? 1 : 0, addConstant(Double.doubleToRawLongBits(fl.value)));
+		}
+		else if(expression instanceof BooleanLiteral)
+		{
+			return add(BOOLEAN_LITERAL, ((BooleanLiteral) expression).value ? 1 : 0, 0);
+		}
+		else if(expression instanceof CharacterLiteral)
+		{
+			return add(CHARACTER_LITERAL, 0, ((CharacterLiteral) expression).value);
+		}
+		else if(expression instanceof StringLiteral)
+		{
+			return add(STRING_LITERAL, 0, NameTable.intern(((StringLiteral) expression).value));
+		}
+		else if(expression instanceof NoneLiteral)
+		{
+			return add(NONE_LITERAL, 0, 0);
+		}
+		else if(expression instanceof ArrayLiteral)
+		{
+			return add(ARRAY_LITERAL, 0, 0, addExpressions(((ArrayLiteral) expression).expressions));
+		}
+		throw new CompilationException("Cannot compact expression of type " + expression.getClass());
+	}
+	
+	private int[] addStatements(List<Statement> statements)
+	{
+		int[] nodes = new int[statements.size()];
+		for(int i = 0; i < nodes.length; i++)
+			nodes[i] = add(statements.get(i));
+		return nodes;
+	}
+	
+	private int[] addExpressions(Expression[] expressions)
+	{
+		int[] nodes = new int[expressions.length];
+		for(int i = 0; i < nodes.length; i++)
+			nodes[i] = add(expressions[i]);
+		return nodes;
+	}
+	
+	// children are added before their parent, so a node's child range is filled in one go when the node itself is added
+	private int add(byte kind, int flag, int value, int... nodeChildren)
+	{
+		if(size == kinds.length)
+		{
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			values = Arrays.copyOf(values, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+		}
+		if(childrenSize + nodeChildren.length > children.length)
+			children = Arrays.copyOf(children, Math.max(children.length * 2, childrenSize + nodeChildren.length));
+		
+		kinds[size] = kind;
+		flags[size] = (byte) flag;
+		values[size] = value;
+		firstChildren[size] = childrenSize;
+		childCounts[size] = nodeChildren.length;
+		System.arraycopy(nodeChildren, 0, children, childrenSize, nodeChildren.length);
+		childrenSize += nodeChildren.length;
+		return size++;
+	}
+	
+	private int addConstant(long constant)
+	{
+		if(constantsSize == constants.length)
+			constants = Arrays.copyOf(constants, constantsSize * 2);
+		constants[constantsSize] = constant;
+		return constantsSize++;
+	}
+	
+	private void trim()
+	{
+		kinds = Arrays.copyOf(kinds, size);
+		flags = Arrays.copyOf(flags, size);
+		values = Arrays.copyOf(values, size);
+		firstChildren = Arrays.copyOf(firstChildren, size);
+		childCounts = Arrays.copyOf(childCounts, size);
+		children = Arrays.copyOf(children, childrenSize);
+		constants = Arrays.copyOf(constants, constantsSize);
+	}
+}
\ No newline at end of file
@@ -1,21 +1,19 @@
 package net.tadpole.compiler.ast;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.apache.bcel.Constants;
-import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.Field;
-import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.classfile.Utility;
-import org.apache.bcel.generic.ARRAYLENGTH;
 import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.BasicType;
 import org.apache.bcel.generic.BranchHandle;
-import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.BranchInstruction;
 import org.apache.bcel.generic.GOTO;
 import org.apache.bcel.generic.IFEQ;
 import org.apache.bcel.generic.IFNE;
@@ -25,22 +23,22 @@ import org.apache.bcel.generic.IF_ICMPGE;
 import org.apache.bcel.generic.IF_ICMPGT;
 import org.apache.bcel.generic.IF_ICMPLE;
 import org.apache.bcel.generic.IF_ICMPLT;
+import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionList;
-import org.apache.bcel.generic.LocalVariableGen;
-import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.ReferenceType;
 
-import javafx.util.Pair;
+import net.tadpole.compiler.ClassPathIndex;
 import net.tadpole.compiler.Function;
-import net.tadpole.compiler.Module;
 import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.SymbolIndex;
 import net.tadpole.compiler.Type;
 import net.tadpole.compiler.exceptions.CompilationException;
 import net.tadpole.compiler.parser.TadpoleParser;
-import net.tadpole.compiler.util.MethodUtils;
+import net.tadpole.compiler.util.EmissionContext;
+import net.tadpole.compiler.util.MethodScope;
 import net.tadpole.compiler.util.StringUtils;
 import net.tadpole.compiler.util.Triplet;
 import net.tadpole.compiler.util.TypeUtils;
@@ -49,12 +47,18 @@ public abstract class Expression
 {
 	public static Expression convert(TadpoleParser.ExpressionContext context)
 	{
-		if(context.primary() != null)
-			return convertPrimary(context.primary());
-		if(context.unaryExpression() != null)
-			return convertUnary(context.unaryExpression());
+		// the left operands of a chain like a + b + c are nested contexts, they are followed in a loop so the chain length does not grow the stack
+		List<TadpoleParser.ExpressionContext> chain = new ArrayList<TadpoleParser.ExpressionContext>();
+		while(context.primary() == null && context.unaryExpression() == null)
+		{
+			chain.add(context);
+			context = context.expression(0);
+		}
 		
-		return convertBinary(context.expression(0), BinaryOp.resolve(context.getChild(1).getText()), context.expression(1));
+		Expression expression = context.primary() != null ? convertPrimary(context.primary()) : convertUnary(context.unaryExpression());
+		for(int i = chain.size() - 1; i >= 0; i--)
+			expression = new BinaryExpression(expression, BinaryOp.resolve(chain.get(i).getChild(1).getText()), Expression.convert(chain.get(i).expression(1)));
+		return expression;
 	}
 	
 	public static PrimaryExpression convertPrimary(TadpoleParser.PrimaryContext context)
@@ -66,11 +70,11 @@ public abstract class Expression
 		else if(context.dimension() != null && context.dimension().size() == 1 && context.primary() != null)
 			return new PrimaryExpression.ArrayAccessExpression(convertPrimary(context.primary()), context.dimension(0));
 		else if(context.type() != null && context.dimension() != null && context.dimension().size() > 0)
-			return new PrimaryExpression.ArrayInstantiationExpression(new Type(context.type().getText()), context.dimension(), context.emptyDimension().size());
+			return new PrimaryExpression.ArrayInstantiationExpression(Type.of(context.type().getText()), context.dimension(), context.emptyDimension().size());
 		else if(context.type() != null)
-			return new PrimaryExpression.CastExpression(new Type(context.type().getText()), context.primary() != null ? convertPrimary(context.primary()) : convertUnary(context.unaryExpression()));
+			return new PrimaryExpression.CastExpression(Type.of(context.type().getText()), context.primary() != null ? convertPrimary(context.primary()) : convertUnary(context.unaryExpression()));
 		else if(context.objType() != null)
-			return new PrimaryExpression.InstantiationExpression(new Type(context.objType().getText()), context.expressionList());
+			return new PrimaryExpression.InstantiationExpression(Type.of(context.objType().getText()), context.expressionList());
 		else if(context.expression() != null)
 			return new PrimaryExpression.WrapExpression(Expression.convert(context.expression()));
 		else if(context.fieldName() != null)
@@ -92,7 +96,17 @@ public abstract class Expression
 		return new BinaryExpression(Expression.convert(exprContextLeft), op, Expression.convert(exprContextRight));
 	}
 	
-	public abstract Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg);
+	// filled in by attribute(), the type of the value left on the stack
+	public org.apache.bcel.generic.Type resolvedType;
+	// filled in by attribute(), set when the expression only names a class, module or package and generates no code
+	public boolean namesType;
+	
+	// resolves the type of every node below and including this one along with the overloads, fields and locals they refer to
+	// every method body is attributed before any code of the build is generated, code generation only reads what was stored here
+	public abstract org.apache.bcel.generic.Type attribute(MethodScope scope);
+	
+	// appends the code leaving a value of resolvedType on the stack to the method being generated
+	public abstract void toBytecode(EmissionContext ctx);
 	
 	public abstract static class PrimaryExpression extends Expression
 	{
@@ -132,82 +146,55 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
-				InstructionList il = new InstructionList();
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-				Pair<InstructionList, org.apache.bcel.generic.Type> indexExprBytecode = indexExpression.toBytecode(cg, mg);
+				org.apache.bcel.generic.Type exprType = expression.attribute(scope);
+				org.apache.bcel.generic.Type indexType = indexExpression.attribute(scope);
 				
-				if(!(exprBytecode.getValue() instanceof ArrayType))
+				if(!(exprType instanceof ArrayType))
 					throw new CompilationException("Cannot access non-array as an array");
-				ArrayType exprType = (ArrayType) exprBytecode.getValue();
-				
-				org.apache.bcel.generic.Type indexType = indexExprBytecode.getValue();
 				if(!(indexType.normalizeForStackOrLocal().equals(BasicType.INT) && !indexType.equals(BasicType.BOOLEAN)))
 					throw new CompilationException("Array cannot be indexed with a non-integer");
 				
-				il.append(exprBytecode.getKey());
-				il.append(indexExprBytecode.getKey());
-				il.append(InstructionFactory.createArrayLoad(exprType.getElementType()));
-				
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, exprType.getElementType());
+				return resolvedType = ((ArrayType) exprType).getElementType();
 			}
 			
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toStoreBytecode(ClassGen cg, MethodGen mg, Expression valueToStore)
+			@Override
+			public void toBytecode(EmissionContext ctx)
 			{
-				InstructionList il = new InstructionList();
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-				Pair<InstructionList, org.apache.bcel.generic.Type> indexExprBytecode = indexExpression.toBytecode(cg, mg);
-				
-				if(!(exprBytecode.getValue() instanceof ArrayType))
-					throw new CompilationException("Cannot access non-array as an array");
-				ArrayType exprType = (ArrayType) exprBytecode.getValue();
-				
-				org.apache.bcel.generic.Type indexType = indexExprBytecode.getValue();
-				if(!(indexType.normalizeForStackOrLocal().equals(BasicType.INT) && !indexType.equals(BasicType.BOOLEAN)))
-					throw new CompilationException("Array cannot be indexed with a non-integer");
-				
-				il.append(exprBytecode.getKey());
-				il.append(indexExprBytecode.getKey());
-				
-				Pair<InstructionList, org.apache.bcel.generic.Type> valueToStoreBytecode = valueToStore.toBytecode(cg, mg);
-				il.append(valueToStoreBytecode.getKey());
+				expression.toBytecode(ctx);
+				indexExpression.toBytecode(ctx);
+				ctx.il.append(InstructionFactory.createArrayLoad(resolvedType));
+			}
+			
+			// leaves the stored value on the stack
+			public void toStoreBytecode(EmissionContext ctx, Expression valueToStore)
+			{
+				expression.toBytecode(ctx);
+				indexExpression.toBytecode(ctx);
+				valueToStore.toBytecode(ctx);
 				
-				if(exprType.getElementType().getSize() == 2)
-					il.append(InstructionConstants.DUP2_X2);
+				if(resolvedType.getSize() == 2)
+					ctx.il.append(InstructionConstants.DUP2_X2);
 				else // it will probably never be 0
-					il.append(InstructionConstants.DUP_X2);
-				
-				if(!valueToStoreBytecode.getValue().equals(exprType.getElementType()))
-					il.append(TypeUtils.cast(valueToStoreBytecode.getValue(), exprType.getElementType(), new InstructionFactory(cg)));
-				
-				il.append(InstructionFactory.createArrayStore(exprType.getElementType()));
+					ctx.il.append(InstructionConstants.DUP_X2);
 				
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, valueToStoreBytecode.getValue());
+				ctx.cast(valueToStore.resolvedType, resolvedType);
+				ctx.il.append(InstructionFactory.createArrayStore(resolvedType));
 			}
 			
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toStoreBytecodeTOS(ClassGen cg, MethodGen mg, org.apache.bcel.generic.Type tosType)
+			// stores the value on top of the stack, which was pushed before the array and the index
+			public void toStoreBytecodeTOS(EmissionContext ctx, org.apache.bcel.generic.Type tosType)
 			{
-				InstructionList il = new InstructionList();
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-				Pair<InstructionList, org.apache.bcel.generic.Type> indexExprBytecode = indexExpression.toBytecode(cg, mg);
-				
-				if(!(exprBytecode.getValue() instanceof ArrayType))
-					throw new CompilationException("Cannot access non-array as an array");
-				ArrayType exprType = (ArrayType) exprBytecode.getValue();
-				
-				org.apache.bcel.generic.Type indexType = indexExprBytecode.getValue();
-				if(!(indexType.normalizeForStackOrLocal().equals(BasicType.INT) && !indexType.equals(BasicType.BOOLEAN)))
-					throw new CompilationException("Array cannot be indexed with a non-integer");
-				
-				il.append(exprBytecode.getKey());
+				InstructionList il = ctx.il;
+				expression.toBytecode(ctx);
 				if(tosType.getSize() == 2)
 				{
 					il.append(InstructionConstants.DUP_X2);
 					il.append(InstructionConstants.POP);
 					
-					il.append(indexExprBytecode.getKey());
-					if(indexExprBytecode.getValue().getSize() == 2)
+					indexExpression.toBytecode(ctx);
+					if(indexExpression.resolvedType.getSize() == 2)
 					{
 						il.append(InstructionConstants.DUP2_X2);
 						il.append(InstructionConstants.POP2);
@@ -223,8 +210,8 @@ public abstract class Expression
 					il.append(InstructionConstants.DUP_X1);
 					il.append(InstructionConstants.POP);
 					
-					il.append(indexExprBytecode.getKey());
-					if(indexExprBytecode.getValue().getSize() == 2)
+					indexExpression.toBytecode(ctx);
+					if(indexExpression.resolvedType.getSize() == 2)
 					{
 						il.append(InstructionConstants.DUP2_X1);
 						il.append(InstructionConstants.POP2);
@@ -236,12 +223,8 @@ public abstract class Expression
 					}
 				}
 				
-				if(!tosType.equals(exprType.getElementType()))
-					il.append(TypeUtils.cast(tosType, exprType.getElementType(), new InstructionFactory(cg)));
-				
-				il.append(InstructionFactory.createArrayStore(exprType.getElementType()));
-				
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, BasicType.VOID);
+				ctx.cast(tosType, resolvedType);
+				il.append(InstructionFactory.createArrayStore(resolvedType));
 			}
 		}
 		
@@ -257,11 +240,17 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
-				Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(TypeUtils.cast(exprBytecode.getValue(), targetType.toBCELType(), new InstructionFactory(cg)), targetType.toBCELType());
-					
+				expression.attribute(scope);
+				return resolvedType = targetType.toBCELType();
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
+			{
+				expression.toBytecode(ctx);
+				ctx.cast(expression.resolvedType, resolvedType);
 			}
 		}
 		
@@ -270,6 +259,15 @@ public abstract class Expression
 			public Type structType;
 			public final int numDimensions;
 			public final Expression[] dimensionSizes;
+			// the element type of the arrays created by the instruction, filled in by attribute()
+			private org.apache.bcel.generic.Type createdType;
+			
+			public ArrayInstantiationExpression(Type type, int numDimensions, Expression[] dimensionSizes)
+			{
+				structType = type;
+				this.numDimensions = numDimensions;
+				this.dimensionSizes = dimensionSizes;
+			}
 			
 			private ArrayInstantiationExpression(Type type, List<TadpoleParser.DimensionContext> context, int numEmptyDimensions)
 			{
@@ -281,31 +279,31 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
-				InstructionList il = new InstructionList();
-				InstructionFactory factory = new InstructionFactory(cg);
-				
-				org.apache.bcel.generic.Type type;
-				try
-				{
-					type = org.apache.bcel.generic.Type.getType(Class.forName(structType.typeName));
-				}
-				catch(Exception e)
+				org.apache.bcel.generic.Type type = structType.getClassType();
+				if(type == null)
 				{
 					if(structType.isPrimitive())
 						type = structType.toBCELType();
 					else
-						type = Type.fromStruct(Struct.structs.stream().filter(s -> s.moduleName.equals(structType.getModuleName())).filter(s -> s.name.equals(structType.getTypeName())).findFirst().get()).toBCELType();
+						type = Type.fromStruct(SymbolIndex.getStruct(structType.getModuleName(), structType.getTypeName())).toBCELType();
 				}
 				if(numDimensions - dimensionSizes.length > 0)
 					type = new ArrayType(type, numDimensions - dimensionSizes.length);
 				
 				for(Expression e : dimensionSizes)
-					il.append(e.toBytecode(cg, mg).getKey());
-				il.append(factory.createNewArray(type, (short) dimensionSizes.length));
-				
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, new ArrayType(type, dimensionSizes.length));
+					e.attribute(scope);
+				createdType = type;
+				return resolvedType = new ArrayType(type, dimensionSizes.length);
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
+			{
+				for(Expression e : dimensionSizes)
+					e.toBytecode(ctx);
+				ctx.il.append(ctx.factory.createNewArray(createdType, (short) dimensionSizes.length));
 			}
 		}
 		
@@ -313,6 +311,9 @@ public abstract class Expression
 		{
 			public Type structType;
 			public final Expression[] parameters;
+			// the struct and constructor signature attribute() resolved
+			public Struct resolvedStruct;
+			private org.apache.bcel.generic.Type[] parameterTypes;
 			
 			public InstantiationExpression(Type type, Expression[] parameters)
 			{
@@ -333,31 +334,31 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
-				InstructionList il = new InstructionList();
-				InstructionFactory factory = new InstructionFactory(cg);
-				
-				Struct struct = Struct.structs.stream().filter(s -> s.moduleName.equals(structType.getModuleName())).filter(s -> s.name.equals(structType.getTypeName())).findFirst().get();
-				org.apache.bcel.generic.Type structType = this.structType.toBCELType();
-				
-				if(struct.parameters.size() != parameters.length)
-					throw new CompilationException("Cannot instantiate struct of type " + structType + " with " + parameters.length + " parameters. Only " + struct.parameters.size() + " parameters are allowed");
+				resolvedStruct = SymbolIndex.getStruct(structType.getModuleName(), structType.getTypeName());
+				resolvedType = structType.toBCELType();
 				
-				org.apache.bcel.generic.Type[] parameterTypes = struct.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new);
-				@SuppressWarnings("unchecked") // damn compiler giving me a warning or an error no matter what I do
-				Pair<InstructionList, org.apache.bcel.generic.Type>[] argBytecode = Arrays.stream(parameters).map(e -> e.toBytecode(cg, mg)).toArray(Pair[]::new);
+				if(resolvedStruct.parameters.size() != parameters.length)
+					throw new CompilationException("Cannot instantiate struct of type " + resolvedType + " with " + parameters.length + " parameters. Only " + resolvedStruct.parameters.size() + " parameters are allowed");
 				
-				il.append(factory.createNew((ObjectType) structType));
-				il.append(InstructionConstants.DUP);
-				for(int i = 0; i < argBytecode.length; i++)
+				parameterTypes = resolvedStruct.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new);
+				for(Expression e : parameters)
+					e.attribute(scope);
+				return resolvedType;
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
+			{
+				ctx.il.append(ctx.factory.createNew((ObjectType) resolvedType));
+				ctx.il.append(InstructionConstants.DUP);
+				for(int i = 0; i < parameters.length; i++)
 				{
-					il.append(argBytecode[i].getKey());
-					il.append(TypeUtils.cast(argBytecode[i].getValue(), parameterTypes[i], factory));
+					parameters[i].toBytecode(ctx);
+					ctx.cast(parameters[i].resolvedType, parameterTypes[i]);
 				}
-				il.append(factory.createInvoke(structType.toString(), "<init>", org.apache.bcel.generic.Type.VOID, parameterTypes, Constants.INVOKESPECIAL));
-				
-				return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, structType);
+				ctx.il.append(ctx.factory.createInvoke(resolvedType.toString(), "<init>", org.apache.bcel.generic.Type.VOID, parameterTypes, Constants.INVOKESPECIAL));
 			}
 		}
 		
@@ -371,9 +372,17 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
+			{
+				resolvedType = expression.attribute(scope);
+				namesType = expression.namesType;
+				return resolvedType;
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
 			{
-				return expression.toBytecode(cg, mg);
+				expression.toBytecode(ctx);
 			}
 		}
 		
@@ -381,6 +390,11 @@ public abstract class Expression
 		{
 			public Expression expression;
 			public final String field;
+			// what attribute() resolved the name to, a Java static field, a struct attribute, which includes a field of the class being generated, or a local
+			// none of them is set for the length of an array or when the expression names a class, module or package
+			public Field resolvedField;
+			public Triplet<Type, String, Expression> resolvedAttribute;
+			public MethodScope.Local resolvedLocal;
 			
 			public FieldAccessExpression(PrimaryExpression expression, String field)
 			{
@@ -394,234 +408,192 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
-				InstructionList il = new InstructionList();
-				InstructionFactory factory = new InstructionFactory(cg);
+				resolvedField = null;
+				resolvedAttribute = null;
+				resolvedLocal = null;
+				namesType = false;
 				
-				try
+				org.apache.bcel.generic.Type classType = Type.of(toString()).getClassType();
+				if(classType != null)
 				{
-					return new Pair<InstructionList, org.apache.bcel.generic.Type>(null, org.apache.bcel.generic.Type.getType(Class.forName(toString())));
+					namesType = true;
+					return resolvedType = classType;
 				}
-				catch(Exception e) {}
 				
 				if(expression != null)
 				{
-					Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
+					org.apache.bcel.generic.Type exprType = expression.attribute(scope);
 					
-					if(exprBytecode.getKey() == null)
+					if(expression.namesType)
 					{
-						try
-						{
-							Field fieldd = Arrays.stream(Repository.lookupClass(exprBytecode.getValue().toString()).getFields()).filter(f -> f.getName().equals(field)).findFirst().get();
-							il.append(factory.createGetStatic(exprBytecode.getValue().toString(), field, fieldd.getType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, fieldd.getType());
-						}
-						catch(Exception e)
-						{
-							
-						}
+						resolvedField = ClassPathIndex.getField(exprType.toString(), field);
+						if(resolvedField != null)
+							return resolvedType = resolvedField.getType();
 					}
 					
-					for(Struct struct : Struct.structs)
-					{
-						// skip wrong structs
-						if(!(struct.moduleName + "$" + struct.name).equals(exprBytecode.getValue().toString()))
-							continue;
-						
-						for(Triplet<Type, String, Expression> attribute : struct.attributes)
-						{
-							// skip wrong attributes
-							if(!attribute.second.equals(field))
-								continue;
-							
-							il.append(exprBytecode.getKey());
-							il.append(factory.createGetField(exprBytecode.getValue().toString(), field, attribute.first.toBCELType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, attribute.first.toBCELType());
-						}
-					}
+					resolvedAttribute = SymbolIndex.getField(exprType.toString(), field);
+					if(resolvedAttribute != null)
+						return resolvedType = resolvedAttribute.first.toBCELType();
 					
-					org.apache.bcel.generic.Type type = exprBytecode.getValue();
-					if(type instanceof ArrayType && field.equals("length"))
-					{
-						il.append(exprBytecode.getKey());
-						il.append(new ARRAYLENGTH());
-						return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, BasicType.INT);
-					}
+					if(exprType instanceof ArrayType && field.equals("length"))
+						return resolvedType = BasicType.INT;
 					
-					throw new CompilationException("Could not find attribute '" + field + "' in struct " + exprBytecode.getValue().toString());
+					throw new CompilationException("Could not find attribute '" + field + "' in struct " + exprType.toString());
 				}
 				else
 				{
-					LocalVariableGen lvg = MethodUtils.getLocalVars(mg).stream().filter(lv -> lv.getName().equals(field) && lv.getEnd() == null).findFirst().orElse(null);
-					if(lvg != null)
-					{
-						il.append(InstructionFactory.createLoad(lvg.getType(), lvg.getIndex()));
-						return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, lvg.getType());
-					}
-					else if(Arrays.stream(cg.getFields()).map(Field::getName).anyMatch(s -> s.equals(field)))
-					{
-						Field fieldd = Arrays.stream(cg.getFields()).filter(f -> f.getName().equals(field)).findFirst().get();
-						il.append(InstructionFactory.createThis());
-						il.append(factory.createGetField(cg.getClassName(), field, fieldd.getType()));
-						return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, fieldd.getType());
-					}
-					else
-					{
-						try
-						{
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(null, org.apache.bcel.generic.Type.getType(Class.forName(field)));
-						}
-						catch(Exception e)
-						{
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(null, new Type(field).toBCELType());
-						}
-					}
+					resolvedLocal = scope.getLocal(field);
+					if(resolvedLocal != null)
+						return resolvedType = resolvedLocal.type;
+					
+					resolvedAttribute = SymbolIndex.getField(scope.className, field);
+					if(resolvedAttribute != null)
+						return resolvedType = resolvedAttribute.first.toBCELType();
+					
+					namesType = true;
+					return resolvedType = Type.of(field).toBCELType();
 				}
 			}
 			
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toStoreBytecode(ClassGen cg, MethodGen mg, Expression valueToStore)
+			// the same as attribute() for the target of an assignment, which can only be a struct attribute, a local or a field of the class being generated
+			public org.apache.bcel.generic.Type attributeStore(MethodScope scope)
 			{
-				InstructionList il = new InstructionList();
-				InstructionFactory factory = new InstructionFactory(cg);
+				resolvedField = null;
+				resolvedAttribute = null;
+				resolvedLocal = null;
+				namesType = false;
 				
 				if(expression != null)
 				{
-					Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-					
-					for(Struct struct : Struct.structs)
-					{
-						// skip wrong structs
-						if(!(struct.moduleName + "$" + struct.name).equals(exprBytecode.getValue().toString()))
-							continue;
-						
-						for(Triplet<Type, String, Expression> attribute : struct.attributes)
-						{
-							// skip wrong attributes
-							if(!attribute.second.equals(field))
-								continue;
-							
-							il.append(exprBytecode.getKey());
-							Pair<InstructionList, org.apache.bcel.generic.Type> valueToStoreBytecode = valueToStore.toBytecode(cg, mg);
-							il.append(valueToStoreBytecode.getKey());
-							
-							if(valueToStoreBytecode.getValue().getSize() == 2)
-								il.append(InstructionConstants.DUP2_X1);
-							else // it will probably never be 0
-								il.append(InstructionConstants.DUP_X1);
-							
-							il.append(TypeUtils.cast(valueToStoreBytecode.getValue(), attribute.first.toBCELType(), factory));
-							il.append(factory.createPutField(exprBytecode.getValue().toString(), field, attribute.first.toBCELType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, valueToStoreBytecode.getValue());
-						}
-					}
-					
-					throw new CompilationException("Could not find attribute '" + field + "' in struct " + exprBytecode.getValue().toString());
+					org.apache.bcel.generic.Type exprType = expression.attribute(scope);
+					resolvedAttribute = SymbolIndex.getField(exprType.toString(), field);
+					if(resolvedAttribute == null)
+						throw new CompilationException("Could not find attribute '" + field + "' in struct " + exprType.toString());
+					return resolvedType = resolvedAttribute.first.toBCELType();
+				}
+				
+				resolvedLocal = scope.getLocal(field);
+				if(resolvedLocal != null)
+					return resolvedType = resolvedLocal.type;
+				
+				resolvedAttribute = SymbolIndex.getField(scope.className, field);
+				if(resolvedAttribute == null)
+					throw new CompilationException("Could not find local variable '" + field + "' in method " + scope.methodName);
+				return resolvedType = resolvedAttribute.first.toBCELType();
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
+			{
+				if(namesType)
+					return;
+				
+				InstructionList il = ctx.il;
+				if(expression != null && resolvedField != null)
+				{
+					il.append(ctx.factory.createGetStatic(expression.resolvedType.toString(), field, resolvedType));
+				}
+				else if(expression != null)
+				{
+					expression.toBytecode(ctx);
+					if(resolvedAttribute != null)
+						il.append(ctx.factory.createGetField(expression.resolvedType.toString(), field, resolvedType));
+					else
+						il.append(InstructionConstants.ARRAYLENGTH);
+				}
+				else if(resolvedLocal != null)
+				{
+					il.append(InstructionFactory.createLoad(resolvedType, resolvedLocal.index));
 				}
 				else
 				{
-					LocalVariableGen lvg = MethodUtils.getLocalVars(mg).stream().filter(lv -> lv.getName().equals(field) && lv.getEnd() == null).findFirst().orElse(null);
-					
-					Pair<InstructionList, org.apache.bcel.generic.Type> valueToStoreBytecode = valueToStore.toBytecode(cg, mg);
+					il.append(InstructionFactory.createThis());
+					il.append(ctx.factory.createGetField(ctx.cg.getClassName(), field, resolvedType));
+				}
+			}
+			
+			// leaves the stored value on the stack
+			public void toStoreBytecode(EmissionContext ctx, Expression valueToStore)
+			{
+				InstructionList il = ctx.il;
+				if(expression != null)
+				{
+					expression.toBytecode(ctx);
+					valueToStore.toBytecode(ctx);
 					
-					if(lvg == null)
-					{
-						if(Arrays.stream(cg.getFields()).map(Field::getName).anyMatch(s -> s.equals(field)))
-						{
-							Field fieldd = Arrays.stream(cg.getFields()).filter(f -> f.getName().equals(field)).findFirst().get();
-							il.append(InstructionFactory.createThis());
-							il.append(valueToStoreBytecode.getKey());
-							if(valueToStoreBytecode.getValue().getSize() == 2)
-								il.append(InstructionConstants.DUP2);
-							else
-								il.append(InstructionConstants.DUP);
-							il.append(TypeUtils.cast(valueToStoreBytecode.getValue(), fieldd.getType(), factory));
-							il.append(factory.createPutField(cg.getClassName(), field, fieldd.getType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, valueToStoreBytecode.getValue());
-						}
-						throw new CompilationException("Could not find local variable '" + field + "' in method " + mg.getName());
-					}
+					if(valueToStore.resolvedType.getSize() == 2)
+						il.append(InstructionConstants.DUP2_X1);
+					else // it will probably never be 0
+						il.append(InstructionConstants.DUP_X1);
 					
-					il.append(valueToStoreBytecode.getKey());
-					if(valueToStoreBytecode.getValue().getSize() == 2)
+					ctx.cast(valueToStore.resolvedType, resolvedType);
+					il.append(ctx.factory.createPutField(expression.resolvedType.toString(), field, resolvedType));
+					return;
+				}
+				
+				if(resolvedLocal == null)
+				{
+					il.append(InstructionFactory.createThis());
+					valueToStore.toBytecode(ctx);
+					if(valueToStore.resolvedType.getSize() == 2)
 						il.append(InstructionConstants.DUP2);
 					else
 						il.append(InstructionConstants.DUP);
-					
-					il.append(TypeUtils.cast(valueToStoreBytecode.getValue(), lvg.getType(), factory));
-					il.append(InstructionFactory.createStore(lvg.getType(), lvg.getIndex()));
-					
-					return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, valueToStoreBytecode.getValue());
+					ctx.cast(valueToStore.resolvedType, resolvedType);
+					il.append(ctx.factory.createPutField(ctx.cg.getClassName(), field, resolvedType));
+					return;
 				}
+				
+				valueToStore.toBytecode(ctx);
+				if(valueToStore.resolvedType.getSize() == 2)
+					il.append(InstructionConstants.DUP2);
+				else
+					il.append(InstructionConstants.DUP);
+				
+				ctx.cast(valueToStore.resolvedType, resolvedType);
+				il.append(InstructionFactory.createStore(resolvedType, resolvedLocal.index));
 			}
 			
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toStoreBytecodeTOS(ClassGen cg, MethodGen mg, org.apache.bcel.generic.Type tosType)
+			// stores the value on top of the stack, which was pushed before the object the field belongs to
+			public void toStoreBytecodeTOS(EmissionContext ctx, org.apache.bcel.generic.Type tosType)
 			{
-				InstructionList il = new InstructionList();
-				InstructionFactory factory = new InstructionFactory(cg);
-				
+				InstructionList il = ctx.il;
 				if(expression != null)
 				{
-					Pair<InstructionList, org.apache.bcel.generic.Type> exprBytecode = expression.toBytecode(cg, mg);
-					
-					for(Struct struct : Struct.structs)
+					expression.toBytecode(ctx);
+					if(tosType.getSize() == 2)
 					{
-						// skip wrong structs
-						if(!(struct.moduleName + "$" + struct.name).equals(exprBytecode.getValue().toString()))
-							continue;
-						
-						for(Triplet<Type, String, Expression> attribute : struct.attributes)
-						{
-							// skip wrong attributes
-							if(!attribute.second.equals(field))
-								continue;
-							
-							il.append(exprBytecode.getKey());
-							if(tosType.getSize() == 2)
-							{
-								il.append(InstructionConstants.DUP_X2);
-								il.append(InstructionConstants.POP);
-							}
-							else if(tosType.getSize() == 1)
-							{
-								il.append(InstructionConstants.DUP_X1);
-								il.append(InstructionConstants.POP);
-							}
-							
-							il.append(TypeUtils.cast(tosType, attribute.first.toBCELType(), factory));
-							il.append(factory.createPutField(exprBytecode.getValue().toString(), field, attribute.first.toBCELType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, BasicType.VOID);
-						}
+						il.append(InstructionConstants.DUP_X2);
+						il.append(InstructionConstants.POP);
 					}
-					
-					throw new CompilationException("Could not find attribute '" + field + "' in struct " + exprBytecode.getValue().toString());
-				}
-				else
-				{
-					LocalVariableGen lvg = MethodUtils.getLocalVars(mg).stream().filter(lv -> lv.getName().equals(field) && lv.getEnd() == null).findFirst().orElse(null);
-					if(lvg == null)
+					else if(tosType.getSize() == 1)
 					{
-						if(Arrays.stream(cg.getFields()).map(Field::getName).anyMatch(s -> s.equals(field)))
-						{
-							Field fieldd = Arrays.stream(cg.getFields()).filter(f -> f.getName().equals(field)).findFirst().get();
-							il.append(InstructionFactory.createThis());
-							if(tosType.getSize() == 2)
-								il.append(InstructionConstants.DUP_X2);
-							else
-								il.append(InstructionConstants.DUP_X1);
-							il.append(InstructionConstants.POP);
-							il.append(TypeUtils.cast(tosType, fieldd.getType(), factory));
-							il.append(factory.createPutField(cg.getClassName(), field, fieldd.getType()));
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, tosType);
-						}
-						throw new CompilationException("Could not find local variable '" + field + "' in method " + mg.getName());
+						il.append(InstructionConstants.DUP_X1);
+						il.append(InstructionConstants.POP);
 					}
 					
-					il.append(TypeUtils.cast(tosType, lvg.getType(), factory));
-					il.append(InstructionFactory.createStore(lvg.getType(), lvg.getIndex()));
-					
-					return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, BasicType.VOID);
+					ctx.cast(tosType, resolvedType);
+					il.append(ctx.factory.createPutField(expression.resolvedType.toString(), field, resolvedType));
+					return;
 				}
+				
+				if(resolvedLocal == null)
+				{
+					il.append(InstructionFactory.createThis());
+					if(tosType.getSize() == 2)
+						il.append(InstructionConstants.DUP_X2);
+					else
+						il.append(InstructionConstants.DUP_X1);
+					il.append(InstructionConstants.POP);
+					ctx.cast(tosType, resolvedType);
+					il.append(ctx.factory.createPutField(ctx.cg.getClassName(), field, resolvedType));
+					return;
+				}
+				
+				ctx.cast(tosType, resolvedType);
+				il.append(InstructionFactory.createStore(resolvedType, resolvedLocal.index));
 			}
 			
 			@Override
@@ -636,6 +608,19 @@ public abstract class Expression
 			public PrimaryExpression callingOn;
 			public final String function;
 			public final Expression[] parameters;
+			// the Java method or tadpole function attribute() chose, and what is needed to invoke it
+			public Method resolvedMethod;
+			public Function resolvedFunction;
+			private String owner;
+			private org.apache.bcel.generic.Type[] argumentTypes;
+			private short invokeKind;
+			
+			public FunctionCallExpression(PrimaryExpression callingOn, String function, Expression[] parameters)
+			{
+				this.callingOn = callingOn;
+				this.function = function;
+				this.parameters = parameters;
+			}
 			
 			private FunctionCallExpression(PrimaryExpression callingOn, TadpoleParser.FunctionCallContext context)
 			{
@@ -645,149 +630,71 @@ public abstract class Expression
 			}
 			
 			@Override
-			public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+			public org.apache.bcel.generic.Type attribute(MethodScope scope)
 			{
+				resolvedMethod = null;
+				resolvedFunction = null;
 				boolean staticCall;
-				InstructionList callingOnBytecode = null;
 				org.apache.bcel.generic.Type type = null;
 				if(callingOn != null)
 				{
-					Pair<InstructionList, org.apache.bcel.generic.Type> bytecode = callingOn.toBytecode(cg, mg);
-					callingOnBytecode = bytecode.getKey();
-					type = bytecode.getValue();
-					staticCall = callingOnBytecode == null;
+					type = callingOn.attribute(scope);
+					staticCall = callingOn.namesType;
 				}
 				else
 				{
 					staticCall = true;
-					type = org.apache.bcel.generic.Type.getType(Utility.getSignature(cg.getClassName()));
+					type = org.apache.bcel.generic.Type.getType(Utility.getSignature(scope.className));
 				}
+				owner = type.toString();
 				
-				List<Pair<InstructionList, org.apache.bcel.generic.Type>> parameters = Arrays.stream(this.parameters).map(e -> e.toBytecode(cg, mg)).collect(Collectors.toList());
-				if(callingOnBytecode == null)
+				List<org.apache.bcel.generic.Type> parameterTypes = Arrays.stream(parameters).map(e -> e.attribute(scope)).collect(Collectors.toList());
+				resolvedMethod = ClassPathIndex.resolveMethod(owner, function, parameterTypes, staticCall);
+				if(resolvedMethod != null)
 				{
-					InstructionList il = new InstructionList();
-					try
-					{
-						JavaClass jc = Repository.lookupClass(type.toString());
-						List<Method> methods = Arrays.stream(jc.getMethods()).filter(m -> m.getName().equals(function)).filter(m -> m.isStatic()).collect(Collectors.toList());
-						methods.removeIf(m -> m.getArgumentTypes().length != parameters.size());
-						Method bestMethod = TypeUtils.findClosestMatch(methods, parameters.stream().map(Pair::getValue).collect(Collectors.toList()), null);
-						
-						InstructionFactory factory = new InstructionFactory(cg);
-						
-						for(int i = 0; i < parameters.size(); i++)
-						{
-							Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = parameters.get(i);
-							il.append(eBytecode.getKey());
-							il.append(TypeUtils.cast(eBytecode.getValue(), bestMethod.getArgumentTypes()[i], factory));
-						}
-						il.append(factory.createInvoke(type.toString(), function, bestMethod.getReturnType(), bestMethod.getArgumentTypes(), Constants.INVOKESTATIC));
-						
-						return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, bestMethod.getReturnType());
-					}
-					catch(Exception e)
-					{
-						Type tempType = new Type(type.toString());
-						if(!tempType.isAbsoluteType())
-						{
-							String module = tempType.typeName;
-							List<Function> functions = Module.getModule(module).declaredFunctions;
-							functions = functions.stream().filter(f -> f.name.equals(function)).collect(Collectors.toList());
-							functions.removeIf(f -> !TypeUtils.areMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), parameters.stream().map(Pair::getValue).collect(Collectors.toList())));
-							if(functions.size() == 0)
-								throw new CompilationException("No function named " + function + " with with correct parameters was found in module " + module);
-							Function f = TypeUtils.findClosestMatch(functions, parameters.stream().map(Pair::getValue).collect(Collectors.toList()));
-							
-							InstructionFactory factory = new InstructionFactory(cg);
-							
-							for(int i = 0; i < parameters.size(); i++)
-							{
-								Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = parameters.get(i);
-								il.append(eBytecode.getKey());
-								il.append(TypeUtils.cast(eBytecode.getValue(), f.parameters.get(i).getKey().toBCELType(), factory));
-							}
-							il.append(factory.createInvoke(module, function, f.returnType.toBCELType(), f.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), Constants.INVOKESTATIC));
-							
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, f.returnType.toBCELType());
-						}
-						else
-						{
-							throw new CompilationException("All struct functions are instance functions. Move the function to a module or create an instance of the struct first."); 
-						}
-					}
+					argumentTypes = resolvedMethod.getArgumentTypes();
+					invokeKind = resolvedMethod.isStatic() ? Constants.INVOKESTATIC : Constants.INVOKEVIRTUAL;
+					return resolvedType = resolvedMethod.getReturnType();
+				}
+				
+				Type tempType = Type.of(owner);
+				if(!tempType.isAbsoluteType())
+				{
+					resolvedFunction = findFunction(owner, "module " + owner, parameterTypes);
+					invokeKind = Constants.INVOKESTATIC;
+				}
+				else if(staticCall)
+				{
+					throw new CompilationException("All struct functions are instance functions. Move the function to a module or create an instance of the struct first."); 
 				}
 				else
 				{
-					InstructionList il = new InstructionList();
-					il.append(callingOnBytecode);
-					try
-					{
-						JavaClass jc = Repository.lookupClass(type.toString());
-						List<Method> methods = Arrays.stream(jc.getMethods()).filter(m -> m.getName().equals(function)).filter(m -> !staticCall || m.isStatic()).collect(Collectors.toList());
-						methods.removeIf(m -> m.getArgumentTypes().length != parameters.size());
-						Method bestMethod = TypeUtils.findClosestMatch(methods, parameters.stream().map(Pair::getValue).collect(Collectors.toList()), null);
-						
-						InstructionFactory factory = new InstructionFactory(cg);
-						
-						for(int i = 0; i < parameters.size(); i++)
-						{
-							Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = parameters.get(i);
-							il.append(eBytecode.getKey());
-							il.append(TypeUtils.cast(eBytecode.getValue(), bestMethod.getArgumentTypes()[i], factory));
-						}
-						il.append(factory.createInvoke(type.toString(), function, bestMethod.getReturnType(), bestMethod.getArgumentTypes(), bestMethod.isStatic() ? Constants.INVOKESTATIC : Constants.INVOKEVIRTUAL));
-						
-						return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, bestMethod.getReturnType());
-					}
-					catch(Exception e)
-					{
-						Type tempType = new Type(type.toString());
-						if(!tempType.isAbsoluteType())
-						{
-							String module = tempType.typeName;
-							List<Function> functions = Module.getModule(module).declaredFunctions;
-							functions = functions.stream().filter(f -> f.name.equals(function)).collect(Collectors.toList());
-							functions.removeIf(f -> !TypeUtils.areMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), parameters.stream().map(Pair::getValue).collect(Collectors.toList())));
-							if(functions.size() == 0)
-								throw new CompilationException("No function named " + function + " with with correct parameters was found in module " + module);
-							Function f = TypeUtils.findClosestMatch(functions, parameters.stream().map(Pair::getValue).collect(Collectors.toList()));
-							
-							InstructionFactory factory = new InstructionFactory(cg);
-							
-							for(int i = 0; i < parameters.size(); i++)
-							{
-								Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = parameters.get(i);
-								il.append(eBytecode.getKey());
-								il.append(TypeUtils.cast(eBytecode.getValue(), f.parameters.get(i).getKey().toBCELType(), factory));
-							}
-							il.append(factory.createInvoke(module, function, f.returnType.toBCELType(), f.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), Constants.INVOKESTATIC));
-							
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, f.returnType.toBCELType());
-						}
-						else
-						{
-							List<Function> functions = Module.getModule(tempType.getModuleName()).declaredStructs.stream().filter(s -> s.name.equals(tempType.getTypeName())).findFirst().get().functions;
-							functions = functions.stream().filter(f -> f.name.equals(function)).collect(Collectors.toList());
-							functions.removeIf(f -> !TypeUtils.areMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), parameters.stream().map(Pair::getValue).collect(Collectors.toList())));
-							if(functions.size() == 0)
-								throw new CompilationException("No function named " + function + " with with correct parameters was found in struct " + tempType.typeName);
-							Function f = TypeUtils.findClosestMatch(functions, parameters.stream().map(Pair::getValue).collect(Collectors.toList()));
-							
-							InstructionFactory factory = new InstructionFactory(cg);
-							
-							for(int i = 0; i < parameters.size(); i++)
-							{
-								Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = parameters.get(i);
-								il.append(eBytecode.getKey());
-								il.append(TypeUtils.cast(eBytecode.getValue(), f.parameters.get(i).getKey().toBCELType(), factory));
-							}
-							il.append(factory.createInvoke(type.toString(), function, f.returnType.toBCELType(), f.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new), Constants.INVOKEVIRTUAL));
-							
-							return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, f.returnType.toBCELType());
-						}
-					}
+					resolvedFunction = findFunction(tempType.getModuleName() + "$" + tempType.getTypeName(), "struct " + tempType.typeName, parameterTypes);
+					invokeKind = Constants.INVOKEVIRTUAL;
+				}
+				argumentTypes = resolvedFunction.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(org.apache.bcel.generic.Type[]::new);
+				return resolvedType = resolvedFunction.returnType.toBCELType();
+			}
+			
+			@Override
+			public void toBytecode(EmissionContext ctx)
+			{
+				if(callingOn != null && !callingOn.namesType)
+					callingOn.toBytecode(ctx);
+				for(int i = 0; i < parameters.length; i++)
+				{
+					parameters[i].toBytecode(ctx);
+					ctx.cast(parameters[i].resolvedType, argumentTypes[i]);
 				}
+				ctx.il.append(ctx.factory.createInvoke(owner, function, resolvedType, argumentTypes, invokeKind));
+			}
+			
+			private Function findFunction(String functionOwner, String description, List<org.apache.bcel.generic.Type> parameterTypes)
+			{
+				Function resolved = SymbolIndex.resolveFunction(functionOwner, function, parameterTypes);
+				if(resolved == null)
+					throw new CompilationException("No function named " + function + " with with correct parameters was found in " + description);
+				return resolved;
 			}
 		}
 	}
@@ -811,25 +718,42 @@ public abstract class Expression
 		}
 		
 		@Override
-		public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+		public org.apache.bcel.generic.Type attribute(MethodScope scope)
+		{
+			org.apache.bcel.generic.Type type = expr.attribute(scope);
+			switch(op)
+			{
+			case POSITIVE:
+			case NEGATIVE:
+			case UNARY_NEGATE:
+				return resolvedType = type;
+			case NOT:
+				return resolvedType = BasicType.BOOLEAN;
+			case INCREMENT:
+			case DECREMENT:
+				throw new CompilationException("increment/decrement should have been mapped to a binary expression");
+			default:
+				throw new IllegalStateException("Unknown unary operator: " + op);
+			}
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			Pair<InstructionList, org.apache.bcel.generic.Type> eBytecode = expr.toBytecode(cg, mg);
-			InstructionFactory factory = new InstructionFactory(cg);
-			InstructionList il = new InstructionList();
-			org.apache.bcel.generic.Type retType = eBytecode.getValue();
-			il.append(eBytecode.getKey());
+			expr.toBytecode(ctx);
+			InstructionList il = ctx.il;
 			switch(op)
 			{
 			case POSITIVE:
 				break;
 			case NEGATIVE:
-				if(eBytecode.getValue().getSize() == 1)
-					if(eBytecode.getValue().equals(BasicType.FLOAT))
+				if(resolvedType.getSize() == 1)
+					if(resolvedType.equals(BasicType.FLOAT))
 						il.append(InstructionConstants.FNEG);
 					else
 						il.append(InstructionConstants.INEG);
 				else
-					if(eBytecode.getValue().equals(BasicType.DOUBLE))
+					if(resolvedType.equals(BasicType.DOUBLE))
 						il.append(InstructionConstants.DNEG);
 					else
 						il.append(InstructionConstants.LNEG);
@@ -840,33 +764,27 @@ public abstract class Expression
 				BranchHandle bh2 = il.append(new GOTO(null));
 				bh.setTarget(il.append(InstructionConstants.ICONST_1));
 				bh2.setTarget(il.append(InstructionConstants.NOP));
-				retType = BasicType.BOOLEAN;
 				break;
 			case UNARY_NEGATE:
-				if(eBytecode.getValue().getSize() == 1)
+				if(resolvedType.getSize() == 1)
 				{
 					il.append(InstructionConstants.ICONST_M1);
 					il.append(InstructionConstants.IXOR);
 				}
 				else
 				{
-					il.append(factory.createConstant(Long.valueOf(-1)));
+					il.append(ctx.factory.createConstant(Long.valueOf(-1)));
 					il.append(InstructionConstants.LXOR);
 				}
 				break;
-			case INCREMENT:
-			case DECREMENT:
-				throw new CompilationException("increment/decrement should have been mapped to a binary expression");
-			default:
-				throw new IllegalStateException("Unknown unary operator: " + op);
 			}
-			
-			return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, retType);
 		}
 	}
 	
 	public static class BinaryExpression extends Expression
 	{
+		private static final ArrayType CHAR_ARRAY = new ArrayType(BasicType.CHAR, 1);
+		
 		public Expression exprLeft, exprRight;
 		public final BinaryOp op;
 		
@@ -878,668 +796,425 @@ public abstract class Expression
 		}
 		
 		@Override
-		public Pair<InstructionList, org.apache.bcel.generic.Type> toBytecode(ClassGen cg, MethodGen mg)
+		public org.apache.bcel.generic.Type attribute(MethodScope scope)
 		{
-			// parallel assignments are handled in Statement.ParallelStatement
-			if(op.equals(BinaryOp.ASSIGN) && (exprLeft instanceof PrimaryExpression.ArrayAccessExpression || exprLeft instanceof PrimaryExpression.FieldAccessExpression))
+			if(isStore())
 			{
 				if(exprLeft instanceof PrimaryExpression.ArrayAccessExpression)
-				{
-					// handle storing in an array
-					return ((PrimaryExpression.ArrayAccessExpression) exprLeft).toStoreBytecode(cg, mg, exprRight);
-				}
+					exprLeft.attribute(scope);
 				else
-				{
-					// handle storing in a field
-					return ((PrimaryExpression.FieldAccessExpression) exprLeft).toStoreBytecode(cg, mg, exprRight);
-				}
+					((PrimaryExpression.FieldAccessExpression) exprLeft).attributeStore(scope);
+				return resolvedType = exprRight.attribute(scope);
 			}
 			
-			InstructionList il = new InstructionList();
-			InstructionFactory factory = new InstructionFactory(cg);
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprLeftBytecode = exprLeft.toBytecode(cg, mg);
-			Pair<InstructionList, org.apache.bcel.generic.Type> exprRightBytecode = exprRight.toBytecode(cg, mg);
-			
-			InstructionList ilLeft = exprLeftBytecode.getKey();
-			InstructionList ilRight = exprRightBytecode.getKey();
-			org.apache.bcel.generic.Type tLeft = exprLeftBytecode.getValue();
-			org.apache.bcel.generic.Type tRight = exprRightBytecode.getValue();
-			org.apache.bcel.generic.Type retType = tLeft;
-			
-			switch(op)
+			// walks nested binary operands with an explicit stack for the same reason toBytecode does
+			List<BinaryExpression> nodes = new ArrayList<BinaryExpression>();
+			List<Integer> states = new ArrayList<Integer>();
+			nodes.add(this);
+			states.add(0);
+			while(!nodes.isEmpty())
 			{
-			case POWER:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, BasicType.DOUBLE, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, BasicType.DOUBLE, factory));
-					il.append(factory.createInvoke("java.lang.Math", "pow", BasicType.DOUBLE, new org.apache.bcel.generic.Type[]{BasicType.DOUBLE, BasicType.DOUBLE}, Constants.INVOKESTATIC));
-					retType = BasicType.DOUBLE;
-				}
-				else
-				{
-					throw new CompilationException("Cannot use power operator with non-numeric types");
-				}
-				break;
-			case MULTIPLY:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
+				int top = nodes.size() - 1;
+				BinaryExpression node = nodes.get(top);
+				int state = states.get(top);
+				if(state < 2)
+				{
+					states.set(top, state + 1);
+					Expression operand = state == 0 ? node.exprLeft : node.exprRight;
+					if(operand instanceof BinaryExpression && !((BinaryExpression) operand).isStore())
 					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DMUL : InstructionConstants.FMUL);
-						retType = wide ? BasicType.DOUBLE : BasicType.FLOAT;
+						nodes.add((BinaryExpression) operand);
+						states.add(0);
 					}
 					else
 					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(wide ? InstructionConstants.LMUL : InstructionConstants.IMUL);
-						retType = wide ? BasicType.LONG : BasicType.INT;
+						operand.attribute(scope);
 					}
 				}
 				else
 				{
-					// TODO add string-int multiplication
-					throw new CompilationException("Cannot use multiplication operator with non-numeric types");
+					nodes.remove(top);
+					states.remove(top);
+					node.resolvedType = node.resultType(node.exprLeft.resolvedType, node.exprRight.resolvedType);
 				}
-				break;
-			case DIVIDE:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
+			}
+			return resolvedType;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			// parallel assignments are handled in Statement.ParallelStatement
+			if(isStore())
+			{
+				if(exprLeft instanceof PrimaryExpression.ArrayAccessExpression)
 				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DDIV : InstructionConstants.FDIV);
-						retType = wide ? BasicType.DOUBLE : BasicType.FLOAT;
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(wide ? InstructionConstants.LDIV : InstructionConstants.IDIV);
-						retType = wide ? BasicType.LONG : BasicType.INT;
-					}
+					// handle storing in an array
+					((PrimaryExpression.ArrayAccessExpression) exprLeft).toStoreBytecode(ctx, exprRight);
 				}
 				else
 				{
-					throw new CompilationException("Cannot use division operator with non-numeric types");
+					// handle storing in a field
+					((PrimaryExpression.FieldAccessExpression) exprLeft).toStoreBytecode(ctx, exprRight);
 				}
-				break;
-			case MODULUS:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
+				return;
+			}
+			
+			// nested binary operands are emitted with an explicit stack in the same order recursion would visit them,
+			// every operator appends what goes between its operands once the left one is done and the rest once the right one is
+			List<BinaryExpression> nodes = new ArrayList<BinaryExpression>();
+			List<Integer> states = new ArrayList<Integer>();
+			// the branch of && and || over the right operand, null for every other operator
+			List<BranchHandle> skips = new ArrayList<BranchHandle>();
+			nodes.add(this);
+			states.add(0);
+			skips.add(null);
+			while(!nodes.isEmpty())
+			{
+				int top = nodes.size() - 1;
+				BinaryExpression node = nodes.get(top);
+				int state = states.get(top);
+				if(state < 2)
+				{
+					if(state == 1)
+						skips.set(top, node.betweenOperands(ctx));
+					states.set(top, state + 1);
+					Expression operand = state == 0 ? node.exprLeft : node.exprRight;
+					if(operand instanceof BinaryExpression && !((BinaryExpression) operand).isStore())
 					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DREM : InstructionConstants.FREM);
-						retType = wide ? BasicType.DOUBLE : BasicType.FLOAT;
+						nodes.add((BinaryExpression) operand);
+						states.add(0);
+						skips.add(null);
 					}
 					else
 					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(wide ? InstructionConstants.LREM : InstructionConstants.IREM);
-						retType = wide ? BasicType.LONG : BasicType.INT;
+						operand.toBytecode(ctx);
 					}
 				}
 				else
 				{
-					throw new CompilationException("Cannot use modulus operator with non-numeric types");
+					nodes.remove(top);
+					states.remove(top);
+					node.afterOperands(ctx, skips.remove(top));
 				}
-				break;
-			case ADD:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DADD : InstructionConstants.FADD);
-						retType = wide ? BasicType.DOUBLE : BasicType.FLOAT;
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(wide ? InstructionConstants.LADD : InstructionConstants.IADD);
-						retType = wide ? BasicType.LONG : BasicType.INT;
-					}
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.STRING) || TypeUtils.isOfType(tRight, TypeUtils.STRING))
-				{
-					if(tLeft.equals(org.apache.bcel.generic.Type.STRING) && tRight.equals(org.apache.bcel.generic.Type.STRING))
-					{
-						il.append(ilLeft);
-						il.append(ilRight);
-						il.append(factory.createInvoke("java.lang.String", "concat", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{org.apache.bcel.generic.Type.STRING}, Constants.INVOKEVIRTUAL));
-					}
-					else if(tLeft.equals(org.apache.bcel.generic.Type.STRING))
-					{
-						if(tRight.equals(BasicType.SHORT) || tRight.equals(BasicType.BYTE))
-							tRight = tRight.normalizeForStackOrLocal();
-						else if(tRight instanceof ReferenceType && !tRight.equals(new ArrayType(BasicType.CHAR, 1)))
-							tRight = org.apache.bcel.generic.Type.OBJECT;
-						il.append(ilLeft);
-						il.append(ilRight);
-						il.append(factory.createInvoke("java.lang.String", "valueOf", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{tRight}, Constants.INVOKESTATIC));
-						il.append(factory.createInvoke("java.lang.String", "concat", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{org.apache.bcel.generic.Type.STRING}, Constants.INVOKEVIRTUAL));
-					}
-					else if(tRight.equals(org.apache.bcel.generic.Type.STRING))
-					{
-						if(tLeft.equals(BasicType.SHORT) || tLeft.equals(BasicType.BYTE))
-							tLeft = tLeft.normalizeForStackOrLocal();
-						else if(tLeft instanceof ReferenceType && !tLeft.equals(new ArrayType(BasicType.CHAR, 1)))
-							tLeft = org.apache.bcel.generic.Type.OBJECT;
-						il.append(ilLeft);
-						il.append(factory.createInvoke("java.lang.String", "valueOf", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{tLeft}, Constants.INVOKESTATIC));
-						il.append(ilRight);
-						il.append(factory.createInvoke("java.lang.String", "concat", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{org.apache.bcel.generic.Type.STRING}, Constants.INVOKEVIRTUAL));
-					}
-					retType = org.apache.bcel.generic.Type.STRING;
-				}
-				else
-				{
-					throw new CompilationException("Cannot use addition operator with non-numeric types");
-				}
-				break;
+			}
+		}
+		
+		private boolean isStore()
+		{
+			return op.equals(BinaryOp.ASSIGN) && (exprLeft instanceof PrimaryExpression.ArrayAccessExpression || exprLeft instanceof PrimaryExpression.FieldAccessExpression);
+		}
+		
+		// the type of the result, operand types the operator cannot be used with are rejected here so combine never sees them
+		private org.apache.bcel.generic.Type resultType(org.apache.bcel.generic.Type tLeft, org.apache.bcel.generic.Type tRight)
+		{
+			boolean numbers = TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER);
+			boolean integers = TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT);
+			switch(op)
+			{
+			case POWER:
+				if(numbers)
+					return BasicType.DOUBLE;
+				throw new CompilationException("Cannot use power operator with non-numeric types");
+			case MULTIPLY:
+				if(numbers)
+					return numericType(tLeft, tRight);
+				// TODO add string-int multiplication
+				throw new CompilationException("Cannot use multiplication operator with non-numeric types");
+			case DIVIDE:
+				if(numbers)
+					return numericType(tLeft, tRight);
+				throw new CompilationException("Cannot use division operator with non-numeric types");
+			case MODULUS:
+				if(numbers)
+					return numericType(tLeft, tRight);
+				throw new CompilationException("Cannot use modulus operator with non-numeric types");
+			case ADD:
+				if(numbers)
+					return numericType(tLeft, tRight);
+				if(TypeUtils.isOfType(tLeft, TypeUtils.STRING) || TypeUtils.isOfType(tRight, TypeUtils.STRING))
+					return org.apache.bcel.generic.Type.STRING;
+				throw new CompilationException("Cannot use addition operator with non-numeric types");
+			case SUBTRACT:
+				if(numbers)
+					return numericType(tLeft, tRight);
+				throw new CompilationException("Cannot use subtraction operator with non-numeric types");
+			case RIGHT_SHIFT_PRESERVE:
+				if(integers)
+					return integerType(tLeft, tRight);
+				throw new CompilationException("Cannot use signed right shift operator with non-integer types");
+			case RIGHT_SHIFT:
+				if(integers)
+					return integerType(tLeft, tRight);
+				throw new CompilationException("Cannot use unsigned right shift operator with non-integer types");
+			case LEFT_SHIFT:
+				if(integers)
+					return integerType(tLeft, tRight);
+				throw new CompilationException("Cannot use left shift operator with non-integer types");
+			case LESS_THAN:
+			case GREATER_THAN:
+			case LESS_THAN_EQUAL:
+			case GREATER_THAN_EQUAL:
+				if(numbers)
+					return BasicType.BOOLEAN;
+				throw new CompilationException("Cannot compare non-numeric types");
+			case IS:
+				// TODO implement when inheritance is implemented
+				throw new IllegalStateException("'is' operator is not yet implemented");
+			case EQUALS:
+			case NOT_EQUAL:
+				if(numbers || (tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN)) || (TypeUtils.isOfType(tLeft, TypeUtils.OBJECT) && TypeUtils.isOfType(tRight, TypeUtils.OBJECT)))
+					return BasicType.BOOLEAN;
+				throw new CompilationException("Cannot check equality of incompatible objects of type " + tLeft + " and " + tRight);
+			case BITWISE_AND:
+			case XOR:
+			case BITWISE_OR:
+				if(integers)
+					return integerType(tLeft, tRight);
+				if(TypeUtils.isOfType(tLeft, TypeUtils.BOOLEAN) && TypeUtils.isOfType(tRight, TypeUtils.BOOLEAN))
+					return BasicType.BOOLEAN;
+				throw new CompilationException("Cannot perform bitwise operations on non-integer types");
+			case AND:
+			case OR:
+				if(tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN))
+					return BasicType.BOOLEAN;
+				throw new CompilationException("Cannot perform boolean operations on non-booleans");
+			default:
+				throw new CompilationException("This shouldn't have happened. Encountered BinaryOp: " + op);
+			}
+		}
+		
+		private static org.apache.bcel.generic.Type numericType(org.apache.bcel.generic.Type tLeft, org.apache.bcel.generic.Type tRight)
+		{
+			if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
+				return tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE) ? BasicType.DOUBLE : BasicType.FLOAT;
+			return integerType(tLeft, tRight);
+		}
+		
+		private static org.apache.bcel.generic.Type integerType(org.apache.bcel.generic.Type tLeft, org.apache.bcel.generic.Type tRight)
+		{
+			return tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG) ? BasicType.LONG : BasicType.INT;
+		}
+		
+		// the type both operands are converted to before the operator is applied, null when they are used as they are
+		private org.apache.bcel.generic.Type operandType()
+		{
+			org.apache.bcel.generic.Type tLeft = exprLeft.resolvedType;
+			org.apache.bcel.generic.Type tRight = exprRight.resolvedType;
+			switch(op)
+			{
+			case POWER:
+				return BasicType.DOUBLE;
+			case MULTIPLY:
+			case DIVIDE:
+			case MODULUS:
 			case SUBTRACT:
+			case LESS_THAN:
+			case GREATER_THAN:
+			case LESS_THAN_EQUAL:
+			case GREATER_THAN_EQUAL:
+				return numericType(tLeft, tRight);
+			case ADD:
+			case EQUALS:
+			case NOT_EQUAL:
 				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DSUB : InstructionConstants.FSUB);
-						retType = wide ? BasicType.DOUBLE : BasicType.FLOAT;
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(wide ? InstructionConstants.LSUB : InstructionConstants.ISUB);
-						retType = wide ? BasicType.LONG : BasicType.INT;
-					}
-				}
-				else
-				{
-					throw new CompilationException("Cannot use subtraction operator with non-numeric types");
-				}
-				break;
+					return numericType(tLeft, tRight);
+				return null;
 			case RIGHT_SHIFT_PRESERVE:
+			case RIGHT_SHIFT:
+			case LEFT_SHIFT:
+				return resolvedType;
+			case BITWISE_AND:
+			case XOR:
+			case BITWISE_OR:
 				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
+					return integerType(tLeft, tRight);
+				return null;
+			default:
+				return null;
+			}
+		}
+		
+		// appended after the left operand, returns the branch && and || take over the right one
+		// the operand types have already been checked by attribute()
+		private BranchHandle betweenOperands(EmissionContext ctx)
+		{
+			org.apache.bcel.generic.Type tLeft = exprLeft.resolvedType;
+			if(op == BinaryOp.AND)
+				return ctx.il.append(new IFEQ(null));
+			if(op == BinaryOp.OR)
+				return ctx.il.append(new IFNE(null));
+			if(op == BinaryOp.ADD && exprRight.resolvedType.equals(org.apache.bcel.generic.Type.STRING) && !tLeft.equals(org.apache.bcel.generic.Type.STRING))
+				ctx.il.append(valueOf(ctx, tLeft));
+			
+			org.apache.bcel.generic.Type operandType = operandType();
+			if(operandType != null)
+				ctx.cast(tLeft, operandType);
+			return null;
+		}
+		
+		// appended after the right operand
+		private void afterOperands(EmissionContext ctx, BranchHandle skip)
+		{
+			InstructionList il = ctx.il;
+			org.apache.bcel.generic.Type tLeft = exprLeft.resolvedType;
+			org.apache.bcel.generic.Type tRight = exprRight.resolvedType;
+			org.apache.bcel.generic.Type operandType = operandType();
+			if(operandType != null)
+				ctx.cast(tRight, operandType);
+			// int, long, float or double, booleans and references use the int instructions
+			int kind = operandType == null ? 0 : operandType.equals(BasicType.LONG) ? 1 : operandType.equals(BasicType.FLOAT) ? 2 : operandType.equals(BasicType.DOUBLE) ? 3 : 0;
+			
+			switch(op)
+			{
+			case POWER:
+				il.append(ctx.factory.createInvoke("java.lang.Math", "pow", BasicType.DOUBLE, new org.apache.bcel.generic.Type[]{BasicType.DOUBLE, BasicType.DOUBLE}, Constants.INVOKESTATIC));
+				break;
+			case MULTIPLY:
+				il.append(pick(kind, InstructionConstants.IMUL, InstructionConstants.LMUL, InstructionConstants.FMUL, InstructionConstants.DMUL));
+				break;
+			case DIVIDE:
+				il.append(pick(kind, InstructionConstants.IDIV, InstructionConstants.LDIV, InstructionConstants.FDIV, InstructionConstants.DDIV));
+				break;
+			case MODULUS:
+				il.append(pick(kind, InstructionConstants.IREM, InstructionConstants.LREM, InstructionConstants.FREM, InstructionConstants.DREM));
+				break;
+			case ADD:
+				if(operandType != null)
 				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LSHR : InstructionConstants.ISHR);
-					retType = wide ? BasicType.LONG : BasicType.INT;
+					il.append(pick(kind, InstructionConstants.IADD, InstructionConstants.LADD, InstructionConstants.FADD, InstructionConstants.DADD));
 				}
 				else
 				{
-					throw new CompilationException("Cannot use signed right shift operator with non-integer types");
+					// a string on the left only, the right operand was not converted between the operands
+					if(!tRight.equals(org.apache.bcel.generic.Type.STRING))
+						il.append(valueOf(ctx, tRight));
+					il.append(ctx.factory.createInvoke("java.lang.String", "concat", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{org.apache.bcel.generic.Type.STRING}, Constants.INVOKEVIRTUAL));
 				}
 				break;
+			case SUBTRACT:
+				il.append(pick(kind, InstructionConstants.ISUB, InstructionConstants.LSUB, InstructionConstants.FSUB, InstructionConstants.DSUB));
+				break;
+			case RIGHT_SHIFT_PRESERVE:
+				il.append(kind == 1 ? InstructionConstants.LSHR : InstructionConstants.ISHR);
+				break;
 			case RIGHT_SHIFT:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
-				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LUSHR : InstructionConstants.IUSHR);
-					retType = wide ? BasicType.LONG : BasicType.INT;
-				}
-				else
-				{
-					throw new CompilationException("Cannot use unsigned right shift operator with non-integer types");
-				}
+				il.append(kind == 1 ? InstructionConstants.LUSHR : InstructionConstants.IUSHR);
 				break;
 			case LEFT_SHIFT:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
-				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LSHL : InstructionConstants.ISHL);
-					retType = wide ? BasicType.LONG : BasicType.INT;
-				}
-				else
-				{
-					throw new CompilationException("Cannot use left shift operator with non-integer types");
-				}
+				il.append(kind == 1 ? InstructionConstants.LSHL : InstructionConstants.ISHL);
 				break;
 			case LESS_THAN:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DCMPG : InstructionConstants.FCMPG);
-						il.append(InstructionConstants.ICONST_0);
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						if(wide)
-						{
-							il.append(InstructionConstants.LCMP);
-							il.append(InstructionConstants.ICONST_0);
-						}
-					}
-					
-					BranchHandle bh = il.append(new IF_ICMPLT(null));
-					il.append(InstructionConstants.ICONST_0);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_1));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot compare non-numeric types");
-				}
-				break;
 			case GREATER_THAN:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DCMPL : InstructionConstants.FCMPL);
-						il.append(InstructionConstants.ICONST_0);
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						if(wide)
-						{
-							il.append(InstructionConstants.LCMP);
-							il.append(InstructionConstants.ICONST_0);
-						}
-					}
-					
-					BranchHandle bh = il.append(new IF_ICMPGT(null));
-					il.append(InstructionConstants.ICONST_0);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_1));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot compare non-numeric types");
-				}
-				break;
 			case LESS_THAN_EQUAL:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DCMPG : InstructionConstants.FCMPG);
-						
-						il.append(InstructionConstants.ICONST_1);
-						il.append(InstructionConstants.ISUB);
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						if(wide)
-						{
-							il.append(InstructionConstants.LCMP);
-							il.append(InstructionConstants.ICONST_0);
-						}
-						
-						BranchHandle bh = il.append(new IF_ICMPLE(null));
-						il.append(InstructionConstants.ICONST_0);
-						BranchHandle bh2 = il.append(new GOTO(null));
-						bh.setTarget(il.append(InstructionConstants.ICONST_1));
-						bh2.setTarget(il.append(InstructionConstants.NOP));
-					}
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot compare non-numeric types");
-				}
-				break;
 			case GREATER_THAN_EQUAL:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
 				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
+					boolean less = op == BinaryOp.LESS_THAN || op == BinaryOp.LESS_THAN_EQUAL;
+					if(kind >= 2)
 					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(wide ? InstructionConstants.DCMPL : InstructionConstants.FCMPL);
-						
-						il.append(InstructionConstants.ICONST_1);
-						il.append(InstructionConstants.IADD);
-					}
-					else
-					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						if(wide)
+						if(less)
+							il.append(kind == 3 ? InstructionConstants.DCMPG : InstructionConstants.FCMPG);
+						else
+							il.append(kind == 3 ? InstructionConstants.DCMPL : InstructionConstants.FCMPL);
+						if(op == BinaryOp.LESS_THAN_EQUAL || op == BinaryOp.GREATER_THAN_EQUAL)
 						{
-							il.append(InstructionConstants.LCMP);
-							il.append(InstructionConstants.ICONST_0);
+							il.append(InstructionConstants.ICONST_1);
+							il.append(less ? InstructionConstants.ISUB : InstructionConstants.IADD);
+							break;
 						}
-						
-						BranchHandle bh = il.append(new IF_ICMPGE(null));
 						il.append(InstructionConstants.ICONST_0);
-						BranchHandle bh2 = il.append(new GOTO(null));
-						bh.setTarget(il.append(InstructionConstants.ICONST_1));
-						bh2.setTarget(il.append(InstructionConstants.NOP));
-					}
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot compare non-numeric types");
-				}
-				break;
-			case IS:
-				// TODO implement when inheritance is implemented
-				throw new IllegalStateException("'is' operator is not yet implemented");
-			case EQUALS:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
-				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(InstructionConstants.DCMPL);
-						
-						il.append(InstructionConstants.ICONST_1);
-						il.append(InstructionConstants.IAND);
-						il.append(InstructionConstants.ICONST_1);
-						il.append(InstructionConstants.IXOR);
 					}
-					else
+					else if(kind == 1)
 					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						BranchHandle bh = il.append(new IF_ICMPEQ(null));
+						il.append(InstructionConstants.LCMP);
 						il.append(InstructionConstants.ICONST_0);
-						BranchHandle bh2 = il.append(new GOTO(null));
-						bh.setTarget(il.append(InstructionConstants.ICONST_1));
-						bh2.setTarget(il.append(InstructionConstants.NOP));
 					}
-				}
-				else if(tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					
-					BranchHandle bh = il.append(new IF_ICMPEQ(null));
-					il.append(InstructionConstants.ICONST_0);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_1));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.OBJECT) && TypeUtils.isOfType(tRight, TypeUtils.OBJECT))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
 					
-					BranchHandle bh = il.append(new IF_ACMPEQ(null));
-					il.append(InstructionConstants.ICONST_0);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_1));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-				}
-				else
-				{
-					throw new CompilationException("Cannot check equality of incompatible objects of type " + tLeft + " and " + tRight);
+					if(op == BinaryOp.LESS_THAN)
+						pushCondition(il, new IF_ICMPLT(null), false);
+					else if(op == BinaryOp.GREATER_THAN)
+						pushCondition(il, new IF_ICMPGT(null), false);
+					else if(op == BinaryOp.LESS_THAN_EQUAL)
+						pushCondition(il, new IF_ICMPLE(null), false);
+					else
+						pushCondition(il, new IF_ICMPGE(null), false);
 				}
-				retType = BasicType.BOOLEAN;
 				break;
+			case EQUALS:
 			case NOT_EQUAL:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.NUMBER) && TypeUtils.isOfType(tRight, TypeUtils.NUMBER))
+				if(kind >= 2)
 				{
-					if(TypeUtils.isOfType(tLeft, TypeUtils.DOUBLE) || TypeUtils.isOfType(tRight, TypeUtils.DOUBLE))
-					{
-						boolean wide = tLeft.equals(BasicType.DOUBLE) || tRight.equals(BasicType.DOUBLE);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.DOUBLE : BasicType.FLOAT, factory));
-						il.append(InstructionConstants.DCMPL);
-						
-						il.append(InstructionConstants.ICONST_1);
-						il.append(InstructionConstants.IAND);
-					}
-					else
+					il.append(InstructionConstants.DCMPL);
+					il.append(InstructionConstants.ICONST_1);
+					il.append(InstructionConstants.IAND);
+					if(op == BinaryOp.EQUALS)
 					{
-						boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-						il.append(ilLeft);
-						il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-						il.append(ilRight);
-						il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-						
-						BranchHandle bh = il.append(new IF_ICMPEQ(null));
 						il.append(InstructionConstants.ICONST_1);
-						BranchHandle bh2 = il.append(new GOTO(null));
-						bh.setTarget(il.append(InstructionConstants.ICONST_0));
-						bh2.setTarget(il.append(InstructionConstants.NOP));
+						il.append(InstructionConstants.IXOR);
 					}
 				}
-				else if(tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN))
+				else if(TypeUtils.isOfType(tLeft, TypeUtils.OBJECT))
 				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					
-					BranchHandle bh = il.append(new IF_ICMPEQ(null));
-					il.append(InstructionConstants.ICONST_1);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_0));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.OBJECT) && TypeUtils.isOfType(tRight, TypeUtils.OBJECT))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					
-					BranchHandle bh = il.append(new IF_ACMPEQ(null));
-					il.append(InstructionConstants.ICONST_1);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_0));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
+					pushCondition(il, new IF_ACMPEQ(null), op == BinaryOp.NOT_EQUAL);
 				}
 				else
 				{
-					throw new CompilationException("Cannot check equality of incompatible objects of type " + tLeft + " and " + tRight);
+					pushCondition(il, new IF_ICMPEQ(null), op == BinaryOp.NOT_EQUAL);
 				}
-				retType = BasicType.BOOLEAN;
 				break;
 			case BITWISE_AND:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
-				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LAND : InstructionConstants.IAND);
-					retType = wide ? BasicType.LONG : BasicType.INT;
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.BOOLEAN) && TypeUtils.isOfType(tRight, TypeUtils.BOOLEAN))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					il.append(InstructionConstants.IAND);
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot perform bitwise operations on non-integer types");
-				}
+				il.append(kind == 1 ? InstructionConstants.LAND : InstructionConstants.IAND);
 				break;
 			case XOR:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
-				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LXOR : InstructionConstants.IXOR);
-					retType = wide ? BasicType.LONG : BasicType.INT;
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.BOOLEAN) && TypeUtils.isOfType(tRight, TypeUtils.BOOLEAN))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					il.append(InstructionConstants.IXOR);
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot perform bitwise operations on non-integer types");
-				}
+				il.append(kind == 1 ? InstructionConstants.LXOR : InstructionConstants.IXOR);
 				break;
 			case BITWISE_OR:
-				if(TypeUtils.isOfType(tLeft, TypeUtils.INT) && TypeUtils.isOfType(tRight, TypeUtils.INT))
-				{
-					boolean wide = tLeft.equals(BasicType.LONG) || tRight.equals(BasicType.LONG);
-					il.append(ilLeft);
-					il.append(TypeUtils.cast(tLeft, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(ilRight);
-					il.append(TypeUtils.cast(tRight, wide ? BasicType.LONG : BasicType.INT, factory));
-					il.append(wide ? InstructionConstants.LOR : InstructionConstants.IOR);
-					retType = wide ? BasicType.LONG : BasicType.INT;
-				}
-				else if(TypeUtils.isOfType(tLeft, TypeUtils.BOOLEAN) && TypeUtils.isOfType(tRight, TypeUtils.BOOLEAN))
-				{
-					il.append(ilLeft);
-					il.append(ilRight);
-					il.append(InstructionConstants.IOR);
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot perform bitwise operations on non-integer types");
-				}
+				il.append(kind == 1 ? InstructionConstants.LOR : InstructionConstants.IOR);
 				break;
 			case AND:
-				if(tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN))
-				{
-					il.append(ilLeft);
-					BranchHandle bh = il.append(new IFEQ(null));
-					il.append(ilRight);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_0));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot perform boolean operations on non-booleans");
-				}
-				break;
 			case OR:
-				if(tLeft.equals(BasicType.BOOLEAN) && tRight.equals(BasicType.BOOLEAN))
 				{
-					il.append(ilLeft);
-					BranchHandle bh = il.append(new IFNE(null));
-					il.append(ilRight);
-					BranchHandle bh2 = il.append(new GOTO(null));
-					bh.setTarget(il.append(InstructionConstants.ICONST_1));
-					bh2.setTarget(il.append(InstructionConstants.NOP));
-					retType = BasicType.BOOLEAN;
-				}
-				else
-				{
-					throw new CompilationException("Cannot perform boolean operations on non-booleans");
+					BranchHandle bh = il.append(new GOTO(null));
+					skip.setTarget(il.append(op == BinaryOp.AND ? InstructionConstants.ICONST_0 : InstructionConstants.ICONST_1));
+					bh.setTarget(il.append(InstructionConstants.NOP));
 				}
 				break;
+			}
+		}
+		
+		private static Instruction pick(int kind, Instruction intOp, Instruction longOp, Instruction floatOp, Instruction doubleOp)
+		{
+			switch(kind)
+			{
+			case 1:
+				return longOp;
+			case 2:
+				return floatOp;
+			case 3:
+				return doubleOp;
 			default:
-				throw new CompilationException("This shouldn't have happened. Encountered BinaryOp: " + op);
+				return intOp;
 			}
-			
-			return new Pair<InstructionList, org.apache.bcel.generic.Type>(il, retType);
+		}
+		
+		// pushes 1 when the branch is taken and 0 when it is not, the other way around when inverted
+		private static void pushCondition(InstructionList il, BranchInstruction branch, boolean inverted)
+		{
+			BranchHandle bh = il.append(branch);
+			il.append(inverted ? InstructionConstants.ICONST_1 : InstructionConstants.ICONST_0);
+			BranchHandle bh2 = il.append(new GOTO(null));
+			bh.setTarget(il.append(inverted ? InstructionConstants.ICONST_0 : InstructionConstants.ICONST_1));
+			bh2.setTarget(il.append(InstructionConstants.NOP));
+		}
+		
+		// the String.valueOf overload the value is converted with before it is concatenated
+		private static Instruction valueOf(EmissionContext ctx, org.apache.bcel.generic.Type type)
+		{
+			if(type.equals(BasicType.SHORT) || type.equals(BasicType.BYTE))
+				type = type.normalizeForStackOrLocal();
+			else if(type instanceof ReferenceType && !type.equals(CHAR_ARRAY))
+				type = org.apache.bcel.generic.Type.OBJECT;
+			return ctx.factory.createInvoke("java.lang.String", "valueOf", org.apache.bcel.generic.Type.STRING, new org.apache.bcel.generic.Type[]{type}, Constants.INVOKESTATIC);
 		}
 	}
 }
\ No newline at end of file
@@ -1,9 +0,0 @@
-package net.tadpole.compiler.ast;
-
-public class FileNode extends ASTNode
-{
-	public FileNode()
-	{
-		super(null);
-	}
-}
\ No newline at end of file
@@ -4,17 +4,16 @@ import java.util.Arrays;
 import java.util.stream.Collectors;
 
 import org.apache.bcel.generic.ArrayType;
-import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.InstructionConstants;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionList;
-import org.apache.bcel.generic.MethodGen;
 import org.apache.bcel.generic.PUSH;
 import org.apache.bcel.generic.Type;
 
-import javafx.util.Pair;
 import net.tadpole.compiler.exceptions.CompilationException;
 import net.tadpole.compiler.parser.TadpoleParser;
+import net.tadpole.compiler.util.EmissionContext;
+import net.tadpole.compiler.util.MethodScope;
 import net.tadpole.compiler.util.TypeUtils;
 
 public abstract class LiteralExpression extends Expression.PrimaryExpression
@@ -92,15 +91,19 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
+			return resolvedType = wide ? Type.LONG : Type.INT;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			// appending the PUSH itself would copy it out of an instruction list of its own
 			if(wide)
-				il.append(new PUSH(cg.getConstantPool(), value));
+				ctx.il.append(new PUSH(ctx.cp, value).getInstruction());
 			else
-				il.append(new PUSH(cg.getConstantPool(), (int) value));
-			
-			return new Pair<InstructionList, Type>(il, wide ? Type.LONG : Type.INT);
+				ctx.il.append(new PUSH(ctx.cp, (int) value).getInstruction());
 		}
 	}
 	
@@ -140,15 +143,18 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
+		{
+			return resolvedType = wide ? Type.DOUBLE : Type.FLOAT;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			InstructionList il = new InstructionList();
 			if(wide)
-				il.append(new PUSH(cg.getConstantPool(), value));
+				ctx.il.append(new PUSH(ctx.cp, value).getInstruction());
 			else
-				il.append(new PUSH(cg.getConstantPool(), (float) value));
-			
-			return new Pair<InstructionList, Type>(il, wide ? Type.DOUBLE : Type.FLOAT);
+				ctx.il.append(new PUSH(ctx.cp, (float) value).getInstruction());
 		}
 	}
 	
@@ -175,11 +181,15 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			il.append(new PUSH(cg.getConstantPool(), value));
-			return new Pair<InstructionList, Type>(il, Type.BOOLEAN);
+			return resolvedType = Type.BOOLEAN;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			ctx.il.append(new PUSH(ctx.cp, value).getInstruction());
 		}
 	}
 	
@@ -247,11 +257,15 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
+		{
+			return resolvedType = Type.CHAR;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			InstructionList il = new InstructionList();
-			il.append(new PUSH(cg.getConstantPool(), value));
-			return new Pair<InstructionList, Type>(il, Type.CHAR);
+			ctx.il.append(new PUSH(ctx.cp, value).getInstruction());
 		}
 	}
 	
@@ -261,7 +275,18 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		
 		public StringLiteral(String stringLiteral)
 		{
-			value = escapeCharacters(stringLiteral.substring(1, stringLiteral.length() - 1));
+			this(stringLiteral, true);
+		}
+		
+		private StringLiteral(String stringLiteral, boolean quoted)
+		{
+			value = quoted ? escapeCharacters(stringLiteral.substring(1, stringLiteral.length() - 1)) : stringLiteral;
+		}
+		
+		// creates a literal from its already unescaped value
+		public static StringLiteral of(String value)
+		{
+			return new StringLiteral(value, false);
 		}
 		
 		private String escapeCharacters(String str)
@@ -323,11 +348,15 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
 		{
-			InstructionList il = new InstructionList();
-			il.append(new PUSH(cg.getConstantPool(), value));
-			return new Pair<InstructionList, Type>(il, Type.STRING);
+			return resolvedType = Type.STRING;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			ctx.il.append(new PUSH(ctx.cp, value).getInstruction());
 		}
 	}
 	
@@ -341,11 +370,15 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
+		{
+			return resolvedType = Type.NULL;
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
 		{
-			InstructionList il = new InstructionList();
-			il.append(InstructionConstants.ACONST_NULL);
-			return new Pair<InstructionList, Type>(il, Type.NULL);
+			ctx.il.append(InstructionConstants.ACONST_NULL);
 		}
 	}
 	
@@ -353,6 +386,11 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 	{
 		public final Expression[] expressions;
 		
+		public ArrayLiteral(Expression[] expressions)
+		{
+			this.expressions = expressions;
+		}
+		
 		public ArrayLiteral(TadpoleParser.ArrayLiteralContext context)
 		{
 			if(context.expressionList() != null)
@@ -362,29 +400,29 @@ public abstract class LiteralExpression extends Expression.PrimaryExpression
 		}
 		
 		@Override
-		public Pair<InstructionList, Type> toBytecode(ClassGen cg, MethodGen mg)
+		public Type attribute(MethodScope scope)
 		{
-			@SuppressWarnings("unchecked")
-			Pair<InstructionList, Type>[] exprBytecodes = Arrays.stream(expressions).map(e -> e.toBytecode(cg, mg)).toArray(Pair[]::new);
-			
-			InstructionList il = new InstructionList();
-			InstructionFactory factory = new InstructionFactory(cg);
-			ArrayType arrayType = TypeUtils.getArrayType(Arrays.stream(exprBytecodes).map(Pair::getValue).collect(Collectors.toList()));
-			Type elementType = arrayType.getElementType();
+			return resolvedType = TypeUtils.getArrayType(Arrays.stream(expressions).map(e -> e.attribute(scope)).collect(Collectors.toList()));
+		}
+		
+		@Override
+		public void toBytecode(EmissionContext ctx)
+		{
+			InstructionList il = ctx.il;
+			Type elementType = ((ArrayType) resolvedType).getElementType();
 			
-			il.append(new PUSH(cg.getConstantPool(), exprBytecodes.length));
-			il.append(factory.createNewArray(elementType, (short) 1));
-			for(int i = 0; i < exprBytecodes.length; i++)
+			il.append(new PUSH(ctx.cp, expressions.length).getInstruction());
+			il.append(ctx.factory.createNewArray(elementType, (short) 1));
+			for(int i = 0; i < expressions.length; i++)
 			{
 				il.append(InstructionConstants.DUP);
-				il.append(new PUSH(cg.getConstantPool(), i));
-				il.append(exprBytecodes[i].getKey());
-				il.append(TypeUtils.cast(exprBytecodes[i].getValue(), elementType, factory));
+				il.append(new PUSH(ctx.cp, i).getInstruction());
+				expressions[i].toBytecode(ctx);
+				ctx.cast(expressions[i].resolvedType, elementType);
 				il.append(InstructionFactory.createArrayStore(elementType));
 			}
-			
-			return new Pair<InstructionList, Type>(il, arrayType);
 		}
+		
 	}
 	
 	public static interface NumberLiteral
@@ -0,0 +1,36 @@
+package net.tadpole.compiler.ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// every distinct name is stored once and referred to by an int id, shared by all compact trees
+public class NameTable
+{
+	private static final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private static String[] names = new String[256];
+	private static int count = 0;
+	
+	public static synchronized int intern(String name)
+	{
+		Integer id = ids.get(name);
+		if(id != null)
+			return id;
+		
+		if(count == names.length)
+			names = Arrays.copyOf(names, count * 2);
+		names[count] = name;
+		ids.put(name, count);
+		return count++;
+	}
+	
+	public static synchronized String name(int id)
+	{
+		return names[id];
+	}
+	
+	public static synchronized int size()
+	{
+		return count;
+	}
+}
\ No newline at end of file
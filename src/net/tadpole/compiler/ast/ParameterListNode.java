@@ -1,9 +0,0 @@
-package net.tadpole.compiler.ast;
-
-public class ParameterListNode extends ASTNode
-{
-	public ParameterListNode(ASTNode parent)
-	{
-		super(parent);
-	}
-}
\ No newline at end of file
@@ -0,0 +1,35 @@
+package net.tadpole.compiler.ast;
+
+import net.tadpole.compiler.Statement;
+
+// one rewrite over statements and expressions, run by a TreeWalk together with any other passes that walk the same trees
+// enter is called on the way down, returning false keeps this pass away from the node and everything below it
+// leave is called on the way up once the children are done, the node it returns takes the place of the one it was given
+public interface TreePass
+{
+	default boolean enter(Statement statement)
+	{
+		return true;
+	}
+	
+	// parent is null when the expression belongs to a statement or is the root of the walk
+	default boolean enter(Expression parent, Expression expression)
+	{
+		return true;
+	}
+	
+	default Statement leave(Statement statement)
+	{
+		return statement;
+	}
+	
+	default Expression leave(Expression expression)
+	{
+		return expression;
+	}
+	
+	default String name()
+	{
+		return getClass().getSimpleName();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+package net.tadpole.compiler.ast;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import net.tadpole.compiler.Statement;
+import net.tadpole.compiler.ast.Expression.PrimaryExpression;
+
+// runs any number of passes over a tree in a single traversal instead of one traversal per pass
+// every node is entered by each pass in the order they were given, then its children are walked, then each pass that entered it leaves it in the same order
+// a node replaced by a pass is written back into its parent only once all passes are done with it
+public class TreeWalk
+{
+	// walks, nodes and time for every combination of passes that has been run, in the order they were first run
+	private static final Map<String, Phase> phases = Collections.synchronizedMap(new LinkedHashMap<String, Phase>());
+	
+	private final TreePass[] passes;
+	private final Phase phase;
+	
+	public TreeWalk(TreePass... passes)
+	{
+		if(passes.length == 0 || passes.length > 31)
+			throw new IllegalArgumentException("A tree walk needs between 1 and 31 passes");
+		this.passes = passes;
+		phase = phases.computeIfAbsent(Arrays.stream(passes).map(TreePass::name).collect(Collectors.joining("+")), name -> new Phase(passes.length));
+	}
+	
+	public Statement walk(Statement statement)
+	{
+		return (Statement) walkTree(statement);
+	}
+	
+	public Expression walk(Expression expression)
+	{
+		return (Expression) walkTree(expression);
+	}
+	
+	// post-order over an explicit stack so long binary chains cannot overflow the Java stack
+	private Object walkTree(Object root)
+	{
+		// a function that was reduced to its signature has no body to walk
+		if(root == null)
+			return null;
+		long start = System.nanoTime();
+		long nodes = 0;
+		Deque<Frame> stack = new ArrayDeque<Frame>();
+		Object result = root;
+		Frame rootFrame = enter(root, null, (1 << passes.length) - 1);
+		if(rootFrame != null)
+			stack.push(rootFrame);
+		while(!stack.isEmpty())
+		{
+			Frame frame = stack.peek();
+			if(frame.next < frame.children.length)
+			{
+				Object child = frame.children[frame.next++];
+				if(child != null)
+				{
+					Frame childFrame = enter(child, frame.node instanceof Expression ? (Expression) frame.node : null, frame.mask);
+					if(childFrame != null)
+						stack.push(childFrame);
+				}
+				continue;
+			}
+			
+			stack.pop();
+			nodes++;
+			Object node = frame.node;
+			for(int i = 0; i < passes.length; i++)
+				if((frame.mask & 1 << i) != 0)
+					node = node instanceof Statement ? passes[i].leave((Statement) node) : passes[i].leave((Expression) node);
+			if(stack.isEmpty())
+				result = node;
+			else if(node != frame.node)
+				setChild(stack.peek().node, stack.peek().next - 1, node);
+		}
+		phase.walks.incrementAndGet();
+		phase.nodes.addAndGet(nodes);
+		phase.nanos.addAndGet(System.nanoTime() - start);
+		return result;
+	}
+	
+	// null when none of the passes in mask wants to see the node
+	private Frame enter(Object node, Expression parent, int parentMask)
+	{
+		int mask = 0;
+		for(int i = 0; i < passes.length; i++)
+			if((parentMask & 1 << i) != 0 && (node instanceof Statement ? passes[i].enter((Statement) node) : passes[i].enter(parent, (Expression) node)))
+				mask |= 1 << i;
+		// children are looked up after every pass has entered, a pass may fill in a missing one
+		return mask == 0 ? null : new Frame(node, mask, children(node));
+	}
+	
+	// absent children are left as null so the index of every child stays the same
+	private static Object[] children(Object node)
+	{
+		if(node instanceof Statement)
+		{
+			if(node instanceof Statement.BlockStatement)
+				return ((Statement.BlockStatement) node).statements.toArray();
+			else if(node instanceof Statement.ExpressionStatement)
+				return new Object[]{((Statement.ExpressionStatement) node).expression};
+			else if(node instanceof Statement.ReturnStatement)
+				return new Object[]{((Statement.ReturnStatement) node).expression};
+			else if(node instanceof Statement.LocalVarDecStatement)
+				return new Object[]{((Statement.LocalVarDecStatement) node).expression};
+			else if(node instanceof Statement.IfStatement)
+			{
+				Statement.IfStatement is = (Statement.IfStatement) node;
+				Object[] children = new Object[is.statements.size() + 1];
+				children[0] = is.expression;
+				for(int i = 0; i < is.statements.size(); i++)
+					children[i + 1] = is.statements.get(i);
+				return children;
+			}
+			else if(node instanceof Statement.WhileStatement)
+				return new Object[]{((Statement.WhileStatement) node).expression, ((Statement.WhileStatement) node).statement};
+			else if(node instanceof Statement.DoWhileStatement)
+				return new Object[]{((Statement.DoWhileStatement) node).expression, ((Statement.DoWhileStatement) node).statement};
+			else if(node instanceof Statement.ParallelStatement)
+			{
+				Statement.ParallelStatement ps = (Statement.ParallelStatement) node;
+				Object[] children = new Object[ps.leftExprs.size() + ps.rightExprs.size()];
+				for(int i = 0; i < ps.leftExprs.size(); i++)
+					children[i] = ps.leftExprs.get(i);
+				for(int i = 0; i < ps.rightExprs.size(); i++)
+					children[ps.leftExprs.size() + i] = ps.rightExprs.get(i);
+				return children;
+			}
+			else if(node instanceof Statement.RecallStatement)
+				return new Object[0];
+			throw new IllegalStateException("Unknown statement of class " + node.getClass());
+		}
+		
+		if(node instanceof Expression.UnaryExpression)
+			return new Object[]{((Expression.UnaryExpression) node).expr};
+		else if(node instanceof Expression.BinaryExpression)
+			return new Object[]{((Expression.BinaryExpression) node).exprLeft, ((Expression.BinaryExpression) node).exprRight};
+		else if(node instanceof PrimaryExpression.ArrayAccessExpression)
+			return new Object[]{((PrimaryExpression.ArrayAccessExpression) node).expression, ((PrimaryExpression.ArrayAccessExpression) node).indexExpression};
+		else if(node instanceof PrimaryExpression.CastExpression)
+			return new Object[]{((PrimaryExpression.CastExpression) node).expression};
+		else if(node instanceof PrimaryExpression.ArrayInstantiationExpression)
+			return ((PrimaryExpression.ArrayInstantiationExpression) node).dimensionSizes.clone();
+		else if(node instanceof PrimaryExpression.InstantiationExpression)
+			return ((PrimaryExpression.InstantiationExpression) node).parameters.clone();
+		else if(node instanceof PrimaryExpression.WrapExpression)
+			return new Object[]{((PrimaryExpression.WrapExpression) node).expression};
+		else if(node instanceof PrimaryExpression.FieldAccessExpression)
+			return new Object[]{((PrimaryExpression.FieldAccessExpression) node).expression};
+		else if(node instanceof PrimaryExpression.FunctionCallExpression)
+		{
+			PrimaryExpression.FunctionCallExpression fce = (PrimaryExpression.FunctionCallExpression) node;
+			Object[] children = new Object[fce.parameters.length + 1];
+			children[0] = fce.callingOn;
+			System.arraycopy(fce.parameters, 0, children, 1, fce.parameters.length);
+			return children;
+		}
+		else if(node instanceof LiteralExpression.ArrayLiteral)
+			return ((LiteralExpression.ArrayLiteral) node).expressions.clone();
+		else if(node instanceof LiteralExpression)
+			return new Object[0];
+		throw new IllegalStateException("Unknown expression of class " + node.getClass());
+	}
+	
+	private static void setChild(Object node, int index, Object child)
+	{
+		if(node instanceof Statement.BlockStatement)
+			((Statement.BlockStatement) node).statements.set(index, (Statement) child);
+		else if(node instanceof Statement.ExpressionStatement)
+			((Statement.ExpressionStatement) node).expression = (Expression) child;
+		else if(node instanceof Statement.ReturnStatement)
+			((Statement.ReturnStatement) node).expression = (Expression) child;
+		else if(node instanceof Statement.LocalVarDecStatement)
+			((Statement.LocalVarDecStatement) node).expression = (Expression) child;
+		else if(node instanceof Statement.IfStatement)
+		{
+			if(index == 0)
+				((Statement.IfStatement) node).expression = (Expression) child;
+			else
+				((Statement.IfStatement) node).statements.set(index - 1, (Statement) child);
+		}
+		else if(node instanceof Statement.WhileStatement)
+		{
+			if(index == 0)
+				((Statement.WhileStatement) node).expression = (Expression) child;
+			else
+				((Statement.WhileStatement) node).statement = (Statement) child;
+		}
+		else if(node instanceof Statement.DoWhileStatement)
+		{
+			if(index == 0)
+				((Statement.DoWhileStatement) node).expression = (Expression) child;
+			else
+				((Statement.DoWhileStatement) node).statement = (Statement) child;
+		}
+		else if(node instanceof Statement.ParallelStatement)
+		{
+			Statement.ParallelStatement ps = (Statement.ParallelStatement) node;
+			if(index < ps.leftExprs.size())
+				ps.leftExprs.set(index, (Expression) child);
+			else
+				ps.rightExprs.set(index - ps.leftExprs.size(), (Expression) child);
+		}
+		else if(node instanceof Expression.UnaryExpression)
+			((Expression.UnaryExpression) node).expr = (Expression) child;
+		else if(node instanceof Expression.BinaryExpression)
+		{
+			if(index == 0)
+				((Expression.BinaryExpression) node).exprLeft = (Expression) child;
+			else
+				((Expression.BinaryExpression) node).exprRight = (Expression) child;
+		}
+		else if(node instanceof PrimaryExpression.ArrayAccessExpression)
+		{
+			if(index == 0)
+				((PrimaryExpression.ArrayAccessExpression) node).expression = (Expression) child;
+			else
+				((PrimaryExpression.ArrayAccessExpression) node).indexExpression = (Expression) child;
+		}
+		else if(node instanceof PrimaryExpression.CastExpression)
+			((PrimaryExpression.CastExpression) node).expression = (Expression) child;
+		else if(node instanceof PrimaryExpression.ArrayInstantiationExpression)
+			((PrimaryExpression.ArrayInstantiationExpression) node).dimensionSizes[index] = (Expression) child;
+		else if(node instanceof PrimaryExpression.InstantiationExpression)
+			((PrimaryExpression.InstantiationExpression) node).parameters[index] = (Expression) child;
+		else if(node instanceof PrimaryExpression.WrapExpression)
+			((PrimaryExpression.WrapExpression) node).expression = (Expression) child;
+		else if(node instanceof PrimaryExpression.FieldAccessExpression)
+			((PrimaryExpression.FieldAccessExpression) node).expression = (Expression) child;
+		else if(node instanceof PrimaryExpression.FunctionCallExpression)
+		{
+			if(index == 0)
+				((PrimaryExpression.FunctionCallExpression) node).callingOn = (PrimaryExpression) child;
+			else
+				((PrimaryExpression.FunctionCallExpression) node).parameters[index - 1] = (Expression) child;
+		}
+		else if(node instanceof LiteralExpression.ArrayLiteral)
+			((LiteralExpression.ArrayLiteral) node).expressions[index] = (Expression) child;
+		else
+			throw new IllegalStateException("Cannot replace a child of " + node.getClass());
+	}
+	
+	// one line per combination of passes, fusing n passes into one walk saves n - 1 walks of the same trees
+	public static String getStatistics()
+	{
+		synchronized(phases)
+		{
+			return phases.entrySet().stream().filter(e -> e.getValue().walks.get() > 0).map(e -> {
+				Phase phase = e.getValue();
+				return String.format("Walked %s: %d walks over %d nodes in %.1f ms (%d walks saved by fusing)", e.getKey(), phase.walks.get(), phase.nodes.get(), phase.nanos.get() / 1e6, phase.walks.get() * (phase.passes - 1));
+			}).collect(Collectors.joining("\n"));
+		}
+	}
+	
+	public static void resetStatistics()
+	{
+		synchronized(phases)
+		{
+			for(Phase phase : phases.values())
+			{
+				phase.walks.set(0);
+				phase.nodes.set(0);
+				phase.nanos.set(0);
+			}
+		}
+	}
+	
+	private static class Frame
+	{
+		final Object node;
+		final int mask;
+		final Object[] children;
+		int next = 0;
+		
+		Frame(Object node, int mask, Object[] children)
+		{
+			this.node = node;
+			this.mask = mask;
+			this.children = children;
+		}
+	}
+	
+	private static class Phase
+	{
+		final int passes;
+		final AtomicLong walks = new AtomicLong();
+		final AtomicLong nodes = new AtomicLong();
+		final AtomicLong nanos = new AtomicLong();
+		
+		Phase(int passes)
+		{
+			this.passes = passes;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package net.tadpole.compiler.backend;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.MethodGen;
+
+public class BcelClassWriter implements ClassFileWriter
+{
+	private final ClassGen cg;
+	
+	public BcelClassWriter(ClassGen cg)
+	{
+		this.cg = cg;
+	}
+	
+	@Override
+	public void addMethod(MethodGen mg)
+	{
+		mg.removeNOPs();
+		mg.setMaxLocals();
+		mg.setMaxStack();
+		cg.addMethod(FrameComputer.addFrames(mg.getMethod(), mg, cg));
+	}
+	
+	@Override
+	public ClassFile finish()
+	{
+		JavaClass jc = cg.getJavaClass();
+		return new ClassFile(jc.getClassName(), jc.getBytes(), jc);
+	}
+}
\ No newline at end of file
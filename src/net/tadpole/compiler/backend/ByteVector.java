@@ -0,0 +1,86 @@
+package net.tadpole.compiler.backend;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// a growable byte buffer that class files are written into, values already written can be patched in place
+// it is an OutputStream only so that BCEL instructions and attributes can dump themselves into it
+public class ByteVector extends OutputStream
+{
+	private byte[] data;
+	private int length = 0;
+	
+	public ByteVector(int capacity)
+	{
+		data = new byte[capacity];
+	}
+	
+	public int size()
+	{
+		return length;
+	}
+	
+	public void reset()
+	{
+		length = 0;
+	}
+	
+	@Override
+	public void write(int b)
+	{
+		ensureCapacity(1);
+		data[length++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b, int offset, int count)
+	{
+		ensureCapacity(count);
+		System.arraycopy(b, offset, data, length, count);
+		length += count;
+	}
+	
+	public void writeTo(ByteVector other)
+	{
+		other.write(data, 0, length);
+	}
+	
+	public void putShort(int value)
+	{
+		ensureCapacity(2);
+		data[length++] = (byte) (value >>> 8);
+		data[length++] = (byte) value;
+	}
+	
+	public void putInt(int value)
+	{
+		ensureCapacity(4);
+		data[length++] = (byte) (value >>> 24);
+		data[length++] = (byte) (value >>> 16);
+		data[length++] = (byte) (value >>> 8);
+		data[length++] = (byte) value;
+	}
+	
+	public void setShort(int position, int value)
+	{
+		data[position] = (byte) (value >>> 8);
+		data[position + 1] = (byte) value;
+	}
+	
+	// the first size() bytes are the ones written, it is replaced when the vector grows
+	public byte[] buffer()
+	{
+		return data;
+	}
+	
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOf(data, length);
+	}
+	
+	private void ensureCapacity(int count)
+	{
+		if(length + count > data.length)
+			data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package net.tadpole.compiler.backend;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+
+// a finished class, the bytes of its class file and the BCEL model when the backend already has it
+public class ClassFile
+{
+	public final String className;
+	public final byte[] bytes;
+	private JavaClass javaClass;
+	
+	public ClassFile(String className, byte[] bytes, JavaClass javaClass)
+	{
+		this.className = className;
+		this.bytes = bytes;
+		this.javaClass = javaClass;
+	}
+	
+	// parsed from the bytes the first time when the backend never built one, the verifier and the repository work on these
+	public synchronized JavaClass toJavaClass()
+	{
+		if(javaClass == null)
+		{
+			try
+			{
+				javaClass = new ClassParser(new ByteArrayInputStream(bytes), className + ".class").parse();
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		return javaClass;
+	}
+	
+	public void write(File directory) throws IOException
+	{
+		Files.write(new File(directory, className.replace('.', '$') + ".class").toPath(), bytes);
+	}
+}
\ No newline at end of file
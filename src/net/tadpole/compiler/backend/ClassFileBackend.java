@@ -0,0 +1,41 @@
+package net.tadpole.compiler.backend;
+
+import org.apache.bcel.generic.ClassGen;
+
+// encodes generated classes as class files, the backends are alternative encoders of the same classes and write the same bytes
+// code generation is not part of a backend: instructions are always selected into BCEL instruction lists, a backend only encodes finished methods and classes
+public interface ClassFileBackend
+{
+	// MethodGen.getMethod and ClassGen.getJavaClass, slower but it is what every other BCEL tool produces
+	ClassFileBackend BCEL = BcelClassWriter::new;
+	// an encoder of its own, each finished instruction list is encoded in one pass without building BCEL's Method and JavaClass
+	ClassFileBackend STREAMING = StreamingClassWriter::new;
+	
+	ClassFileWriter newClass(ClassGen cg);
+	
+	public static ClassFileBackend forName(String name)
+	{
+		switch(name)
+		{
+		case "bcel":
+			return BCEL;
+		case "streaming":
+			return STREAMING;
+		default:
+			throw new IllegalArgumentException("Unknown backend: " + name);
+		}
+	}
+	
+	// target is the Java release the class files are for, from 6 on every method carries stack map frames, 0 keeps the version BCEL writes by default
+	public static ClassFileBackend forName(String name, int target)
+	{
+		ClassFileBackend backend = forName(name);
+		if(target == 0)
+			return backend;
+		return cg -> {
+			cg.setMajor(44 + target);
+			cg.setMinor(0);
+			return backend.newClass(cg);
+		};
+	}
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package net.tadpole.compiler.backend;
+
+import org.apache.bcel.generic.MethodGen;
+
+// lays out one class, its constant pool, fields and attributes stay in the ClassGen it was created for
+public interface ClassFileWriter
+{
+	// called once the instructions of a method are final, methods end up in the class in the order they are added
+	void addMethod(MethodGen mg);
+	
+	// called once after the last method
+	ClassFile finish();
+}
\ No newline at end of file
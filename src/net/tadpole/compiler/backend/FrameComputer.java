@@ -0,0 +1,721 @@
+package net.tadpole.compiler.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.Unknown;
+import org.apache.bcel.generic.ANEWARRAY;
+import org.apache.bcel.generic.ATHROW;
+import org.apache.bcel.generic.ArrayInstruction;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.BranchInstruction;
+import org.apache.bcel.generic.CPInstruction;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.FieldInstruction;
+import org.apache.bcel.generic.GotoInstruction;
+import org.apache.bcel.generic.IfInstruction;
+import org.apache.bcel.generic.Instruction;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InvokeInstruction;
+import org.apache.bcel.generic.LDC;
+import org.apache.bcel.generic.LDC2_W;
+import org.apache.bcel.generic.LoadInstruction;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.NEW;
+import org.apache.bcel.generic.NEWARRAY;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.ReferenceType;
+import org.apache.bcel.generic.ReturnInstruction;
+import org.apache.bcel.generic.StackInstruction;
+import org.apache.bcel.generic.StoreInstruction;
+import org.apache.bcel.generic.Type;
+import org.apache.bcel.generic.TypedInstruction;
+
+import net.tadpole.compiler.ClassPathIndex;
+import net.tadpole.compiler.SymbolIndex;
+
+// works out the StackMapTable of a method from its final code, class files from version 50 on are checked against it instead of having their types inferred
+// the types of the locals and the stack are followed down every path until they stop changing, references meeting at a branch target become their closest common superclass
+// a frame is written at every branch target and after every goto, return and throw, each one as small as the frame before it allows
+// code no path reaches is overwritten with nops and a final athrow, the only frame the verifier can be given there is an empty one with a Throwable on the stack
+public class FrameComputer
+{
+	public static final int FIRST_VERSION = 50;
+	private static final Type TOP = Type.UNKNOWN;
+	
+	private final ConstantPoolGen cp;
+	private final String className;
+	private final MethodGen mg;
+	private Instruction[] instructions = new Instruction[64];
+	private int[] offsets = new int[64];
+	private int count = 0;
+	
+	// the state while instructions are followed, long and double take two slots like they do in the frame of the JVM
+	private Type[] locals;
+	private Type[] stack = new Type[16];
+	private int top;
+	
+	private boolean deadCode = false;
+	private byte[] table = null;
+	
+	public FrameComputer(ConstantPoolGen cp, String className, MethodGen mg)
+	{
+		this.cp = cp;
+		this.className = className;
+		this.mg = mg;
+	}
+	
+	// adds the StackMapTable to a method BCEL laid out, if the version of the class needs one
+	public static Method addFrames(Method method, MethodGen mg, ClassGen cg)
+	{
+		Code code = method.getCode();
+		if(cg.getMajor() < FIRST_VERSION || code == null)
+			return method;
+		
+		// getMethod left the final offsets on the instruction handles
+		FrameComputer frames = new FrameComputer(cg.getConstantPool(), cg.getClassName(), mg);
+		for(InstructionHandle ih = mg.getInstructionList().getStart(); ih != null; ih = ih.getNext())
+			frames.add(ih.getInstruction(), ih.getPosition());
+		if(!frames.compute(code.getCode(), code.getCode().length) || frames.getTable() == null)
+			return method;
+		
+		Attribute[] attributes = Arrays.copyOf(code.getAttributes(), code.getAttributes().length + 1);
+		attributes[attributes.length - 1] = new Unknown(cg.getConstantPool().addUtf8("StackMapTable"), frames.getTable().length, frames.getTable(), cg.getConstantPool().getConstantPool());
+		code.setAttributes(attributes);
+		code.setMaxStack(frames.getMaxStack(code.getMaxStack()));
+		return method;
+	}
+	
+	// instructions are added in the order they are laid out
+	public void add(Instruction ins, int offset)
+	{
+		if(count == instructions.length)
+		{
+			instructions = Arrays.copyOf(instructions, count * 2);
+			offsets = Arrays.copyOf(offsets, count * 2);
+		}
+		instructions[count] = ins;
+		offsets[count++] = offset;
+	}
+	
+	// code holds the final bytes of the added instructions, branch offsets included, and max locals is set on the method
+	// false when no frames can be given, why is printed and the method is left without a StackMapTable, the verifier then rejects the class before it is written
+	public boolean compute(byte[] code, int length)
+	{
+		try
+		{
+			analyze(code, length);
+			return true;
+		}
+		catch(IllegalStateException e)
+		{
+			System.err.println("Failed to compute stack map frames for method " + className + "." + mg.getName() + mg.getSignature() + ": " + e.getMessage());
+			return false;
+		}
+	}
+	
+	// the body of the StackMapTable attribute, null when the method has no branches and needs none
+	public byte[] getTable()
+	{
+		return table;
+	}
+	
+	// the athrow that replaced unreachable code needs a stack of at least one
+	public int getMaxStack(int maxStack)
+	{
+		return deadCode ? Math.max(maxStack, 1) : maxStack;
+	}
+	
+	private void analyze(byte[] code, int length)
+	{
+		// index of the instruction every branch jumps to, -1 for other instructions
+		int[] targets = new int[count];
+		// instructions that start a block and have their entry state recorded, and the ones of them the verifier needs a frame for
+		boolean[] starts = new boolean[count + 1];
+		boolean[] framed = new boolean[count];
+		starts[0] = true;
+		for(int i = 0; i < count; i++)
+		{
+			Instruction ins = instructions[i];
+			targets[i] = -1;
+			if(ins instanceof BranchInstruction)
+			{
+				if(!(ins instanceof IfInstruction || ins instanceof GotoInstruction))
+					throw new IllegalStateException("Cannot follow " + ins.getName());
+				int offset = offsets[i];
+				int delta = (code[offset] & 0xFF) == Constants.GOTO_W ? readInt(code, offset + 1) : (short) readShort(code, offset + 1);
+				int target = Arrays.binarySearch(offsets, 0, count, offset + delta);
+				if(target < 0)
+					throw new IllegalStateException("Branch into an instruction at offset " + offset);
+				targets[i] = target;
+				starts[target] = framed[target] = true;
+				starts[i + 1] = true;
+			}
+			if(isEnd(ins) && i + 1 < count)
+				starts[i + 1] = framed[i + 1] = true;
+		}
+		
+		int maxLocals = mg.getMaxLocals();
+		Type[] initial = new Type[maxLocals];
+		Arrays.fill(initial, TOP);
+		int slot = 0;
+		if(!mg.isStatic())
+			initial[slot++] = mg.getName().equals("<init>") ? new Uninitialized(new ObjectType(className), -1) : new ObjectType(className);
+		for(Type argType : mg.getArgumentTypes())
+		{
+			initial[slot] = normalize(argType);
+			slot += argType.getSize();
+		}
+		
+		Type[][] entryLocals = new Type[count][];
+		Type[][] entryStacks = new Type[count][];
+		entryLocals[0] = initial;
+		entryStacks[0] = new Type[0];
+		locals = new Type[maxLocals];
+		// blocks are followed lowest offset first, which sees most loop bodies only twice
+		BitSet work = new BitSet(count);
+		work.set(0);
+		for(int block = work.nextSetBit(0); block >= 0; block = work.nextSetBit(0))
+		{
+			work.clear(block);
+			System.arraycopy(entryLocals[block], 0, locals, 0, maxLocals);
+			top = 0;
+			for(Type type : entryStacks[block])
+				pushSlot(type);
+			for(int i = block; ; i++)
+			{
+				execute(instructions[i], i);
+				if(targets[i] >= 0)
+					merge(targets[i], entryLocals, entryStacks, work);
+				if(isEnd(instructions[i]))
+					break;
+				if(i + 1 == count)
+					throw new IllegalStateException("Execution falls off the end of the code");
+				if(starts[i + 1])
+				{
+					merge(i + 1, entryLocals, entryStacks, work);
+					break;
+				}
+			}
+		}
+		
+		ByteVector out = new ByteVector(64);
+		out.putShort(0);
+		int frames = 0;
+		List<Type> previous = entries(initial, maxLocals, true);
+		int previousOffset = -1;
+		boolean reached = true;
+		for(int i = 0; i < count; i++)
+		{
+			if(starts[i])
+				reached = entryLocals[i] != null;
+			if(reached && !framed[i])
+				continue;
+			
+			int offset = offsets[i];
+			List<Type> frameLocals;
+			List<Type> frameStack;
+			if(reached)
+			{
+				frameLocals = entries(entryLocals[i], maxLocals, true);
+				frameStack = entries(entryStacks[i], entryStacks[i].length, false);
+			}
+			else
+			{
+				// unreachable code starts here, everything up to the next reachable instruction becomes nops and an athrow
+				int end = i + 1;
+				while(end < count && !(starts[end] && entryLocals[end] != null))
+					end++;
+				int endOffset = end < count ? offsets[end] : length;
+				Arrays.fill(code, offset, endOffset - 1, (byte) Constants.NOP);
+				code[endOffset - 1] = (byte) Constants.ATHROW;
+				deadCode = true;
+				frameLocals = new ArrayList<Type>();
+				frameStack = Arrays.<Type>asList(Type.THROWABLE);
+				i = end - 1;
+			}
+			writeFrame(out, offset - previousOffset - 1, previous, frameLocals, frameStack);
+			frames++;
+			previous = frameLocals;
+			previousOffset = offset;
+		}
+		if(frames > 0)
+		{
+			byte[] bytes = out.toByteArray();
+			bytes[0] = (byte) (frames >>> 8);
+			bytes[1] = (byte) frames;
+			table = bytes;
+		}
+	}
+	
+	private static boolean isEnd(Instruction ins)
+	{
+		return ins instanceof GotoInstruction || ins instanceof ReturnInstruction || ins instanceof ATHROW;
+	}
+	
+	// merges the current state into the entry state of the block at index, which is followed again when it changed
+	private void merge(int index, Type[][] entryLocals, Type[][] entryStacks, BitSet work)
+	{
+		if(entryLocals[index] == null)
+		{
+			entryLocals[index] = locals.clone();
+			entryStacks[index] = Arrays.copyOf(stack, top);
+			work.set(index);
+			return;
+		}
+		
+		Type[] knownLocals = entryLocals[index];
+		Type[] knownStack = entryStacks[index];
+		if(knownStack.length != top)
+			throw new IllegalStateException("Stack heights differ at offset " + offsets[index]);
+		boolean changed = false;
+		for(int i = 0; i < knownLocals.length; i++)
+		{
+			Type merged = merge(knownLocals[i], locals[i]);
+			changed |= merged != knownLocals[i];
+			knownLocals[i] = merged;
+		}
+		for(int i = 0; i < top; i++)
+		{
+			Type merged = merge(knownStack[i], stack[i]);
+			if(merged == TOP && knownStack[i] != TOP)
+				throw new IllegalStateException("Stack types differ at offset " + offsets[index]);
+			changed |= merged != knownStack[i];
+			knownStack[i] = merged;
+		}
+		if(changed)
+			work.set(index);
+	}
+	
+	// the result is known when it equals known, so that the caller can tell by identity whether anything changed
+	private Type merge(Type known, Type type)
+	{
+		if(known.equals(type) || known == TOP)
+			return known;
+		if(!(known instanceof ReferenceType && type instanceof ReferenceType))
+			return TOP;
+		if(type == Type.NULL)
+			return known;
+		if(known == Type.NULL)
+			return type;
+		if(known instanceof ObjectType && type instanceof ObjectType)
+			return commonSuperclass((ObjectType) known, (ObjectType) type);
+		if(known instanceof ArrayType && type instanceof ArrayType)
+		{
+			ArrayType a = (ArrayType) known;
+			ArrayType b = (ArrayType) type;
+			if(a.getDimensions() == b.getDimensions() && a.getBasicType() instanceof ObjectType && b.getBasicType() instanceof ObjectType)
+			{
+				ObjectType element = commonSuperclass((ObjectType) a.getBasicType(), (ObjectType) b.getBasicType());
+				return element.equals(a.getBasicType()) ? known : new ArrayType(element, a.getDimensions());
+			}
+		}
+		return Type.OBJECT.equals(known) ? known : Type.OBJECT;
+	}
+	
+	private ObjectType commonSuperclass(ObjectType a, ObjectType b)
+	{
+		List<String> superclasses = superclasses(a.getClassName());
+		for(String name : superclasses(b.getClassName()))
+			if(superclasses.contains(name))
+				return name.equals(a.getClassName()) ? a : new ObjectType(name);
+		return Type.OBJECT;
+	}
+	
+	// the class and its superclasses, java.lang.Object last
+	private List<String> superclasses(String name)
+	{
+		List<String> superclasses = new ArrayList<String>();
+		while(name != null && !name.equals("java.lang.Object"))
+		{
+			superclasses.add(name);
+			// module and struct classes extend Object and may not have been generated yet
+			if(name.equals(className) || SymbolIndex.getModule(name) != null || SymbolIndex.getStruct(name) != null)
+				break;
+			JavaClass jc = ClassPathIndex.lookupClass(name);
+			name = jc == null ? null : jc.getSuperclassName();
+		}
+		superclasses.add("java.lang.Object");
+		return superclasses;
+	}
+	
+	private void execute(Instruction ins, int index)
+	{
+		if(ins instanceof LoadInstruction)
+		{
+			Type type = ((LoadInstruction) ins).getType(cp);
+			push(type instanceof ReferenceType ? locals[((LoadInstruction) ins).getIndex()] : normalize(type));
+		}
+		else if(ins instanceof StoreInstruction)
+		{
+			int local = ((StoreInstruction) ins).getIndex();
+			Type type = ((StoreInstruction) ins).getType(cp);
+			type = type instanceof ReferenceType ? stack[top - 1] : normalize(type);
+			pop(type.getSize());
+			if(local > 0 && locals[local - 1].getSize() == 2)
+				locals[local - 1] = TOP;
+			locals[local] = type;
+			if(type.getSize() == 2)
+				locals[local + 1] = TOP;
+		}
+		else if(ins instanceof BranchInstruction || ins instanceof ReturnInstruction || ins instanceof ATHROW)
+			pop(ins.consumeStack(cp));
+		else if(ins instanceof InvokeInstruction)
+		{
+			InvokeInstruction invoke = (InvokeInstruction) ins;
+			int consumed = invoke.consumeStack(cp);
+			Type receiver = consumed > 0 ? stack[top - consumed] : null;
+			pop(consumed);
+			if(ins.getOpcode() == Constants.INVOKESPECIAL && invoke.getMethodName(cp).equals("<init>") && receiver instanceof Uninitialized)
+				initialize((Uninitialized) receiver);
+			if(invoke.getReturnType(cp) != Type.VOID)
+				push(normalize(invoke.getReturnType(cp)));
+		}
+		else if(ins instanceof FieldInstruction)
+		{
+			pop(ins.consumeStack(cp));
+			if(ins.produceStack(cp) > 0)
+				push(normalize(((FieldInstruction) ins).getFieldType(cp)));
+		}
+		else if(ins instanceof StackInstruction)
+			shuffle(ins.getOpcode());
+		else if(ins instanceof ArrayInstruction)
+		{
+			if(ins.getOpcode() == Constants.AALOAD)
+			{
+				pop(1);
+				Type array = pop();
+				if(array instanceof ArrayType)
+					push(normalize(((ArrayType) array).getElementType()));
+				else if(array == Type.NULL)
+					push(Type.NULL);
+				else
+					throw new IllegalStateException("Element of a non-array " + array);
+			}
+			else
+			{
+				pop(ins.consumeStack(cp));
+				if(ins.produceStack(cp) > 0)
+					push(normalize(((ArrayInstruction) ins).getType(cp)));
+			}
+		}
+		else
+		{
+			switch(ins.getOpcode())
+			{
+			case Constants.NOP:
+			case Constants.IINC:
+				break;
+			case Constants.ACONST_NULL:
+				push(Type.NULL);
+				break;
+			case Constants.LDC:
+			case Constants.LDC_W:
+				push(normalize(((LDC) ins).getType(cp)));
+				break;
+			case Constants.LDC2_W:
+				push(((LDC2_W) ins).getType(cp));
+				break;
+			case Constants.NEW:
+				push(new Uninitialized(((NEW) ins).getLoadClassType(cp), offsets[index]));
+				break;
+			case Constants.NEWARRAY:
+				pop(1);
+				push(((NEWARRAY) ins).getType());
+				break;
+			case Constants.ANEWARRAY:
+				pop(1);
+				push(new ArrayType(((ANEWARRAY) ins).getType(cp), 1));
+				break;
+			case Constants.MULTIANEWARRAY:
+			case Constants.CHECKCAST:
+				pop(ins.consumeStack(cp));
+				push(((CPInstruction) ins).getType(cp));
+				break;
+			case Constants.INSTANCEOF:
+			case Constants.ARRAYLENGTH:
+				pop(1);
+				push(Type.INT);
+				break;
+			case Constants.LCMP:
+			case Constants.FCMPL:
+			case Constants.FCMPG:
+			case Constants.DCMPL:
+			case Constants.DCMPG:
+				pop(ins.consumeStack(cp));
+				push(Type.INT);
+				break;
+			case Constants.MONITORENTER:
+			case Constants.MONITOREXIT:
+				pop(1);
+				break;
+			default:
+				// constants, arithmetic and conversions push a value of the type of the instruction
+				if(!(ins instanceof TypedInstruction) || ins.produceStack(cp) != ((TypedInstruction) ins).getType(cp).getSize())
+					throw new IllegalStateException("Cannot follow " + ins.getName());
+				pop(ins.consumeStack(cp));
+				push(normalize(((TypedInstruction) ins).getType(cp)));
+			}
+		}
+	}
+	
+	// a constructor ran, every copy of the object it ran on is initialized now
+	private void initialize(Uninitialized object)
+	{
+		for(int i = 0; i < locals.length; i++)
+			if(locals[i].equals(object))
+				locals[i] = object.type;
+		for(int i = 0; i < top; i++)
+			if(stack[i].equals(object))
+				stack[i] = object.type;
+	}
+	
+	// the dup, pop and swap instructions move slots without looking at their types
+	private void shuffle(short opcode)
+	{
+		Type v1, v2, v3, v4;
+		switch(opcode)
+		{
+		case Constants.POP:
+			pop(1);
+			break;
+		case Constants.POP2:
+			pop(2);
+			break;
+		case Constants.DUP:
+			pushSlot(stack[top - 1]);
+			break;
+		case Constants.DUP_X1:
+			v1 = pop();
+			v2 = pop();
+			pushSlots(v1, v2, v1);
+			break;
+		case Constants.DUP_X2:
+			v1 = pop();
+			v2 = pop();
+			v3 = pop();
+			pushSlots(v1, v3, v2, v1);
+			break;
+		case Constants.DUP2:
+			v1 = pop();
+			v2 = pop();
+			pushSlots(v2, v1, v2, v1);
+			break;
+		case Constants.DUP2_X1:
+			v1 = pop();
+			v2 = pop();
+			v3 = pop();
+			pushSlots(v2, v1, v3, v2, v1);
+			break;
+		case Constants.DUP2_X2:
+			v1 = pop();
+			v2 = pop();
+			v3 = pop();
+			v4 = pop();
+			pushSlots(v2, v1, v4, v3, v2, v1);
+			break;
+		case Constants.SWAP:
+			v1 = pop();
+			v2 = pop();
+			pushSlots(v1, v2);
+			break;
+		default:
+			throw new IllegalStateException("Cannot follow opcode " + opcode);
+		}
+	}
+	
+	private void push(Type type)
+	{
+		pushSlot(type);
+		if(type.getSize() == 2)
+			pushSlot(TOP);
+	}
+	
+	private void pushSlots(Type... types)
+	{
+		for(Type type : types)
+			pushSlot(type);
+	}
+	
+	private void pushSlot(Type type)
+	{
+		if(top == stack.length)
+			stack = Arrays.copyOf(stack, top * 2);
+		stack[top++] = type;
+	}
+	
+	private Type pop()
+	{
+		if(top == 0)
+			throw new IllegalStateException("Stack underflow");
+		return stack[--top];
+	}
+	
+	private void pop(int slots)
+	{
+		if(slots > top)
+			throw new IllegalStateException("Stack underflow");
+		top -= slots;
+	}
+	
+	// the verifier knows booleans, bytes, chars and shorts only as ints
+	private static Type normalize(Type type)
+	{
+		switch(type.getType())
+		{
+		case Constants.T_BOOLEAN:
+		case Constants.T_BYTE:
+		case Constants.T_CHAR:
+		case Constants.T_SHORT:
+			return Type.INT;
+		default:
+			return type;
+		}
+	}
+	
+	// frames list a long or double once, trailing unusable locals are left out
+	private static List<Type> entries(Type[] slots, int size, boolean trim)
+	{
+		if(trim)
+			while(size > 0 && slots[size - 1] == TOP && (size < 2 || slots[size - 2].getSize() != 2))
+				size--;
+		List<Type> entries = new ArrayList<Type>(size);
+		for(int i = 0; i < size; i++)
+		{
+			entries.add(slots[i]);
+			if(slots[i].getSize() == 2)
+				i++;
+		}
+		return entries;
+	}
+	
+	private void writeFrame(ByteVector out, int delta, List<Type> previous, List<Type> frameLocals, List<Type> frameStack)
+	{
+		int added = frameLocals.size() - previous.size();
+		int common = Math.min(frameLocals.size(), previous.size());
+		boolean prefix = frameLocals.subList(0, common).equals(previous.subList(0, common));
+		if(prefix && added == 0 && frameStack.isEmpty())
+		{
+			if(delta < 64)
+				out.write(delta);
+			else
+			{
+				out.write(251);
+				out.putShort(delta);
+			}
+		}
+		else if(prefix && added == 0 && frameStack.size() == 1)
+		{
+			if(delta < 64)
+				out.write(64 + delta);
+			else
+			{
+				out.write(247);
+				out.putShort(delta);
+			}
+			writeType(out, frameStack.get(0));
+		}
+		else if(prefix && added != 0 && added >= -3 && added <= 3 && frameStack.isEmpty())
+		{
+			// chops the last locals or appends new ones
+			out.write(251 + added);
+			out.putShort(delta);
+			for(int i = common; i < frameLocals.size(); i++)
+				writeType(out, frameLocals.get(i));
+		}
+		else
+		{
+			out.write(255);
+			out.putShort(delta);
+			out.putShort(frameLocals.size());
+			for(Type type : frameLocals)
+				writeType(out, type);
+			out.putShort(frameStack.size());
+			for(Type type : frameStack)
+				writeType(out, type);
+		}
+	}
+	
+	private void writeType(ByteVector out, Type type)
+	{
+		if(type instanceof Uninitialized)
+		{
+			int offset = ((Uninitialized) type).offset;
+			if(offset < 0)
+				out.write(6);
+			else
+			{
+				out.write(8);
+				out.putShort(offset);
+			}
+		}
+		else if(type == TOP)
+			out.write(0);
+		else if(type == Type.NULL)
+			out.write(5);
+		else if(type instanceof ArrayType)
+		{
+			out.write(7);
+			out.putShort(cp.addArrayClass((ArrayType) type));
+		}
+		else if(type instanceof ObjectType)
+		{
+			out.write(7);
+			out.putShort(cp.addClass((ObjectType) type));
+		}
+		else
+		{
+			switch(type.getType())
+			{
+			case Constants.T_INT:
+				out.write(1);
+				break;
+			case Constants.T_FLOAT:
+				out.write(2);
+				break;
+			case Constants.T_DOUBLE:
+				out.write(3);
+				break;
+			case Constants.T_LONG:
+				out.write(4);
+				break;
+			default:
+				throw new IllegalStateException("No verification type for " + type);
+			}
+		}
+	}
+	
+	private static int readShort(byte[] code, int offset)
+	{
+		return (code[offset] & 0xFF) << 8 | code[offset + 1] & 0xFF;
+	}
+	
+	private static int readInt(byte[] code, int offset)
+	{
+		return readShort(code, offset) << 16 | readShort(code, offset + 2);
+	}
+	
+	// an object created by the NEW at offset whose constructor has not run yet, offset -1 is this inside a constructor
+	private static final class Uninitialized extends Type
+	{
+		private static final long serialVersionUID = -844511457796782431L;
+		
+		private final ObjectType type;
+		private final int offset;
+		
+		Uninitialized(ObjectType type, int offset)
+		{
+			super(Constants.T_UNKNOWN, "uninitialized " + offset);
+			this.type = type;
+			this.offset = offset;
+		}
+	}
+}
\ No newline at end of file
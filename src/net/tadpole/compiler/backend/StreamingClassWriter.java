@@ -0,0 +1,301 @@
+package net.tadpole.compiler.backend;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.generic.ATHROW;
+import org.apache.bcel.generic.BranchInstruction;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.GotoInstruction;
+import org.apache.bcel.generic.IfInstruction;
+import org.apache.bcel.generic.IndexedInstruction;
+import org.apache.bcel.generic.Instruction;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.LocalVariableGen;
+import org.apache.bcel.generic.LocalVariableInstruction;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.NOP;
+import org.apache.bcel.generic.ReturnInstruction;
+import org.apache.bcel.generic.Type;
+import org.apache.bcel.generic.TypedInstruction;
+
+// an alternative class file encoder, each method is encoded from its finished instruction list in one pass as it is added
+// NOPs are skipped instead of deleted, max locals and max stack are worked out while encoding and branch offsets are patched at the end
+// the bytes are the same ones MethodGen.getMethod and ClassGen.getJavaClass produce, down to the order of the constant pool,
+// a method this pass cannot handle alone is handed to BCEL: switches, subroutines, exception handlers and methods close to the 64k branch limit
+// from class file version 50 on the instructions are kept as they are encoded so that stack map frames can be worked out once the offsets are final
+public class StreamingClassWriter implements ClassFileWriter
+{
+	private final ClassGen cg;
+	private final ConstantPoolGen cp;
+	private final ByteVector methods = new ByteVector(1024);
+	private final DataOutputStream methodsOut = new DataOutputStream(methods);
+	private int methodCount = 0;
+	
+	// reused by every method of the class
+	private final ByteVector code = new ByteVector(256);
+	private final DataOutputStream codeOut = new DataOutputStream(code);
+	// offsets of the instructions that are branched to or start and end a local variable
+	private final Map<InstructionHandle, Integer> positions = new IdentityHashMap<InstructionHandle, Integer>();
+	// stack depth on entry to every branch target seen so far
+	private final Map<InstructionHandle, Integer> depths = new IdentityHashMap<InstructionHandle, Integer>();
+	private final List<InstructionHandle> branchTargets = new ArrayList<InstructionHandle>();
+	private int[] branchPositions = new int[16];
+	// null unless the class gets stack map frames
+	private FrameComputer frames;
+	
+	public StreamingClassWriter(ClassGen cg)
+	{
+		this.cg = cg;
+		this.cp = cg.getConstantPool();
+	}
+	
+	@Override
+	public void addMethod(MethodGen mg)
+	{
+		int nameIndex = cp.addUtf8(mg.getName());
+		int signatureIndex = cp.addUtf8(mg.getSignature());
+		if(!encode(mg))
+		{
+			// the name and signature are already in the pool, getMethod finds them again
+			mg.removeNOPs();
+			mg.setMaxLocals();
+			mg.setMaxStack();
+			try
+			{
+				FrameComputer.addFrames(mg.getMethod(), mg, cg).dump(methodsOut);
+			}
+			catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			methodCount++;
+			return;
+		}
+		
+		LocalVariableGen[] locals = mg.getLocalVariables();
+		int[] localIndices = new int[locals.length * 4];
+		for(int i = 0; i < locals.length; i++)
+		{
+			InstructionHandle start = resolve(locals[i].getStart());
+			InstructionHandle end = resolve(locals[i].getEnd());
+			int startPosition = positions.get(start);
+			int length = positions.get(end) - startPosition;
+			if(end.getNext() == null)
+				length += end.getInstruction().getLength();
+			localIndices[i * 4] = startPosition;
+			localIndices[i * 4 + 1] = length;
+			localIndices[i * 4 + 2] = cp.addUtf8(locals[i].getName());
+			localIndices[i * 4 + 3] = cp.addUtf8(locals[i].getType().getSignature());
+		}
+		int localTableIndex = locals.length > 0 ? cp.addUtf8("LocalVariableTable") : 0;
+		int codeIndex = cp.addUtf8("Code");
+		// after everything BCEL adds for the method, in the order FrameComputer.addFrames adds it to a method BCEL wrote
+		byte[] stackMapTable = null;
+		int stackMapIndex = 0;
+		if(frames != null && frames.compute(code.buffer(), code.size()) && frames.getTable() != null)
+		{
+			stackMapTable = frames.getTable();
+			stackMapIndex = cp.addUtf8("StackMapTable");
+			mg.setMaxStack(frames.getMaxStack(mg.getMaxStack()));
+		}
+		
+		methods.putShort(mg.getAccessFlags());
+		methods.putShort(nameIndex);
+		methods.putShort(signatureIndex);
+		methods.putShort(1);
+		
+		int localTableLength = locals.length > 0 ? 6 + 2 + locals.length * 10 : 0;
+		methods.putShort(codeIndex);
+		int stackMapLength = stackMapTable != null ? 6 + stackMapTable.length : 0;
+		methods.putInt(8 + code.size() + 2 + 2 + localTableLength + stackMapLength);
+		methods.putShort(mg.getMaxStack());
+		methods.putShort(mg.getMaxLocals());
+		methods.putInt(code.size());
+		code.writeTo(methods);
+		methods.putShort(0); // exception table
+		methods.putShort((locals.length > 0 ? 1 : 0) + (stackMapTable != null ? 1 : 0));
+		if(locals.length > 0)
+		{
+			methods.putShort(localTableIndex);
+			methods.putInt(2 + locals.length * 10);
+			methods.putShort(locals.length);
+			for(int i = 0; i < locals.length; i++)
+			{
+				methods.putShort(localIndices[i * 4]);
+				methods.putShort(localIndices[i * 4 + 1]);
+				methods.putShort(localIndices[i * 4 + 2]);
+				methods.putShort(localIndices[i * 4 + 3]);
+				methods.putShort(locals[i].getIndex());
+			}
+		}
+		if(stackMapTable != null)
+		{
+			methods.putShort(stackMapIndex);
+			methods.putInt(stackMapTable.length);
+			methods.write(stackMapTable, 0, stackMapTable.length);
+		}
+		methodCount++;
+	}
+	
+	// fills code and sets max locals and max stack on mg, false if the method has to go through BCEL
+	private boolean encode(MethodGen mg)
+	{
+		if(mg.getExceptionHandlers().length > 0 || mg.getLineNumbers().length > 0 || mg.getAttributes().length > 0 || mg.getCodeAttributes().length > 0)
+			return false;
+		
+		InstructionList il = mg.getInstructionList();
+		code.reset();
+		positions.clear();
+		depths.clear();
+		branchTargets.clear();
+		frames = cg.getMajor() >= FrameComputer.FIRST_VERSION ? new FrameComputer(cp, cg.getClassName(), mg) : null;
+		
+		int maxLocals = mg.isStatic() ? 0 : 1;
+		for(Type argType : mg.getArgumentTypes())
+			maxLocals += argType.getSize();
+		int depth = 0;
+		int maxStack = 0;
+		// false after a goto, return or throw until an instruction that is branched to
+		boolean reachable = true;
+		// false when the depths at a branch target disagree, BCEL then walks the control flow itself as it always has
+		boolean consistent = true;
+		// a NOP that was branched to was skipped, the instruction after it takes its place
+		boolean targeted = false;
+		for(InstructionHandle ih = il.getStart(); ih != null; ih = ih.getNext())
+		{
+			Instruction ins = ih.getInstruction();
+			// removed the way MethodGen.removeNOPs removes them, a NOP at the very end stays
+			if(ins instanceof NOP && ih.getNext() != null)
+			{
+				targeted |= ih.hasTargeters();
+				continue;
+			}
+			
+			if(targeted || ih.hasTargeters() || ih.getNext() == null || code.size() == 0)
+			{
+				positions.put(ih, code.size());
+				Integer known = depths.get(ih);
+				if(!reachable && known != null)
+				{
+					depth = known;
+					reachable = true;
+				}
+				else if(!reachable ? targeted || ih.hasTargeters() : known != null && known != depth)
+					consistent = false;
+				if(reachable)
+					depths.put(ih, depth);
+				targeted = false;
+			}
+			
+			if(frames != null)
+				frames.add(ins, code.size());
+			if(ins instanceof LocalVariableInstruction)
+				maxLocals = Math.max(maxLocals, ((IndexedInstruction) ins).getIndex() + ((TypedInstruction) ins).getType(cp).getSize());
+			if(reachable)
+			{
+				depth += ins.produceStack(cp) - ins.consumeStack(cp);
+				maxStack = Math.max(maxStack, depth);
+			}
+			
+			if(ins instanceof BranchInstruction)
+			{
+				// switches and subroutines, and wide gotos only appear in methods BCEL has to lay out anyway
+				if(!(ins instanceof IfInstruction || ins instanceof GotoInstruction) || ins.getLength() != 3)
+					return false;
+				InstructionHandle target = resolve(((BranchInstruction) ins).getTarget());
+				Integer known = depths.get(target);
+				if(reachable && known == null && !positions.containsKey(target))
+					depths.put(target, depth);
+				else if(reachable && (known == null || known != depth))
+					consistent = false;
+				
+				if(branchTargets.size() == branchPositions.length)
+					branchPositions = Arrays.copyOf(branchPositions, branchPositions.length * 2);
+				branchPositions[branchTargets.size()] = code.size();
+				branchTargets.add(target);
+				code.write(ins.getOpcode());
+				code.putShort(0);
+				if(ins instanceof GotoInstruction)
+					reachable = false;
+			}
+			else
+			{
+				try
+				{
+					ins.dump(codeOut);
+				}
+				catch(IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+				if(ins instanceof ReturnInstruction || ins instanceof ATHROW)
+					reachable = false;
+			}
+		}
+		
+		// BCEL widens a goto whose offset could get within two bytes per branch of the limit
+		if(code.size() + 2 * branchTargets.size() >= Short.MAX_VALUE)
+			return false;
+		for(int i = 0; i < branchTargets.size(); i++)
+			code.setShort(branchPositions[i] + 1, positions.get(branchTargets.get(i)) - branchPositions[i]);
+		
+		mg.setMaxLocals(maxLocals);
+		mg.setMaxStack(consistent ? maxStack : MethodGen.getMaxStack(cp, il, mg.getExceptionHandlers()));
+		return true;
+	}
+	
+	// the instruction a skipped NOP hands its targeters to
+	private static InstructionHandle resolve(InstructionHandle ih)
+	{
+		while(ih.getInstruction() instanceof NOP && ih.getNext() != null)
+			ih = ih.getNext();
+		return ih;
+	}
+	
+	@Override
+	public ClassFile finish()
+	{
+		ByteVector out = new ByteVector(methods.size() + 256 + cp.getSize() * 16);
+		DataOutputStream data = new DataOutputStream(out);
+		try
+		{
+			out.putInt(0xCAFEBABE);
+			out.putShort(cg.getMinor());
+			out.putShort(cg.getMajor());
+			cp.getFinalConstantPool().dump(data);
+			out.putShort(cg.getAccessFlags());
+			out.putShort(cg.getClassNameIndex());
+			out.putShort(cg.getSuperclassNameIndex());
+			int[] interfaces = cg.getInterfaces();
+			out.putShort(interfaces.length);
+			for(int index : interfaces)
+				out.putShort(index);
+			Field[] fields = cg.getFields();
+			out.putShort(fields.length);
+			for(Field field : fields)
+				field.dump(data);
+			out.putShort(methodCount);
+			methods.writeTo(out);
+			Attribute[] attributes = cg.getAttributes();
+			out.putShort(attributes.length);
+			for(Attribute attribute : attributes)
+				attribute.dump(data);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		return new ClassFile(cg.getClassName(), out.toByteArray(), null);
+	}
+}
\ No newline at end of file
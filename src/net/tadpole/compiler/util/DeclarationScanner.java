@@ -0,0 +1,84 @@
+package net.tadpole.compiler.util;
+
+import java.util.Arrays;
+
+public class DeclarationScanner
+{
+	// finds where top-level def, struct and import declarations start without lexing, only brackets, comments and literals are tracked
+	public static int[] findDeclarationStarts(char[] source, int length)
+	{
+		int[] starts = new int[64];
+		int count = 0;
+		int depth = 0;
+		int i = 0;
+		while(i < length)
+		{
+			char c = source[i];
+			if(c == '#')
+			{
+				while(i < length && source[i] != '\n')
+					i++;
+			}
+			else if(c == '"' || c == '\'')
+			{
+				i = skipLiteral(source, length, i);
+			}
+			else if(c == '{' || c == '(' || c == '[')
+			{
+				depth++;
+				i++;
+			}
+			else if(c == '}' || c == ')' || c == ']')
+			{
+				depth--;
+				i++;
+			}
+			else if(isIdentifierPart(c))
+			{
+				// numbers are consumed the same way so a suffix like the h in 0h1F is never mistaken for the start of a word
+				int start = i;
+				while(i < length && isIdentifierPart(source[i]))
+					i++;
+				if(depth == 0 && (matches(source, start, i, "def") || matches(source, start, i, "struct") || matches(source, start, i, "import")))
+				{
+					if(count == starts.length)
+						starts = Arrays.copyOf(starts, count * 2);
+					starts[count++] = start;
+				}
+			}
+			else
+			{
+				i++;
+			}
+		}
+		return Arrays.copyOf(starts, count);
+	}
+	
+	private static int skipLiteral(char[] source, int length, int i)
+	{
+		char quote = source[i++];
+		while(i < length)
+		{
+			if(source[i] == '\\')
+				i += 2;
+			else if(source[i++] == quote)
+				return i;
+		}
+		return length;
+	}
+	
+	private static boolean isIdentifierPart(char c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$';
+	}
+	
+	private static boolean matches(char[] source, int start, int end, String word)
+	{
+		if(end - start != word.length())
+			return false;
+		for(int i = 0; i < word.length(); i++)
+			if(source[start + i] != word.charAt(i))
+				return false;
+		return true;
+	}
+}
\ No newline at end of file
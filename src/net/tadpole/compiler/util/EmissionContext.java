@@ -0,0 +1,47 @@
+package net.tadpole.compiler.util;
+
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+
+// what generating the code of one method needs, made once per method and handed to every statement and expression in it
+// they all append to the instruction list of the method as they go, nothing builds a list of its own that is copied into its parent afterwards
+public class EmissionContext
+{
+	public final ClassGen cg;
+	public final MethodGen mg;
+	public final ConstantPoolGen cp;
+	public final InstructionFactory factory;
+	public final InstructionList il;
+	
+	public EmissionContext(ClassGen cg, MethodGen mg)
+	{
+		this.cg = cg;
+		this.mg = mg;
+		this.cp = cg.getConstantPool();
+		this.factory = new InstructionFactory(cg, cp);
+		this.il = mg.getInstructionList();
+	}
+	
+	// the conversion from one type to the other, nothing when they are the same
+	public void cast(Type from, Type to)
+	{
+		TypeUtils.cast(from, to, factory, il);
+	}
+	
+	// the last instruction so far, null while the method is empty
+	public InstructionHandle mark()
+	{
+		return il.getEnd();
+	}
+	
+	// the first instruction appended after mark() returned the given handle
+	public InstructionHandle firstAfter(InstructionHandle mark)
+	{
+		return mark == null ? il.getStart() : mark.getNext();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package net.tadpole.compiler.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+
+// the scope table attribution works with, one per method body: the class and method the body belongs to and the locals in scope at each point
+// locals get their slots here, one after the other in declaration order the way MethodGen would hand them out, and code generation declares them at those slots
+// a name declared again while the first declaration is still in scope keeps resolving to the first one
+public class MethodScope
+{
+	public static class Local
+	{
+		public final String name;
+		public final Type type;
+		public final int index;
+		
+		Local(String name, Type type, int index)
+		{
+			this.name = name;
+			this.type = type;
+			this.index = index;
+		}
+	}
+	
+	public final String className;
+	public final String methodName;
+	public final Type returnType;
+	private final Map<String, Local> visible = new HashMap<String, Local>();
+	// the locals declared in each open block, innermost first, the last one is the method body and is never closed
+	private final Deque<List<Local>> scopes = new ArrayDeque<List<Local>>();
+	private int nextIndex = 0;
+	
+	public MethodScope(String className, String methodName, boolean isStatic, Type returnType, Type[] argTypes, String[] argNames)
+	{
+		this.className = className;
+		this.methodName = methodName;
+		this.returnType = returnType;
+		scopes.push(new ArrayList<Local>());
+		if(!isStatic)
+			declare("this", new ObjectType(className));
+		for(int i = 0; i < argTypes.length; i++)
+			declare(argNames[i], argTypes[i]);
+	}
+	
+	// the local with that name that is in scope, null if there is none
+	public Local getLocal(String name)
+	{
+		return visible.get(name);
+	}
+	
+	public Local declare(String name, Type type)
+	{
+		Local local = new Local(name, type, nextIndex);
+		nextIndex += type.getSize();
+		scopes.peek().add(local);
+		visible.putIfAbsent(name, local);
+		return local;
+	}
+	
+	public void openScope()
+	{
+		scopes.push(new ArrayList<Local>());
+	}
+	
+	public void closeScope()
+	{
+		for(Local local : scopes.pop())
+			visible.remove(local.name, local);
+	}
+}
\ No newline at end of file
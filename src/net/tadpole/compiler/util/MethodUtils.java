@@ -1,25 +1,25 @@
 package net.tadpole.compiler.util;
 
-import java.lang.reflect.Field;
-import java.util.List;
-
+import org.apache.bcel.generic.InstructionHandle;
 import org.apache.bcel.generic.LocalVariableGen;
 import org.apache.bcel.generic.MethodGen;
 
+// every method the compiler generates code for is a ScopedMethodGen
 public class MethodUtils
 {
-	@SuppressWarnings("unchecked")
-	public static List<LocalVariableGen> getLocalVars(MethodGen mg)
+	// code generation declares every local at the slot attribution gave it
+	public static LocalVariableGen declareLocal(MethodGen mg, MethodScope.Local local, InstructionHandle start)
+	{
+		return ((ScopedMethodGen) mg).declareLocal(local, start);
+	}
+	
+	public static void openScope(MethodGen mg)
+	{
+		((ScopedMethodGen) mg).openScope();
+	}
+	
+	public static void closeScope(MethodGen mg, InstructionHandle end)
 	{
-		try
-		{
-			Field f = mg.getClass().getDeclaredField("variable_vec");
-			f.setAccessible(true);
-			return (List<LocalVariableGen>) f.get(mg);
-		}
-		catch(Exception e)
-		{
-			throw new RuntimeException(e.getMessage(), e);
-		}
+		((ScopedMethodGen) mg).closeScope(end);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package net.tadpole.compiler.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.LocalVariableGen;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+
+// a MethodGen that tracks the blocks of the method itself, so closing a block only touches the locals the block declared
+// which locals a name refers to and their slots were worked out by attribution, here they only get their ranges
+public class ScopedMethodGen extends MethodGen
+{
+	private static final long serialVersionUID = -2399154359375312323L;
+	
+	// the locals declared in each open block, innermost first, the last one is the method body and is never closed
+	private final Deque<List<LocalVariableGen>> scopes = new ArrayDeque<List<LocalVariableGen>>();
+	
+	public ScopedMethodGen(int accessFlags, Type returnType, Type[] argTypes, String[] argNames, String methodName, String className, InstructionList il, ConstantPoolGen cp)
+	{
+		super(accessFlags, returnType, argTypes, argNames, methodName, className, il, cp);
+		scopes.push(new ArrayList<LocalVariableGen>());
+	}
+	
+	// the range starts at start and stays open until the enclosing block is closed
+	public LocalVariableGen declareLocal(MethodScope.Local local, InstructionHandle start)
+	{
+		LocalVariableGen lvg = addLocalVariable(local.name, local.type, local.index, start, null);
+		scopes.peek().add(lvg);
+		return lvg;
+	}
+	
+	public void openScope()
+	{
+		scopes.push(new ArrayList<LocalVariableGen>());
+	}
+	
+	// end is the last instruction of the block, every local it declared ends there
+	public void closeScope(InstructionHandle end)
+	{
+		for(LocalVariableGen lvg : scopes.pop())
+			lvg.setEnd(end);
+	}
+}
\ No newline at end of file
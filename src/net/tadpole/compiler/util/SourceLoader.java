@@ -0,0 +1,112 @@
+package net.tadpole.compiler.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+public class SourceLoader
+{
+	private static final int DIRECT_READ_LIMIT = 1 << 20;
+	private static final int MAP_WINDOW_SIZE = 1 << 26;
+	
+	// the decoded source is chars.array()[0, chars.position()), with the line endings the line reader earlier versions used left behind
+	public static CharBuffer loadChars(String fileName) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			// UTF-8 never decodes to more chars than it has bytes, so this buffer is never outgrown
+			if(size > Integer.MAX_VALUE - 8)
+				throw new IOException("Source file is too large: " + fileName);
+			CharBuffer chars = CharBuffer.allocate((int) size);
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			
+			if(size <= DIRECT_READ_LIMIT)
+			{
+				ByteBuffer bytes = ByteBuffer.allocate((int) size);
+				while(bytes.hasRemaining())
+					if(channel.read(bytes) < 0)
+						break;
+				bytes.flip();
+				decode(decoder, bytes, chars, true);
+			}
+			else
+			{
+				// large files are mapped a window at a time so the raw bytes never sit on the heap
+				ByteBuffer carry = ByteBuffer.allocate(8);
+				for(long position = 0; position < size; position += MAP_WINDOW_SIZE)
+				{
+					long length = Math.min(MAP_WINDOW_SIZE, size - position);
+					ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+					boolean last = position + length >= size;
+					
+					// finish a multi-byte sequence that was split across the previous window boundary
+					if(carry.position() > 0)
+					{
+						while(carry.hasRemaining() && window.hasRemaining())
+						{
+							carry.put(window.get());
+							carry.flip();
+							CoderResult result = decoder.decode(carry, chars, false);
+							if(result.isError())
+								result.throwException();
+							carry.compact();
+							if(carry.position() == 0)
+								break;
+						}
+					}
+					
+					decode(decoder, window, chars, last);
+					carry.put(window);
+				}
+				carry.flip();
+				decode(decoder, carry, chars, true);
+			}
+			
+			CoderResult result = decoder.flush(chars);
+			if(result.isError())
+				result.throwException();
+			
+			normalizeLineEndings(chars);
+			return chars;
+		}
+	}
+	
+	private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput) throws CharacterCodingException
+	{
+		CoderResult result = decoder.decode(bytes, chars, endOfInput);
+		if(result.isError() || result.isOverflow())
+			result.throwException();
+	}
+	
+	// \r\n and a lone \r become \n and the terminator of the last line is dropped, in place,
+	// the text is then the same as joining BufferedReader.lines() with \n, which string literals spanning lines depend on
+	private static void normalizeLineEndings(CharBuffer chars)
+	{
+		char[] array = chars.array();
+		int length = chars.position();
+		int out = 0;
+		for(int i = 0; i < length; i++)
+		{
+			char c = array[i];
+			if(c == '\r')
+			{
+				if(i + 1 < length && array[i + 1] == '\n')
+					i++;
+				c = '\n';
+			}
+			array[out++] = c;
+		}
+		if(out > 0 && array[out - 1] == '\n')
+			out--;
+		chars.position(out);
+	}
+}
\ No newline at end of file
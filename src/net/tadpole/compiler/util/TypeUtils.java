@@ -1,16 +1,16 @@
 package net.tadpole.compiler.util;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.apache.bcel.Constants;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ArrayType;
 import org.apache.bcel.generic.BasicType;
-import org.apache.bcel.generic.ConstantPoolGen;
 import org.apache.bcel.generic.InstructionFactory;
 import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.ObjectType;
 import org.apache.bcel.generic.ReferenceType;
 import org.apache.bcel.generic.Type;
 
@@ -27,6 +27,25 @@ public class TypeUtils
 	public static final int BOOLEAN = 5;
 	public static final int OBJECT = 6;
 	
+	// which primitive conversions have an instruction, indexed by the BCEL type tags of the source and the target
+	// anything else between primitives (byte to int, long to byte, anything with boolean) has always been emitted as nothing
+	private static final boolean[][] CONVERSIONS = new boolean[Constants.T_VOID + 1][Constants.T_VOID + 1];
+	
+	static
+	{
+		byte[] wide = {Constants.T_INT, Constants.T_LONG, Constants.T_FLOAT, Constants.T_DOUBLE};
+		for(byte from : wide)
+			for(byte to : wide)
+				CONVERSIONS[from][to] = from != to;
+		CONVERSIONS[Constants.T_INT][Constants.T_BYTE] = true;
+		CONVERSIONS[Constants.T_INT][Constants.T_CHAR] = true;
+		CONVERSIONS[Constants.T_INT][Constants.T_SHORT] = true;
+		// BCEL widens these to long as if they were int
+		CONVERSIONS[Constants.T_CHAR][Constants.T_LONG] = true;
+		CONVERSIONS[Constants.T_BYTE][Constants.T_LONG] = true;
+		CONVERSIONS[Constants.T_SHORT][Constants.T_LONG] = true;
+	}
+	
 	public static boolean isOfType(Type type, int t)
 	{
 		switch(t)
@@ -56,139 +75,101 @@ public class TypeUtils
 		}
 	}
 	
-	public static InstructionList cast(Type from, Type to, InstructionFactory factory)
+	// appends the conversion to il, nothing when the types are the same
+	public static void cast(Type from, Type to, InstructionFactory factory, InstructionList il)
 	{
-		InstructionList il = new InstructionList();
-		if(!from.equals(to))
+		if(from.equals(to))
+			return;
+		// BCEL only knows a conversion when it can load its instruction class, the table answers that without trying
+		if(from instanceof BasicType && to instanceof BasicType)
 		{
-			try
-			{
+			if(CONVERSIONS[from.getType()][to.getType()])
 				il.append(factory.createCast(from, to));
-			}
-			catch(RuntimeException e)
-			{
-				if(e.getMessage().startsWith("Can not cast "))
-					throw e;
-			}
+			return;
+		}
+		try
+		{
+			il.append(factory.createCast(from, to));
+		}
+		catch(RuntimeException e)
+		{
+			if(e.getMessage().startsWith("Can not cast "))
+				throw e;
 		}
-		return il;
 	}
 	
-	public static boolean areMatching(List<Type> paramTypes, List<Type> argTypes)
+	// whether cast() would emit anything, without building the instructions
+	public static boolean needsConversion(Type from, Type to)
 	{
-		if(paramTypes.size() != argTypes.size())
+		if(from.equals(to))
 			return false;
-		for(int i = 0; i < paramTypes.size(); i++)
-		{
-			Type pType = paramTypes.get(i);
-			Type aType = argTypes.get(i);
-			if(pType instanceof BasicType && aType instanceof BasicType)
-				if(!cast(aType, pType, new InstructionFactory(null, null)).isEmpty())
-					return false;
-			if(!aType.equals(pType))
-				return false;
-		}
-		return true;
+		if(from instanceof BasicType && to instanceof BasicType)
+			return CONVERSIONS[from.getType()][to.getType()];
+		if(from instanceof ReferenceType && to instanceof ReferenceType)
+			return to instanceof ObjectType || to instanceof ArrayType;
+		throw new RuntimeException("Can not cast " + from + " to " + to);
+	}
+	
+	// a primitive that needs no conversion has to be the same type, so only exact matches are candidates
+	public static boolean areMatching(List<Type> paramTypes, List<Type> argTypes)
+	{
+		return paramTypes.equals(argTypes);
 	}
 	
 	public static Function findClosestMatch(List<Function> possibilities, List<Type> argTypes)
 	{
-		List<Function> bestFunctions = new ArrayList<Function>();
-		int numCasts = argTypes.size() + 1;
-		for(Function function : possibilities)
-		{
-			int casts = 0;
-			List<Type> paramTypes = function.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList());
-			for(int i = 0; i < argTypes.size(); i++)
-				if(!paramTypes.get(i).equals(argTypes.get(i)))
-					casts++;
-			if(casts < numCasts)
-			{
-				numCasts = casts;
-				bestFunctions.clear();
-				bestFunctions.add(function);
-			}
-			else if(casts == numCasts)
-			{
-				bestFunctions.add(function);
-			}
-		}
-		possibilities = bestFunctions;
-		bestFunctions = new ArrayList<Function>();
-		InstructionFactory dummyFactory = new InstructionFactory(new ConstantPoolGen());
-		numCasts = argTypes.size() + 1;
-		for(Function function : possibilities)
-		{
-			int casts = 0;
-			List<Type> paramTypes = function.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList());
-			for(int i = 0; i < argTypes.size(); i++)
-				if(!cast(argTypes.get(i), paramTypes.get(i), dummyFactory).isEmpty())
-					casts++;
-			if(casts < numCasts)
-			{
-				numCasts = casts;
-				bestFunctions.clear();
-				bestFunctions.add(function);
-			}
-			else if(casts == numCasts)
-			{
-				bestFunctions.add(function);
-			}
-		}
-		
-		if(bestFunctions.size() > 1)
-			throw new CompilationException("Ambiguous function call with name '" + bestFunctions.get(0).name + "' and " + argTypes.size() + " parameters");
-		return bestFunctions.get(0);
+		List<Type[]> paramTypes = possibilities.stream().map(f -> f.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(Type[]::new)).collect(Collectors.toList());
+		List<Integer> best = closestMatches(paramTypes, argTypes);
+		if(best.size() > 1)
+			throw new CompilationException("Ambiguous function call with name '" + possibilities.get(best.get(0)).name + "' and " + argTypes.size() + " parameters");
+		return possibilities.get(best.get(0));
 	}
 	
 	public static Method findClosestMatch(List<Method> possibilities, List<Type> argTypes, Void notUsed)
 	{
-		List<Method> bestMethods = new ArrayList<Method>();
+		List<Type[]> paramTypes = possibilities.stream().map(Method::getArgumentTypes).collect(Collectors.toList());
+		List<Integer> best = closestMatches(paramTypes, argTypes);
+		if(best.size() > 1)
+			throw new CompilationException("Ambiguous function call with name '" + possibilities.get(best.get(0)).getName() + "' and " + argTypes.size() + " parameters");
+		return possibilities.get(best.get(0));
+	}
+	
+	// positions of the candidates with the fewest parameters of a different type, narrowed to those needing the fewest conversions
+	private static List<Integer> closestMatches(List<Type[]> paramTypes, List<Type> argTypes)
+	{
+		List<Integer> best = new ArrayList<Integer>();
 		int numCasts = argTypes.size() + 1;
-		for(Method method : possibilities)
+		for(int c = 0; c < paramTypes.size(); c++)
 		{
 			int casts = 0;
-			List<Type> paramTypes = Arrays.asList(method.getArgumentTypes());
 			for(int i = 0; i < argTypes.size(); i++)
-				if(!paramTypes.get(i).equals(argTypes.get(i)))
+				if(!paramTypes.get(c)[i].equals(argTypes.get(i)))
 					casts++;
 			if(casts < numCasts)
 			{
 				numCasts = casts;
-				bestMethods.clear();
-				bestMethods.add(method);
-			}
-			else if(casts == numCasts)
-			{
-				bestMethods.add(method);
+				best.clear();
 			}
+			if(casts == numCasts)
+				best.add(c);
 		}
-		possibilities = bestMethods;
-		bestMethods = new ArrayList<Method>();
-		InstructionFactory dummyFactory = new InstructionFactory(new ConstantPoolGen());
+		List<Integer> closest = new ArrayList<Integer>();
 		numCasts = argTypes.size() + 1;
-		for(Method method : possibilities)
+		for(int c : best)
 		{
 			int casts = 0;
-			List<Type> paramTypes = Arrays.asList(method.getArgumentTypes());
 			for(int i = 0; i < argTypes.size(); i++)
-				if(!cast(argTypes.get(i), paramTypes.get(i), dummyFactory).isEmpty())
+				if(needsConversion(argTypes.get(i), paramTypes.get(c)[i]))
 					casts++;
 			if(casts < numCasts)
 			{
 				numCasts = casts;
-				bestMethods.clear();
-				bestMethods.add(method);
-			}
-			else if(casts == numCasts)
-			{
-				bestMethods.add(method);
+				closest.clear();
 			}
+			if(casts == numCasts)
+				closest.add(c);
 		}
-		
-		if(bestMethods.size() > 1)
-			throw new CompilationException("Ambiguous function call with name '" + bestMethods.get(0).getName() + "' and " + argTypes.size() + " parameters");
-		return bestMethods.get(0);
+		return closest;
 	}
 	
 	public static ArrayType getArrayType(List<Type> types)
@@ -0,0 +1,33 @@
+package net.tadpole.compiler;
+
+// runs every test in this directory one after the other, a test fails by throwing and the first failure ends the run with a non-zero exit code
+// the tests are plain mains so they need nothing beyond the compiler's own class path: compile src and test together and run
+//   java -cp <classes>:antlr-4.4-complete.jar:bcel-6.0-20150726.222224-123.jar net.tadpole.compiler.AllTests
+// each test can also be run on its own through its main method
+public class AllTests
+{
+	public static void main(String[] args) throws Exception
+	{
+		long start = System.nanoTime();
+		ParallelParseTest.main(args);
+		LineEndingTest.main(args);
+		LineCountTest.main(args);
+		IncrementalParserTest.main(args);
+		ChunkedParseTest.main(args);
+		CompactAstTest.main(args);
+		DeepExpressionTest.main(args);
+		FusedPassTest.main(args);
+		ModelCacheTest.main(args);
+		MemoryBudgetTest.main(args);
+		OverloadResolutionTest.main(args);
+		AttributionTest.main(args);
+		ImportGraphTest.main(args);
+		ModuleInterfaceTest.main(args);
+		LibraryPathTest.main(args);
+		ParallelCodegenTest.main(args);
+		BooleanBranchTest.main(args);
+		StackMapFrameTest.main(args);
+		VerifierTest.main(args);
+		System.out.printf("All tests passed in %.1f s%n", (System.nanoTime() - start) / 1e9);
+	}
+}
\ No newline at end of file
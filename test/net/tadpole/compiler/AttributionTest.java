@@ -0,0 +1,52 @@
+package net.tadpole.compiler;
+
+import org.apache.bcel.generic.BasicType;
+
+import net.tadpole.compiler.ast.Expression;
+import net.tadpole.compiler.exceptions.CompilationException;
+
+// attribution runs over whole method bodies with its own scope table before any code exists: locals get their slots in declaration order,
+// a block's locals go out of scope with it, every expression has its type, and type errors are reported without generating anything
+public class AttributionTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		Module module = register("Attr", "def f(int x, long y) : long -> {\n\tlong z = x * 2;\n\t{ int w = x; }\n\tint w = 2;\n\tdouble v = w;\n\treturn z;\n}\n");
+		module.attribute();
+		Statement.BlockStatement body = (Statement.BlockStatement) module.declaredFunctions.get(0).getStatement();
+		Statement.LocalVarDecStatement z = (Statement.LocalVarDecStatement) body.statements.get(0);
+		Statement.LocalVarDecStatement innerW = (Statement.LocalVarDecStatement) ((Statement.BlockStatement) body.statements.get(1)).statements.get(0);
+		Statement.LocalVarDecStatement w = (Statement.LocalVarDecStatement) body.statements.get(2);
+		Statement.LocalVarDecStatement v = (Statement.LocalVarDecStatement) body.statements.get(3);
+		// x is slot 0 and y takes 1 and 2, slots are never reused
+		TestSupport.check(z.local.index == 3 && innerW.local.index == 5 && w.local.index == 6 && v.local.index == 7, "Locals got slots " + z.local.index + ", " + innerW.local.index + ", " + w.local.index + ", " + v.local.index);
+		TestSupport.check(z.expression.resolvedType == BasicType.INT, "x * 2 was attributed as " + z.expression.resolvedType);
+		// the w of the block is out of scope, so the initializer of v reads the second one
+		Expression.PrimaryExpression.FieldAccessExpression read = (Expression.PrimaryExpression.FieldAccessExpression) v.expression;
+		TestSupport.check(read.resolvedLocal == w.local, "w resolved to slot " + (read.resolvedLocal == null ? "none" : read.resolvedLocal.index) + " instead of " + w.local.index);
+		TestSupport.check(((Statement.ReturnStatement) body.statements.get(4)).expression.resolvedType == BasicType.LONG, "The returned expression was not attributed");
+		
+		// a struct function with a type error fails in attribution, which names the class and method
+		Module broken = register("AttrBroken", "struct S(int a)\n{\n\tint a = a;\n\tdef g() : int -> { if(a) return 1; return 0; }\n}\n");
+		try
+		{
+			broken.declaredStructs.get(0).attribute();
+			TestSupport.check(false, "A non-boolean condition was accepted");
+		}
+		catch(CompilationException e)
+		{
+			TestSupport.check(e.getMessage().contains("AttrBroken$S") && e.getMessage().contains("Method: g"), "The error does not name the class and method: " + e.getMessage());
+		}
+		
+		System.out.println("AttributionTest passed");
+	}
+	
+	private static Module register(String name, String source)
+	{
+		Module module = TestSupport.parse(name, source);
+		Struct.registerStructs(module.declaredStructs);
+		Module.registerModule(module);
+		Module.absolutifyTypes(module);
+		return module;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// if, while and do-while on a boolean test the one value it leaves on the stack, the JVM has to accept the default class files with every check on
+public class BooleanBranchTest
+{
+	// conditions that are a plain boolean variable, a parameter, a field rather than a comparison
+	private static final String SOURCE = "boolean go = true;\nint n = 0;\nwhile(go)\n{\n\tn = n + 1;\n\tgo = n < 3;\n}\njava.lang.System.out.println(n);\n"
+			+ "boolean again = false;\ndo\n{\n\tn = n - 1;\n\tagain = n > 0;\n}\nwhile(again);\njava.lang.System.out.println(n);\n"
+			+ "boolean flag = n == 0;\nif(flag)\n\tjava.lang.System.out.println(1);\nelse\n\tjava.lang.System.out.println(2);\n"
+			+ "java.lang.System.out.println(pick(true));\njava.lang.System.out.println(pick(false));\n"
+			+ "if(new Flag(true).on)\n\tjava.lang.System.out.println(4);\n\n"
+			+ "def pick(boolean b) : int -> {\n\tif(b)\n\t\treturn 5;\n\treturn 6;\n}\n\n"
+			+ "struct Flag(boolean b)\n{\n\tboolean on = b;\n}\n";
+	
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("boolean-branch");
+		TestSupport.write(dir, "B.tadpole", SOURCE);
+		
+		TestSupport.Build build = TestSupport.compile(dir, "B.tadpole");
+		TestSupport.checkClean(build, "Building with the default version");
+		String output = TestSupport.runProgram(new File(dir, "out"), "B", "-Xverify:all").replace("\r", "");
+		TestSupport.check(output.equals("3\n0\n1\n5\n6\n4\n"), "B printed:\n" + output);
+		
+		System.out.println("BooleanBranchTest passed");
+	}
+}
\ No newline at end of file
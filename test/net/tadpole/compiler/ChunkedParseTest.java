@@ -0,0 +1,38 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.Arrays;
+
+// a file split at top-level declarations and parsed in chunks has to give the same module and classes as parsing it whole,
+// and an error in a chunk still has to be reported at its line in the file
+public class ChunkedParseTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		String source = TestSupport.module(1, 4);
+		Module chunked = ChunkedParser.parse("M1", source.toCharArray(), source.length(), 256);
+		TestSupport.check(chunked != null, "The module was not split into chunks");
+		TestSupport.check(Arrays.equals(TestSupport.serialize(chunked), TestSupport.serialize(TestSupport.parse("M1", source))), "Parsing in chunks gave different trees than a whole parse");
+		
+		// a comment across a cut and a syntax error both leave the file to be parsed whole
+		String comment = source.replace("def f4(", "/* def f3b() : void -> return;\ndef f4(").replace("def f6(", "*/ def f6(");
+		TestSupport.check(ChunkedParser.parse("M1", comment.toCharArray(), comment.length(), 256) == null, "A comment spanning chunks was parsed in chunks");
+		String broken = source.replace("def f10(int x, S0 s) : int -> {", "def f10(int x, S0 s) : int -> { int ;");
+		TestSupport.check(ChunkedParser.parse("M1", broken.toCharArray(), broken.length(), 256) == null, "A chunk with a syntax error was accepted");
+		
+		File dir = TestSupport.tempDir("chunked-parse");
+		String[] files = TestSupport.writeModules(dir, 2, 4);
+		TestSupport.Build whole = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "2", "--chunk-size", "0"}, files));
+		TestSupport.checkClean(whole, "Build parsing whole files");
+		TestSupport.Build chunks = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "2", "--chunk-size", "256"}, files));
+		TestSupport.checkClean(chunks, "Build parsing in chunks");
+		TestSupport.checkSameClasses(whole, chunks, "Parsing in chunks");
+		
+		int line = broken.substring(0, broken.indexOf("int ;")).split("\n", -1).length;
+		TestSupport.write(dir, "M1.tadpole", broken);
+		TestSupport.Build failed = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "2", "--chunk-size", "256"}, files));
+		TestSupport.check(failed.stderr.contains("line " + line + ":"), "The syntax error was not reported at line " + line + ":\n" + failed.stderr);
+		
+		System.out.println("ChunkedParseTest passed");
+	}
+}
\ No newline at end of file
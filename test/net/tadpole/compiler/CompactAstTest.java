@@ -0,0 +1,31 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.Arrays;
+
+// a compacted body is decoded once per phase so changes to it stick, and compacting between phases never changes the classes
+public class CompactAstTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		Module module = TestSupport.parse("M0", TestSupport.module(0, 2));
+		byte[] expected = TestSupport.serialize(module);
+		module.compactFunctions();
+		Function function = module.declaredFunctions.get(0);
+		Statement body = function.getStatement();
+		TestSupport.check(body != null && body == function.getStatement(), "A compacted body was decoded again on the second call");
+		module.recompactFunctions();
+		TestSupport.check(function.getStatement() != body, "Recompacting kept the decoded body");
+		TestSupport.check(Arrays.equals(expected, TestSupport.serialize(module)), "Compacting and decoding changed the trees");
+		
+		File dir = TestSupport.tempDir("compact-ast");
+		String[] files = TestSupport.writeModules(dir, 3, 2);
+		TestSupport.Build plain = TestSupport.compile(dir, files);
+		TestSupport.checkClean(plain, "Build without compacting");
+		TestSupport.Build compact = TestSupport.compile(dir, TestSupport.concat(new String[]{"--compact-ast"}, files));
+		TestSupport.checkClean(compact, "Build with --compact-ast");
+		TestSupport.checkSameClasses(plain, compact, "Compacting function bodies");
+		
+		System.out.println("CompactAstTest passed");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// a binary chain of thousands of operands goes through parsing, the compact trees, constant folding and code generation
+// on a small stack, so a pass that still recurses once per operand overflows here
+public class DeepExpressionTest
+{
+	private static final int SUMS = 10000;
+	private static final int CONDITIONS = 5000;
+	
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("deep-expression");
+		StringBuilder sb = new StringBuilder();
+		sb.append("int x = 1;\nboolean t = true;\n");
+		sb.append("def sum(int a) : int -> return a");
+		for(int i = 1; i < SUMS; i++)
+			sb.append(" + a");
+		sb.append(";\ndef all(boolean b) : boolean -> return b");
+		for(int i = 1; i < CONDITIONS; i++)
+			sb.append(" && b");
+		// the constants fold to a single literal
+		sb.append(";\ndef constant() : int -> return 1");
+		for(int i = 1; i < SUMS; i++)
+			sb.append(" + 1");
+		sb.append(";\njava.lang.System.out.println(sum(x));\njava.lang.System.out.println(all(t));\njava.lang.System.out.println(all(false));\njava.lang.System.out.println(constant());\n");
+		TestSupport.write(dir, "Deep.tadpole", sb.toString());
+		
+		String[] smallStack = {"-Xss512k"};
+		TestSupport.Build plain = TestSupport.compile(dir, smallStack, "Deep.tadpole");
+		TestSupport.checkClean(plain, "Building the deep chains");
+		String output = TestSupport.runProgram(new File(dir, "out"), "Deep").replace("\r", "");
+		TestSupport.check(output.equals(SUMS + "\ntrue\nfalse\n" + SUMS + "\n"), "Deep printed:\n" + output);
+		
+		TestSupport.Build compact = TestSupport.compile(dir, smallStack, "--compact-ast", "Deep.tadpole");
+		TestSupport.checkClean(compact, "Building the deep chains from compact trees");
+		TestSupport.checkSameClasses(plain, compact, "Building from compact trees");
+		
+		System.out.println("DeepExpressionTest passed");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// constant folding, absolutification and the parallel assignment check walked together have to give the same classes as walked one after the other
+public class FusedPassTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("fused-pass");
+		// casts of constants and a cast inside a cast fold away, casts of parameters convert the value they load
+		TestSupport.write(dir, "Casts.tadpole", "def a() : int -> return (int) 3.5 + (int) 2.5;\n"
+				+ "def b() : long -> return (long) -7;\n"
+				+ "def c() : int -> return (int) (char) 65;\n"
+				+ "def d() : char -> return (char) 98;\n"
+				+ "def e(float x) : int -> return (int) (x + (1 + 2) * 2.5);\n"
+				+ "def f(int n) : long -> return (long) n;\n"
+				+ "def g(int n) : char -> return (char) (n + 1);\n"
+				+ "java.lang.System.out.println(a());\n"
+				+ "java.lang.System.out.println(b());\n"
+				+ "java.lang.System.out.println(c());\n"
+				+ "java.lang.System.out.println(d());\n"
+				+ "java.lang.System.out.println(e(1.25));\n"
+				+ "java.lang.System.out.println(f(-9));\n"
+				+ "java.lang.System.out.println(g(97));\n");
+		
+		TestSupport.Build fused = TestSupport.compile(dir, "Casts.tadpole");
+		TestSupport.checkClean(fused, "Fused build");
+		TestSupport.Build separate = TestSupport.compile(dir, "--no-fuse", "Casts.tadpole");
+		TestSupport.checkClean(separate, "Unfused build");
+		TestSupport.checkSameClasses(fused, separate, "Walking the passes one after the other");
+		
+		String output = TestSupport.runProgram(new File(dir, "out"), "Casts").replace("\r", "");
+		TestSupport.check(output.equals("5\n-7\n65\nb\n8\n-9\nb\n"), "Casts printed:\n" + output);
+		
+		System.out.println("FusedPassTest passed");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,48 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// the analysis passes run along the import graph, a diamond and a cycle have to give the same classes on any number of threads
+public class ImportGraphTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("import-graph");
+		TestSupport.write(dir, "A.tadpole", "struct SA(int a)\n{\n\tint a = a;\n\tdef twice() : int -> return a * 2;\n}\ndef make(int a) : SA -> return new SA(a);\njava.lang.System.out.println(make(1).twice());\n");
+		TestSupport.write(dir, "B.tadpole", "import A;\ndef b(SA s) : int -> return s.twice() + 1;\njava.lang.System.out.println(b(new SA(1)));\n");
+		TestSupport.write(dir, "C.tadpole", "import A;\ndef c(SA s) : int -> return s.a * 3;\njava.lang.System.out.println(c(new SA(1)));\n");
+		TestSupport.write(dir, "D.tadpole", "import A;\nimport B;\nimport C;\njava.lang.System.out.println(B.b(new SA(4)) + C.c(A.make(5)));\n");
+		TestSupport.write(dir, "E.tadpole", "import F;\ndef e(int x) : int -> { if(x > 0) return F.f(x - 1); return 0; }\njava.lang.System.out.println(e(3));\n");
+		TestSupport.write(dir, "F.tadpole", "import E;\ndef f(int x) : int -> return E.e(x) + 1;\njava.lang.System.out.println(f(3));\n");
+		// dependents come first on the command line so the order of the files is not the order of the graph
+		String[] files = {"D.tadpole", "F.tadpole", "C.tadpole", "B.tadpole", "E.tadpole", "A.tadpole"};
+		
+		TestSupport.Build sequential = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "1"}, files));
+		check(sequential, "Sequential build");
+		TestSupport.Build parallel = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "4"}, files));
+		check(parallel, "Parallel build");
+		TestSupport.checkSameClasses(sequential, parallel, "Analyzing on 4 threads");
+		
+		File out = new File(dir, "out");
+		TestSupport.check(TestSupport.runProgram(out, "D").trim().equals("24"), "D printed the wrong result");
+		TestSupport.check(TestSupport.runProgram(out, "F").trim().equals("4"), "F printed the wrong result");
+		
+		// a missing type below the diamond is reported the same way whichever thread analyzes it
+		TestSupport.write(dir, "C.tadpole", "import A;\ndef c(SB s) : int -> return 0;\njava.lang.System.out.println(c(null));\n");
+		for(String threads : new String[]{"1", "4"})
+		{
+			TestSupport.Build broken = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", threads}, files));
+			TestSupport.check(broken.exitCode != 0 && broken.stderr.contains("No struct with name 'SB' was imported"), "The missing struct was not reported on " + threads + " threads:\n" + broken.stderr);
+		}
+		
+		System.out.println("ImportGraphTest passed");
+	}
+	
+	// the cycle is reported as a warning and nothing else
+	private static void check(TestSupport.Build build, String what)
+	{
+		TestSupport.check(build.exitCode == 0, what + " exited with " + build.exitCode + ":\n" + build.stderr);
+		TestSupport.check(build.stderr.trim().equals("Import cycle between modules F, E, they are analyzed together") || build.stderr.trim().equals("Import cycle between modules E, F, they are analyzed together"), what + " reported:\n" + build.stderr);
+		TestSupport.check(build.classes.size() == 7, what + " wrote " + build.classes.keySet());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+// a module kept up to date through edits has to end up with the same trees as parsing the edited source from scratch,
+// and --watch has to write the same classes as a full build of the edited files
+public class IncrementalParserTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		String source = TestSupport.module(1, 2);
+		IncrementalParser parser = new IncrementalParser("M1");
+		parser.update(source.toCharArray(), source.length());
+		
+		// each edit is applied to the result of the one before it
+		String[][] edits = {
+			{"return y;\n}\ndef f3(", "return y * 2;\n}\ndef f3("},
+			{"def f5(", "def added(int q) : int -> return q + 1;\ndef f5("},
+			{"\tint[] c = new int[a];\n", "\tint[] c = new int[a + 4];\n\tlong d = 7;\n"},
+			{"struct S1(int a, double b)", "struct S1(int a, double b, int e)"},
+			{"def f19(int x, S0 s) : int -> {", "def renamed(int x, S0 s) : int -> {"},
+			{"def f0(", "while(false) {}\ndef f0("},
+			{"import M0;\n", "import M0;\nimport M2;\n"},
+		};
+		for(String[] edit : edits)
+		{
+			TestSupport.check(source.contains(edit[0]), "The test source does not contain " + edit[0]);
+			source = source.replace(edit[0], edit[1]);
+			Module incremental = parser.update(source.toCharArray(), source.length());
+			TestSupport.check(parser.getStatistics().contains("incremental"), "Replacing " + edit[0] + " reparsed the whole file: " + parser.getStatistics());
+			TestSupport.check(Arrays.equals(TestSupport.serialize(incremental), TestSupport.serialize(TestSupport.parse("M1", source))), "Replacing " + edit[0] + " gave different trees than a full parse");
+		}
+		
+		// an edit at the very start of the file has no declaration before it to restart lexing after
+		source = source.substring(source.indexOf('\n') + 1);
+		TestSupport.check(Arrays.equals(TestSupport.serialize(parser.update(source.toCharArray(), source.length())), TestSupport.serialize(TestSupport.parse("M1", source))), "Removing the first import gave different trees than a full parse");
+		
+		watch();
+		System.out.println("IncrementalParserTest passed");
+	}
+	
+	private static void watch() throws Exception
+	{
+		File dir = TestSupport.tempDir("watch");
+		String[] files = TestSupport.writeModules(dir, 3, 2);
+		TestSupport.Watch watch = TestSupport.watch(dir, files);
+		try
+		{
+			watch.await("Watching 3 files for changes");
+			// M1 changes a body, M2 imports it and is written again, M0 is left alone
+			TestSupport.write(dir, "M1.tadpole", TestSupport.module(1, 2).replace("return y;", "return y * 3;"));
+			watch.await("Rebuilt M1, M2");
+			// a duplicate is rejected the way a full build rejects it, and fixing it rebuilds the module
+			TestSupport.write(dir, "M2.tadpole", TestSupport.module(2, 2) + "def f0(int x, S0 s) : int -> return x;\n");
+			watch.await("Failed to rebuild M2: net.tadpole.compiler.exceptions.CompilationException: Duplicate function with name f0 found in module M2");
+			TestSupport.write(dir, "M2.tadpole", TestSupport.module(2, 2));
+			watch.await("Rebuilt M2\n");
+		}
+		finally
+		{
+			watch.stop();
+		}
+		Map<String, byte[]> watched = TestSupport.readClasses(new File(dir, "out"));
+		TestSupport.Build full = TestSupport.compile(dir, files);
+		TestSupport.checkClean(full, "Full build after the edit");
+		TestSupport.check(full.classes.keySet().equals(watched.keySet()), "Watch mode wrote " + watched.keySet() + " instead of " + full.classes.keySet());
+		for(Map.Entry<String, byte[]> entry : full.classes.entrySet())
+			TestSupport.check(Arrays.equals(entry.getValue(), watched.get(entry.getKey())), "Rebuilding M1 in watch mode changed " + entry.getKey());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// modules imported from the class files of an earlier build, in a jar or a class directory without any interface files, have to come out as if they were compiled together
+public class LibraryPathTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("library-path");
+		TestSupport.write(dir, "Base.tadpole", ModuleInterfaceTest.BASE);
+		TestSupport.write(dir, "L.tadpole", ModuleInterfaceTest.LIBRARY);
+		TestSupport.write(dir, "App.tadpole", ModuleInterfaceTest.APP);
+		
+		TestSupport.Build whole = TestSupport.compile(dir, "Base.tadpole", "L.tadpole", "App.tadpole");
+		TestSupport.checkClean(whole, "Building every module");
+		
+		TestSupport.Build library = TestSupport.compile(dir, "Base.tadpole", "L.tadpole");
+		TestSupport.checkClean(library, "Building the imported modules");
+		File classes = new File(dir, "classes");
+		classes.mkdirs();
+		for(Map.Entry<String, byte[]> entry : library.classes.entrySet())
+			Files.write(new File(classes, entry.getKey()).toPath(), entry.getValue());
+		jar(new File(dir, "lib.jar"), library.classes);
+		
+		// the index of the jar is built by the first build with a cache and read by the second
+		String[][] builds = {{"--library-path", "lib.jar"}, {"--library-path", "classes"}, {"--cache-dir", "cache", "--library-path", "lib.jar"}, {"--cache-dir", "cache", "--library-path", "lib.jar"}};
+		for(String[] options : builds)
+		{
+			String what = "Building App with " + String.join(" ", options);
+			TestSupport.Build app = TestSupport.compile(dir, TestSupport.concat(options, "App.tadpole"));
+			TestSupport.checkClean(app, what);
+			TestSupport.check(Arrays.equals(whole.classes.get("App.class"), app.classes.get("App.class")), what + " gave a different App.class than building it with its imports");
+			String output = TestSupport.runProgram(dir, new String[]{"out", options[options.length - 1]}, "App").replace("\r", "");
+			TestSupport.check(output.equals("41\n40\n"), what + " printed:\n" + output);
+		}
+		TestSupport.check(new File(dir, "cache/libraries").list().length == 1, "The jar was not indexed in the cache");
+		
+		// a jar that lacks one of the imported modules
+		library.classes.remove("L$Pt.class");
+		jar(new File(dir, "partial.jar"), library.classes);
+		TestSupport.Build missing = TestSupport.compile(dir, "--library-path", "partial.jar", "App.tadpole");
+		TestSupport.check(missing.exitCode != 0 && missing.stderr.contains("No struct with name 'Pt' was imported"), "App built against a jar without L$Pt:\n" + missing.stderr);
+		
+		System.out.println("LibraryPathTest passed");
+	}
+	
+	private static void jar(File file, Map<String, byte[]> classes) throws IOException
+	{
+		try(JarOutputStream out = new JarOutputStream(new FileOutputStream(file)))
+		{
+			for(Map.Entry<String, byte[]> entry : classes.entrySet())
+			{
+				out.putNextEntry(new JarEntry(entry.getKey()));
+				out.write(entry.getValue());
+				out.closeEntry();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// --parse-stats counts every line of a file once, whether it ends with a line terminator or not and whether it was parsed whole or in chunks
+public class LineCountTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("line-count");
+		String source = TestSupport.module(0, 2);
+		long lines = source.chars().filter(c -> c == '\n').count();
+		
+		TestSupport.write(dir, "M0.tadpole", source);
+		check(dir, lines, "A file ending with a line terminator", "--threads", "1");
+		check(dir, lines, "A file parsed in chunks", "--threads", "2", "--chunk-size", "256");
+		TestSupport.write(dir, "M0.tadpole", source.substring(0, source.length() - 1));
+		check(dir, lines, "A file without a final line terminator", "--threads", "1");
+		check(dir, lines, "A file without a final line terminator parsed in chunks", "--threads", "2", "--chunk-size", "256");
+		
+		System.out.println("LineCountTest passed");
+	}
+	
+	private static void check(File dir, long lines, String what, String... options) throws Exception
+	{
+		TestSupport.Build build = TestSupport.compile(dir, TestSupport.concat(TestSupport.concat(new String[]{"--parse-stats"}, options), "M0.tadpole"));
+		TestSupport.checkClean(build, what);
+		TestSupport.check(build.stdout.contains("Parsed " + lines + " lines in 1 files"), what + " was not counted as " + lines + " lines:\n" + build.stdout);
+	}
+}
\ No newline at end of file
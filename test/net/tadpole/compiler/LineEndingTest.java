@@ -0,0 +1,37 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.nio.CharBuffer;
+
+import net.tadpole.compiler.util.SourceLoader;
+
+// sources are read the way a line reader reads them: \r\n and \r end a line like \n does and the last line has no terminator
+public class LineEndingTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("line-endings");
+		check(dir, "a\r\nb\rc\n", "a\nb\nc");
+		check(dir, "a\n\n", "a\n");
+		check(dir, "\r\n", "");
+		check(dir, "", "");
+		
+		String source = TestSupport.module(0, 2);
+		TestSupport.write(dir, "M0.tadpole", source);
+		TestSupport.Build unix = TestSupport.compile(dir, "M0.tadpole");
+		TestSupport.checkClean(unix, "Build with \\n");
+		TestSupport.write(dir, "M0.tadpole", source.replace("\n", "\r\n"));
+		TestSupport.Build windows = TestSupport.compile(dir, "M0.tadpole");
+		TestSupport.checkClean(windows, "Build with \\r\\n");
+		TestSupport.checkSameClasses(unix, windows, "Ending lines with \\r\\n");
+		
+		System.out.println("LineEndingTest passed");
+	}
+	
+	private static void check(File dir, String content, String expected) throws Exception
+	{
+		CharBuffer chars = SourceLoader.loadChars(TestSupport.write(dir, "lines.txt", content).getPath());
+		String actual = new String(chars.array(), 0, chars.position());
+		TestSupport.check(actual.equals(expected), "Loading " + content.replace("\r", "\\r").replace("\n", "\\n") + " gave " + actual.replace("\n", "\\n"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// compiling a few modules at a time under a memory budget has to give the same classes as compiling every module at once
+public class MemoryBudgetTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("memory-budget");
+		// every module imports the one before it, so most batches call into modules that are only signatures by then
+		String[] files = TestSupport.writeModules(dir, 8, 3);
+		
+		TestSupport.Build whole = TestSupport.compile(dir, files);
+		TestSupport.checkClean(whole, "Building every module at once");
+		TestSupport.check(whole.classes.size() == 8 * 4, "Building every module at once wrote " + whole.classes.size() + " classes instead of 32");
+		String expected = TestSupport.runProgram(new File(dir, "out"), "M7");
+		
+		// a budget of 1 MB holds about one of these modules at a time, 64 MB holds all of them
+		for(String[] options : new String[][]{{"--memory-budget", "1"}, {"--memory-budget", "1", "--threads", "1"}, {"--memory-budget", "64"}})
+		{
+			String what = "Building with " + String.join(" ", options);
+			TestSupport.Build budgeted = TestSupport.compile(dir, TestSupport.concat(options, files));
+			TestSupport.checkClean(budgeted, what);
+			TestSupport.checkSameClasses(whole, budgeted, what);
+			TestSupport.check(TestSupport.runProgram(new File(dir, "out"), "M7").equals(expected), "M7 printed something else after " + what);
+		}
+		
+		System.out.println("MemoryBudgetTest passed");
+	}
+}
\ No newline at end of file
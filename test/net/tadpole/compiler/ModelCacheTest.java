@@ -0,0 +1,58 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.util.Arrays;
+
+// a cached model loads back to the same trees and classes, and a file with syntax errors is never cached so every run reports them
+public class ModelCacheTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("model-cache");
+		File source = TestSupport.write(dir, "M0.tadpole", TestSupport.module(0, 2));
+		ModelCache cache = new ModelCache(new File(dir, "cache"), 1 << 20);
+		String key = cache.key(source.getPath(), "M0");
+		Module module = TestSupport.parse("M0", TestSupport.module(0, 2));
+		cache.store(key, module);
+		Module loaded = cache.load(key, "M0");
+		TestSupport.check(loaded != null, "The stored model was not found");
+		TestSupport.check(Arrays.equals(TestSupport.serialize(module), TestSupport.serialize(loaded)), "The loaded model differs from the stored one");
+		TestSupport.check(cache.load(cache.key(source.getPath(), "M1"), "M1") == null, "A model was found under the key of another module");
+		
+		// with room for two and a half entries the least recently used one goes when a third is stored, a new cache on the directory starts from what is there
+		File evicting = new File(dir, "evicting");
+		long size = new File(new File(dir, "cache"), key + ".tpm").length();
+		ModelCache small = new ModelCache(evicting, size * 5 / 2);
+		small.store("a", module);
+		small.store("b", module);
+		TestSupport.check(small.load("a", "M0") != null, "The first of two entries was evicted");
+		small.store("c", module);
+		TestSupport.check(small.load("b", "M0") == null, "The least recently used entry was kept");
+		TestSupport.check(small.load("a", "M0") != null && small.load("c", "M0") != null, "A recently used entry was evicted");
+		new ModelCache(evicting, size * 5 / 2).store("d", module);
+		TestSupport.check(evicting.list().length == 2, "A new cache on a full directory kept " + Arrays.toString(evicting.list()));
+		
+		String[] files = TestSupport.writeModules(dir, 3, 2);
+		String[] cached = TestSupport.concat(new String[]{"--parse-stats", "--cache-dir", "cache2"}, files);
+		TestSupport.Build plain = TestSupport.compile(dir, files);
+		TestSupport.checkClean(plain, "Build without a cache");
+		TestSupport.Build first = TestSupport.compile(dir, cached);
+		TestSupport.checkClean(first, "First build with a cache");
+		TestSupport.check(first.stdout.contains("0 hits, 3 misses"), "The first build found models in an empty cache:\n" + first.stdout);
+		TestSupport.Build second = TestSupport.compile(dir, cached);
+		TestSupport.checkClean(second, "Second build with a cache");
+		TestSupport.check(second.stdout.contains("3 hits, 0 misses"), "The second build did not load every model from the cache:\n" + second.stdout);
+		TestSupport.checkSameClasses(plain, second, "Loading the models from the cache");
+		
+		// the parser recovers from the extra literal, the module it gives must not be cached
+		TestSupport.write(dir, "M1.tadpole", "int b = 2 2;\n" + TestSupport.module(1, 2));
+		for(int run = 1; run <= 2; run++)
+		{
+			TestSupport.Build broken = TestSupport.compile(dir, cached);
+			TestSupport.check(broken.stderr.contains("line 1:10 extraneous input"), "Run " + run + " did not report the syntax error:\n" + broken.stderr);
+			TestSupport.check(broken.stdout.contains("2 hits, 1 misses"), "Run " + run + " loaded the broken module from the cache:\n" + broken.stdout);
+		}
+		
+		System.out.println("ModelCacheTest passed");
+	}
+}
\ No newline at end of file
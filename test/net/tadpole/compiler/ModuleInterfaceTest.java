@@ -0,0 +1,46 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+// a module compiled on its own against the interfaces an earlier build left next to its classes has to come out as if it was compiled with the modules it imports
+public class ModuleInterfaceTest
+{
+	static final String BASE = "struct Tag(int n)\n{\n\tint n = n;\n}\njava.lang.System.out.println(0);\n";
+	static final String LIBRARY = "import Base;\nstruct Pt(int x, Tag t)\n{\n\tint x = x;\n\tTag t = t;\n\tdef twice() : int -> return x * 2;\n}\n"
+			+ "def add(int a, int b) : int -> return a + b;\ndef mk(int a) : Pt -> return new Pt(a, new Tag(a + 1));\njava.lang.System.out.println(0);\n";
+	// uses a struct of L, a struct of Base through a field of it and functions of both
+	static final String APP = "import L;\nimport Base;\nPt p = L.mk(20);\njava.lang.System.out.println(L.add(p.x, p.t.n));\njava.lang.System.out.println(p.twice());\n";
+	
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("module-interface");
+		TestSupport.write(dir, "Base.tadpole", BASE);
+		TestSupport.write(dir, "L.tadpole", LIBRARY);
+		TestSupport.write(dir, "App.tadpole", APP);
+		
+		TestSupport.Build whole = TestSupport.compile(dir, "Base.tadpole", "L.tadpole", "App.tadpole");
+		TestSupport.checkClean(whole, "Building every module");
+		TestSupport.check(new File(dir, "out/L" + ModuleInterface.SUFFIX).isFile() && new File(dir, "out/Base" + ModuleInterface.SUFFIX).isFile(), "No interfaces were written next to the classes");
+		
+		// the imported modules are built first and moved out of the way of the next build's output directory
+		TestSupport.Build library = TestSupport.compile(dir, "Base.tadpole", "L.tadpole");
+		TestSupport.checkClean(library, "Building the imported modules");
+		Files.move(new File(dir, "out").toPath(), new File(dir, "lib").toPath());
+		
+		TestSupport.Build app = TestSupport.compile(dir, "--interface-path", "lib", "App.tadpole");
+		TestSupport.checkClean(app, "Building App against the interfaces");
+		TestSupport.check(app.classes.keySet().equals(Collections.singleton("App.class")), "Building App alone wrote " + app.classes.keySet());
+		TestSupport.check(Arrays.equals(whole.classes.get("App.class"), app.classes.get("App.class")), "App built against the interfaces differs from App built with its imports");
+		String output = TestSupport.runProgram(dir, new String[]{"out", "lib"}, "App").replace("\r", "");
+		TestSupport.check(output.equals("41\n40\n"), "App printed:\n" + output);
+		
+		// without the interfaces the imports are not found
+		TestSupport.Build missing = TestSupport.compile(dir, "App.tadpole");
+		TestSupport.check(missing.exitCode != 0 && missing.stderr.contains("No struct with name 'Pt' was imported"), "App built without the interfaces of its imports:\n" + missing.stderr);
+		
+		System.out.println("ModuleInterfaceTest passed");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+package net.tadpole.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+
+import net.tadpole.compiler.exceptions.CompilationException;
+import net.tadpole.compiler.util.TypeUtils;
+
+// the conversion table has to pick the overload that building every cast with a throwaway factory picked, or fail where that failed
+public class OverloadResolutionTest
+{
+	private static final Type[] ARGUMENTS = {Type.BYTE, Type.SHORT, Type.CHAR, Type.INT, Type.LONG, Type.FLOAT, Type.DOUBLE, Type.BOOLEAN, Type.STRING, Type.OBJECT};
+	
+	public static void main(String[] args) throws Exception
+	{
+		// every call shape of one and two arguments against overloads of the JDK
+		int shapes = 0;
+		for(String[] method : new String[][]{{"java.lang.Math", "abs"}, {"java.lang.Math", "max"}, {"java.lang.Math", "round"}, {"java.lang.String", "valueOf"}, {"java.lang.StringBuilder", "append"}})
+		{
+			for(int arity = 1; arity <= 2; arity++)
+			{
+				List<Method> candidates = methods(method[0], method[1], arity);
+				if(candidates.isEmpty())
+					continue;
+				for(List<Type> argTypes : shapes(arity))
+				{
+					String expected = outcome(() -> candidates.get(oldClosestMatch(candidates.stream().map(Method::getArgumentTypes).collect(Collectors.toList()), argTypes)).getSignature());
+					String actual = outcome(() -> TypeUtils.findClosestMatch(candidates, argTypes, null).getSignature());
+					TestSupport.check(expected.equals(actual), method[0] + "." + method[1] + argTypes + " resolved to " + actual + " instead of " + expected);
+					shapes++;
+				}
+			}
+		}
+		TestSupport.check(shapes >= 100, "Only " + shapes + " call shapes were compared");
+		
+		// every pair of parameter types as two overloads of one argument, so every conversion decides some call on its own
+		ConstantPoolGen cp = new ConstantPoolGen();
+		for(Type first : ARGUMENTS)
+		{
+			for(Type second : ARGUMENTS)
+			{
+				if(first.equals(second))
+					continue;
+				List<Method> candidates = Arrays.asList(method(first, cp), method(second, cp));
+				for(List<Type> argTypes : shapes(1))
+				{
+					String expected = outcome(() -> candidates.get(oldClosestMatch(candidates.stream().map(Method::getArgumentTypes).collect(Collectors.toList()), argTypes)).getSignature());
+					String actual = outcome(() -> TypeUtils.findClosestMatch(candidates, argTypes, null).getSignature());
+					TestSupport.check(expected.equals(actual), "m" + argTypes + " between m(" + first + ") and m(" + second + ") resolved to " + actual + " instead of " + expected);
+				}
+			}
+		}
+		
+		// exact, widening on one side and ambiguous between widening either side
+		List<Method> max = methods("java.lang.Math", "max", 2);
+		TestSupport.check(TypeUtils.findClosestMatch(max, Arrays.asList(Type.INT, Type.INT), null).getSignature().equals("(II)I"), "max(int, int) did not resolve to max(int, int)");
+		TestSupport.check(TypeUtils.findClosestMatch(max, Arrays.asList(Type.BYTE, Type.INT), null).getSignature().equals("(II)I"), "max(byte, int) did not resolve to max(int, int)");
+		TestSupport.check(TypeUtils.findClosestMatch(max, Arrays.asList(Type.SHORT, Type.LONG), null).getSignature().equals("(JJ)J"), "max(short, long) did not resolve to max(long, long)");
+		TestSupport.check(outcome(() -> TypeUtils.findClosestMatch(max, Arrays.asList(Type.INT, Type.LONG), null).getSignature()).equals("ambiguous"), "max(int, long) was not ambiguous");
+		
+		// the same through tadpole functions, whose parameter types come from the model
+		Module module = TestSupport.parse("OverloadResolutionTest", "def f(int a, int b) : int -> return a;\ndef f(long a, long b) : long -> return a;\ndef f(double a, double b) : double -> return a;\n");
+		List<Function> functions = module.declaredFunctions;
+		for(List<Type> argTypes : shapes(2))
+		{
+			String expected = outcome(() -> functions.get(oldClosestMatch(functions.stream().map(f -> f.parameters.stream().map(p -> p.getKey().toBCELType()).toArray(Type[]::new)).collect(Collectors.toList()), argTypes)).returnType.typeName);
+			String actual = outcome(() -> TypeUtils.findClosestMatch(functions, argTypes).returnType.typeName);
+			TestSupport.check(expected.equals(actual), "f" + argTypes + " resolved to " + actual + " instead of " + expected);
+		}
+		TestSupport.check(TypeUtils.findClosestMatch(functions, Arrays.asList(Type.CHAR, Type.LONG)).returnType.typeName.equals("long"), "f(char, long) did not resolve to f(long, long)");
+		TestSupport.check(outcome(() -> TypeUtils.findClosestMatch(functions, Arrays.asList(Type.INT, Type.DOUBLE)).returnType.typeName).equals("ambiguous"), "f(int, double) was not ambiguous");
+		
+		System.out.println("OverloadResolutionTest passed");
+	}
+	
+	private static List<Method> methods(String className, String name, int arity) throws ClassNotFoundException
+	{
+		return Arrays.stream(Repository.lookupClass(className).getMethods()).filter(m -> m.isPublic() && m.getName().equals(name) && m.getArgumentTypes().length == arity).collect(Collectors.toList());
+	}
+	
+	private static Method method(Type parameter, ConstantPoolGen cp)
+	{
+		return new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC | Constants.ACC_ABSTRACT, Type.VOID, new Type[]{parameter}, null, "m", "Overloads", null, cp).getMethod();
+	}
+	
+	private static List<List<Type>> shapes(int arity)
+	{
+		List<List<Type>> shapes = new ArrayList<List<Type>>();
+		for(Type first : ARGUMENTS)
+		{
+			if(arity == 1)
+				shapes.add(Arrays.asList(first));
+			else
+				for(Type second : ARGUMENTS)
+					shapes.add(Arrays.asList(first, second));
+		}
+		return shapes;
+	}
+	
+	// what the resolution gave, or how it failed: an ambiguous call, a conversion that does not exist or any other exception
+	private static String outcome(Supplier<String> resolution)
+	{
+		try
+		{
+			return resolution.get();
+		}
+		catch(CompilationException e)
+		{
+			return e.getMessage().startsWith("Ambiguous function call") ? "ambiguous" : e.getMessage();
+		}
+		catch(RuntimeException e)
+		{
+			return e.getMessage() != null && e.getMessage().startsWith("Can not cast ") ? "no conversion" : e.toString();
+		}
+	}
+	
+	// the selection before the conversion table: fewest parameters of a different type, then fewest casts that built an instruction
+	private static int oldClosestMatch(List<Type[]> paramTypes, List<Type> argTypes)
+	{
+		List<Integer> best = new ArrayList<Integer>();
+		int numCasts = argTypes.size() + 1;
+		for(int c = 0; c < paramTypes.size(); c++)
+		{
+			int casts = 0;
+			for(int i = 0; i < argTypes.size(); i++)
+				if(!paramTypes.get(c)[i].equals(argTypes.get(i)))
+					casts++;
+			if(casts < numCasts)
+			{
+				numCasts = casts;
+				best.clear();
+			}
+			if(casts == numCasts)
+				best.add(c);
+		}
+		InstructionFactory dummyFactory = new InstructionFactory(new ConstantPoolGen());
+		List<Integer> closest = new ArrayList<Integer>();
+		numCasts = argTypes.size() + 1;
+		for(int c : best)
+		{
+			int casts = 0;
+			for(int i = 0; i < argTypes.size(); i++)
+			{
+				Type from = argTypes.get(i);
+				Type to = paramTypes.get(c)[i];
+				if(from.equals(to))
+					continue;
+				try
+				{
+					dummyFactory.createCast(from, to);
+					casts++;
+				}
+				catch(RuntimeException e)
+				{
+					if(e.getMessage().startsWith("Can not cast "))
+						throw e;
+				}
+			}
+			if(casts < numCasts)
+			{
+				numCasts = casts;
+				closest.clear();
+			}
+			if(casts == numCasts)
+				closest.add(c);
+		}
+		if(closest.size() > 1)
+			throw new CompilationException("Ambiguous function call with " + argTypes.size() + " parameters");
+		return closest.get(0);
+	}
+}
\ No newline at end of file
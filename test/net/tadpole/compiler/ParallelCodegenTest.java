@@ -0,0 +1,39 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// classes generated on the pool have to be the same bytes as classes generated one after the other, whichever backend writes them
+public class ParallelCodegenTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("parallel-codegen");
+		String[] files = TestSupport.writeModules(dir, 6, 3);
+		
+		TestSupport.Build sequential = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "1", "--backend", "bcel"}, files));
+		TestSupport.checkClean(sequential, "Sequential build");
+		TestSupport.check(sequential.classes.size() == 6 * 4, "Sequential build wrote " + sequential.classes.size() + " classes instead of 24");
+		String expected = TestSupport.runProgram(new File(dir, "out"), "M5");
+		
+		for(String backend : new String[]{"bcel", "streaming"})
+		{
+			for(String threads : new String[]{"1", "2", "4"})
+			{
+				String what = "Generating with " + backend + " on " + threads + " threads";
+				TestSupport.Build build = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", threads, "--backend", backend}, files));
+				TestSupport.checkClean(build, what);
+				TestSupport.checkSameClasses(sequential, build, what);
+			}
+		}
+		TestSupport.check(TestSupport.runProgram(new File(dir, "out"), "M5").equals(expected), "M5 printed something else after the last build");
+		
+		// versioned classes carry frames, those have to be the same on any number of threads too
+		TestSupport.Build framed = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "1", "--target", "11"}, files));
+		TestSupport.checkClean(framed, "Sequential build for Java 11");
+		TestSupport.Build parallelFramed = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "4", "--target", "11"}, files));
+		TestSupport.checkClean(parallelFramed, "Parallel build for Java 11");
+		TestSupport.checkSameClasses(framed, parallelFramed, "Generating for Java 11 on 4 threads");
+		
+		System.out.println("ParallelCodegenTest passed");
+	}
+}
\ No newline at end of file
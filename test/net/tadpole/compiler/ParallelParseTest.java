@@ -0,0 +1,28 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+
+// files parsed and converted on the pool have to give the same classes as files parsed one after the other on the main thread
+public class ParallelParseTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("parallel-parse");
+		String[] files = TestSupport.writeModules(dir, 8, 2);
+		
+		TestSupport.Build sequential = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "1"}, files));
+		TestSupport.checkClean(sequential, "Sequential build");
+		TestSupport.check(sequential.classes.size() == 8 * 3, "Sequential build wrote " + sequential.classes.size() + " classes instead of 24");
+		
+		TestSupport.Build parallel = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "4"}, files));
+		TestSupport.checkClean(parallel, "Parallel build");
+		TestSupport.checkSameClasses(sequential, parallel, "Parsing on 4 threads");
+		
+		// a failing file is reported the same way whichever thread parsed it
+		TestSupport.write(dir, "M3.tadpole", TestSupport.module(3, 2).replace("struct S0", "struct S0 S0"));
+		TestSupport.Build broken = TestSupport.compile(dir, TestSupport.concat(new String[]{"--threads", "4"}, files));
+		TestSupport.check(broken.stderr.contains("line 2:10"), "The syntax error in M3 was not reported:\n" + broken.stderr);
+		
+		System.out.println("ParallelParseTest passed");
+	}
+}
\ No newline at end of file
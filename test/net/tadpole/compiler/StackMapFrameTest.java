@@ -0,0 +1,49 @@
+package net.tadpole.compiler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+// class files for Java 11 carry stack map frames, the JVM checks the code against them and has to accept every class and run it the same as without them
+public class StackMapFrameTest
+{
+	// loops, branches that merge longs, doubles and booleans, returns inside loops, short-circuit conditions and a struct constructor
+	private static final String SOURCE = "long total = 0;\ndouble d = 1.5;\nint k = 0;\nwhile(k < 5)\n{\n\ttotal = total + k;\n\td = d * 2;\n\tk = k + 1;\n}\n"
+			+ "java.lang.System.out.println(total);\njava.lang.System.out.println(d);\njava.lang.System.out.println(pick(3));\njava.lang.System.out.println(pick(30));\n"
+			+ "java.lang.System.out.println(new Box(k > 2, 7).flag);\njava.lang.System.out.println(new Box(k < 2 || k == 5, 1).size);\njava.lang.System.out.println(loop(4));\n"
+			+ "java.lang.System.out.println(name(true));\njava.lang.System.out.println(name(false));\ndo\n\tk = k - 1;\nwhile(k > 0);\njava.lang.System.out.println(k);\n\n"
+			+ "def pick(int x) : int -> {\n\tif(x > 10)\n\t\treturn 1;\n\telse\n\t\treturn 2;\n}\n\n"
+			+ "def loop(int n) : int -> {\n\tint i = 0;\n\twhile(true)\n\t{\n\t\tif(i == n)\n\t\t\treturn i * 10;\n\t\ti = i + 1;\n\t}\n\treturn 0;\n}\n\n"
+			+ "def name(boolean b) : int -> {\n\tint s = 0;\n\tif(b && true)\n\t\ts = 1;\n\treturn s;\n}\n\n"
+			+ "struct Box(boolean f, int n)\n{\n\tboolean flag = f && n > 3;\n\tint size = n;\n}\n";
+	
+	public static void main(String[] args) throws Exception
+	{
+		File dir = TestSupport.tempDir("stack-map-frames");
+		TestSupport.write(dir, "F.tadpole", SOURCE);
+		File out = new File(dir, "out");
+		
+		TestSupport.Build plain = TestSupport.compile(dir, "F.tadpole");
+		TestSupport.checkClean(plain, "Building with the default version");
+		String expected = TestSupport.runProgram(out, "F", "-Xverify:all").replace("\r", "");
+		TestSupport.check(expected.equals("10\n48.0\n2\n1\ntrue\n1\n40\n1\n0\n0\n"), "F printed:\n" + expected);
+		
+		TestSupport.Build framed = TestSupport.compile(dir, "--target", "11", "F.tadpole");
+		TestSupport.checkClean(framed, "Building for Java 11");
+		TestSupport.check(framed.classes.keySet().equals(plain.classes.keySet()), "Building for Java 11 wrote " + framed.classes.keySet());
+		for(String name : framed.classes.keySet())
+		{
+			byte[] bytes = framed.classes.get(name);
+			TestSupport.check((bytes[6] << 8 | bytes[7] & 0xFF) == 55, name + " is not a Java 11 class file");
+			TestSupport.check(new String(bytes, StandardCharsets.ISO_8859_1).contains("StackMapTable"), name + " has no stack map frames");
+		}
+		String output = TestSupport.runProgram(out, "F", "-Xverify:all").replace("\r", "");
+		TestSupport.check(output.equals(expected), "F for Java 11 printed:\n" + output);
+		
+		// both backends work out the same frames
+		TestSupport.Build bcel = TestSupport.compile(dir, "--target", "11", "--backend", "bcel", "F.tadpole");
+		TestSupport.checkClean(bcel, "Building for Java 11 with bcel");
+		TestSupport.checkSameClasses(framed, bcel, "Building for Java 11 with bcel");
+		
+		System.out.println("StackMapFrameTest passed");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+package net.tadpole.compiler;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+// what the tests share: temporary source trees, running the compiler in a JVM of its own and comparing what it wrote
+// the compiler keeps its symbol tables in static fields, so every build that has to start from nothing gets a fresh JVM
+public class TestSupport
+{
+	private static final String JAVA = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+	
+	// the result of one run of the compiler, classes holds every class file it wrote keyed by file name
+	public static class Build
+	{
+		public final int exitCode;
+		public final String stdout;
+		public final String stderr;
+		public final Map<String, byte[]> classes;
+		
+		Build(int exitCode, String stdout, String stderr, Map<String, byte[]> classes)
+		{
+			this.exitCode = exitCode;
+			this.stdout = stdout;
+			this.stderr = stderr;
+			this.classes = classes;
+		}
+	}
+	
+	// a compiler started with --watch, its stdout and stderr are collected together as it prints them
+	public static class Watch
+	{
+		private final Process process;
+		private final StringBuffer output = new StringBuffer();
+		
+		Watch(Process process)
+		{
+			this.process = process;
+			Thread reader = new Thread(() -> {
+				try(BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)))
+				{
+					String line;
+					while((line = in.readLine()) != null)
+						output.append(line).append('\n');
+				}
+				catch(IOException e)
+				{
+					// the stream closes when the process is stopped
+				}
+			});
+			reader.setDaemon(true);
+			reader.start();
+		}
+		
+		// waits until the compiler printed text, failing if it exits or has not printed it within a minute
+		public void await(String text) throws InterruptedException
+		{
+			long deadline = System.nanoTime() + 60_000_000_000L;
+			while(output.indexOf(text) < 0)
+			{
+				check(process.isAlive(), "The watching compiler exited before printing " + text + ":\n" + output);
+				check(System.nanoTime() < deadline, "The watching compiler did not print " + text + ":\n" + output);
+				Thread.sleep(20);
+			}
+		}
+		
+		public void stop() throws InterruptedException
+		{
+			process.destroy();
+			process.waitFor();
+		}
+	}
+	
+	public static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+	
+	public static File tempDir(String prefix) throws IOException
+	{
+		File dir = Files.createTempDirectory(prefix).toFile();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteTree(dir)));
+		return dir;
+	}
+	
+	public static File write(File dir, String fileName, String content) throws IOException
+	{
+		File file = new File(dir, fileName);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+	
+	// runs the compiler in dir with a fresh out directory, the way it is run from the command line
+	public static Build compile(File dir, String... args) throws IOException
+	{
+		return compile(dir, new String[]{"-Xss4m"}, args);
+	}
+	
+	// the same in a JVM started with jvmArgs
+	public static Build compile(File dir, String[] jvmArgs, String... args) throws IOException
+	{
+		File out = new File(dir, "out");
+		deleteTree(out);
+		out.mkdirs();
+		List<String> command = new ArrayList<String>();
+		command.add(JAVA);
+		command.addAll(Arrays.asList(jvmArgs));
+		command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), CompilerCore.class.getName()));
+		command.addAll(Arrays.asList(args));
+		String[] output = run(dir, command);
+		return new Build(Integer.parseInt(output[0]), output[1], output[2], readClasses(out));
+	}
+	
+	// starts the compiler with --watch in dir with a fresh out directory, it keeps running until stopped
+	public static Watch watch(File dir, String... args) throws IOException
+	{
+		File out = new File(dir, "out");
+		deleteTree(out);
+		out.mkdirs();
+		List<String> command = new ArrayList<String>(Arrays.asList(JAVA, "-Xss4m", "-cp", System.getProperty("java.class.path"), CompilerCore.class.getName(), "--watch"));
+		command.addAll(Arrays.asList(args));
+		return new Watch(new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start());
+	}
+	
+	// runs the main method of a compiled module and returns what it printed, failing if it printed anything to stderr
+	public static String runProgram(File classPath, String mainClass, String... jvmArgs) throws IOException
+	{
+		return runProgram(classPath, new String[]{classPath.getPath()}, mainClass, jvmArgs);
+	}
+	
+	// the same from dir with a class path of several entries, relative ones are resolved against dir
+	public static String runProgram(File dir, String[] classPath, String mainClass, String... jvmArgs) throws IOException
+	{
+		List<String> command = new ArrayList<String>();
+		command.add(JAVA);
+		command.addAll(Arrays.asList(jvmArgs));
+		command.addAll(Arrays.asList("-cp", String.join(File.pathSeparator, classPath), mainClass));
+		String[] output = run(dir, command);
+		check(output[0].equals("0") && output[2].isEmpty(), "Running " + mainClass + " failed:\n" + output[2]);
+		return output[1];
+	}
+	
+	// the class files of both builds have to be the same files with the same bytes
+	public static void checkSameClasses(Build expected, Build actual, String what)
+	{
+		check(expected.classes.keySet().equals(actual.classes.keySet()), what + " wrote " + actual.classes.keySet() + " instead of " + expected.classes.keySet());
+		for(Map.Entry<String, byte[]> entry : expected.classes.entrySet())
+			check(Arrays.equals(entry.getValue(), actual.classes.get(entry.getKey())), what + " changed " + entry.getKey());
+	}
+	
+	public static void checkClean(Build build, String what)
+	{
+		check(build.exitCode == 0, what + " exited with " + build.exitCode + ":\n" + build.stderr);
+		check(build.stderr.isEmpty(), what + " reported errors:\n" + build.stderr);
+	}
+	
+	// modules M0 to M(count - 1), each importing the one before it and calling into it, with structs, loops, branches and arrays
+	public static String module(int module, int structs)
+	{
+		StringBuilder sb = new StringBuilder();
+		if(module > 0)
+			sb.append("import M").append(module - 1).append(";\n");
+		for(int s = 0; s < structs; s++)
+		{
+			sb.append("struct S").append(s).append("(int a, double b)\n{\n");
+			sb.append("\tint a = a * 2 + 1;\n\tdouble b = b / 3;\n\tint[] c = new int[a];\n");
+			for(int f = 0; f < 4; f++)
+				sb.append("\tdef g").append(f).append("(int x) : int -> return x * a + c.length - ").append(f).append(";\n");
+			sb.append("}\n");
+		}
+		for(int f = 0; f < 20; f++)
+		{
+			sb.append("def f").append(f).append("(int x, S0 s) : int -> {\n");
+			sb.append("\tint y = x * s.a + s.c.length;\n");
+			sb.append("\tint i = 0;\n");
+			sb.append("\twhile(i < 10) { y = y + s.g").append(f % 4).append("(i); i = i + 1; }\n");
+			sb.append("\tif(y > 10) y = y - 1; else y = y + 2;\n");
+			sb.append("\treturn y;\n");
+			sb.append("}\n");
+		}
+		if(module > 0)
+			sb.append("java.lang.System.out.println(M").append(module - 1).append(".f0(1, new M").append(module - 1).append(".S0(2, 3.0)));\n");
+		sb.append("java.lang.System.out.println(f1(1, new S0(2, 3.0)));\n");
+		return sb.toString();
+	}
+	
+	// writes M0.tadpole to M(count - 1).tadpole into dir and returns their names in import order
+	public static String[] writeModules(File dir, int count, int structs) throws IOException
+	{
+		String[] files = new String[count];
+		for(int i = 0; i < count; i++)
+		{
+			files[i] = "M" + i + ".tadpole";
+			write(dir, files[i], module(i, structs));
+		}
+		return files;
+	}
+	
+	// parses the whole source on this thread, the way a file that is not split is parsed
+	public static Module parse(String moduleName, String source)
+	{
+		TadpoleListener listener = new TadpoleListener(moduleName);
+		new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(source)));
+		return listener.getModule();
+	}
+	
+	// the form the model cache stores, two modules with the same bytes were parsed to the same trees
+	public static byte[] serialize(Module module) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream out = new DataOutputStream(bytes))
+		{
+			ModelCache.write(out, module);
+		}
+		return bytes.toByteArray();
+	}
+	
+	public static String[] concat(String[] first, String... second)
+	{
+		String[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+	
+	public static Map<String, byte[]> readClasses(File dir) throws IOException
+	{
+		Map<String, byte[]> classes = new TreeMap<String, byte[]>();
+		File[] files = dir.listFiles((d, name) -> name.endsWith(".class"));
+		if(files != null)
+			for(File file : files)
+				classes.put(file.getName(), Files.readAllBytes(file.toPath()));
+		return classes;
+	}
+	
+	public static void deleteTree(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				deleteTree(child);
+		file.delete();
+	}
+	
+	// exit code, stdout and stderr of the command, both streams are drained while it runs so neither can fill up and block it
+	private static String[] run(File dir, List<String> command) throws IOException
+	{
+		Process process = new ProcessBuilder(command).directory(dir).start();
+		CompletableFuture<String> stdout = CompletableFuture.supplyAsync(() -> readAll(process.getInputStream()));
+		CompletableFuture<String> stderr = CompletableFuture.supplyAsync(() -> readAll(process.getErrorStream()));
+		try
+		{
+			int exitCode = process.waitFor();
+			return new String[]{Integer.toString(exitCode), stdout.join(), stderr.join()};
+		}
+		catch(InterruptedException e)
+		{
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running " + command, e);
+		}
+	}
+	
+	private static String readAll(InputStream in)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) >= 0)
+				bytes.write(buffer, 0, read);
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+}
\ No newline at end of file
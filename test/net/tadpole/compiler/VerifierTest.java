@@ -0,0 +1,123 @@
+package net.tadpole.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.Type;
+import org.apache.bcel.util.SyntheticRepository;
+
+import net.tadpole.compiler.backend.ClassFile;
+
+// a class the verifier rejects is reported and left unwritten while the rest of the build is written, classes it accepts pass on any number of threads
+public class VerifierTest
+{
+	private static final String LIBRARY = "struct Pt(int x)\n{\n\tint x = x;\n}\njava.lang.System.out.println(new Pt(1).x);\n";
+	// linking App loads Lib$Pt for the signature of get
+	private static final String APP = "import Lib;\ndef get(Pt p) : int -> return p.x;\njava.lang.System.out.println(get(new Pt(4)));\n";
+	
+	public static void main(String[] args) throws Exception
+	{
+		// the same method with and without the two ints its iadd pops, the one without underflows the stack
+		ClassFile[] classes = {handMade("Underflow", false), handMade("Sum", true)};
+		PrintStream err = System.err;
+		for(ClassVerifier verifier : new ClassVerifier[]{new ClassVerifier(ClassVerifier.Mode.JVM, 1, ""), new ClassVerifier(ClassVerifier.Mode.JVM, 4, ""), new ClassVerifier(ClassVerifier.Mode.BCEL, 1, "")})
+		{
+			ByteArrayOutputStream reported = new ByteArrayOutputStream();
+			System.setErr(new PrintStream(reported, true, "UTF-8"));
+			boolean[] passed;
+			try
+			{
+				passed = verifier.verify(classes);
+			}
+			finally
+			{
+				System.setErr(err);
+			}
+			String reasons = reported.toString("UTF-8");
+			TestSupport.check(!passed[0] && passed[1], "The hand made classes passed " + Arrays.toString(passed) + ":\n" + reasons);
+			TestSupport.check(reasons.startsWith("Failed to verify class: Underflow\n") && !reasons.contains("Failed to verify class: Sum"), "The hand made classes were reported as:\n" + reasons);
+		}
+		Repository.setRepository(SyntheticRepository.getInstance());
+		
+		// a library class whose superclass is gone, the JVM cannot link App against it and nothing but the verifier keeps App from being written
+		File dir = TestSupport.tempDir("verifier");
+		TestSupport.write(dir, "Lib.tadpole", LIBRARY);
+		TestSupport.Build library = TestSupport.compile(dir, "Lib.tadpole");
+		TestSupport.checkClean(library, "Building Lib");
+		File classPath = new File(dir, "lib");
+		classPath.mkdirs();
+		for(String name : library.classes.keySet())
+			Files.write(new File(classPath, name).toPath(), library.classes.get(name));
+		ClassGen point = new ClassGen(new ClassParser(new ByteArrayInputStream(library.classes.get("Lib$Pt.class")), "Lib$Pt.class").parse());
+		point.setSuperclassName("Gone");
+		point.getJavaClass().dump(new File(classPath, "Lib$Pt.class"));
+		TestSupport.deleteTree(new File(dir, "out"));
+		TestSupport.write(dir, "App.tadpole", APP);
+		TestSupport.write(dir, "Good.tadpole", "java.lang.System.out.println(3);\n");
+		
+		// under a memory budget classes are written before they are verified, a rejected one has to be taken back out
+		String[][] verifiers = {{"--verify", "jvm", "--threads", "1"}, {"--verify", "jvm", "--threads", "4"}, {"--verify", "jvm", "--memory-budget", "1"}, {"--verify", "jvm", "--memory-budget", "64"}};
+		for(String[] options : verifiers)
+		{
+			String what = "Building with " + String.join(" ", options);
+			TestSupport.Build build = TestSupport.compile(dir, TestSupport.concat(options, "--library-path", "lib", "App.tadpole", "Good.tadpole"));
+			TestSupport.check(build.exitCode == 0, what + " exited with " + build.exitCode + ":\n" + build.stderr);
+			TestSupport.check(build.stderr.startsWith("Failed to verify class: App\n") && !build.stderr.contains("Failed to verify class: Good"), what + " reported:\n" + build.stderr);
+			TestSupport.check(build.classes.keySet().equals(new HashSet<String>(Arrays.asList("Good.class"))), what + " wrote " + build.classes.keySet());
+			String output = TestSupport.runProgram(new File(dir, "out"), "Good").trim();
+			TestSupport.check(output.equals("3"), "Good printed " + output + " after " + what);
+		}
+		
+		// without a verifier the class is written as it was generated
+		TestSupport.Build unverified = TestSupport.compile(dir, "--verify", "none", "--library-path", "lib", "App.tadpole", "Good.tadpole");
+		TestSupport.checkClean(unverified, "Building without a verifier");
+		TestSupport.check(unverified.classes.containsKey("App.class"), "Building without a verifier did not write App");
+		
+		// valid classes pass every verifier on any number of threads and are written as they were generated
+		File valid = TestSupport.tempDir("verifier-valid");
+		String[] files = TestSupport.writeModules(valid, 6, 2);
+		TestSupport.Build expected = TestSupport.compile(valid, TestSupport.concat(new String[]{"--verify", "none"}, files));
+		TestSupport.checkClean(expected, "Building the valid modules without a verifier");
+		for(String[] options : new String[][]{{"--verify", "jvm", "--threads", "1"}, {"--verify", "jvm", "--threads", "2"}, {"--verify", "jvm", "--threads", "4"}, {"--verify", "bcel", "--threads", "4"}})
+		{
+			String what = "Verifying the valid modules with " + String.join(" ", options);
+			TestSupport.Build build = TestSupport.compile(valid, TestSupport.concat(options, files));
+			TestSupport.checkClean(build, what);
+			TestSupport.checkSameClasses(expected, build, what);
+		}
+		
+		System.out.println("VerifierTest passed");
+	}
+	
+	// public static int add() { return 1 + 2; } with the two constants pushed or left out
+	private static ClassFile handMade(String className, boolean pushOperands)
+	{
+		ClassGen cg = new ClassGen(className, "java.lang.Object", className + ".java", Constants.ACC_PUBLIC | Constants.ACC_SUPER, null);
+		ConstantPoolGen cp = cg.getConstantPool();
+		InstructionList il = new InstructionList();
+		if(pushOperands)
+		{
+			il.append(InstructionConstants.ICONST_1);
+			il.append(InstructionConstants.ICONST_2);
+		}
+		il.append(InstructionConstants.IADD);
+		il.append(InstructionConstants.IRETURN);
+		MethodGen mg = new MethodGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, Type.INT, Type.NO_ARGS, null, "add", className, il, cp);
+		mg.setMaxStack(2);
+		cg.addMethod(mg.getMethod());
+		return new ClassFile(className, cg.getJavaClass().getBytes(), null);
+	}
+}
\ No newline at end of file
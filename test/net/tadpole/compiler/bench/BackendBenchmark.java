@@ -0,0 +1,65 @@
+package net.tadpole.compiler.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import com.sun.management.ThreadMXBean;
+
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// generates the classes of the same modules on one thread and encodes them with BCEL and with the streaming encoder, instructions are selected the same way for both
+// and prints classes per second and bytes allocated per class for each, the class files of both have to be identical
+// usage: BackendBenchmark [modules] [structs per module] [rounds], defaults to 32 modules with 8 structs each and 5 rounds, the first round only warms up the JIT
+public class BackendBenchmark
+{
+	public static void main(String[] args)
+	{
+		int modules = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int structs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ParseDriver.warmUp();
+		for(int i = 0; i < modules; i++)
+		{
+			TadpoleListener listener = new TadpoleListener("M" + i);
+			new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(ParallelCodegenBenchmark.source(i, structs))));
+			Module module = listener.getModule();
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		Module.analyze(1);
+		
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for(int round = 0; round < rounds; round++)
+		{
+			ClassFile[] reference = null;
+			for(ClassFileBackend backend : new ClassFileBackend[]{ClassFileBackend.BCEL, ClassFileBackend.STREAMING})
+			{
+				System.gc();
+				long allocated = threads.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				ClassFile[] classes = Module.generateBytecode(1, backend);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+				
+				if(reference == null)
+					reference = classes;
+				else
+					for(int i = 0; i < classes.length; i++)
+						if(!Arrays.equals(reference[i].bytes, classes[i].bytes))
+							throw new IllegalStateException("Backends disagree on class " + classes[i].className);
+				if(round > 0)
+					System.out.printf("round %d: %-9s %8.0f classes/s, %9d bytes allocated per class%n", round, backend == ClassFileBackend.BCEL ? "bcel" : "streaming", classes.length / seconds, allocated / classes.length);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package net.tadpole.compiler.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// loads and links the classes of the same modules written for the default class file version and for Java 8 and prints how long each takes,
+// every round defines the classes in a new class loader so the JVM verifies all of them again, the old ones with the type-inferencing verifier and the new ones against their stack map frames
+// usage: ClassLoadingBenchmark [modules] [structs per module] [rounds], defaults to 32 modules with 32 structs each and 5 rounds, the first round only warms up the JIT
+public class ClassLoadingBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int modules = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int structs = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ParseDriver.warmUp();
+		for(int i = 0; i < modules; i++)
+		{
+			TadpoleListener listener = new TadpoleListener("M" + i);
+			new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(ParallelCodegenBenchmark.source(i, structs))));
+			Module module = listener.getModule();
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		Module.analyze(1);
+		
+		int[] targets = {0, 8};
+		Map<Integer, ClassFile[]> classes = new HashMap<Integer, ClassFile[]>();
+		for(int target : targets)
+			classes.put(target, Module.generateBytecode(1, ClassFileBackend.forName("streaming", target)));
+		
+		for(int round = 0; round < rounds; round++)
+		{
+			for(int target : targets)
+			{
+				System.gc();
+				long start = System.nanoTime();
+				Loader loader = new Loader(classes.get(target));
+				for(ClassFile classFile : classes.get(target))
+					Class.forName(classFile.className, true, loader);
+				double millis = (System.nanoTime() - start) / 1e6;
+				if(round > 0)
+					System.out.printf("round %d: %-7s %8.1f ms, %d classes%n", round, target == 0 ? "default" : "java " + target, millis, classes.get(target).length);
+			}
+		}
+	}
+	
+	private static class Loader extends ClassLoader
+	{
+		private final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		
+		Loader(ClassFile[] classFiles)
+		{
+			super(Loader.class.getClassLoader());
+			for(ClassFile classFile : classFiles)
+				classes.put(classFile.className, classFile.bytes);
+		}
+		
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException
+		{
+			byte[] bytes = classes.get(name);
+			if(bytes == null)
+				throw new ClassNotFoundException(name);
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
\ No newline at end of file
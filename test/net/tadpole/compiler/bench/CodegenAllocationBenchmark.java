@@ -0,0 +1,65 @@
+package net.tadpole.compiler.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import com.sun.management.ThreadMXBean;
+
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// generates the classes of the same modules with the streaming encoder on one thread and prints the bytes allocated and the time taken per compiled function,
+// counting the module initializers and struct constructors as functions too, the numbers cover selecting the instructions with BCEL and encoding them
+// usage: CodegenAllocationBenchmark [modules] [structs per module] [rounds], defaults to 32 modules with 8 structs each and 5 rounds, the first round only warms up the JIT
+public class CodegenAllocationBenchmark
+{
+	public static void main(String[] args)
+	{
+		int modules = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int structs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ParseDriver.warmUp();
+		List<Module> registered = new ArrayList<Module>();
+		for(int i = 0; i < modules; i++)
+		{
+			TadpoleListener listener = new TadpoleListener("M" + i);
+			new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(ParallelCodegenBenchmark.source(i, structs))));
+			Module module = listener.getModule();
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+			registered.add(module);
+		}
+		Module.analyze(1);
+		
+		int functions = 0;
+		for(Module module : registered)
+		{
+			functions += module.declaredFunctions.size() + 1;
+			for(Struct struct : module.declaredStructs)
+				functions += struct.functions.size() + 1;
+		}
+		
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for(int round = 0; round < rounds; round++)
+		{
+			System.gc();
+			long allocated = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			ClassFile[] classes = Module.generateBytecode(1, ClassFileBackend.STREAMING);
+			long nanos = System.nanoTime() - start;
+			allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+			if(round > 0)
+				System.out.printf("round %d: %7d bytes allocated per function, %6.2f us per function, %d functions in %d classes%n", round, allocated / functions, nanos / 1e3 / functions, functions, classes.length);
+		}
+	}
+}
\ No newline at end of file
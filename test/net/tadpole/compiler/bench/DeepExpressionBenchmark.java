@@ -0,0 +1,95 @@
+package net.tadpole.compiler.bench;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.Function;
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.ast.CompactTree;
+import net.tadpole.compiler.backend.ClassFileBackend;
+import net.tadpole.compiler.parser.TadpoleParser.FileContext;
+
+// compiles generated modules whose functions return a single left-deep binary chain: a + a + ..., a && a && ... and "s" + a + a + ...
+// everything runs on a thread with a small fixed stack, so any pass that still recurses once per operand fails here
+// usage: DeepExpressionBenchmark [depth...], defaults to 1000 10000 100000 1000000
+public class DeepExpressionBenchmark
+{
+	private static final long STACK_SIZE = 1 << 19;
+	
+	public static void main(String[] args) throws Exception
+	{
+		int[] depths = args.length == 0 ? new int[]{1000, 10000, 100000, 1000000} : new int[args.length];
+		for(int i = 0; i < args.length; i++)
+			depths[i] = Integer.parseInt(args[i]);
+		
+		Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, () -> {
+			try
+			{
+				ParseDriver.warmUp();
+				for(int depth : depths)
+					run(depth);
+			}
+			catch(Throwable t)
+			{
+				failure[0] = t;
+			}
+		}, "deep-expression-benchmark", STACK_SIZE);
+		thread.start();
+		thread.join();
+		if(failure[0] != null)
+		{
+			failure[0].printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	private static void run(int depth)
+	{
+		String moduleName = "Deep" + depth;
+		long start = System.nanoTime();
+		FileContext context = ParseDriver.parse(new ANTLRInputStream(source(depth)));
+		TadpoleListener listener = new TadpoleListener(moduleName);
+		new ParseTreeWalker().walk(listener, context);
+		Module module = listener.getModule();
+		context = null;
+		long parsed = System.nanoTime();
+		
+		for(Function function : module.declaredFunctions)
+			new CompactTree(function.getStatement()).toStatement();
+		for(Struct struct : module.declaredStructs)
+			for(Function function : struct.functions)
+				new CompactTree(function.getStatement()).toStatement();
+		long compacted = System.nanoTime();
+		
+		// module names differ per depth, so earlier runs stay registered without clashing
+		Struct.registerStructs(module.declaredStructs);
+		Module.registerModule(module);
+		Module.absolutifyTypes(module);
+		long absolutified = System.nanoTime();
+		
+		module.toBytecode(ClassFileBackend.STREAMING);
+		long generated = System.nanoTime();
+		
+		System.out.printf("depth %8d: parse+convert %7.1f ms, compact round trip %7.1f ms, simplify+absolutify %7.1f ms, codegen %7.1f ms%n", depth, (parsed - start) / 1e6, (compacted - parsed) / 1e6, (absolutified - compacted) / 1e6, (generated - absolutified) / 1e6);
+	}
+	
+	private static String source(int depth)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("def sum(int x) : int -> return x");
+		for(int i = 1; i < depth; i++)
+			sb.append(" + x");
+		sb.append(";\ndef all(boolean b) : boolean -> return b");
+		for(int i = 1; i < depth; i++)
+			sb.append(" && b");
+		sb.append(";\nstruct Text(int i)\n{\n\tint i = i;\n\tdef concat() : java.lang.String -> return \"s\"");
+		for(int i = 0; i < depth; i++)
+			sb.append(" + i");
+		sb.append(";\n}\njava.lang.System.out.println(sum(1));\n");
+		return sb.toString();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package net.tadpole.compiler.bench;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.ast.TreeWalk;
+
+// runs constant folding, absolutification and the parallel assignment check over the same generated module twice per round,
+// once with a walk per pass and once with all three fused into a single walk, and prints the walks and time of every phase
+// usage: FusedWalkBenchmark [functions] [rounds], defaults to 20000 functions and 5 rounds, the first round only warms up the JIT
+public class FusedWalkBenchmark
+{
+	public static void main(String[] args)
+	{
+		int functions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String source = source(functions);
+		
+		ParseDriver.warmUp();
+		for(int round = 0; round < rounds; round++)
+		{
+			double separate = analyze(source, "Separate" + round, false);
+			String separateStatistics = TreeWalk.getStatistics();
+			double fused = analyze(source, "Fused" + round, true);
+			String fusedStatistics = TreeWalk.getStatistics();
+			if(round == 0)
+				continue;
+			
+			System.out.printf("round %d: separate walks %7.1f ms, fused walk %7.1f ms, %7.1f ms saved%n", round, separate, fused, separate - fused);
+			System.out.println(separateStatistics);
+			System.out.println(fusedStatistics);
+		}
+	}
+	
+	// a freshly parsed module every time, the passes rewrite the trees they walk
+	private static double analyze(String source, String moduleName, boolean fuse)
+	{
+		TadpoleListener listener = new TadpoleListener(moduleName);
+		new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(source)));
+		Module module = listener.getModule();
+		Struct.registerStructs(module.declaredStructs);
+		Module.registerModule(module);
+		
+		Module.fusePasses = fuse;
+		TreeWalk.resetStatistics();
+		System.gc();
+		long start = System.nanoTime();
+		Module.absolutifyTypes(module);
+		return (System.nanoTime() - start) / 1e6;
+	}
+	
+	private static String source(int functions)
+	{
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < functions; i++)
+		{
+			sb.append("def f").append(i).append("(int x, P p) : int -> {\n");
+			sb.append("\tint y = x * (2 + 3) + (int) 1.5;\n");
+			sb.append("\ty += p.i * 4 - (8 / 2);\n");
+			sb.append("\tif(y > 10 && true) y = y - (1 + 1);\n");
+			sb.append("\treturn y + (x * 2 + 1) * (x - 3);\n");
+			sb.append("}\n");
+		}
+		sb.append("struct P(int i)\n{\n\tint i = i * (1 + 1);\n}\n");
+		sb.append("java.lang.System.out.println(f0(1, new P(2)));\n");
+		return sb.toString();
+	}
+}
\ No newline at end of file
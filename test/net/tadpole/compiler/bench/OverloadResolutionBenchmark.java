@@ -0,0 +1,180 @@
+package net.tadpole.compiler.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.generic.BasicType;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.Type;
+
+import net.tadpole.compiler.ClassPathIndex;
+import net.tadpole.compiler.Function;
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.SymbolIndex;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.util.TypeUtils;
+
+// resolves the same call shapes over and over against an overloaded tadpole function and java.lang.Math.max
+// "probe" is how calls used to be resolved: parameter types converted per candidate and per call, conversions found by building casts with a throwaway factory
+// "lattice" is the conversion table without the per call shape cache, "cached" is what the compiler does now
+// usage: OverloadResolutionBenchmark [calls], defaults to 1000000
+public class OverloadResolutionBenchmark
+{
+	private static final String SOURCE = "def f(int a, int b) : int -> return a;\n"
+			+ "def f(long a, long b) : long -> return a;\n"
+			+ "def f(double a, double b) : double -> return a;\n"
+			+ "def f(P a, int b) : int -> return b;\n"
+			+ "def f(P a, long b) : long -> return b;\n"
+			+ "struct P(int i)\n{\n\tint i = i;\n}\n"
+			+ "java.lang.System.out.println(f(1, 2));\n";
+	
+	private static final ObjectType P = new ObjectType("Overloads$P");
+	private static final List<List<Type>> SHAPES = Arrays.asList(Arrays.asList(Type.INT, Type.INT), Arrays.asList(Type.LONG, Type.LONG), Arrays.asList(Type.DOUBLE, Type.DOUBLE), Arrays.asList(P, Type.INT), Arrays.asList(P, Type.LONG));
+	
+	private static Object sink;
+	
+	public static void main(String[] args)
+	{
+		int calls = args.length == 0 ? 1000000 : Integer.parseInt(args[0]);
+		
+		ParseDriver.warmUp();
+		TadpoleListener listener = new TadpoleListener("Overloads");
+		new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(SOURCE)));
+		Module module = listener.getModule();
+		Struct.registerStructs(module.declaredStructs);
+		Module.registerModule(module);
+		Module.absolutifyTypes(module);
+		
+		// the first round only warms up the JIT
+		for(int round = 0; round < 2; round++)
+		{
+			long start = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = probeFunction(SHAPES.get(i % SHAPES.size()));
+			long probed = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = latticeFunction(SHAPES.get(i % SHAPES.size()));
+			long latticed = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = SymbolIndex.resolveFunction("Overloads", "f", SHAPES.get(i % SHAPES.size()));
+			long cached = System.nanoTime();
+			if(round > 0)
+				System.out.printf("tadpole f/2:       probe %7.1f ns/call, lattice %7.1f ns/call, cached %7.1f ns/call%n", (probed - start) / (double) calls, (latticed - probed) / (double) calls, (cached - latticed) / (double) calls);
+			
+			start = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = probeMethod(SHAPES.get(i % 3));
+			probed = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = TypeUtils.findClosestMatch(ClassPathIndex.getMethods("java.lang.Math", "max", 2, true), SHAPES.get(i % 3), null);
+			latticed = System.nanoTime();
+			for(int i = 0; i < calls; i++)
+				sink = ClassPathIndex.resolveMethod("java.lang.Math", "max", SHAPES.get(i % 3), true);
+			cached = System.nanoTime();
+			if(round > 0)
+				System.out.printf("java.lang.Math.max: probe %7.1f ns/call, lattice %7.1f ns/call, cached %7.1f ns/call%n", (probed - start) / (double) calls, (latticed - probed) / (double) calls, (cached - latticed) / (double) calls);
+		}
+	}
+	
+	private static Function latticeFunction(List<Type> argTypes)
+	{
+		List<Function> candidates = new ArrayList<Function>(SymbolIndex.getFunctions("Overloads", "f", argTypes.size()));
+		candidates.removeIf(f -> !TypeUtils.areMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), argTypes));
+		return TypeUtils.findClosestMatch(candidates, argTypes);
+	}
+	
+	private static Function probeFunction(List<Type> argTypes)
+	{
+		List<Function> candidates = new ArrayList<Function>(SymbolIndex.getFunctions("Overloads", "f", argTypes.size()));
+		candidates.removeIf(f -> !probeMatching(f.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()), argTypes));
+		List<List<Type>> paramTypes = new ArrayList<List<Type>>();
+		for(Function function : candidates)
+			paramTypes.add(function.parameters.stream().map(p -> p.getKey().toBCELType()).collect(Collectors.toList()));
+		return candidates.get(probeClosest(paramTypes, argTypes));
+	}
+	
+	private static Method probeMethod(List<Type> argTypes)
+	{
+		List<Method> candidates = ClassPathIndex.getMethods("java.lang.Math", "max", argTypes.size(), true);
+		List<List<Type>> paramTypes = new ArrayList<List<Type>>();
+		for(Method method : candidates)
+			paramTypes.add(Arrays.asList(method.getArgumentTypes()));
+		return candidates.get(probeClosest(paramTypes, argTypes));
+	}
+	
+	private static boolean probeMatching(List<Type> paramTypes, List<Type> argTypes)
+	{
+		for(int i = 0; i < paramTypes.size(); i++)
+		{
+			if(argTypes.get(i) instanceof BasicType && paramTypes.get(i) instanceof BasicType && !probeCast(argTypes.get(i), paramTypes.get(i), new InstructionFactory(null, null)))
+				return false;
+			if(!argTypes.get(i).equals(paramTypes.get(i)))
+				return false;
+		}
+		return true;
+	}
+	
+	// both passes of the old selection, the second one building every cast to see whether it is empty
+	private static int probeClosest(List<List<Type>> paramTypes, List<Type> argTypes)
+	{
+		List<Integer> best = new ArrayList<Integer>();
+		int numCasts = argTypes.size() + 1;
+		for(int c = 0; c < paramTypes.size(); c++)
+		{
+			int casts = 0;
+			for(int i = 0; i < argTypes.size(); i++)
+				if(!paramTypes.get(c).get(i).equals(argTypes.get(i)))
+					casts++;
+			if(casts < numCasts)
+			{
+				numCasts = casts;
+				best.clear();
+			}
+			if(casts == numCasts)
+				best.add(c);
+		}
+		InstructionFactory dummyFactory = new InstructionFactory(new ConstantPoolGen());
+		int closest = -1;
+		numCasts = argTypes.size() + 1;
+		for(int c : best)
+		{
+			int casts = 0;
+			for(int i = 0; i < argTypes.size(); i++)
+				if(!probeCast(argTypes.get(i), paramTypes.get(c).get(i), dummyFactory))
+					casts++;
+			if(casts < numCasts)
+			{
+				numCasts = casts;
+				closest = c;
+			}
+		}
+		return closest;
+	}
+	
+	// true when no instruction is needed
+	private static boolean probeCast(Type from, Type to, InstructionFactory factory)
+	{
+		if(from.equals(to))
+			return true;
+		try
+		{
+			factory.createCast(from, to);
+			return false;
+		}
+		catch(RuntimeException e)
+		{
+			if(e.getMessage().startsWith("Can not cast "))
+				throw e;
+			return true;
+		}
+	}
+}
\ No newline at end of file
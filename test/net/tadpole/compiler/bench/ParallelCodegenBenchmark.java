@@ -0,0 +1,103 @@
+package net.tadpole.compiler.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// generates the classes of the same set of modules with 1, 2, 4, ... threads up to the number of cores and prints the time and speedup of each,
+// the class files of every run are compared with the ones of the sequential run
+// usage: ParallelCodegenBenchmark [modules] [structs per module] [rounds], defaults to 64 modules with 8 structs each and 5 rounds, the first round only warms up the JIT
+public class ParallelCodegenBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int modules = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int structs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ParseDriver.warmUp();
+		for(int i = 0; i < modules; i++)
+		{
+			TadpoleListener listener = new TadpoleListener("M" + i);
+			new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(source(i, structs))));
+			Module module = listener.getModule();
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		Module.analyze(Runtime.getRuntime().availableProcessors());
+		
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for(int threads = 1; threads < Runtime.getRuntime().availableProcessors(); threads *= 2)
+			threadCounts.add(threads);
+		threadCounts.add(Runtime.getRuntime().availableProcessors());
+		
+		List<byte[]> expected = bytes(Module.generateBytecode(1, ClassFileBackend.STREAMING));
+		for(int round = 0; round < rounds; round++)
+		{
+			double sequential = 0;
+			for(int threads : threadCounts)
+			{
+				System.gc();
+				long start = System.nanoTime();
+				ClassFile[] classes = Module.generateBytecode(threads, ClassFileBackend.STREAMING);
+				double millis = (System.nanoTime() - start) / 1e6;
+				List<byte[]> actual = bytes(classes);
+				for(int i = 0; i < expected.size(); i++)
+					if(!Arrays.equals(expected.get(i), actual.get(i)))
+						throw new IllegalStateException("Class " + classes[i].className + " differs with " + threads + " threads");
+				if(threads == 1)
+					sequential = millis;
+				if(round > 0)
+					System.out.printf("round %d: %2d threads %8.1f ms, %5.2fx, %d classes%n", round, threads, millis, sequential / millis, classes.length);
+			}
+		}
+	}
+	
+	private static List<byte[]> bytes(ClassFile[] classes)
+	{
+		List<byte[]> bytes = new ArrayList<byte[]>();
+		for(ClassFile classFile : classes)
+			bytes.add(classFile.bytes);
+		return bytes;
+	}
+	
+	// every module imports the one before it so calls and struct types cross module boundaries
+	static String source(int module, int structs)
+	{
+		StringBuilder sb = new StringBuilder();
+		if(module > 0)
+			sb.append("import M").append(module - 1).append(";\n");
+		for(int s = 0; s < structs; s++)
+		{
+			sb.append("struct S").append(s).append("(int a, double b)\n{\n");
+			sb.append("\tint a = a * 2 + 1;\n\tdouble b = b / 3;\n\tint[] c = new int[a];\n");
+			for(int f = 0; f < 8; f++)
+				sb.append("\tdef g").append(f).append("(int x) : int -> return x * a + c.length - ").append(f).append(";\n");
+			sb.append("}\n");
+		}
+		for(int f = 0; f < 200; f++)
+		{
+			sb.append("def f").append(f).append("(int x, S0 s) : int -> {\n");
+			sb.append("\tint y = x * s.a + s.c.length;\n");
+			sb.append("\tint i = 0;\n");
+			sb.append("\twhile(i < 100) { y = y + s.g").append(f % 8).append("(i); i = i + 1; }\n");
+			sb.append("\tif(y > 10) y = y - 1; else y = y + 2;\n");
+			sb.append("\treturn y;\n");
+			sb.append("}\n");
+		}
+		if(module > 0)
+			sb.append("java.lang.System.out.println(M").append(module - 1).append(".f0(1, new M").append(module - 1).append(".S0(2, 3.0)));\n");
+		sb.append("java.lang.System.out.println(f1(1, new S0(2, 3.0)));\n");
+		return sb.toString();
+	}
+}
\ No newline at end of file
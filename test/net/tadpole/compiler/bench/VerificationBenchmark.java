@@ -0,0 +1,58 @@
+package net.tadpole.compiler.bench;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import net.tadpole.compiler.ClassVerifier;
+import net.tadpole.compiler.Module;
+import net.tadpole.compiler.ParseDriver;
+import net.tadpole.compiler.Struct;
+import net.tadpole.compiler.TadpoleListener;
+import net.tadpole.compiler.backend.ClassFile;
+import net.tadpole.compiler.backend.ClassFileBackend;
+
+// verifies the classes of the same modules with BCEL's verifier and with the JVM's, the latter on 1 thread and on every core, and prints how long each takes
+// usage: VerificationBenchmark [modules] [structs per module] [rounds], defaults to 16 modules with 8 structs each and 5 rounds, the first round only warms up the JIT
+public class VerificationBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int modules = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int structs = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		
+		ParseDriver.warmUp();
+		for(int i = 0; i < modules; i++)
+		{
+			TadpoleListener listener = new TadpoleListener("M" + i);
+			new ParseTreeWalker().walk(listener, ParseDriver.parse(new ANTLRInputStream(ParallelCodegenBenchmark.source(i, structs))));
+			Module module = listener.getModule();
+			Struct.registerStructs(module.declaredStructs);
+			Module.registerModule(module);
+		}
+		Module.analyze(1);
+		ClassFile[] classes = Module.generateBytecode(1, ClassFileBackend.STREAMING);
+		
+		int cores = Runtime.getRuntime().availableProcessors();
+		for(int round = 0; round < rounds; round++)
+		{
+			time(round, "bcel", new ClassVerifier(ClassVerifier.Mode.BCEL, 1, ""), classes);
+			time(round, "jvm", new ClassVerifier(ClassVerifier.Mode.JVM, 1, ""), classes);
+			if(cores > 1)
+				time(round, "jvm x" + cores, new ClassVerifier(ClassVerifier.Mode.JVM, cores, ""), classes);
+		}
+	}
+	
+	private static void time(int round, String name, ClassVerifier verifier, ClassFile[] classes)
+	{
+		System.gc();
+		long start = System.nanoTime();
+		boolean[] passed = verifier.verify(classes);
+		double millis = (System.nanoTime() - start) / 1e6;
+		for(int i = 0; i < passed.length; i++)
+			if(!passed[i])
+				throw new IllegalStateException(name + " rejected " + classes[i].className);
+		if(round > 0)
+			System.out.printf("round %d: %-8s %8.1f ms, %d classes%n", round, name, millis, classes.length);
+	}
+}
\ No newline at end of file